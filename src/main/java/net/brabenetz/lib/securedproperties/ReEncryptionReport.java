@@ -0,0 +1,132 @@
+/*-
+ * #%L
+ * Secured Properties
+ * ===============================================================
+ * Copyright (C) 2016 - 2026 Brabenetz Harald, Austria
+ * ===============================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package net.brabenetz.lib.securedproperties;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * The result of {@link SecuredPropertiesReEncryption}: the per-file timings and failures.
+ */
+public final class ReEncryptionReport {
+
+    private final List<FileResult> fileResults;
+    private final long durationNanos;
+
+    ReEncryptionReport(final List<FileResult> fileResults, final long durationNanos) {
+        this.fileResults = Collections.unmodifiableList(fileResults);
+        this.durationNanos = durationNanos;
+    }
+
+    /**
+     * @return the result per processed property file.
+     */
+    public List<FileResult> getFileResults() {
+        return fileResults;
+    }
+
+    /**
+     * @return the results of the property files which could not be re-encrypted.
+     */
+    public List<FileResult> getFailures() {
+        return fileResults.stream().filter(FileResult::isFailed).collect(Collectors.toList());
+    }
+
+    /**
+     * @return the number of re-encrypted values over all property files.
+     */
+    public int getReEncryptedValueCount() {
+        return fileResults.stream().mapToInt(FileResult::getReEncryptedValueCount).sum();
+    }
+
+    /**
+     * @return the wall-clock duration of the whole re-encryption in milliseconds.
+     */
+    public long getDurationMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(durationNanos);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ReEncryptionReport[files=%s, values=%s, failures=%s, duration=%sms]",
+            fileResults.size(), getReEncryptedValueCount(), getFailures().size(), getDurationMillis());
+    }
+
+    /**
+     * The result of one property file.
+     */
+    public static final class FileResult {
+        private final File file;
+        private final int reEncryptedValueCount;
+        private final long durationNanos;
+        private final Exception failure;
+
+        FileResult(final File file, final int reEncryptedValueCount, final long durationNanos, final Exception failure) {
+            this.file = file;
+            this.reEncryptedValueCount = reEncryptedValueCount;
+            this.durationNanos = durationNanos;
+            this.failure = failure;
+        }
+
+        /**
+         * @return the property file.
+         */
+        public File getFile() {
+            return file;
+        }
+
+        /**
+         * @return the number of re-encrypted values in this property file.
+         */
+        public int getReEncryptedValueCount() {
+            return reEncryptedValueCount;
+        }
+
+        /**
+         * @return the time needed to read, re-encrypt and write this property file in nanoseconds.
+         */
+        public long getDurationNanos() {
+            return durationNanos;
+        }
+
+        /**
+         * @return true if this property file could not be re-encrypted. The property file is left unchanged in that case.
+         */
+        public boolean isFailed() {
+            return failure != null;
+        }
+
+        /**
+         * @return the reason why this property file could not be re-encrypted, or null.
+         */
+        public Exception getFailure() {
+            return failure;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s[values=%s, duration=%sms%s]", file, reEncryptedValueCount, TimeUnit.NANOSECONDS.toMillis(durationNanos),
+                isFailed() ? ", failure=" + failure.getMessage() : "");
+        }
+    }
+}
@@ -19,18 +19,30 @@
  */
 package net.brabenetz.lib.securedproperties;
 
+import com.github.fge.lambdas.Throwing;
+import net.brabenetz.lib.securedproperties.core.AlgorithmSelection;
 import net.brabenetz.lib.securedproperties.core.Encryption;
+import net.brabenetz.lib.securedproperties.core.EncryptionOptions;
+import net.brabenetz.lib.securedproperties.core.EnvelopeEncryption;
+import net.brabenetz.lib.securedproperties.core.KeyAgentClient;
 import net.brabenetz.lib.securedproperties.core.SecretContainer;
-import net.brabenetz.lib.securedproperties.core.SecretContainerStore;
+import net.brabenetz.lib.securedproperties.core.SecretContainerCache;
+import net.brabenetz.lib.securedproperties.core.SecretContainerWatcher;
 import net.brabenetz.lib.securedproperties.utils.SecuredPropertiesUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.Pair;
 
 import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Properties;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -119,28 +131,107 @@ public final class SecuredProperties {
      */
     public static Map<String, String> getSecretValues(
             final SecuredPropertiesConfig config, final File[] propertyFiles, final String... keys) {
+        return getSecretValues(config, propertyFiles, Encryption::decryptAll, Function.identity(), keys);
+    }
 
-        Map<String, String> result = new HashMap<>();
-        final SecretContainer secretContainer = getSecretContainer(config);
+    /**
+     * Like {@link #getSecretValue(SecuredPropertiesConfig, File, String)}, but the decrypted value is returned as char array without an
+     * intermediate String, so the caller can overwrite it after usage.
+     *
+     * @see SecuredProperties
+     * @param config       the {@link SecuredPropertiesConfig} to control custom behavior.
+     * @param propertyFile The Properties file to with the encrypted value
+     * @param key          The Property-Key of the encrypted value.
+     * @return The decrypted plain-text value.
+     */
+    public static char[] getSecretValueAsChars(final SecuredPropertiesConfig config, final File propertyFile, final String key) {
+        return getSecretValuesAsChars(config, propertyFile, key).get(key);
+    }
+
+    /**
+     * Like {@link #getSecretValue(SecuredPropertiesConfig, File[], String)}, but the decrypted value is returned as char array without an
+     * intermediate String, so the caller can overwrite it after usage.
+     *
+     * @see SecuredProperties
+     * @param config        the {@link SecuredPropertiesConfig} to control custom behavior.
+     * @param propertyFiles A list of Property file to with the encrypted value
+     * @param key           The Property-Key of the encrypted value.
+     * @return The decrypted plain-text value.
+     */
+    public static char[] getSecretValueAsChars(final SecuredPropertiesConfig config, final File[] propertyFiles, final String key) {
+        return getSecretValuesAsChars(config, propertyFiles, key).get(key);
+    }
+
+    /**
+     * Like {@link #getSecretValues(SecuredPropertiesConfig, File, String...)}, but the decrypted values are returned as char arrays without
+     * intermediate Strings, so the caller can overwrite them after usage.
+     *
+     * @see SecuredProperties
+     * @param config       the {@link SecuredPropertiesConfig} to control custom behavior.
+     * @param propertyFile The Properties file to with the encrypted value
+     * @param keys         The Property-Keys of the encrypted value.
+     * @return A Map with the decrypted plain-text values per key.
+     */
+    public static Map<String, char[]> getSecretValuesAsChars(
+            final SecuredPropertiesConfig config, final File propertyFile, final String... keys) {
+        return getSecretValuesAsChars(config, new File[] {propertyFile}, keys);
+    }
+
+    /**
+     * Like {@link #getSecretValues(SecuredPropertiesConfig, File[], String...)}, but the decrypted values are returned as char arrays without
+     * intermediate Strings, so the caller can overwrite them after usage.
+     * <p>
+     * Not encrypted values are already Strings in the {@link Properties}. With a key agent (see
+     * {@link SecuredPropertiesConfig#withKeyAgentSocket(File)}) the decrypted values are transferred as Strings.
+     *
+     * @see SecuredProperties
+     * @param config        the {@link SecuredPropertiesConfig} to control custom behavior.
+     * @param propertyFiles A list of Property file to with the encrypted value
+     * @param keys          The Property-Keys of the encrypted value.
+     * @return A Map with the decrypted plain-text values per key.
+     */
+    public static Map<String, char[]> getSecretValuesAsChars(
+            final SecuredPropertiesConfig config, final File[] propertyFiles, final String... keys) {
+        return getSecretValues(config, propertyFiles, Encryption::decryptAllToChars, SecuredProperties::toChars, keys);
+    }
+
+    private static <T> Map<String, T> getSecretValues(final SecuredPropertiesConfig config, final File[] propertyFiles,
+            final Decryption<T> decryption, final Function<String, T> fromString, final String... keys) {
+
+        Map<String, T> result = new HashMap<>();
+        Map<String, String> encryptedValues = new HashMap<>();
 
         for (File propertyFile : propertyFiles) {
             if (!propertyFile.exists()) {
                 continue;
             }
             final Properties properties = SecuredPropertiesUtils.readProperties(propertyFile);
+            final Map<String, String> fileEncryptedValues = new HashMap<>();
             for (String key : keys) {
 
                 String value = properties.getProperty(key);
+                encryptedValues.remove(key);
                 if (Encryption.isEncryptedValue(value)) {
-                    // read and decrypt value
-                    result.put(key, Encryption.decrypt(secretContainer.getAlgorithm(), secretContainer.getSecretKey(), config.getSaltLength(), value));
+                    result.remove(key);
+                    fileEncryptedValues.put(key, value);
                 } else {
-                    result.put(key, value);
+                    result.put(key, fromString.apply(value));
                 }
             }
 
+            if (!fileEncryptedValues.isEmpty()) {
+                final SecretContainer dataKey = getDataKey(config, propertyFile);
+                if (dataKey == null) {
+                    // collect encrypted values to decrypt them together
+                    encryptedValues.putAll(fileEncryptedValues);
+                } else {
+                    result.putAll(transformValues(fileEncryptedValues,
+                            values -> decryption.decryptAll(dataKey, config.getSaltLength(), values, config.getBatchParallelism())));
+                }
+            }
         }
 
+        result.putAll(decryptValues(config, encryptedValues, decryption, fromString));
         return result;
 
     }
@@ -165,7 +256,6 @@ public final class SecuredProperties {
     public static void encryptNonEncryptedValues(
             final SecuredPropertiesConfig config, final File[] propertyFiles, final String... keys) {
 
-        final SecretContainer secretContainer = getSecretContainer(config);
         for (File propertyFile : propertyFiles) {
             if (!propertyFile.exists()) {
                 continue;
@@ -182,7 +272,9 @@ public final class SecuredProperties {
             }
 
             if (!unencryptedValues.isEmpty()) {
-                Map<String, String> encryptedValues = encryptValues(config, secretContainer, unencryptedValues);
+                final SecretContainer dataKey = config.isEnvelopeEncryption() ? getOrAddDataKey(config, propertyFile) : getDataKey(config, propertyFile);
+                Map<String, String> encryptedValues = dataKey == null ? encryptAll(config, unencryptedValues)
+                        : transformValues(unencryptedValues, values -> encryptAll(config, dataKey, values));
                 Pair<String, String>[] newProperties = encryptedValues.entrySet().stream()
                         .map(e -> Pair.of(e.getKey(), e.getValue()))
                         .collect(Collectors.toSet())
@@ -192,15 +284,120 @@ public final class SecuredProperties {
         }
     }
 
-    private static Map<String, String> encryptValues(final SecuredPropertiesConfig config, final SecretContainer secretContainer,
-        final Map<String, String> unencryptedValues) {
+    /**
+     * @return the data key of the given property file with the {@link EncryptionOptions} of the config, or null if the property file has no data
+     *         key header.
+     */
+    private static SecretContainer getDataKey(final SecuredPropertiesConfig config, final File propertyFile) {
+        final String wrappedDataKey = EnvelopeEncryption.readWrappedDataKey(propertyFile);
+        if (wrappedDataKey == null) {
+            return null;
+        }
+        return EnvelopeEncryption.getDataKey(propertyFile, wrappedDataKey, getUnwrappingKey(config), value -> decrypt(config, value),
+            config.getAllowedAlgorithm()).withOptions(config.getEncryptionOptions());
+    }
 
-        Map<String, String> encryptedValues = new HashMap<>();
-        for (Entry<String, String> entry : unencryptedValues.entrySet()) {
-            encryptedValues.put(entry.getKey(), Encryption.encrypt(
-                    secretContainer.getAlgorithm(), secretContainer.getSecretKey(), config.getSaltLength(), entry.getValue()));
+    /**
+     * @return the identity of the key which wraps and unwraps the data keys: the {@link KeyAgentClient} of a key agent, otherwise the
+     *         {@link SecretContainer}, which is a new instance after the secret File has changed.
+     */
+    private static Object getUnwrappingKey(final SecuredPropertiesConfig config) {
+        if (config.getKeyAgentSocket() != null) {
+            return KeyAgentClient.getShared(config.getKeyAgentSocket().toPath());
         }
-        return encryptedValues;
+        return getSecretContainer(config);
+    }
+
+    private static SecretContainer getOrAddDataKey(final SecuredPropertiesConfig config, final File propertyFile) {
+        final SecretContainer existingDataKey = getDataKey(config, propertyFile);
+        if (existingDataKey != null) {
+            return existingDataKey;
+        }
+        final EncryptionOptions options = config.getEncryptionOptions();
+        final SecretContainer dataKey = EnvelopeEncryption.createDataKey(Encryption.getFirstSupportedAlgorithm(options, config.getAllowedAlgorithm()),
+            options);
+        final Object unwrappingKey = getUnwrappingKey(config);
+        final String wrappedDataKey = encrypt(config, EnvelopeEncryption.toDataKeyLine(dataKey));
+
+        final String content = new String(Throwing.supplier(() -> Files.readAllBytes(propertyFile.toPath())).get(), StandardCharsets.ISO_8859_1);
+        final StringBuilder newContent = new StringBuilder(content.length() + wrappedDataKey.length() + 64);
+        newContent.append(EnvelopeEncryption.toHeaderLine(wrappedDataKey)).append(System.lineSeparator());
+        // values which are already encrypted with the secret key must be encrypted with the data key from now on.
+        SecuredPropertiesReEncryption.reEncryptContent(content,
+                value -> encrypt(config, dataKey, decrypt(config, value)), newContent);
+        SecuredPropertiesUtils.writeAtomically(propertyFile, newContent.toString().getBytes(StandardCharsets.ISO_8859_1));
+
+        EnvelopeEncryption.putDataKey(propertyFile, wrappedDataKey, unwrappingKey, dataKey);
+        return dataKey;
+    }
+
+    /**
+     * Encrypt all given values as one batch (will create the secret key if not already exist): the cipher and buffers are set up once, and with
+     * {@link SecuredPropertiesConfig#withBatchParallelism(int)} large batches are split across threads. A key agent gets all values with one
+     * request.
+     *
+     * @param config
+     *        the {@link SecuredPropertiesConfig} to control custom behavior.
+     * @param plainTextValues
+     *        The values to encrypt per key.
+     * @return the encrypted values per key.
+     */
+    public static Map<String, String> encryptAll(final SecuredPropertiesConfig config, final Map<String, String> plainTextValues) {
+        if (config.getKeyAgentSocket() != null) {
+            final KeyAgentClient keyAgent = KeyAgentClient.getShared(config.getKeyAgentSocket().toPath());
+            return transformValues(plainTextValues, values -> keyAgent.encryptAll(config.getSaltLength(), values));
+        }
+        final SecretContainer secretContainer = getSecretContainer(config);
+        return transformValues(plainTextValues, values -> encryptAll(config, secretContainer, values));
+    }
+
+    private static List<String> encryptAll(final SecuredPropertiesConfig config, final SecretContainer secretContainer, final List<String> values) {
+        if (config.isCompactFormat()) {
+            return Encryption.encryptCompactAll(secretContainer, config.getSaltLength(), values, config.getBatchParallelism());
+        }
+        return Encryption.encryptAll(secretContainer, config.getSaltLength(), values, config.getBatchParallelism());
+    }
+
+    /**
+     * Decrypt all given values as one batch, like {@link #encryptAll(SecuredPropertiesConfig, Map)}.
+     *
+     * @param config
+     *        the {@link SecuredPropertiesConfig} to control custom behavior.
+     * @param encryptedValues
+     *        The values to decrypt per key.
+     * @return the decrypted values per key.
+     */
+    public static Map<String, String> decryptAll(final SecuredPropertiesConfig config, final Map<String, String> encryptedValues) {
+        return decryptValues(config, encryptedValues, Encryption::decryptAll, Function.identity());
+    }
+
+    private static <T> Map<String, T> decryptValues(final SecuredPropertiesConfig config, final Map<String, String> encryptedValues,
+            final Decryption<T> decryption, final Function<String, T> fromString) {
+        if (config.getKeyAgentSocket() != null) {
+            if (encryptedValues.isEmpty()) {
+                return new HashMap<>();
+            }
+            final KeyAgentClient keyAgent = KeyAgentClient.getShared(config.getKeyAgentSocket().toPath());
+            return transformValues(encryptedValues, values -> keyAgent.decryptAll(config.getSaltLength(), values).stream()
+                    .map(fromString)
+                    .collect(Collectors.toList()));
+        }
+        final SecretContainer secretContainer = getSecretContainer(config);
+        return transformValues(encryptedValues,
+                values -> decryption.decryptAll(secretContainer, config.getSaltLength(), values, config.getBatchParallelism()));
+    }
+
+    /**
+     * Transforms all values of the given map together, so a key agent gets them as one batch.
+     */
+    private static <T> Map<String, T> transformValues(final Map<String, String> values, final Function<List<String>, List<T>> transformation) {
+        final List<String> keys = new ArrayList<>(values.keySet());
+        final List<T> transformedValues = transformation.apply(keys.stream().map(values::get).collect(Collectors.toList()));
+        final Map<String, T> result = new HashMap<>();
+        for (int i = 0; i < keys.size(); i++) {
+            result.put(keys.get(i), transformedValues.get(i));
+        }
+        return result;
     }
 
     /**
@@ -220,9 +417,19 @@ public final class SecuredProperties {
      * @return the encrypted value.
      */
     public static String encrypt(final SecuredPropertiesConfig config, final String plainTextValue) {
+        if (config.getKeyAgentSocket() != null) {
+            return KeyAgentClient.getShared(config.getKeyAgentSocket().toPath()).encrypt(config.getSaltLength(), plainTextValue);
+        }
         final SecretContainer secretContainer = getSecretContainer(config);
 
-        return Encryption.encrypt(secretContainer.getAlgorithm(), secretContainer.getSecretKey(), config.getSaltLength(), plainTextValue);
+        return encrypt(config, secretContainer, plainTextValue);
+    }
+
+    private static String encrypt(final SecuredPropertiesConfig config, final SecretContainer secretContainer, final String plainTextValue) {
+        if (config.isCompactFormat()) {
+            return Encryption.encryptCompact(secretContainer, config.getSaltLength(), plainTextValue);
+        }
+        return Encryption.encrypt(secretContainer, config.getSaltLength(), plainTextValue);
     }
 
     /**
@@ -233,14 +440,86 @@ public final class SecuredProperties {
      * @return the encrypted value.
      */
     public static String decrypt(final SecuredPropertiesConfig config, final String encryptedPassword) {
+        if (config.getKeyAgentSocket() != null) {
+            return KeyAgentClient.getShared(config.getKeyAgentSocket().toPath()).decrypt(config.getSaltLength(), encryptedPassword);
+        }
         final SecretContainer secretContainer = getSecretContainer(config);
 
-        return Encryption.decrypt(secretContainer.getAlgorithm(), secretContainer.getSecretKey(), config.getSaltLength(), encryptedPassword);
+        return Encryption.decrypt(secretContainer, config.getSaltLength(), encryptedPassword);
+
+    }
+
+    /**
+     * Like {@link #decrypt(SecuredPropertiesConfig, String)}, but the decrypted value is returned as char array without an intermediate String, so
+     * the caller can overwrite it after usage. With a key agent the decrypted value is transferred as String.
+     *
+     * @param config the {@link SecuredPropertiesConfig} to control custom behavior.
+     * @param encryptedValue The value to decrypt
+     * @return the decrypted value.
+     */
+    public static char[] decryptToChars(final SecuredPropertiesConfig config, final String encryptedValue) {
+        if (config.getKeyAgentSocket() != null) {
+            return toChars(KeyAgentClient.getShared(config.getKeyAgentSocket().toPath()).decrypt(config.getSaltLength(), encryptedValue));
+        }
+        return Encryption.decryptToChars(getSecretContainer(config), config.getSaltLength(), encryptedValue);
+    }
 
+    /**
+     * Like {@link #decrypt(SecuredPropertiesConfig, String)}, but returns the UTF-8 bytes of the decrypted value without an intermediate String, so
+     * the caller can overwrite them after usage. With a key agent the decrypted value is transferred as String.
+     *
+     * @param config the {@link SecuredPropertiesConfig} to control custom behavior.
+     * @param encryptedValue The value to decrypt
+     * @return the UTF-8 bytes of the decrypted value.
+     */
+    public static byte[] decryptToBytes(final SecuredPropertiesConfig config, final String encryptedValue) {
+        if (config.getKeyAgentSocket() != null) {
+            return KeyAgentClient.getShared(config.getKeyAgentSocket().toPath()).decrypt(config.getSaltLength(), encryptedValue)
+                    .getBytes(StandardCharsets.UTF_8);
+        }
+        return Encryption.decryptToBytes(getSecretContainer(config), config.getSaltLength(), encryptedValue);
     }
 
+    private static char[] toChars(final String value) {
+        return value == null ? null : value.toCharArray();
+    }
+
+    /**
+     * @return the {@link SecretContainer} of the given config with the {@link EncryptionOptions} of the config, which apply only to this config.
+     */
     private static SecretContainer getSecretContainer(final SecuredPropertiesConfig config) {
+        return loadSecretContainer(config).withOptions(config.getEncryptionOptions());
+    }
+
+    private static SecretContainer loadSecretContainer(final SecuredPropertiesConfig config) {
+        if (config.getSecretContainerSource() != null) {
+            return SecretContainerCache.getSecretContainer(config.getSecretContainerSource(), config.getAllowedAlgorithm());
+        }
 
-        return SecretContainerStore.getSecretContainer(config.getSecretFile(), config.isAutoCreateSecretKey(), config.getAllowedAlgorithm());
+        // the selection is only evaluated if the secret file must be created.
+        final Supplier<AlgorithmSelection> selection = () -> selectAlgorithm(config);
+        if (config.isWatchSecretFile()) {
+            return SecretContainerWatcher.watch(config.getSecretFile(), config.isAutoCreateSecretKey(), selection, config.getAllowedAlgorithm())
+                    .getSecretContainer();
+        }
+        return SecretContainerCache.getSecretContainer(config.getSecretFile(), config.isAutoCreateSecretKey(),
+                config.getSecretFileRevalidationInterval(), selection, config.getAllowedAlgorithm());
+    }
+
+    private static AlgorithmSelection selectAlgorithm(final SecuredPropertiesConfig config) {
+        if (config.isFastestAlgorithm()) {
+            return AlgorithmSelection.fastest(config.getEncryptionOptions(), config.getMinAlgorithmStrength(), AlgorithmSelection.DEFAULT_BUDGET_MILLIS,
+                config.getAllowedAlgorithm());
+        }
+        return AlgorithmSelection.firstSupported(config.getEncryptionOptions(), config.getAllowedAlgorithm());
+    }
+
+    /**
+     * A batch decryption with a {@link SecretContainer} into the plain-text representation T, see
+     * {@link Encryption#decryptAll(SecretContainer, int, Collection, int)}.
+     */
+    @FunctionalInterface
+    private interface Decryption<T> {
+        List<T> decryptAll(SecretContainer secretContainer, int saltLength, Collection<String> encryptedValues, int parallelism);
     }
 }
@@ -23,6 +23,10 @@ import net.brabenetz.lib.securedproperties.config.Config;
 import net.brabenetz.lib.securedproperties.config.ConfigInitializer;
 import net.brabenetz.lib.securedproperties.config.ConfigInitializers;
 import net.brabenetz.lib.securedproperties.core.Algorithm;
+import net.brabenetz.lib.securedproperties.core.CipherEngine;
+import net.brabenetz.lib.securedproperties.core.CipherEngines;
+import net.brabenetz.lib.securedproperties.core.EncryptionOptions;
+import net.brabenetz.lib.securedproperties.core.SecretContainerSource;
 import net.brabenetz.lib.securedproperties.core.SupportedAlgorithm;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.SystemUtils;
@@ -30,6 +34,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.security.Provider;
 import java.util.Arrays;
 
 /**
@@ -40,6 +45,7 @@ public class SecuredPropertiesConfig implements Config {
     private static final Logger LOG = LoggerFactory.getLogger(SecuredPropertiesConfig.class);
 
     private static final int DEFAULT_SALT_LENGTH = 11;
+    private static final int DEFAULT_MIN_ALGORITHM_STRENGTH = 128;
 
     /** The place of your secret file. default is '$HOME/.secret/securedProperties.key'. */
     private File secretFile;
@@ -51,12 +57,46 @@ public class SecuredPropertiesConfig implements Config {
             SupportedAlgorithm.AES_192,
             SupportedAlgorithm.AES_128,
             SupportedAlgorithm.DESede_168,
-            SupportedAlgorithm.DESede_112
+            SupportedAlgorithm.DESede_112,
+            SupportedAlgorithm.AES_GCM_256,
+            SupportedAlgorithm.AES_GCM_192,
+            SupportedAlgorithm.AES_GCM_128,
+            SupportedAlgorithm.CHACHA20_POLY1305
     };
 
     /** If the secret Key should be created automatically if missing, or an Exception should be shown instead. */
     private boolean autoCreateSecretKey = true;
 
+    /** The minimum time in milliseconds between two checks if the cached secret file has changed. 0 checks on every access. */
+    private long secretFileRevalidationInterval;
+
+    /** If the secret file should be watched for changes and reloaded in the background, instead of checking it on access. */
+    private boolean watchSecretFile;
+
+    /** Where the secret key comes from instead of the secret file, like 'env:MY_SECRET_KEY' or 'classpath:secret/app.key'. */
+    private SecretContainerSource secretContainerSource;
+
+    /** The Unix domain socket of a local key agent which encrypts and decrypts the values instead of this JVM. */
+    private File keyAgentSocket;
+
+    /** The options of this config for the encryption and decryption, like the SecureRandom algorithm for keys and salts. default are the JVM-wide defaults. */
+    private EncryptionOptions encryptionOptions = EncryptionOptions.DEFAULT;
+
+    /** Flag to encrypt the values of each property file with an own data key, which is wrapped by the secret key. default is 'false'. */
+    private boolean envelopeEncryption;
+
+    /** Flag to write new encrypted values in the compact format "{v2:...}". default is 'false'. */
+    private boolean compactFormat;
+
+    /** The maximum number of threads to encrypt or decrypt the values of one batch. default is '1'. */
+    private int batchParallelism = 1;
+
+    /** Flag to create the secret key with the fastest allowed algorithm on the current host instead of the first one. default is 'false'. */
+    private boolean fastestAlgorithm;
+
+    /** The minimum strength in bits of the fastest algorithm. default is '128'. */
+    private int minAlgorithmStrength = DEFAULT_MIN_ALGORITHM_STRENGTH;
+
     /**
      * Return the SecretFile location which is needed to decrypt and encrypt your property-values.
      * <p>
@@ -83,6 +123,61 @@ public class SecuredPropertiesConfig implements Config {
         return allowedAlgorithm;
     }
 
+    public long getSecretFileRevalidationInterval() {
+        return secretFileRevalidationInterval;
+    }
+
+    public boolean isWatchSecretFile() {
+        return watchSecretFile;
+    }
+
+    public SecretContainerSource getSecretContainerSource() {
+        return secretContainerSource;
+    }
+
+    public File getKeyAgentSocket() {
+        return keyAgentSocket;
+    }
+
+    public String getSecureRandomStrategy() {
+        return encryptionOptions.getSecureRandomStrategy();
+    }
+
+    /**
+     * @return the options for the encryption and decryption of this config, see {@link EncryptionOptions}.
+     */
+    public EncryptionOptions getEncryptionOptions() {
+        return encryptionOptions;
+    }
+
+    public boolean isEnvelopeEncryption() {
+        return envelopeEncryption;
+    }
+
+    public boolean isOffHeapBuffers() {
+        return encryptionOptions.isOffHeapBuffers();
+    }
+
+    public boolean isCompactFormat() {
+        return compactFormat;
+    }
+
+    public int getBatchParallelism() {
+        return batchParallelism;
+    }
+
+    public CipherEngine getCipherEngine() {
+        return encryptionOptions.getCipherEngine();
+    }
+
+    public boolean isFastestAlgorithm() {
+        return fastestAlgorithm;
+    }
+
+    public int getMinAlgorithmStrength() {
+        return minAlgorithmStrength;
+    }
+
     /**
      * Similar to Spring-Boot, Externalize your configuration so that you can work with the same application code in different environments.
      * <p>
@@ -159,4 +254,234 @@ public class SecuredPropertiesConfig implements Config {
         return this;
     }
 
+    /**
+     * The secret file is cached after the first read and only the file attributes (last-modified, size, inode) are checked for changes.
+     * This interval defines how long the cached secret key is used before the file attributes are checked again.
+     * <p>
+     * Default is 0: the file attributes are checked on every access, but the file is only read again if it has changed.
+     *
+     * @param newRevalidationInterval the interval in milliseconds.
+     * @return this for fluent style.
+     */
+    @Override
+    public SecuredPropertiesConfig withSecretFileRevalidationInterval(final long newRevalidationInterval) {
+        secretFileRevalidationInterval = newRevalidationInterval;
+        return this;
+    }
+
+    /**
+     * With "true" the directory of the secret file will be watched by a background thread, and a changed secret file will be reloaded
+     * immediately. The secret key is then used without any file system access. If the changed secret file is invalid, the previous secret key
+     * will still be used.
+     * <p>
+     * Default is "false".
+     *
+     * @param watch true to watch the secret file for changes.
+     * @return this for fluent style.
+     * @see net.brabenetz.lib.securedproperties.core.SecretContainerWatcher
+     */
+    @Override
+    public SecuredPropertiesConfig withWatchSecretFile(final boolean watch) {
+        watchSecretFile = watch;
+        return this;
+    }
+
+    /**
+     * Reads the secret key from the given {@link SecretContainerSource} instead of the secret file, e.g. from an environment variable or a
+     * classpath resource in read-only container images. Immutable sources are read only once per JVM.
+     * <p>
+     * Default is null: the secret file is used.
+     *
+     * @param newSecretContainerSource the {@link SecretContainerSource}, see {@link net.brabenetz.lib.securedproperties.core.SecretContainerSources}.
+     * @return this for fluent style.
+     */
+    @Override
+    public SecuredPropertiesConfig withSecretContainerSource(final SecretContainerSource newSecretContainerSource) {
+        secretContainerSource = newSecretContainerSource;
+        return this;
+    }
+
+    /**
+     * Encrypts and decrypts the values with a local key agent (see {@link net.brabenetz.lib.securedproperties.core.KeyAgentServer}) on the given
+     * Unix domain socket, instead of reading the secret key in this JVM. Requires Java 16+.
+     * <p>
+     * Default is null: the secret key is read by this JVM.
+     *
+     * @param newKeyAgentSocket the Unix domain socket of the key agent.
+     * @return this for fluent style.
+     */
+    @Override
+    public SecuredPropertiesConfig withKeyAgentSocket(final File newKeyAgentSocket) {
+        keyAgentSocket = newKeyAgentSocket;
+        return this;
+    }
+
+    /**
+     * The {@link java.security.SecureRandom} algorithm which is used for the auto-created secret key, the data keys, the salts and nonces of this
+     * config, e.g. 'NativePRNGNonBlocking' or 'DRBG' to avoid a blocking entropy acquisition on freshly booted machines. The strategy applies only
+     * to this config. The time of its entropy acquisition is available with
+     * {@link net.brabenetz.lib.securedproperties.core.SecureRandoms#getEntropyAcquisitionNanos(String)}. The JVM-wide strategy is set with
+     * {@link net.brabenetz.lib.securedproperties.core.SecureRandoms#setStrategy(String)}.
+     * <p>
+     * Default is null: the JVM-wide strategy.
+     *
+     * @param newSecureRandomStrategy the SecureRandom algorithm.
+     * @return this for fluent style.
+     */
+    @Override
+    public SecuredPropertiesConfig withSecureRandomStrategy(final String newSecureRandomStrategy) {
+        encryptionOptions = encryptionOptions.withSecureRandomStrategy(newSecureRandomStrategy);
+        return this;
+    }
+
+    /**
+     * With "true" each property file gets its own random data key, which is wrapped (encrypted) by the secret key and stored in a header comment
+     * of the property file. The values are encrypted with the data key, so a rotation of the secret key only needs to re-encrypt the data key of
+     * each property file instead of every value. The unwrapped data keys are cached per property file.
+     * <p>
+     * Property files without a data key header are still decrypted with the secret key. The header is added (and existing encrypted values are
+     * re-encrypted with the new data key) on the next {@link SecuredProperties#encryptNonEncryptedValues(SecuredPropertiesConfig, File, String...)}.
+     * Property files with a data key header always use their data key, also if this flag is "false".
+     * <p>
+     * Default is "false".
+     *
+     * @param envelope true to use a data key per property file.
+     * @return this for fluent style.
+     * @see net.brabenetz.lib.securedproperties.core.EnvelopeEncryption
+     */
+    @Override
+    public SecuredPropertiesConfig withEnvelopeEncryption(final boolean envelope) {
+        envelopeEncryption = envelope;
+        return this;
+    }
+
+    /**
+     * With "true" the salted plain-text bytes and chars of each encryption and decryption are only written into direct (off-heap) buffers, which
+     * are allocated once per thread and zeroed after each operation. Only the plain-text Strings themselves remain on the heap, so fewer copies of
+     * the secrets show up in heap dumps. The JCE provider may still use internal heap buffers.
+     * <p>
+     * The setting applies only to the values of this config. The JVM-wide setting is
+     * {@link net.brabenetz.lib.securedproperties.core.SecretBuffers#setEnabled(boolean)}.
+     * <p>
+     * Default is "false".
+     *
+     * @param offHeap true to use zeroed off-heap buffers for the plain-text values.
+     * @return this for fluent style.
+     * @see net.brabenetz.lib.securedproperties.core.SecretBuffers
+     */
+    @Override
+    public SecuredPropertiesConfig withOffHeapBuffers(final boolean offHeap) {
+        encryptionOptions = encryptionOptions.withOffHeapBuffers(offHeap);
+        return this;
+    }
+
+    /**
+     * With "true" new values are encrypted in the compact format "{v2:...}": a one-byte header with the algorithm and mode (plus the optional
+     * key-id) and unpadded URL-safe base64. The values are recognized by their prefix alone, without a scan of the whole value. Values in the legacy
+     * format "{...}" or "{keyId:...}" are still decrypted, so existing property files keep working. Values encrypted by a key agent keep the
+     * legacy format.
+     * <p>
+     * Only enable it if all readers of the property files use a version which supports the compact format.
+     * <p>
+     * Default is "false".
+     *
+     * @param compact true to write new encrypted values in the compact format.
+     * @return this for fluent style.
+     */
+    @Override
+    public SecuredPropertiesConfig withCompactFormat(final boolean compact) {
+        compactFormat = compact;
+        return this;
+    }
+
+    /**
+     * The maximum number of threads to encrypt or decrypt the values of one batch, e.g. with SecuredProperties.getSecretValues(..) or
+     * SecuredProperties.decryptAll(..). Only batches with at least 64 values per thread are split, and not into more parts than available
+     * processors, so small batches are always processed in the current thread. A value like the number of CPU cores speeds up the decryption of
+     * hundreds of secrets on application startup.
+     * <p>
+     * Default is "1".
+     *
+     * @param parallelism the maximum number of threads per batch.
+     * @return this for fluent style.
+     */
+    @Override
+    public SecuredPropertiesConfig withBatchParallelism(final int parallelism) {
+        batchParallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * The name of the JCE provider which creates the ciphers of this config, like 'SunJCE' or 'BC'. The provider must be installed, see
+     * {@link java.security.Security#getProvider(String)}. It is resolved once and used directly, instead of searching the list of installed
+     * providers for every new cipher. The format of the encrypted values doesn't depend on the provider. The provider applies only to this config,
+     * also to new secret keys and to the check of the supported algorithms; the JVM-wide engine is set with {@link CipherEngines#setDefault(CipherEngine)}.
+     * <p>
+     * Default is null: the first installed provider which supports the algorithm.
+     *
+     * @param providerName the name of the JCE provider.
+     * @return this for fluent style.
+     */
+    @Override
+    public SecuredPropertiesConfig withCipherProvider(final String providerName) {
+        return withCipherEngine(providerName == null ? null : CipherEngines.provider(providerName));
+    }
+
+    /**
+     * Like {@link #withCipherProvider(String)}, but with a provider instance which doesn't need to be installed.
+     *
+     * @param provider the JCE provider.
+     * @return this for fluent style.
+     */
+    public SecuredPropertiesConfig withCipherProvider(final Provider provider) {
+        return withCipherEngine(provider == null ? null : CipherEngines.provider(provider));
+    }
+
+    /**
+     * The {@link CipherEngine} which creates the ciphers of this config, e.g. a faster implementation than the JCE providers of the JVM.
+     * <p>
+     * Default is null: the JVM-wide {@link CipherEngines#getDefault() engine}.
+     *
+     * @param engine the cipher engine.
+     * @return this for fluent style.
+     */
+    public SecuredPropertiesConfig withCipherEngine(final CipherEngine engine) {
+        encryptionOptions = encryptionOptions.withCipherEngine(engine);
+        return this;
+    }
+
+    /**
+     * With "true" an auto-created secret key uses the fastest of the allowed algorithms on the current host, instead of the first supported one.
+     * Each supported algorithm with at least the {@link #withMinAlgorithmStrength(int) minimum strength} is measured for about 50 milliseconds,
+     * and the measured numbers are written as comment after the algorithm in the secret file, see
+     * {@link net.brabenetz.lib.securedproperties.core.AlgorithmSelection}. Existing secret files are not changed.
+     * <p>
+     * Only enable it if all readers of the secret file use a version which ignores the comment.
+     * <p>
+     * Default is "false".
+     *
+     * @param fastest true to create the secret key with the fastest allowed algorithm.
+     * @return this for fluent style.
+     */
+    @Override
+    public SecuredPropertiesConfig withFastestAlgorithm(final boolean fastest) {
+        fastestAlgorithm = fastest;
+        return this;
+    }
+
+    /**
+     * The minimum {@link Algorithm#getStrength() strength} in bits of the algorithm which is selected by {@link #withFastestAlgorithm(boolean)},
+     * e.g. 128 for AES_128 or better, or 256 for AES_256, AES_GCM_256 or CHACHA20_POLY1305. DESede_168 has a strength of 112 bits.
+     * <p>
+     * Default is "128".
+     *
+     * @param minStrength the minimum strength in bits.
+     * @return this for fluent style.
+     */
+    @Override
+    public SecuredPropertiesConfig withMinAlgorithmStrength(final int minStrength) {
+        minAlgorithmStrength = minStrength;
+        return this;
+    }
+
 }
@@ -0,0 +1,222 @@
+/*-
+ * #%L
+ * Secured Properties
+ * ===============================================================
+ * Copyright (C) 2016 - 2026 Brabenetz Harald, Austria
+ * ===============================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package net.brabenetz.lib.securedproperties;
+
+import com.github.fge.lambdas.Throwing;
+import net.brabenetz.lib.securedproperties.core.Encryption;
+import net.brabenetz.lib.securedproperties.core.EnvelopeEncryption;
+import net.brabenetz.lib.securedproperties.core.SecretContainer;
+import net.brabenetz.lib.securedproperties.utils.SecuredPropertiesUtils;
+import org.apache.commons.lang3.Validate;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.UnaryOperator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Re-encrypts all encrypted values in many property files after a key change (key rotation).
+ * <p>
+ * <b>Example:</b>
+ *
+ * <pre>
+ * ReEncryptionReport report = SecuredPropertiesReEncryption.reEncrypt(config, oldSecretContainer, newSecretContainer,
+ *         Paths.get("/etc/services"), "**&#47;*.properties", 8);
+ * </pre>
+ *
+ * The property files are processed in parallel on a dedicated {@link ForkJoinPool}. Every value for which
+ * {@link Encryption#isEncryptedValue(String)} is true will be decrypted with the old {@link SecretContainer} and encrypted with the new one. All other
+ * lines (comments, plain-text values, line endings) are left unchanged. Each property file is written atomically, and only if all its values could be
+ * re-encrypted; failures are reported per file in the {@link ReEncryptionReport}.
+ * <p>
+ * The new {@link SecretContainer} must have a primary key-id (see {@link SecretContainer#withPrimaryKeyId(String)}). Values which already carry it
+ * are skipped, so an interrupted rotation can simply be started again. Without a key-id an already re-encrypted value could not be recognized: its
+ * decryption with the old key would not reliably fail, and the value would be re-encrypted as garbage.
+ * <p>
+ * Property files with a data key header (see {@link EnvelopeEncryption}) only get their wrapped data key re-encrypted; the values stay encrypted with
+ * the data key. The data key counts as one re-encrypted value in the {@link ReEncryptionReport}.
+ */
+public final class SecuredPropertiesReEncryption {
+
+    private static final org.slf4j.Logger LOG = org.slf4j.LoggerFactory.getLogger(SecuredPropertiesReEncryption.class);
+
+    /** A property line "key = {encrypted-value}" (ISO-8859-1 property syntax, no line continuation). */
+    private static final Pattern ENCRYPTED_PROPERTY = Pattern.compile(
+        "^([ \\t\\f]*[^#!\\s=:][^=:\\s]*(?:[ \\t\\f]*[=:][ \\t\\f]*|[ \\t\\f]+))(\\{[^\\s}]*\\})(?=[ \\t\\f]*$)", Pattern.MULTILINE);
+
+    private SecuredPropertiesReEncryption() {
+        super();
+    }
+
+    /**
+     * Re-encrypts all property files below the given root directory which match the given glob pattern.
+     *
+     * @param config
+     *        the {@link SecuredPropertiesConfig} to control custom behavior (e.g. salt length).
+     * @param oldSecretContainer
+     *        The {@link SecretContainer} to decrypt the existing values.
+     * @param newSecretContainer
+     *        The {@link SecretContainer} with a primary key-id to encrypt the values again.
+     * @param rootDirectory
+     *        The directory to search for property files.
+     * @param glob
+     *        A glob pattern (see {@link java.nio.file.FileSystem#getPathMatcher(String)}) relative to the root directory, e.g.
+     *        "**&#47;*.properties".
+     * @param parallelism
+     *        The maximum number of property files processed in parallel.
+     * @return the {@link ReEncryptionReport} with the per-file timings and failures.
+     */
+    public static ReEncryptionReport reEncrypt(final SecuredPropertiesConfig config, final SecretContainer oldSecretContainer,
+            final SecretContainer newSecretContainer, final Path rootDirectory, final String glob, final int parallelism) {
+        Validate.isTrue(Files.isDirectory(rootDirectory), "The root directory '%s' doesn't exist.", rootDirectory);
+        final PathMatcher pathMatcher = rootDirectory.getFileSystem().getPathMatcher("glob:" + glob);
+        final List<File> propertyFiles;
+        try (Stream<Path> paths = Throwing.supplier(() -> Files.walk(rootDirectory)).get()) {
+            propertyFiles = paths
+                .filter(Files::isRegularFile)
+                .filter(path -> pathMatcher.matches(rootDirectory.relativize(path)))
+                .map(Path::toFile)
+                .collect(Collectors.toList());
+        }
+        return reEncrypt(config, oldSecretContainer, newSecretContainer, propertyFiles, parallelism);
+    }
+
+    /**
+     * Re-encrypts the given property files.
+     *
+     * @param config
+     *        the {@link SecuredPropertiesConfig} to control custom behavior (e.g. salt length).
+     * @param oldSecretContainer
+     *        The {@link SecretContainer} to decrypt the existing values.
+     * @param newSecretContainer
+     *        The {@link SecretContainer} with a primary key-id to encrypt the values again.
+     * @param propertyFiles
+     *        The property files to re-encrypt.
+     * @param parallelism
+     *        The maximum number of property files processed in parallel.
+     * @return the {@link ReEncryptionReport} with the per-file timings and failures.
+     */
+    public static ReEncryptionReport reEncrypt(final SecuredPropertiesConfig config, final SecretContainer oldSecretContainer,
+            final SecretContainer newSecretContainer, final List<File> propertyFiles, final int parallelism) {
+        Validate.isTrue(parallelism > 0, "The parallelism must be positive but was %s", parallelism);
+        final int saltLength = config.getSaltLength();
+        final String newKeyId = newSecretContainer.getPrimaryKeyId();
+        Validate.notNull(newKeyId, "The new SecretContainer needs a primary key-id, so already re-encrypted values are recognized.");
+        final boolean compact = config.isCompactFormat();
+        final UnaryOperator<String> reEncryption = encryptedValue -> {
+            if (newKeyId.equals(Encryption.getKeyId(encryptedValue))) {
+                return encryptedValue;
+            }
+            final String plainTextValue = Encryption.decrypt(oldSecretContainer, saltLength, encryptedValue);
+            return compact ? Encryption.encryptCompact(newSecretContainer, saltLength, plainTextValue)
+                : Encryption.encrypt(newSecretContainer, saltLength, plainTextValue);
+        };
+
+        final long start = System.nanoTime();
+        final ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            final List<ReEncryptionReport.FileResult> fileResults = pool.submit(() -> propertyFiles.parallelStream()
+                .map(propertyFile -> reEncryptFile(propertyFile, reEncryption))
+                .collect(Collectors.toList())).get();
+            final ReEncryptionReport report = new ReEncryptionReport(fileResults, System.nanoTime() - start);
+            LOG.info("{}", report);
+            return report;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("The re-encryption was interrupted.", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("The re-encryption failed: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static ReEncryptionReport.FileResult reEncryptFile(final File propertyFile, final UnaryOperator<String> reEncryption) {
+        final long start = System.nanoTime();
+        try {
+            final String content = new String(Files.readAllBytes(propertyFile.toPath()), StandardCharsets.ISO_8859_1);
+            final StringBuilder newContent = new StringBuilder(content.length());
+            final String wrappedDataKey = EnvelopeEncryption.findWrappedDataKey(content);
+            final int count = wrappedDataKey == null ? reEncryptContent(content, reEncryption, newContent)
+                : reWrapDataKey(content, wrappedDataKey, reEncryption, newContent);
+            if (count > 0) {
+                SecuredPropertiesUtils.writeAtomically(propertyFile, newContent.toString().getBytes(StandardCharsets.ISO_8859_1));
+            }
+            return new ReEncryptionReport.FileResult(propertyFile, count, System.nanoTime() - start, null);
+        } catch (Exception e) {
+            LOG.warn("Property file '{}' could not be re-encrypted: {}", propertyFile, e.getMessage());
+            LOG.debug("Property file '{}' could not be re-encrypted.", propertyFile, e);
+            return new ReEncryptionReport.FileResult(propertyFile, 0, System.nanoTime() - start, e);
+        }
+    }
+
+    /**
+     * Replaces the wrapped data key in the header of the given property file content. The values are left unchanged.
+     *
+     * @return 1 if the data key was re-encrypted, 0 if it was already encrypted with the new primary key.
+     */
+    private static int reWrapDataKey(final String content, final String wrappedDataKey, final UnaryOperator<String> reEncryption,
+            final StringBuilder newContent) {
+        final String newWrappedDataKey = reEncryption.apply(wrappedDataKey);
+        if (newWrappedDataKey.equals(wrappedDataKey)) {
+            newContent.append(content);
+            return 0;
+        }
+        final int start = content.indexOf(wrappedDataKey, content.indexOf(EnvelopeEncryption.DATA_KEY_HEADER));
+        newContent.append(content, 0, start).append(newWrappedDataKey).append(content, start + wrappedDataKey.length(), content.length());
+        return 1;
+    }
+
+    /**
+     * Replaces all encrypted values in the given property file content.
+     *
+     * @return the number of replaced values.
+     */
+    // SuppressWarnings "PMD.DefaultPackage": also used by SecuredProperties to re-encrypt the values with a new data key
+    @SuppressWarnings("PMD.DefaultPackage")
+    static int reEncryptContent(final String content, final UnaryOperator<String> reEncryption, final StringBuilder newContent) {
+        final Matcher matcher = ENCRYPTED_PROPERTY.matcher(content);
+        int count = 0;
+        int last = 0;
+        while (matcher.find()) {
+            final String value = matcher.group(2);
+            if (!Encryption.isEncryptedValue(value)) {
+                continue;
+            }
+            final String newValue = reEncryption.apply(value);
+            if (!newValue.equals(value)) {
+                newContent.append(content, last, matcher.start(2)).append(newValue);
+                last = matcher.end(2);
+                count++;
+            }
+        }
+        newContent.append(content, last, content.length());
+        return count;
+    }
+}
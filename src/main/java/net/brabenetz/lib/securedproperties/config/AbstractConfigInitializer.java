@@ -20,6 +20,7 @@
 package net.brabenetz.lib.securedproperties.config;
 
 import net.brabenetz.lib.securedproperties.core.Algorithm;
+import net.brabenetz.lib.securedproperties.core.SecretContainerSources;
 import net.brabenetz.lib.securedproperties.core.SupportedAlgorithm;
 import org.apache.commons.lang3.StringUtils;
 
@@ -80,6 +81,18 @@ public abstract class AbstractConfigInitializer implements ConfigInitializer {
         mapping.put(ConfigKey.SALT_LENGTH, AbstractConfigInitializer::initSaltLength);
         mapping.put(ConfigKey.ALLOWED_ALGORITHM, AbstractConfigInitializer::initAllowedAlgorithm);
         mapping.put(ConfigKey.AUTO_CREATE_SECRET_KEY, AbstractConfigInitializer::initAutoCreateSecretKey);
+        mapping.put(ConfigKey.SECRET_FILE_REVALIDATION_INTERVAL, AbstractConfigInitializer::initSecretFileRevalidationInterval);
+        mapping.put(ConfigKey.WATCH_SECRET_FILE, AbstractConfigInitializer::initWatchSecretFile);
+        mapping.put(ConfigKey.SECRET_CONTAINER_SOURCE, AbstractConfigInitializer::initSecretContainerSource);
+        mapping.put(ConfigKey.KEY_AGENT_SOCKET, AbstractConfigInitializer::initKeyAgentSocket);
+        mapping.put(ConfigKey.SECURE_RANDOM_STRATEGY, AbstractConfigInitializer::initSecureRandomStrategy);
+        mapping.put(ConfigKey.ENVELOPE_ENCRYPTION, AbstractConfigInitializer::initEnvelopeEncryption);
+        mapping.put(ConfigKey.OFF_HEAP_BUFFERS, AbstractConfigInitializer::initOffHeapBuffers);
+        mapping.put(ConfigKey.COMPACT_FORMAT, AbstractConfigInitializer::initCompactFormat);
+        mapping.put(ConfigKey.BATCH_PARALLELISM, AbstractConfigInitializer::initBatchParallelism);
+        mapping.put(ConfigKey.CIPHER_PROVIDER, AbstractConfigInitializer::initCipherProvider);
+        mapping.put(ConfigKey.FASTEST_ALGORITHM, AbstractConfigInitializer::initFastestAlgorithm);
+        mapping.put(ConfigKey.MIN_ALGORITHM_STRENGTH, AbstractConfigInitializer::initMinAlgorithmStrength);
         return mapping;
 
     }
@@ -100,6 +113,54 @@ public abstract class AbstractConfigInitializer implements ConfigInitializer {
         config.withAutoCreateSecretKey(Boolean.valueOf(value));
     }
 
+    protected static void initSecretFileRevalidationInterval(final Config config, final String value) {
+        config.withSecretFileRevalidationInterval(Long.parseLong(value));
+    }
+
+    protected static void initWatchSecretFile(final Config config, final String value) {
+        config.withWatchSecretFile(Boolean.valueOf(value));
+    }
+
+    protected static void initSecretContainerSource(final Config config, final String value) {
+        config.withSecretContainerSource(SecretContainerSources.parse(value));
+    }
+
+    protected static void initKeyAgentSocket(final Config config, final String value) {
+        config.withKeyAgentSocket(new File(value));
+    }
+
+    protected static void initSecureRandomStrategy(final Config config, final String value) {
+        config.withSecureRandomStrategy(value);
+    }
+
+    protected static void initEnvelopeEncryption(final Config config, final String value) {
+        config.withEnvelopeEncryption(Boolean.valueOf(value));
+    }
+
+    protected static void initOffHeapBuffers(final Config config, final String value) {
+        config.withOffHeapBuffers(Boolean.valueOf(value));
+    }
+
+    protected static void initCompactFormat(final Config config, final String value) {
+        config.withCompactFormat(Boolean.valueOf(value));
+    }
+
+    protected static void initBatchParallelism(final Config config, final String value) {
+        config.withBatchParallelism(Integer.parseInt(value));
+    }
+
+    protected static void initCipherProvider(final Config config, final String value) {
+        config.withCipherProvider(value);
+    }
+
+    protected static void initFastestAlgorithm(final Config config, final String value) {
+        config.withFastestAlgorithm(Boolean.valueOf(value));
+    }
+
+    protected static void initMinAlgorithmStrength(final Config config, final String value) {
+        config.withMinAlgorithmStrength(Integer.parseInt(value));
+    }
+
     /**
      * @param key The {@link ConfigKey} to search the value for.
      * @return the Value as simple string.
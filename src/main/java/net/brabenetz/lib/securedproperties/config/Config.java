@@ -20,6 +20,7 @@
 package net.brabenetz.lib.securedproperties.config;
 
 import net.brabenetz.lib.securedproperties.core.Algorithm;
+import net.brabenetz.lib.securedproperties.core.SecretContainerSource;
 
 import java.io.File;
 
@@ -42,4 +43,28 @@ public interface Config {
 
     Config withAutoCreateSecretKey(boolean autoCreate);
 
+    Config withSecretFileRevalidationInterval(long newRevalidationInterval);
+
+    Config withWatchSecretFile(boolean watch);
+
+    Config withSecretContainerSource(SecretContainerSource newSecretContainerSource);
+
+    Config withKeyAgentSocket(File newKeyAgentSocket);
+
+    Config withSecureRandomStrategy(String newSecureRandomStrategy);
+
+    Config withEnvelopeEncryption(boolean envelope);
+
+    Config withOffHeapBuffers(boolean offHeap);
+
+    Config withCompactFormat(boolean compact);
+
+    Config withBatchParallelism(int parallelism);
+
+    Config withCipherProvider(String providerName);
+
+    Config withFastestAlgorithm(boolean fastest);
+
+    Config withMinAlgorithmStrength(int minStrength);
+
 }
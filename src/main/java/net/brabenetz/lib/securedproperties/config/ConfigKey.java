@@ -34,7 +34,31 @@ public enum ConfigKey {
     /** for setting the value {@link Config#withAllowedAlgorithm(net.brabenetz.lib.securedproperties.core.Algorithm...)}. */
     ALLOWED_ALGORITHM,
     /** for setting the value {@link Config#withAutoCreateSecretKey(boolean)}. */
-    AUTO_CREATE_SECRET_KEY;
+    AUTO_CREATE_SECRET_KEY,
+    /** for setting the value {@link Config#withSecretFileRevalidationInterval(long)}. */
+    SECRET_FILE_REVALIDATION_INTERVAL,
+    /** for setting the value {@link Config#withWatchSecretFile(boolean)}. */
+    WATCH_SECRET_FILE,
+    /** for setting the value {@link Config#withSecretContainerSource(net.brabenetz.lib.securedproperties.core.SecretContainerSource)}. */
+    SECRET_CONTAINER_SOURCE,
+    /** for setting the value {@link Config#withKeyAgentSocket(java.io.File)}. */
+    KEY_AGENT_SOCKET,
+    /** for setting the value {@link Config#withSecureRandomStrategy(String)}. */
+    SECURE_RANDOM_STRATEGY,
+    /** for setting the value {@link Config#withEnvelopeEncryption(boolean)}. */
+    ENVELOPE_ENCRYPTION,
+    /** for setting the value {@link Config#withOffHeapBuffers(boolean)}. */
+    OFF_HEAP_BUFFERS,
+    /** for setting the value {@link Config#withCompactFormat(boolean)}. */
+    COMPACT_FORMAT,
+    /** for setting the value {@link Config#withBatchParallelism(int)}. */
+    BATCH_PARALLELISM,
+    /** for setting the value {@link Config#withCipherProvider(String)}. */
+    CIPHER_PROVIDER,
+    /** for setting the value {@link Config#withFastestAlgorithm(boolean)}. */
+    FASTEST_ALGORITHM,
+    /** for setting the value {@link Config#withMinAlgorithmStrength(int)}. */
+    MIN_ALGORITHM_STRENGTH;
 
     /** default prefix for UPPER_CASE keys. */
     public static final String DEFAULT_PREFIX_UPPER_CASE = "SECURED_PROPERTIES";
@@ -25,7 +25,7 @@ package net.brabenetz.lib.securedproperties.core;
 public interface Algorithm {
 
     /**
-     * The Algorithm key, see {@link javax.crypto.Cipher#getInstance(String)}.
+     * The Algorithm key, see {@link javax.crypto.KeyGenerator#getInstance(String)} and {@link javax.crypto.Cipher#getInstance(String)}.
      */
     String getKey();
 
@@ -35,4 +35,28 @@ public interface Algorithm {
      */
     int getSize();
 
+    /**
+     * The transformation for {@link javax.crypto.Cipher#getInstance(String)}, like "AES/GCM/NoPadding". Default is {@link #getKey()}, which
+     * means the default mode of the provider (ECB for "AES" and "DESede").
+     */
+    default String getTransformation() {
+        return getKey();
+    }
+
+    /**
+     * The length in bytes of the random nonce which is generated for each encrypted value, e.g. 12 for AES-GCM. The encrypted values of an
+     * {@link Algorithm} with a nonce are stored in a versioned envelope and have no salt prefix. Default is 0 (no nonce).
+     */
+    default int getNonceLength() {
+        return 0;
+    }
+
+    /**
+     * The security strength in bits (see NIST SP 800-57), e.g. 112 for DESede with a 168 bit key. Used as minimum strength by
+     * {@link AlgorithmSelection#fastest(int, Algorithm...)}. Default is {@link #getSize()}.
+     */
+    default int getStrength() {
+        return getSize();
+    }
+
 }
\ No newline at end of file
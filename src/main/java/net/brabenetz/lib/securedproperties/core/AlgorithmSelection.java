@@ -0,0 +1,250 @@
+/*-
+ * #%L
+ * Secured Properties
+ * ===============================================================
+ * Copyright (C) 2016 - 2026 Brabenetz Harald, Austria
+ * ===============================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package net.brabenetz.lib.securedproperties.core;
+
+import org.apache.commons.lang3.Validate;
+
+import javax.crypto.SecretKey;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * The {@link Algorithm} for a new secret key: the first supported one (see {@link #firstSupported(Algorithm...)}), or the fastest one on the
+ * current host which meets a minimum strength (see {@link #fastest(int, long, Algorithm...)}).
+ * <p>
+ * The measured numbers are stored as comment on the algorithm line of the secret File, see
+ * {@link SecretContainerStore#getSecretContainer(java.io.File, AlgorithmSelection, Algorithm...)}. The new secret key is created with the
+ * {@link EncryptionOptions} of the selection.
+ */
+public final class AlgorithmSelection {
+
+    private static final org.slf4j.Logger LOG = org.slf4j.LoggerFactory.getLogger(AlgorithmSelection.class);
+
+    /** The default time budget per candidate of {@link #fastest(int, Algorithm...)}. */
+    public static final long DEFAULT_BUDGET_MILLIS = 50;
+
+    /** Each candidate is measured in this number of interleaved rounds. */
+    private static final int ROUNDS = 20;
+    /** The first rounds are the warm-up and don't count. */
+    private static final int WARMUP_ROUNDS = 10;
+    /** A candidate which is at most this percentage slower than the fastest is still preferred if it comes first. */
+    private static final int TOLERANCE_PERCENT = 10;
+    /** Encryptions and decryptions between two reads of the clock. */
+    private static final int OPERATIONS_PER_CLOCK_READ = 8;
+    private static final int SALT_LENGTH = 11;
+    /** A typical property value like a password. */
+    private static final String SAMPLE_VALUE = "sample-password-0123456789abcdef";
+
+    private final Algorithm algorithm;
+    private final int minStrength;
+    private final Map<Algorithm, Long> nanosPerValue;
+    private final EncryptionOptions options;
+
+    private AlgorithmSelection(final Algorithm algorithm, final int minStrength, final Map<Algorithm, Long> nanosPerValue,
+            final EncryptionOptions options) {
+        this.algorithm = algorithm;
+        this.minStrength = minStrength;
+        this.nanosPerValue = Collections.unmodifiableMap(nanosPerValue);
+        this.options = options;
+    }
+
+    /**
+     * @param allowedAlgorithms
+     *        the candidates in the order of preference.
+     * @return the first supported {@link Algorithm}, see {@link Encryption#getFirstSupportedAlgorithm(Algorithm...)}.
+     * @throws IllegalArgumentException
+     *         if no {@link Algorithm} is supported.
+     */
+    public static AlgorithmSelection firstSupported(final Algorithm... allowedAlgorithms) {
+        return firstSupported(EncryptionOptions.DEFAULT, allowedAlgorithms);
+    }
+
+    /**
+     * Like {@link #firstSupported(Algorithm...)}, but the algorithms are probed and the new key is created with the given {@link EncryptionOptions}.
+     */
+    public static AlgorithmSelection firstSupported(final EncryptionOptions options, final Algorithm... allowedAlgorithms) {
+        return new AlgorithmSelection(Encryption.getFirstSupportedAlgorithm(options, allowedAlgorithms), 0, Collections.emptyMap(), options);
+    }
+
+    /**
+     * Same as {@link #fastest(int, long, Algorithm...)} with the {@link #DEFAULT_BUDGET_MILLIS}.
+     */
+    public static AlgorithmSelection fastest(final int minStrength, final Algorithm... allowedAlgorithms) {
+        return fastest(minStrength, DEFAULT_BUDGET_MILLIS, allowedAlgorithms);
+    }
+
+    /**
+     * Measures the encryption and decryption of a typical property value with each supported {@link Algorithm} with at least the given
+     * {@link Algorithm#getStrength() strength}. The candidates are measured in interleaved rounds, so JIT compilation and other background
+     * activity affect all of them alike. The first half of the rounds is the warm-up, and the fastest of the remaining rounds counts.
+     * <p>
+     * The numbers of a short measurement in a freshly started JVM are higher than the ones of a warmed-up JVM, but the ranking is the same. To
+     * not depend on measurement noise, the first candidate which is at most 10% slower than the fastest one is selected, so the order of the given
+     * candidates still decides between about equally fast candidates like AES_128 and AES_256.
+     *
+     * @param minStrength
+     *        the minimum {@link Algorithm#getStrength() strength} in bits, e.g. 128.
+     * @param budgetMillis
+     *        the time budget per candidate. The whole measurement takes about this budget times the number of candidates.
+     * @param allowedAlgorithms
+     *        the candidates in the order of preference.
+     * @return the fastest {@link Algorithm} and the measured numbers.
+     * @throws IllegalArgumentException
+     *         if no supported {@link Algorithm} has the minimum strength.
+     */
+    public static AlgorithmSelection fastest(final int minStrength, final long budgetMillis, final Algorithm... allowedAlgorithms) {
+        return fastest(EncryptionOptions.DEFAULT, minStrength, budgetMillis, allowedAlgorithms);
+    }
+
+    /**
+     * Like {@link #fastest(int, long, Algorithm...)}, but the algorithms are probed and measured, and the new key is created, with the given
+     * {@link EncryptionOptions}.
+     */
+    public static AlgorithmSelection fastest(final EncryptionOptions options, final int minStrength, final long budgetMillis,
+            final Algorithm... allowedAlgorithms) {
+        Validate.isTrue(budgetMillis > 0, "The budget must be positive: %s", budgetMillis);
+        final List<Algorithm> candidates = Arrays.stream(allowedAlgorithms)
+                .filter(candidate -> candidate.getStrength() >= minStrength && Encryption.isAlgorithmSupported(candidate, options))
+                .collect(Collectors.toList());
+        if (candidates.isEmpty()) {
+            throw new IllegalArgumentException(String.format("No supported Algorithm with a strength of at least %s bit found in: %s",
+                minStrength, Arrays.asList(allowedAlgorithms)));
+        }
+
+        final long[] bestNanos = measure(options, candidates, TimeUnit.MILLISECONDS.toNanos(budgetMillis) / ROUNDS);
+
+        final List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < candidates.size(); i++) {
+            order.add(i);
+        }
+        order.sort((i1, i2) -> Long.compare(bestNanos[i1], bestNanos[i2]));
+        final Map<Algorithm, Long> nanosPerValue = new LinkedHashMap<>();
+        for (int i : order) {
+            nanosPerValue.put(candidates.get(i), bestNanos[i]);
+        }
+
+        final long maxNanos = bestNanos[order.get(0)] * (100 + TOLERANCE_PERCENT) / 100;
+        int selected = 0;
+        while (bestNanos[selected] > maxNanos) {
+            selected++;
+        }
+
+        final AlgorithmSelection selection = new AlgorithmSelection(candidates.get(selected), minStrength, nanosPerValue, options);
+        LOG.info("Selected the fastest algorithm {}", selection.getComment());
+        return selection;
+    }
+
+    private static long[] measure(final EncryptionOptions options, final List<Algorithm> candidates, final long sliceNanos) {
+        final SecretContainer[] secretContainers = new SecretContainer[candidates.size()];
+        final long[] bestNanos = new long[candidates.size()];
+        for (int i = 0; i < secretContainers.length; i++) {
+            final Algorithm candidate = candidates.get(i);
+            secretContainers[i] = new SecretContainer(candidate, Encryption.createKey(candidate, options)).withOptions(options);
+            bestNanos[i] = Long.MAX_VALUE;
+        }
+        try {
+            for (int round = 0; round < ROUNDS; round++) {
+                for (int i = 0; i < secretContainers.length; i++) {
+                    final long nanos = measure(secretContainers[i], sliceNanos);
+                    if (round >= WARMUP_ROUNDS) {
+                        bestNanos[i] = Math.min(bestNanos[i], nanos);
+                    }
+                }
+            }
+        } finally {
+            for (SecretContainer secretContainer : secretContainers) {
+                destroy(secretContainer.getSecretKey());
+            }
+        }
+        return bestNanos;
+    }
+
+    /**
+     * @return the average nanoseconds to encrypt and decrypt the {@link #SAMPLE_VALUE}, measured for about the given time.
+     */
+    private static long measure(final SecretContainer secretContainer, final long sliceNanos) {
+        long count = 0;
+        final long start = System.nanoTime();
+        long elapsed;
+        do {
+            for (int i = 0; i < OPERATIONS_PER_CLOCK_READ; i++) {
+                final String encrypted = Encryption.encrypt(secretContainer, SALT_LENGTH, SAMPLE_VALUE);
+                Validate.validState(SAMPLE_VALUE.equals(Encryption.decrypt(secretContainer, SALT_LENGTH, encrypted)),
+                    "The decrypted value differs with the algorithm %s.", secretContainer.getAlgorithm());
+            }
+            count += OPERATIONS_PER_CLOCK_READ;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < sliceNanos);
+        return elapsed / count;
+    }
+
+    private static void destroy(final SecretKey secretKey) {
+        if (secretKey instanceof DestroyableSecretKey) {
+            ((DestroyableSecretKey) secretKey).destroy();
+        }
+    }
+
+    /**
+     * @return the selected {@link Algorithm}.
+     */
+    public Algorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * @return the {@link EncryptionOptions} which create the new secret key of the selected {@link Algorithm}.
+     */
+    public EncryptionOptions getOptions() {
+        return options;
+    }
+
+    /**
+     * @return the measured nanoseconds to encrypt and decrypt one value per candidate, the fastest first. Empty if nothing was measured. The
+     *         {@link #getAlgorithm() selected algorithm} is not necessarily the first, see {@link #fastest(int, long, Algorithm...)}.
+     */
+    public Map<Algorithm, Long> getNanosPerValue() {
+        return nanosPerValue;
+    }
+
+    /**
+     * @return a description of the measured numbers like "fastest of min 128 bit, ns per value: AES_128=1520, AES_GCM_128=2830", or null if
+     *         nothing was measured.
+     */
+    public String getComment() {
+        if (nanosPerValue.isEmpty()) {
+            return null;
+        }
+        return nanosPerValue.entrySet().stream().map(entry -> entry.getKey() + "=" + entry.getValue())
+                .collect(Collectors.joining(", ", String.format("fastest of min %s bit, ns per value: ", minStrength), ""));
+    }
+
+    @Override
+    public String toString() {
+        final String comment = getComment();
+        return comment == null ? String.valueOf(algorithm) : algorithm + " # " + comment;
+    }
+}
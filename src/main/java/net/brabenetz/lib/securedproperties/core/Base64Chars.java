@@ -0,0 +1,154 @@
+/*-
+ * #%L
+ * Secured Properties
+ * ===============================================================
+ * Copyright (C) 2016 - 2026 Brabenetz Harald, Austria
+ * ===============================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package net.brabenetz.lib.securedproperties.core;
+
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Decodes {@link Base64} directly from a region of a {@link CharSequence} into a given byte array, without the intermediate Strings and arrays of
+ * {@link Base64.Decoder#decode(String)}. Accepts and rejects the same input as {@link Base64#getDecoder()}, or {@link Base64#getUrlDecoder()} for
+ * {@link #decodeUrlSafe(CharSequence, int, int, byte[])}.
+ */
+final class Base64Chars {
+
+    private static final int BITS_PER_CHAR = 6;
+    private static final int FIRST_SHIFT = 18;
+    private static final int PADDING = -2;
+    private static final int[] DECODE_TABLE = newDecodeTable("ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/");
+    private static final int[] URL_DECODE_TABLE = newDecodeTable("ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_");
+
+    private Base64Chars() {
+        super();
+    }
+
+    private static int[] newDecodeTable(final String alphabet) {
+        final int[] table = new int[128];
+        Arrays.fill(table, -1);
+        for (int i = 0; i < alphabet.length(); i++) {
+            table[alphabet.charAt(i)] = i;
+        }
+        table['='] = PADDING;
+        return table;
+    }
+
+    /**
+     * @return the max number of bytes which {@link #decode(CharSequence, int, int, byte[])} writes for the given number of chars.
+     */
+    static int maxDecodedLength(final int charCount) {
+        return charCount / 4 * 3 + charCount % 4;
+    }
+
+    /**
+     * @param src
+     *        the base64 chars.
+     * @param start
+     *        the index of the first char to decode.
+     * @param end
+     *        the index after the last char to decode.
+     * @param dst
+     *        the target with at least {@link #maxDecodedLength(int)} bytes.
+     * @return the number of decoded bytes.
+     * @throws IllegalArgumentException
+     *         if the chars are not valid base64.
+     */
+    static int decode(final CharSequence src, final int start, final int end, final byte[] dst) {
+        return decode(DECODE_TABLE, src, start, end, dst);
+    }
+
+    /**
+     * Like {@link #decode(CharSequence, int, int, byte[])}, but with the URL and filename safe alphabet ("-" and "_" instead of "+" and "/").
+     */
+    static int decodeUrlSafe(final CharSequence src, final int start, final int end, final byte[] dst) {
+        return decode(URL_DECODE_TABLE, src, start, end, dst);
+    }
+
+    // SuppressWarnings "PMD.AvoidLiteralsInIfCondition": the bit-shifts of the base64 units are clearer than named constants.
+    @SuppressWarnings("PMD.AvoidLiteralsInIfCondition")
+    private static int decode(final int[] table, final CharSequence src, final int start, final int end, final byte[] dst) {
+        int dp = 0;
+        int sp = start;
+        // fast path for complete 4-char units without padding.
+        while (sp + 4 <= end) {
+            final int b0 = decode(table, src.charAt(sp));
+            final int b1 = decode(table, src.charAt(sp + 1));
+            final int b2 = decode(table, src.charAt(sp + 2));
+            final int b3 = decode(table, src.charAt(sp + 3));
+            if ((b0 | b1 | b2 | b3) < 0) {
+                break;
+            }
+            final int unit = b0 << 18 | b1 << 12 | b2 << 6 | b3;
+            dst[dp++] = (byte) (unit >> 16);
+            dst[dp++] = (byte) (unit >> 8);
+            dst[dp++] = (byte) unit;
+            sp += 4;
+        }
+
+        // the last unit with padding, or the invalid char.
+        int bits = 0;
+        int shift = FIRST_SHIFT;
+        while (sp < end) {
+            final char c = src.charAt(sp++);
+            final int b = decode(table, c);
+            if (b < 0) {
+                if (b != PADDING) {
+                    throw new IllegalArgumentException("Illegal base64 character " + Integer.toString(c, 16));
+                }
+                // "xx==" or "xxx=" are the only valid endings.
+                if (shift == BITS_PER_CHAR && (sp == end || src.charAt(sp++) != '=') || shift == FIRST_SHIFT) {
+                    throw new IllegalArgumentException("Input byte array has wrong 4-byte ending unit");
+                }
+                break;
+            }
+            bits |= b << shift;
+            shift -= BITS_PER_CHAR;
+            if (shift < 0) {
+                dst[dp++] = (byte) (bits >> 16);
+                dst[dp++] = (byte) (bits >> 8);
+                dst[dp++] = (byte) bits;
+                shift = FIRST_SHIFT;
+                bits = 0;
+            }
+        }
+        if (shift == BITS_PER_CHAR) {
+            dst[dp++] = (byte) (bits >> 16);
+        } else if (shift == 0) {
+            dst[dp++] = (byte) (bits >> 16);
+            dst[dp++] = (byte) (bits >> 8);
+        } else if (shift == 12) {
+            throw new IllegalArgumentException("Last unit does not have enough valid bits");
+        }
+        if (sp < end) {
+            throw new IllegalArgumentException("Input byte array has incorrect ending byte at " + sp);
+        }
+        return dp;
+    }
+
+    /**
+     * @return the 6-bit value of the given char of the URL and filename safe alphabet, or a negative number for any other char (including "=").
+     */
+    static int decodeUrlSafe(final char c) {
+        return decode(URL_DECODE_TABLE, c);
+    }
+
+    private static int decode(final int[] table, final char c) {
+        return c < table.length ? table[c] : -1;
+    }
+}
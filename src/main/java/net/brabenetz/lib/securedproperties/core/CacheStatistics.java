@@ -0,0 +1,65 @@
+/*-
+ * #%L
+ * Secured Properties
+ * ===============================================================
+ * Copyright (C) 2016 - 2026 Brabenetz Harald, Austria
+ * ===============================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package net.brabenetz.lib.securedproperties.core;
+
+/**
+ * Immutable snapshot of the hit and miss counts of one secret File in the {@link SecretContainerCache}.
+ */
+public final class CacheStatistics {
+
+    private final long hitCount;
+    private final long missCount;
+
+    public CacheStatistics(final long hitCount, final long missCount) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+    }
+
+    /**
+     * @return the number of lookups which were answered from the cache.
+     */
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return the number of lookups which had to read the secret File.
+     */
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * @return the ratio of hits to all lookups, or 0 if there was no lookup.
+     */
+    public double getHitRate() {
+        final long requestCount = hitCount + missCount;
+        return requestCount == 0 ? 0 : (double) hitCount / requestCount;
+    }
+
+    CacheStatistics plus(final CacheStatistics other) {
+        return new CacheStatistics(hitCount + other.hitCount, missCount + other.missCount);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CacheStatistics[hits=%s, misses=%s, hitRate=%.3f]", hitCount, missCount, getHitRate());
+    }
+}
@@ -0,0 +1,249 @@
+/*-
+ * #%L
+ * Secured Properties
+ * ===============================================================
+ * Copyright (C) 2016 - 2026 Brabenetz Harald, Austria
+ * ===============================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package net.brabenetz.lib.securedproperties.core;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+
+import java.lang.ref.WeakReference;
+import java.security.GeneralSecurityException;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Per-thread cache of initialized {@link Cipher} instances for {@link Encryption}.
+ * <p>
+ * {@link Cipher#getInstance(String)} (provider lookup) and {@link Cipher#init(int, java.security.Key)} (key schedule) are much more expensive than
+ * the encryption of a small property value. A Cipher is reset to its initialized state after each {@link Cipher#doFinal()}, so it can be reused
+ * for the next value with the same key and mode. Ciphers aren't thread-safe, so every thread has its own small MRU list of ciphers, keyed by the
+ * transformation, the identity of the {@link SecretKey}, the cipher mode and the {@link CipherEngine} which created the cipher.
+ * <p>
+ * The keys are only weakly referenced. Every lookup removes the ciphers of keys which were garbage collected or
+ * {@link SecretKey#isDestroyed() destroyed}, so their key schedules don't stay in the thread. After a secret key was evicted or rotated,
+ * {@link #purge()} drops the ciphers of all threads on their next lookup.
+ * <p>
+ * Ciphers with a nonce per value (like AES-GCM) are re-initialized with the given {@link AlgorithmParameterSpec} on every call, which still saves
+ * the provider lookup. Providers like SunJCE also skip the key schedule if the key is unchanged.
+ */
+final class CipherCache {
+
+    /** Max cached ciphers per thread, e.g. for the secret key, some data keys and both modes. */
+    static final int MAX_ENTRIES_PER_THREAD = 8;
+
+    private static final ThreadLocal<ThreadEntries> ENTRIES = ThreadLocal.withInitial(ThreadEntries::new);
+
+    /** Incremented by {@link #purge()}, a thread drops all its ciphers when it sees a new generation. */
+    private static final AtomicInteger PURGE_GENERATION = new AtomicInteger();
+
+    private CipherCache() {
+        super();
+    }
+
+    /**
+     * @param algorithm
+     *        the {@link Algorithm} of the cipher.
+     * @param secretKey
+     *        the key to initialize the cipher with.
+     * @param mode
+     *        {@link Cipher#ENCRYPT_MODE} or {@link Cipher#DECRYPT_MODE}.
+     * @return an initialized cipher which must only be used by the current thread. After a failed operation it must be removed with
+     *         {@link #evict(Cipher)}.
+     * @throws GeneralSecurityException
+     *         if the cipher can't be created or initialized.
+     */
+    static Cipher getCipher(final Algorithm algorithm, final SecretKey secretKey, final int mode) throws GeneralSecurityException {
+        return getCipher(algorithm, secretKey, mode, null);
+    }
+
+    /**
+     * Like {@link #getCipher(Algorithm, SecretKey, int)}, but the cipher is (re-)initialized with the given parameters, e.g. the nonce of the
+     * current value.
+     *
+     * @param parameterSpec
+     *        the parameters to initialize the cipher with, or null if the cipher only needs to be initialized once.
+     */
+    static Cipher getCipher(final Algorithm algorithm, final SecretKey secretKey, final int mode, final AlgorithmParameterSpec parameterSpec)
+            throws GeneralSecurityException {
+        return getCipher(CipherEngines.getDefault(), algorithm, secretKey, mode, parameterSpec);
+    }
+
+    /**
+     * Like {@link #getCipher(Algorithm, SecretKey, int, AlgorithmParameterSpec)}, but with the given {@link CipherEngine} instead of the
+     * {@link CipherEngines#getDefault() default}, e.g. the one of the {@link EncryptionOptions}.
+     *
+     * @param engine
+     *        the engine which creates the cipher if none is cached.
+     */
+    static Cipher getCipher(final CipherEngine engine, final Algorithm algorithm, final SecretKey secretKey, final int mode,
+            final AlgorithmParameterSpec parameterSpec) throws GeneralSecurityException {
+        final Entry[] entries = ENTRIES.get().current();
+        removeStale(entries);
+        final String transformation = algorithm.getTransformation();
+        final boolean destroyed = secretKey.isDestroyed();
+        for (int i = 0; i < entries.length && entries[i] != null; i++) {
+            final Entry entry = entries[i];
+            if (entry.matches(engine, transformation, secretKey, mode)) {
+                if (parameterSpec != null && !reinit(entry.cipher, mode, secretKey, parameterSpec)) {
+                    remove(entries, i);
+                    break;
+                }
+                moveToFront(entries, i);
+                return entry.cipher;
+            }
+        }
+
+        final Cipher cipher = engine.createCipher(transformation);
+        if (parameterSpec == null) {
+            cipher.init(mode, secretKey);
+        } else {
+            cipher.init(mode, secretKey, parameterSpec);
+        }
+        if (!destroyed) {
+            System.arraycopy(entries, 0, entries, 1, entries.length - 1);
+            entries[0] = new Entry(engine, transformation, secretKey, mode, cipher);
+        }
+        return cipher;
+    }
+
+    /**
+     * @return false if the cipher refused the re-initialization, e.g. SunJCE's ChaCha20-Poly1305 with the nonce of the previous value, even for
+     *         decryption. A new cipher is then created instead.
+     */
+    private static boolean reinit(final Cipher cipher, final int mode, final SecretKey secretKey, final AlgorithmParameterSpec parameterSpec) {
+        try {
+            cipher.init(mode, secretKey, parameterSpec);
+            return true;
+        } catch (GeneralSecurityException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Removes the ciphers of keys which were garbage collected or destroyed.
+     */
+    private static void removeStale(final Entry[] entries) {
+        int size = 0;
+        for (int i = 0; i < entries.length && entries[i] != null; i++) {
+            final SecretKey secretKey = entries[i].secretKey.get();
+            if (secretKey != null && !secretKey.isDestroyed()) {
+                entries[size++] = entries[i];
+            }
+        }
+        Arrays.fill(entries, size, entries.length, null);
+    }
+
+    /**
+     * Removes the given cipher from the cache of the current thread, e.g. because an operation failed and the state of the cipher is unknown.
+     */
+    static void evict(final Cipher cipher) {
+        final Entry[] entries = ENTRIES.get().current();
+        for (int i = 0; i < entries.length && entries[i] != null; i++) {
+            if (entries[i].cipher == cipher) {
+                remove(entries, i);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Removes all ciphers from the cache of the current thread.
+     */
+    static void clear() {
+        ENTRIES.remove();
+    }
+
+    /**
+     * Drops the cached ciphers of all threads on their next lookup, e.g. after a {@link SecretContainer} was evicted from the
+     * {@link SecretContainerCache}. The ciphers of the current thread are dropped immediately.
+     */
+    static void purge() {
+        PURGE_GENERATION.incrementAndGet();
+        ENTRIES.get().current();
+    }
+
+    /**
+     * @return the number of cached ciphers of the current thread.
+     */
+    static int size() {
+        final Entry[] entries = ENTRIES.get().current();
+        int size = 0;
+        while (size < entries.length && entries[size] != null) {
+            size++;
+        }
+        return size;
+    }
+
+    private static void moveToFront(final Entry[] entries, final int index) {
+        if (index > 0) {
+            final Entry entry = entries[index];
+            System.arraycopy(entries, 0, entries, 1, index);
+            entries[0] = entry;
+        }
+    }
+
+    private static void remove(final Entry[] entries, final int index) {
+        System.arraycopy(entries, index + 1, entries, index, entries.length - index - 1);
+        entries[entries.length - 1] = null;
+    }
+
+    /**
+     * The cached ciphers of one thread and the {@link #PURGE_GENERATION} they belong to.
+     */
+    private static final class ThreadEntries {
+        private final Entry[] entries = new Entry[MAX_ENTRIES_PER_THREAD];
+        private int generation = PURGE_GENERATION.get();
+
+        /**
+         * @return the entries, which are cleared first if {@link #purge()} was called since the last lookup of the thread.
+         */
+        Entry[] current() {
+            final int currentGeneration = PURGE_GENERATION.get();
+            if (generation != currentGeneration) {
+                Arrays.fill(entries, null);
+                generation = currentGeneration;
+            }
+            return entries;
+        }
+    }
+
+    /**
+     * An initialized cipher and what it was initialized with.
+     */
+    private static final class Entry {
+        private final CipherEngine engine;
+        private final String transformation;
+        private final WeakReference<SecretKey> secretKey;
+        private final int mode;
+        private final Cipher cipher;
+
+        Entry(final CipherEngine engine, final String transformation, final SecretKey secretKey, final int mode, final Cipher cipher) {
+            this.engine = engine;
+            this.transformation = transformation;
+            this.secretKey = new WeakReference<>(secretKey);
+            this.mode = mode;
+            this.cipher = cipher;
+        }
+
+        boolean matches(final CipherEngine otherEngine, final String otherTransformation, final SecretKey otherSecretKey, final int otherMode) {
+            return secretKey.get() == otherSecretKey && mode == otherMode && engine == otherEngine && transformation.equals(otherTransformation);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+/*-
+ * #%L
+ * Secured Properties
+ * ===============================================================
+ * Copyright (C) 2016 - 2026 Brabenetz Harald, Austria
+ * ===============================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package net.brabenetz.lib.securedproperties.core;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+
+import java.security.GeneralSecurityException;
+
+/**
+ * Creates the {@link Cipher} and {@link KeyGenerator} instances for {@link Encryption}, see {@link CipherEngines#setDefault(CipherEngine)}.
+ * <p>
+ * The created ciphers are cached and reused per thread by {@link Encryption}, so the engine is only called once per thread, key and mode. An
+ * engine can use a specific JCE provider (see {@link CipherEngines#provider(String)}) or a faster implementation, as long as it produces the same
+ * bytes for the same transformation: the format of the encrypted values doesn't depend on the engine.
+ */
+public interface CipherEngine {
+
+    /**
+     * @param transformation
+     *        the transformation like "AES" or "AES/GCM/NoPadding", see {@link Algorithm#getTransformation()}.
+     * @return a new, uninitialized {@link Cipher}.
+     * @throws GeneralSecurityException
+     *         if the transformation is not supported.
+     */
+    Cipher createCipher(String transformation) throws GeneralSecurityException;
+
+    /**
+     * @param algorithm
+     *        the key algorithm like "AES", see {@link Algorithm#getKey()}.
+     * @return a new {@link KeyGenerator}.
+     * @throws GeneralSecurityException
+     *         if the algorithm is not supported.
+     */
+    KeyGenerator createKeyGenerator(String algorithm) throws GeneralSecurityException;
+}
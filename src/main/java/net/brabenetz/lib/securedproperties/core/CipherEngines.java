@@ -0,0 +1,156 @@
+/*-
+ * #%L
+ * Secured Properties
+ * ===============================================================
+ * Copyright (C) 2016 - 2026 Brabenetz Harald, Austria
+ * ===============================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package net.brabenetz.lib.securedproperties.core;
+
+import org.apache.commons.lang3.Validate;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+
+import java.security.GeneralSecurityException;
+import java.security.Provider;
+import java.security.Security;
+import java.util.Objects;
+
+/**
+ * Factory methods for {@link CipherEngine}s and the {@link CipherEngine} which is used by {@link Encryption} in this JVM.
+ * <p>
+ * The default {@link #jce()} engine resolves every new {@link Cipher} through the list of installed JCE providers. With {@link #provider(String)}
+ * or {@link #provider(Provider)} a specific provider is resolved once and used directly, e.g. a faster provider than SunJCE which is not the first
+ * one in the list, or which is not installed at all.
+ */
+public final class CipherEngines {
+
+    private static final org.slf4j.Logger LOG = org.slf4j.LoggerFactory.getLogger(CipherEngines.class);
+
+    private static final CipherEngine JCE = new ProviderEngine(null, null);
+
+    private static volatile CipherEngine defaultEngine = JCE;
+
+    private CipherEngines() {
+        super();
+    }
+
+    /**
+     * @return the engine which uses {@link Cipher#getInstance(String)} and {@link KeyGenerator#getInstance(String)}, so the first installed JCE
+     *         provider which supports the transformation.
+     */
+    public static CipherEngine jce() {
+        return JCE;
+    }
+
+    /**
+     * @param provider
+     *        the JCE provider, which doesn't need to be installed.
+     * @return the engine which creates all ciphers and key generators with the given provider.
+     */
+    public static CipherEngine provider(final Provider provider) {
+        Validate.notNull(provider, "The provider must not be null");
+        return new ProviderEngine(provider.getName(), provider);
+    }
+
+    /**
+     * @param providerName
+     *        the name of an installed JCE provider like "SunJCE", see {@link Security#getProvider(String)}.
+     * @return the engine which creates all ciphers and key generators with the given provider. The provider is resolved once on the first usage.
+     */
+    public static CipherEngine provider(final String providerName) {
+        Validate.notBlank(providerName, "The provider name must not be blank");
+        return new ProviderEngine(providerName, null);
+    }
+
+    /**
+     * Uses the given {@link CipherEngine} for all following encryptions and decryptions in this JVM. Ciphers of the previous engine are not reused.
+     *
+     * @param engine
+     *        the engine, or null for {@link #jce()}.
+     */
+    public static void setDefault(final CipherEngine engine) {
+        final CipherEngine newEngine = engine == null ? JCE : engine;
+        if (newEngine.equals(defaultEngine)) {
+            return;
+        }
+        LOG.info("Use the cipher engine {}", newEngine);
+        defaultEngine = newEngine;
+    }
+
+    /**
+     * @return the {@link CipherEngine} which is used by {@link Encryption}.
+     */
+    public static CipherEngine getDefault() {
+        return defaultEngine;
+    }
+
+    /**
+     * Engine with an optional fixed provider. Two engines are equal if they use the same provider name.
+     */
+    private static final class ProviderEngine implements CipherEngine {
+        private final String providerName;
+        private volatile Provider provider;
+
+        ProviderEngine(final String providerName, final Provider provider) {
+            this.providerName = providerName;
+            this.provider = provider;
+        }
+
+        @Override
+        public Cipher createCipher(final String transformation) throws GeneralSecurityException {
+            if (providerName == null) {
+                return Cipher.getInstance(transformation);
+            }
+            return Cipher.getInstance(transformation, getProvider());
+        }
+
+        @Override
+        public KeyGenerator createKeyGenerator(final String algorithm) throws GeneralSecurityException {
+            if (providerName == null) {
+                return KeyGenerator.getInstance(algorithm);
+            }
+            return KeyGenerator.getInstance(algorithm, getProvider());
+        }
+
+        private Provider getProvider() {
+            Provider resolvedProvider = provider;
+            if (resolvedProvider == null) {
+                resolvedProvider = Security.getProvider(providerName);
+                if (resolvedProvider == null) {
+                    throw new IllegalArgumentException(String.format("The JCE provider '%s' is not installed.", providerName));
+                }
+                provider = resolvedProvider;
+            }
+            return resolvedProvider;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            return obj instanceof ProviderEngine && Objects.equals(providerName, ((ProviderEngine) obj).providerName);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(providerName);
+        }
+
+        @Override
+        public String toString() {
+            return providerName == null ? "JCE" : "JCE provider " + providerName;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+/*-
+ * #%L
+ * Secured Properties
+ * ===============================================================
+ * Copyright (C) 2016 - 2026 Brabenetz Harald, Austria
+ * ===============================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package net.brabenetz.lib.securedproperties.core;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * The compact format of encrypted values: "{v2:" + unpadded URL-safe base64 + "}". The decoded bytes are:
+ * <ul>
+ * <li>one header byte: bit 7 is set if a key-id follows, bits 4-6 are the mode ({@link #MODE_SALTED} or {@link #MODE_NONCE}), bits 0-3 are the
+ * algorithm family ("AES", "DESede", "ChaCha20", or 0 for any other {@link Algorithm}).</li>
+ * <li>the optional key-id: one length byte and the ASCII chars.</li>
+ * <li>{@link #MODE_SALTED}: the cipher-text of "salt, UTF-8 plain-text".</li>
+ * <li>{@link #MODE_NONCE}: the random nonce and the cipher-text with authentication tag. The header byte and the key-id are authenticated as
+ * additional data.</li>
+ * </ul>
+ * Compared to the legacy format "{keyId:base64}" the value has no padding and no separate envelope version. It is detected by its prefix, the
+ * base64 chars and a valid header. The key-id {@link #RESERVED_KEY_ID} would be ambiguous and is therefore not allowed, and a value with the
+ * {@link #PREFIX} but without a valid header is no encrypted value at all.
+ */
+final class CompactValueFormat {
+
+    /** The prefix of all values in the compact format. */
+    static final String PREFIX = "{v2:";
+    /** The key-id which is reserved for the {@link #PREFIX}. */
+    static final String RESERVED_KEY_ID = "v2";
+    /** Mode of algorithms without nonce: salt and plain-text, encrypted with the default mode of the provider. */
+    static final int MODE_SALTED = 0;
+    /** Mode of algorithms with nonce, see {@link Algorithm#getNonceLength()}. */
+    static final int MODE_NONCE = 1;
+
+    private static final int KEY_ID_FLAG = 0x80;
+    private static final int MODE_SHIFT = 4;
+    private static final int FAMILY_MASK = 0x0F;
+    /** The length byte of the key-id is signed, see {@link #headerLength(byte[], int)}. */
+    private static final int MAX_KEY_ID_LENGTH = Byte.MAX_VALUE;
+    /** The algorithm families per code (the index). Code 0 is any other {@link Algorithm}. */
+    private static final List<String> FAMILIES = Arrays.asList("", "AES", "DESede", "ChaCha20");
+    /** "{v2:" + at least 2 base64 chars for the header byte + "}". */
+    private static final int MIN_LENGTH = PREFIX.length() + 3;
+    private static final int BITS_PER_CHAR = 6;
+    private static final int BITS_PER_BYTE = 8;
+    /** An unpadded base64 length with this remainder of 4 can't be decoded. */
+    private static final int INVALID_REMAINDER = 1;
+    /** 24 base64 chars are 18 bytes: header byte, key-id length and a key-id with up to 16 chars. */
+    private static final int MAX_HEADER_BASE64_LENGTH = 24;
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private CompactValueFormat() {
+        super();
+    }
+
+    /**
+     * @return true if the given value starts with {@link #PREFIX} and ends with "}".
+     */
+    static boolean hasPrefix(final CharSequence value) {
+        return value != null && StringUtils.startsWith(value, PREFIX) && value.charAt(value.length() - 1) == '}';
+    }
+
+    /**
+     * @return true if the given value {@link #hasPrefix(CharSequence) has the prefix}, the rest is unpadded URL-safe base64, and it starts with a
+     *         header of a known algorithm family and mode (plus a complete key-id) followed by the payload.
+     */
+    static boolean isCompact(final CharSequence value) {
+        if (value == null || value.length() < MIN_LENGTH || !hasPrefix(value)) {
+            return false;
+        }
+        final int start = PREFIX.length();
+        final int end = value.length() - 1;
+        if ((end - start) % 4 == INVALID_REMAINDER) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (Base64Chars.decodeUrlSafe(value.charAt(i)) < 0) {
+                return false;
+            }
+        }
+        final int decodedLength = (end - start) * BITS_PER_CHAR / BITS_PER_BYTE;
+        final int headerByte = decodedByte(value, start, 0);
+        final int mode = (headerByte & ~KEY_ID_FLAG) >> MODE_SHIFT;
+        if (mode > MODE_NONCE || (headerByte & FAMILY_MASK) >= FAMILIES.size()) {
+            return false;
+        }
+        if ((headerByte & KEY_ID_FLAG) == 0) {
+            return decodedLength > 1;
+        }
+        if (decodedLength < 2) {
+            return false;
+        }
+        final int keyIdLength = decodedByte(value, start, 1);
+        return keyIdLength > 0 && keyIdLength <= MAX_KEY_ID_LENGTH && 2 + keyIdLength < decodedLength;
+    }
+
+    /**
+     * @return the decoded byte with the given index of the valid base64 chars from the given start.
+     */
+    private static int decodedByte(final CharSequence value, final int start, final int index) {
+        final int bit = index * BITS_PER_BYTE;
+        final int charIndex = start + bit / BITS_PER_CHAR;
+        final int bits = Base64Chars.decodeUrlSafe(value.charAt(charIndex)) << BITS_PER_CHAR | Base64Chars.decodeUrlSafe(value.charAt(charIndex + 1));
+        return bits >> (2 * BITS_PER_CHAR - BITS_PER_BYTE - bit % BITS_PER_CHAR) & 0xFF;
+    }
+
+    /**
+     * @return the header byte and the optional key-id for a new value encrypted with the given {@link Algorithm}.
+     */
+    static byte[] newHeader(final Algorithm algorithm, final String keyId) {
+        final int headerByte = headerByte(algorithm);
+        if (keyId == null) {
+            return new byte[] {(byte) headerByte };
+        }
+        final byte[] keyIdBytes = keyId.getBytes(StandardCharsets.US_ASCII);
+        final byte[] header = new byte[2 + keyIdBytes.length];
+        header[0] = (byte) (headerByte | KEY_ID_FLAG);
+        header[1] = (byte) keyIdBytes.length;
+        System.arraycopy(keyIdBytes, 0, header, 2, keyIdBytes.length);
+        return header;
+    }
+
+    /**
+     * @return the length of the header byte and the optional key-id in front of the payload.
+     * @throws IllegalArgumentException
+     *         if the header is truncated.
+     */
+    static int headerLength(final byte[] bytes, final int length) {
+        if (length == 0) {
+            throw new IllegalArgumentException("The encrypted value has no header.");
+        }
+        if ((bytes[0] & KEY_ID_FLAG) == 0) {
+            return 1;
+        }
+        if (length < 2 || bytes[1] <= 0 || 2 + bytes[1] > length) {
+            throw new IllegalArgumentException("The key-id of the encrypted value is truncated.");
+        }
+        return 2 + bytes[1];
+    }
+
+    /**
+     * @throws IllegalArgumentException
+     *         if the header byte doesn't match the algorithm family and mode of the given {@link Algorithm}.
+     */
+    static void validateAlgorithm(final byte[] bytes, final Algorithm algorithm) {
+        final int headerByte = bytes[0] & ~KEY_ID_FLAG & 0xFF;
+        if (headerByte != headerByte(algorithm)) {
+            throw new IllegalArgumentException(String.format("The encrypted value (header 0x%02x) was not encrypted with the algorithm %s.",
+                headerByte, algorithm));
+        }
+    }
+
+    /**
+     * Decodes only the base64 chars of the header.
+     *
+     * @return the key-id of the given compact value, or null if it has none.
+     */
+    static String getKeyId(final String value) {
+        final int start = PREFIX.length();
+        final int end = Math.min(value.length() - 1, start + MAX_HEADER_BASE64_LENGTH);
+        final byte[] header = new byte[Base64Chars.maxDecodedLength(end - start)];
+        final int length = Base64Chars.decodeUrlSafe(value, start, end, header);
+        final int headerLength = headerLength(header, length);
+        if (headerLength == 1) {
+            return null;
+        }
+        return new String(header, 2, headerLength - 2, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * @return the value "{v2:...}" of the given bytes.
+     */
+    static String encode(final byte[] bytes) {
+        return PREFIX + ENCODER.encodeToString(bytes) + "}";
+    }
+
+    private static int headerByte(final Algorithm algorithm) {
+        final int mode = algorithm.getNonceLength() > 0 ? MODE_NONCE : MODE_SALTED;
+        return mode << MODE_SHIFT | Math.max(FAMILIES.indexOf(algorithm.getKey()), 0);
+    }
+}
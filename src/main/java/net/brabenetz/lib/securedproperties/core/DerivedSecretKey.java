@@ -0,0 +1,96 @@
+/*-
+ * #%L
+ * Secured Properties
+ * ===============================================================
+ * Copyright (C) 2016 - 2026 Brabenetz Harald, Austria
+ * ===============================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package net.brabenetz.lib.securedproperties.core;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * A {@link SecretKey} which is derived from a passphrase in the background, see {@link PasswordBasedKeys}. The first access to the key material
+ * waits until the derivation has finished.
+ */
+final class DerivedSecretKey implements SecretKey {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String algorithm;
+    private final String definition;
+    private final transient CompletableFuture<byte[]> keyMaterial;
+    private volatile boolean destroyed;
+
+    DerivedSecretKey(final String algorithm, final String definition, final CompletableFuture<byte[]> keyMaterial) {
+        this.algorithm = algorithm;
+        this.definition = definition;
+        this.keyMaterial = keyMaterial;
+    }
+
+    /**
+     * @return the definition from the secret File like "pbkdf2:310000:salt", see {@link PasswordBasedKeys}.
+     */
+    String getDefinition() {
+        return definition;
+    }
+
+    @Override
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    @Override
+    public String getFormat() {
+        return "RAW";
+    }
+
+    @Override
+    public byte[] getEncoded() {
+        if (destroyed) {
+            throw new IllegalStateException("The secret key was destroyed.");
+        }
+        try {
+            return keyMaterial.join().clone();
+        } catch (CompletionException e) {
+            throw new IllegalStateException("The key could not be derived from the passphrase: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * Makes this key unusable. The derived key material itself is memoized by {@link PasswordBasedKeys} and shared with other instances, so it is
+     * not zeroed here, see {@link PasswordBasedKeys#clear()}.
+     */
+    @Override
+    public void destroy() {
+        destroyed = true;
+    }
+
+    @Override
+    public boolean isDestroyed() {
+        return destroyed;
+    }
+
+    /**
+     * Serialize the derived key material instead of the background derivation.
+     */
+    private Object writeReplace() {
+        return new SecretKeySpec(getEncoded(), algorithm);
+    }
+}
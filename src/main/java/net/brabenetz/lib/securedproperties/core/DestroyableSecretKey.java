@@ -0,0 +1,132 @@
+/*-
+ * #%L
+ * Secured Properties
+ * ===============================================================
+ * Copyright (C) 2016 - 2026 Brabenetz Harald, Austria
+ * ===============================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package net.brabenetz.lib.securedproperties.core;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * A {@link SecretKey} like {@link SecretKeySpec}, but the key material can be zeroed with {@link #destroy()}. After that, the key can't be used
+ * anymore.
+ * <p>
+ * The key material is kept in a direct (off-heap) buffer, so it doesn't show up in heap dumps. Only the copies returned by {@link #getEncoded()}
+ * (e.g. for the JCE provider on cipher initialization) are on the heap.
+ */
+final class DestroyableSecretKey implements SecretKey {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String algorithm;
+    private final transient ByteBuffer key;
+    private volatile boolean destroyed;
+
+    /**
+     * @param key
+     *        the key material, will be copied.
+     * @param algorithm
+     *        the JCE algorithm of the key like "AES".
+     */
+    DestroyableSecretKey(final byte[] key, final String algorithm) {
+        this.algorithm = algorithm;
+        this.key = ByteBuffer.allocateDirect(key.length);
+        this.key.put(key);
+    }
+
+    @Override
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    @Override
+    public String getFormat() {
+        return "RAW";
+    }
+
+    @Override
+    public byte[] getEncoded() {
+        if (destroyed) {
+            throw new IllegalStateException("The secret key was destroyed.");
+        }
+        final byte[] copy = new byte[key.capacity()];
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = key.get(i);
+        }
+        return copy;
+    }
+
+    /**
+     * Zeroes the key material.
+     */
+    @Override
+    public void destroy() {
+        destroyed = true;
+        SecretBuffers.zero(key, key.capacity());
+    }
+
+    @Override
+    public boolean isDestroyed() {
+        return destroyed;
+    }
+
+    @Override
+    public int hashCode() {
+        int hashCode = 0;
+        for (int i = 1; i < key.capacity(); i++) {
+            hashCode += key.get(i) * i;
+        }
+        return hashCode ^ algorithm.toLowerCase(Locale.ENGLISH).hashCode();
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof SecretKey) || destroyed) {
+            return false;
+        }
+        final SecretKey other = (SecretKey) obj;
+        if (!algorithm.equalsIgnoreCase(other.getAlgorithm())) {
+            return false;
+        }
+        final byte[] encoded = getEncoded();
+        final byte[] otherEncoded = other.getEncoded();
+        try {
+            return MessageDigest.isEqual(encoded, otherEncoded);
+        } finally {
+            Arrays.fill(encoded, (byte) 0);
+            if (otherEncoded != null) {
+                Arrays.fill(otherEncoded, (byte) 0);
+            }
+        }
+    }
+
+    /**
+     * Serialize as {@link SecretKeySpec}.
+     */
+    private Object writeReplace() {
+        return new SecretKeySpec(getEncoded(), algorithm);
+    }
+}
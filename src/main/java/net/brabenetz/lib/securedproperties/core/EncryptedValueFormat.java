@@ -0,0 +1,128 @@
+/*-
+ * #%L
+ * Secured Properties
+ * ===============================================================
+ * Copyright (C) 2016 - 2026 Brabenetz Harald, Austria
+ * ===============================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package net.brabenetz.lib.securedproperties.core;
+
+/**
+ * Single-pass validator for the format of encrypted values: "{base64}" or "{keyId:base64}", where the key-id has 1 to 16 chars of
+ * [A-Za-z0-9_-] and the base64 part is padded and not empty.
+ * <p>
+ * Equivalent to the regular expression
+ * <code>^\{([A-Za-z0-9_-]{1,16}:)?([A-Za-z0-9+/]{4})*([A-Za-z0-9+/]{4}|[A-Za-z0-9+/]{3}=|[A-Za-z0-9+/]{2}==)\}$</code>, but without a Matcher
+ * per call and without backtracking: each char is looked at most once, and most plain-text values are rejected by the first or last char.
+ * <p>
+ * Values with the prefix "{v2:" of the {@link CompactValueFormat compact format} are validated by {@link CompactValueFormat#isCompact(CharSequence)}:
+ * every char must be URL-safe base64 and the decoded header must name a known algorithm with a valid key-id, otherwise they are plain-text.
+ */
+final class EncryptedValueFormat {
+
+    /** The max length of a key-id. */
+    private static final int MAX_KEY_ID_LENGTH = 16;
+
+    private static final int BASE64_UNIT = 4;
+    /** "{" + 4 base64 chars + "}". */
+    private static final int MIN_LENGTH = 6;
+    private static final byte BASE64_CHAR = 1;
+    private static final byte KEY_ID_CHAR = 2;
+    private static final byte[] CHAR_CLASSES = new byte[128];
+
+    static {
+        for (char c = 'A'; c <= 'Z'; c++) {
+            CHAR_CLASSES[c] = BASE64_CHAR | KEY_ID_CHAR;
+            CHAR_CLASSES[Character.toLowerCase(c)] = BASE64_CHAR | KEY_ID_CHAR;
+        }
+        for (char c = '0'; c <= '9'; c++) {
+            CHAR_CLASSES[c] = BASE64_CHAR | KEY_ID_CHAR;
+        }
+        CHAR_CLASSES['+'] = BASE64_CHAR;
+        CHAR_CLASSES['/'] = BASE64_CHAR;
+        CHAR_CLASSES['_'] = KEY_ID_CHAR;
+        CHAR_CLASSES['-'] = KEY_ID_CHAR;
+    }
+
+    private EncryptedValueFormat() {
+        super();
+    }
+
+    /**
+     * @return true if the given value has the format of an encrypted value.
+     */
+    static boolean isEncryptedValue(final CharSequence value) {
+        if (value == null) {
+            return false;
+        }
+        if (CompactValueFormat.isCompact(value)) {
+            return true;
+        }
+        if (CompactValueFormat.hasPrefix(value)) {
+            // the key-id "v2" is reserved, so this is no legacy value either.
+            return false;
+        }
+        final int length = value.length();
+        if (length < MIN_LENGTH || value.charAt(0) != '{' || value.charAt(length - 1) != '}') {
+            return false;
+        }
+        final int end = length - 1;
+        final int start = skipKeyId(value, end);
+        if (start < 0) {
+            return false;
+        }
+
+        final int base64Length = end - start;
+        if (base64Length < BASE64_UNIT || base64Length % BASE64_UNIT != 0) {
+            return false;
+        }
+        // "xxx=" or "xx=="
+        int dataEnd = end;
+        if (value.charAt(dataEnd - 1) == '=') {
+            dataEnd--;
+            if (value.charAt(dataEnd - 1) == '=') {
+                dataEnd--;
+            }
+        }
+        for (int i = start; i < dataEnd; i++) {
+            if (!is(value.charAt(i), BASE64_CHAR)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the index after the optional "keyId:", or -1 for an empty key-id "{:".
+     */
+    private static int skipKeyId(final CharSequence value, final int end) {
+        // ':' isn't part of the base64 alphabet, so a key-id exists if a ':' follows a few key-id chars.
+        final int maxColonIndex = Math.min(end - 1, MAX_KEY_ID_LENGTH + 1);
+        for (int i = 1; i <= maxColonIndex; i++) {
+            final char c = value.charAt(i);
+            if (c == ':') {
+                return i == 1 ? -1 : i + 1;
+            }
+            if (!is(c, KEY_ID_CHAR)) {
+                break;
+            }
+        }
+        return 1;
+    }
+
+    private static boolean is(final char c, final byte charClass) {
+        return c < CHAR_CLASSES.length && (CHAR_CLASSES[c] & charClass) != 0;
+    }
+}
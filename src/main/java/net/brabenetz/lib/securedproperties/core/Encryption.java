@@ -21,19 +21,35 @@ package net.brabenetz.lib.securedproperties.core;
 
 import com.github.fge.lambdas.Throwing;
 import org.apache.commons.lang3.ArrayUtils;
-import org.apache.commons.lang3.RandomUtils;
-import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
 
 import javax.crypto.Cipher;
 import javax.crypto.KeyGenerator;
 import javax.crypto.SecretKey;
-import javax.crypto.spec.SecretKeySpec;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.IvParameterSpec;
 
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
 import java.security.GeneralSecurityException;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
-import java.util.regex.Pattern;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
 
 /**
  * Some Utilities about encryptions.
@@ -41,22 +57,75 @@ import java.util.regex.Pattern;
 public final class Encryption {
     /** General Logger for this Class. */
     private static final org.slf4j.Logger LOG = org.slf4j.LoggerFactory.getLogger(Encryption.class);
-    private static final Pattern ENCRYPTED_VALUE = Pattern.compile("^\\{([A-Za-z0-9+/]{4})*([A-Za-z0-9+/]{4}|[A-Za-z0-9+/]{3}=|[A-Za-z0-9+/]{2}==)\\}$");
+    /** The probed {@link #isAlgorithmSupported(Algorithm, EncryptionOptions)} results per {@link CipherEngine} and {@link Algorithm}. */
+    private static final ConcurrentMap<CipherEngine, ConcurrentMap<Algorithm, Boolean>> ALGORITHM_SUPPORT = new ConcurrentHashMap<>();
+    /** Up to this length the base64 part of an encrypted value is decoded into the reused buffer of the thread, see {@link Base64Chars}. */
+    private static final int MAX_INLINE_BASE64_LENGTH = 128;
+    private static final ThreadLocal<DecryptBuffers> DECRYPT_BUFFERS = ThreadLocal.withInitial(DecryptBuffers::new);
+    /** The first byte of the envelope "version, nonce, cipher-text with tag" of algorithms with a nonce, see {@link Algorithm#getNonceLength()}. */
+    private static final byte ENVELOPE_VERSION = 1;
+    /** The length of the authentication tag of AEAD ciphers (128 bit). */
+    private static final int TAG_LENGTH = 16;
+    /** A batch is only split into parallel parts with at least this number of values, see {@link #decryptAll(SecretContainer, int, Collection, int)}. */
+    private static final int MIN_PARALLEL_BATCH_SIZE = 64;
 
     private Encryption() {
         super();
     }
     /**
      * Checks if the given {@link Algorithm} can be used to encrypt String-Values.
-     * 
+     * <p>
+     * The result is probed only once per {@link CipherEngine} and {@link Algorithm}. Custom {@link Algorithm} and {@link CipherEngine}
+     * implementations should therefore be singletons (like enums) or implement equals and hashCode.
+     *
      * @param algorithm
      *        The {@link Algorithm} to check.
      * @return true if the {@link Algorithm} is supported.
      */
     public static boolean isAlgorithmSupported(final Algorithm algorithm) {
+        return isAlgorithmSupported(algorithm, EncryptionOptions.DEFAULT);
+    }
+
+    /**
+     * Like {@link #isAlgorithmSupported(Algorithm)}, but the {@link Algorithm} is probed with the {@link CipherEngine} and the
+     * SecureRandom of the {@link EncryptionOptions}.
+     */
+    public static boolean isAlgorithmSupported(final Algorithm algorithm, final EncryptionOptions options) {
+        final CipherEngine engine = options.resolveCipherEngine();
+        ConcurrentMap<Algorithm, Boolean> engineSupport = ALGORITHM_SUPPORT.get(engine);
+        if (engineSupport == null) {
+            engineSupport = ALGORITHM_SUPPORT.computeIfAbsent(engine, key -> new ConcurrentHashMap<>());
+        }
+        final Boolean supported = engineSupport.get(algorithm);
+        if (supported != null) {
+            return supported;
+        }
+        return engineSupport.computeIfAbsent(algorithm, key -> probeAlgorithm(key, options));
+    }
+
+    /**
+     * Probes all given {@link Algorithm}s in parallel, so a following {@link #isAlgorithmSupported(Algorithm)} or
+     * {@link #getFirstSupportedAlgorithm(Algorithm...)} will be answered from the cache. Can be called on application startup, e.g. with
+     * <code>Encryption.probeAlgorithms(config.getAllowedAlgorithm())</code>.
+     *
+     * @param algorithms
+     *        The {@link Algorithm}s to check.
+     * @return the support-flag per {@link Algorithm}, in the order of the given {@link Algorithm}s.
+     */
+    public static Map<Algorithm, Boolean> probeAlgorithms(final Algorithm... algorithms) {
+        Arrays.stream(algorithms).parallel().forEach(Encryption::isAlgorithmSupported);
+
+        final Map<Algorithm, Boolean> result = new LinkedHashMap<>();
+        for (Algorithm algorithm : algorithms) {
+            result.put(algorithm, isAlgorithmSupported(algorithm));
+        }
+        return result;
+    }
+
+    private static boolean probeAlgorithm(final Algorithm algorithm, final EncryptionOptions options) {
         try {
-            encrypt(algorithm, createKey(algorithm), 0, "test");
-            Cipher.getInstance(algorithm.getKey());
+            encrypt(new SecretContainer(algorithm, createKey(algorithm, options)).withOptions(options), 0, "test");
+            options.resolveCipherEngine().createCipher(algorithm.getTransformation());
             return true;
         } catch (Exception e) {
             // An exception here probably means the JCE provider hasn't
@@ -76,8 +145,16 @@ public final class Encryption {
      *         if no {@link Algorithm} is supported.
      */
     public static Algorithm getFirstSupportedAlgorithm(final Algorithm... algorithms) throws IllegalArgumentException {
+        return getFirstSupportedAlgorithm(EncryptionOptions.DEFAULT, algorithms);
+    }
+
+    /**
+     * Like {@link #getFirstSupportedAlgorithm(Algorithm...)}, but the probes use the given {@link EncryptionOptions}, see
+     * {@link #isAlgorithmSupported(Algorithm, EncryptionOptions)}.
+     */
+    public static Algorithm getFirstSupportedAlgorithm(final EncryptionOptions options, final Algorithm... algorithms) {
         for (Algorithm algorithm : algorithms) {
-            if (isAlgorithmSupported(algorithm)) {
+            if (isAlgorithmSupported(algorithm, options)) {
                 return algorithm;
             }
         }
@@ -86,26 +163,52 @@ public final class Encryption {
 
     /**
      * generate a {@link SecretKey} with the given {@link Algorithm} and wraps checked Exceptions
-     * into RuntimeExceptions.
+     * into RuntimeExceptions. The key is generated with the {@link SecureRandoms#getSecureRandom() configured SecureRandom} and the
+     * {@link CipherEngines#getDefault() JVM-wide CipherEngine}.
      * 
      * @param algorithm
      *        the {@link Algorithm} to use for generated the {@link SecretKey}
      * @return the generated {@link SecretKey}.
      */
     public static SecretKey createKey(final Algorithm algorithm) {
-        KeyGenerator kg = Throwing.supplier(() -> KeyGenerator.getInstance(algorithm.getKey())).get();
-        kg.init(algorithm.getSize());
-        return kg.generateKey();
+        return createKey(algorithm, EncryptionOptions.DEFAULT);
+    }
+
+    /**
+     * Like {@link #createKey(Algorithm)}, but the key is generated with the {@link java.security.SecureRandom} and the {@link CipherEngine} of the
+     * given {@link EncryptionOptions}, see {@link EncryptionOptions#withSecureRandomStrategy(String)} and
+     * {@link EncryptionOptions#withCipherEngine(CipherEngine)}.
+     *
+     * @param algorithm
+     *        the {@link Algorithm} to use for generated the {@link SecretKey}
+     * @param options
+     *        the options of the configuration which needs the key.
+     * @return the generated {@link SecretKey}.
+     */
+    public static SecretKey createKey(final Algorithm algorithm, final EncryptionOptions options) {
+        KeyGenerator kg = Throwing.supplier(() -> options.resolveCipherEngine().createKeyGenerator(algorithm.getKey())).get();
+        kg.init(algorithm.getSize(), options.secureRandom());
+        final byte[] keyBytes = kg.generateKey().getEncoded();
+        try {
+            return new DestroyableSecretKey(keyBytes, algorithm.getKey());
+        } finally {
+            Arrays.fill(keyBytes, (byte) 0);
+        }
     }
 
     /**
-     * Read a {@link SecretKey} from a base64 encoded String.
+     * Read a {@link SecretKey} from a base64 encoded String. The key material of the returned {@link SecretKey} can be zeroed with
+     * {@link SecretKey#destroy()}.
      * 
      * @see #toBase64String(SecretKey)
      */
     public static SecretKey readSecretKey(final Algorithm algorithm, final String secretKeyBase64) {
         byte[] secretKeyBytes = Base64.getDecoder().decode(secretKeyBase64);
-        return new SecretKeySpec(secretKeyBytes, algorithm.getKey());
+        try {
+            return new DestroyableSecretKey(secretKeyBytes, algorithm.getKey());
+        } finally {
+            Arrays.fill(secretKeyBytes, (byte) 0);
+        }
     }
 
     /**
@@ -116,17 +219,332 @@ public final class Encryption {
     }
 
     /**
-     * Checks if the given String looks like an encrypted value.
+     * Checks if the given String looks like an encrypted value. Values with the prefix "{v2:" of the compact format must also have a valid
+     * compact header, otherwise they are plain-text values.
      */
     public static boolean isEncryptedValue(final String mybeEncryptedValue) {
-        if (StringUtils.isEmpty(mybeEncryptedValue)) {
-            return false;
+        return EncryptedValueFormat.isEncryptedValue(mybeEncryptedValue);
+    }
+
+    /**
+     * Returns the key-id of an encrypted value like "{keyId:...}", or of a value in the compact format "{v2:...}".
+     *
+     * @param encryptedValue
+     *        the encrypted value.
+     * @return the key-id, or null if the encrypted value has no key-id (legacy format "{...}").
+     */
+    public static String getKeyId(final String encryptedValue) {
+        if (CompactValueFormat.hasPrefix(encryptedValue)) {
+            return CompactValueFormat.getKeyId(encryptedValue);
+        }
+        final int keyIdEnd = encryptedValue.indexOf(':');
+        if (keyIdEnd < 0) {
+            return null;
+        }
+        return encryptedValue.substring(1, keyIdEnd);
+    }
+
+    /**
+     * Encrypt the given plain-text value with the primary key of the given {@link SecretContainer}. If the primary key is part of the key ring, the
+     * encrypted value will contain the key-id: "{keyId:...}".
+     *
+     * @param secretContainer
+     *        The {@link SecretContainer} with the primary key to use.
+     * @param plainTextValue
+     *        The value which should be encrypted.
+     * @return the encrypted value.
+     */
+    public static String encrypt(final SecretContainer secretContainer, final int saltLength, final String plainTextValue) {
+        final SecretContainer primaryKey = secretContainer.getPrimaryKey();
+        final String encryptedValue = encrypt(secretContainer.getOptions(), primaryKey.getAlgorithm(), primaryKey.getSecretKey(), saltLength,
+            plainTextValue);
+        if (secretContainer.getPrimaryKeyId() == null) {
+            return encryptedValue;
         }
-        return ENCRYPTED_VALUE.matcher(mybeEncryptedValue).matches();
+        return "{" + secretContainer.getPrimaryKeyId() + ":" + encryptedValue.substring(1);
+    }
+
+    /**
+     * Like {@link #encrypt(SecretContainer, int, String)}, but returns the compact format "{v2:...}" with the key-id of the primary key in the
+     * binary header, see {@link #encryptCompact(Algorithm, SecretKey, int, String)}.
+     *
+     * @param secretContainer
+     *        The {@link SecretContainer} with the primary key to use.
+     * @param plainTextValue
+     *        The value which should be encrypted.
+     * @return the encrypted value.
+     */
+    public static String encryptCompact(final SecretContainer secretContainer, final int saltLength, final String plainTextValue) {
+        final SecretContainer primaryKey = secretContainer.getPrimaryKey();
+        final byte[] header = CompactValueFormat.newHeader(primaryKey.getAlgorithm(), secretContainer.getPrimaryKeyId());
+        return CompactValueFormat.encode(
+            encrypt(secretContainer.getOptions(), primaryKey.getAlgorithm(), primaryKey.getSecretKey(), saltLength, plainTextValue, header));
+    }
+
+    /**
+     * Decrypt the given encrypted value with the matching key of the given {@link SecretContainer}: values with a key-id "{keyId:...}" are decrypted
+     * with the key from the key ring, values without key-id "{...}" with the legacy secret key.
+     *
+     * @param secretContainer
+     *        The {@link SecretContainer} with all known keys.
+     * @param encryptedValue
+     *        the encrypted value to decrypt.
+     * @return the decrypted value.
+     */
+    public static String decrypt(final SecretContainer secretContainer, final int saltLength, final String encryptedValue) {
+        final SecretContainer key = getDecryptionKey(secretContainer, encryptedValue);
+        return decrypt(secretContainer.getOptions(), key.getAlgorithm(), key.getSecretKey(), saltLength, encryptedValue, PlainText.STRING);
+    }
+
+    /**
+     * Like {@link #decrypt(SecretContainer, int, String)}, but the UTF-8 plain-text is decoded directly into a char array, without a String. The
+     * caller can (and should) overwrite the array after usage.
+     *
+     * @param secretContainer
+     *        The {@link SecretContainer} with all known keys.
+     * @param encryptedValue
+     *        the encrypted value to decrypt.
+     * @return the decrypted value.
+     */
+    public static char[] decryptToChars(final SecretContainer secretContainer, final int saltLength, final String encryptedValue) {
+        final SecretContainer key = getDecryptionKey(secretContainer, encryptedValue);
+        return decrypt(secretContainer.getOptions(), key.getAlgorithm(), key.getSecretKey(), saltLength, encryptedValue, PlainText.CHARS);
+    }
+
+    /**
+     * Like {@link #decrypt(SecretContainer, int, String)}, but returns the UTF-8 bytes of the plain-text, without a String. The caller can (and
+     * should) overwrite the array after usage.
+     *
+     * @param secretContainer
+     *        The {@link SecretContainer} with all known keys.
+     * @param encryptedValue
+     *        the encrypted value to decrypt.
+     * @return the UTF-8 bytes of the decrypted value.
+     */
+    public static byte[] decryptToBytes(final SecretContainer secretContainer, final int saltLength, final String encryptedValue) {
+        final SecretContainer key = getDecryptionKey(secretContainer, encryptedValue);
+        return decrypt(secretContainer.getOptions(), key.getAlgorithm(), key.getSecretKey(), saltLength, encryptedValue, PlainText.BYTES);
+    }
+
+    /**
+     * Encrypt all given plain-text values like {@link #encrypt(SecretContainer, int, String)}, but as one batch: the salts (or nonces) of all values
+     * are drawn with one call to the {@link SecureRandoms#getSecureRandom() SecureRandom}, and the initialized {@link Cipher} and the buffer for
+     * the salted plain-text are reused for all values.
+     *
+     * @param secretContainer
+     *        The {@link SecretContainer} with the primary key to use.
+     * @param plainTextValues
+     *        The values which should be encrypted.
+     * @return the encrypted values, in the order of the given values.
+     */
+    public static List<String> encryptAll(final SecretContainer secretContainer, final int saltLength, final Collection<String> plainTextValues) {
+        return encryptAll(secretContainer, saltLength, plainTextValues, 1);
+    }
+
+    /**
+     * Like {@link #encryptAll(SecretContainer, int, Collection)}, but large batches are split into up to "parallelism" parts which are encrypted in
+     * parallel. Each part has at least {@value #MIN_PARALLEL_BATCH_SIZE} values, and there are not more parts than available processors.
+     *
+     * @param secretContainer
+     *        The {@link SecretContainer} with the primary key to use.
+     * @param plainTextValues
+     *        The values which should be encrypted.
+     * @param parallelism
+     *        The maximum number of threads, 1 to encrypt all values in the current thread.
+     * @return the encrypted values, in the order of the given values.
+     */
+    public static List<String> encryptAll(final SecretContainer secretContainer, final int saltLength, final Collection<String> plainTextValues,
+            final int parallelism) {
+        final SecretContainer primaryKey = secretContainer.getPrimaryKey();
+        final String keyId = secretContainer.getPrimaryKeyId();
+        final Algorithm algorithm = primaryKey.getAlgorithm();
+        final byte[] header = algorithm.getNonceLength() > 0 ? new byte[] {ENVELOPE_VERSION } : ArrayUtils.EMPTY_BYTE_ARRAY;
+        final ValueFormat format = new ValueFormat(keyId == null ? "{" : "{" + keyId + ":", header, Base64.getEncoder());
+        return inBatches(plainTextValues, parallelism, values -> encryptBatch(secretContainer.getOptions(), algorithm, primaryKey.getSecretKey(), saltLength,
+            format, values));
+    }
+
+    /**
+     * Like {@link #encryptAll(SecretContainer, int, Collection, int)}, but returns the compact format "{v2:...}", see
+     * {@link #encryptCompact(SecretContainer, int, String)}.
+     *
+     * @param secretContainer
+     *        The {@link SecretContainer} with the primary key to use.
+     * @param plainTextValues
+     *        The values which should be encrypted.
+     * @param parallelism
+     *        The maximum number of threads, 1 to encrypt all values in the current thread.
+     * @return the encrypted values, in the order of the given values.
+     */
+    public static List<String> encryptCompactAll(final SecretContainer secretContainer, final int saltLength, final Collection<String> plainTextValues,
+            final int parallelism) {
+        final SecretContainer primaryKey = secretContainer.getPrimaryKey();
+        final Algorithm algorithm = primaryKey.getAlgorithm();
+        final byte[] header = CompactValueFormat.newHeader(algorithm, secretContainer.getPrimaryKeyId());
+        final ValueFormat format = new ValueFormat(CompactValueFormat.PREFIX, header, Base64.getUrlEncoder().withoutPadding());
+        return inBatches(plainTextValues, parallelism, values -> encryptBatch(secretContainer.getOptions(), algorithm, primaryKey.getSecretKey(), saltLength,
+            format, values));
+    }
+
+    /**
+     * Decrypt all given encrypted values like {@link #decrypt(SecretContainer, int, String)}, but as one batch with the decryption buffers of the
+     * current thread.
+     *
+     * @param secretContainer
+     *        The {@link SecretContainer} with all known keys.
+     * @param encryptedValues
+     *        the encrypted values to decrypt.
+     * @return the decrypted values, in the order of the given values.
+     */
+    public static List<String> decryptAll(final SecretContainer secretContainer, final int saltLength, final Collection<String> encryptedValues) {
+        return decryptAll(secretContainer, saltLength, encryptedValues, 1);
+    }
+
+    /**
+     * Like {@link #decryptAll(SecretContainer, int, Collection)}, but large batches are split into up to "parallelism" parts which are decrypted
+     * in parallel, e.g. for hundreds of secrets on application startup. Each part has at least {@value #MIN_PARALLEL_BATCH_SIZE} values, and
+     * there are not more parts than available processors.
+     *
+     * @param secretContainer
+     *        The {@link SecretContainer} with all known keys.
+     * @param encryptedValues
+     *        the encrypted values to decrypt.
+     * @param parallelism
+     *        The maximum number of threads, 1 to decrypt all values in the current thread.
+     * @return the decrypted values, in the order of the given values.
+     */
+    public static List<String> decryptAll(final SecretContainer secretContainer, final int saltLength, final Collection<String> encryptedValues,
+            final int parallelism) {
+        return inBatches(encryptedValues, parallelism, values -> decryptBatch(secretContainer, saltLength, values, PlainText.STRING));
+    }
+
+    /**
+     * Like {@link #decryptAll(SecretContainer, int, Collection, int)}, but the plain-texts are decoded directly into char arrays, see
+     * {@link #decryptToChars(SecretContainer, int, String)}.
+     *
+     * @param secretContainer
+     *        The {@link SecretContainer} with all known keys.
+     * @param encryptedValues
+     *        the encrypted values to decrypt.
+     * @param parallelism
+     *        The maximum number of threads, 1 to decrypt all values in the current thread.
+     * @return the decrypted values, in the order of the given values.
+     */
+    public static List<char[]> decryptAllToChars(final SecretContainer secretContainer, final int saltLength, final Collection<String> encryptedValues,
+            final int parallelism) {
+        return inBatches(encryptedValues, parallelism, values -> decryptBatch(secretContainer, saltLength, values, PlainText.CHARS));
+    }
+
+    /**
+     * Applies the batch function to the given values, or to up to "parallelism" consecutive parts of them: the first part in the current thread,
+     * the others in the {@link ForkJoinPool#commonPool() common pool}, whose long-living threads keep their {@link CipherCache} and buffers. The
+     * number of parts is limited by the available processors, because more threads than cores only add context switches.
+     */
+    private static <T> List<T> inBatches(final Collection<String> values, final int parallelism, final Function<List<String>, List<T>> batch) {
+        Validate.isTrue(parallelism > 0, "The parallelism must be positive but was %s", parallelism);
+        final List<String> valueList = values instanceof List ? (List<String>) values : new ArrayList<>(values);
+        final int partCount = Math.min(Math.min(parallelism, Runtime.getRuntime().availableProcessors()), valueList.size() / MIN_PARALLEL_BATCH_SIZE);
+        if (partCount <= 1) {
+            return batch.apply(valueList);
+        }
+        final int partSize = (valueList.size() + partCount - 1) / partCount;
+        final List<CompletableFuture<List<T>>> parts = new ArrayList<>(partCount - 1);
+        for (int start = partSize; start < valueList.size(); start += partSize) {
+            final List<String> part = valueList.subList(start, Math.min(valueList.size(), start + partSize));
+            parts.add(CompletableFuture.supplyAsync(() -> batch.apply(part), ForkJoinPool.commonPool()));
+        }
+        final List<T> result = new ArrayList<>(valueList.size());
+        result.addAll(batch.apply(valueList.subList(0, partSize)));
+        try {
+            for (CompletableFuture<List<T>> part : parts) {
+                result.addAll(part.join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("The batch failed: " + e.getCause().getMessage(), e.getCause());
+        }
+        return result;
+    }
+
+    private static List<String> encryptBatch(final EncryptionOptions options, final Algorithm algorithm, final SecretKey secretKey,
+            final int saltLength, final ValueFormat format, final List<String> plainTextValues) {
+        final List<String> result = new ArrayList<>(plainTextValues.size());
+        if (options.useOffHeapBuffers()) {
+            for (String plainTextValue : plainTextValues) {
+                result.add(format.toText(Throwing.supplier(() -> encryptOffHeap(options, algorithm, secretKey, saltLength, plainTextValue, format.header))
+                    .get()));
+            }
+            return result;
+        }
+        final int effectiveSaltLength = saltLength(algorithm, saltLength);
+        final int nonceLength = algorithm.getNonceLength();
+        final int headerLength = format.header.length;
+        // one call to the SecureRandom for the salts (or nonces) of all values.
+        final byte[] randomBytes = options.nextBytes((effectiveSaltLength + nonceLength) * plainTextValues.size());
+        final byte[] prefix = Arrays.copyOf(format.header, headerLength + nonceLength);
+        byte[] saltedValue = new byte[0];
+        int randomOffset = 0;
+        try {
+            final CipherEngine engine = options.resolveCipherEngine();
+            final Cipher ecbCipher = nonceLength == 0
+                ? Throwing.supplier(() -> CipherCache.getCipher(engine, algorithm, secretKey, Cipher.ENCRYPT_MODE, null)).get()
+                : null;
+            for (String plainTextValue : plainTextValues) {
+                final byte[] valueBytes = plainTextValue.getBytes(StandardCharsets.UTF_8);
+                final int saltedValueLength = effectiveSaltLength + valueBytes.length;
+                if (saltedValue.length < saltedValueLength) {
+                    Arrays.fill(saltedValue, (byte) 0);
+                    saltedValue = new byte[saltedValueLength];
+                }
+                System.arraycopy(randomBytes, randomOffset, saltedValue, 0, effectiveSaltLength);
+                System.arraycopy(valueBytes, 0, saltedValue, effectiveSaltLength, valueBytes.length);
+                Arrays.fill(valueBytes, (byte) 0);
+                System.arraycopy(randomBytes, randomOffset + effectiveSaltLength, prefix, headerLength, nonceLength);
+                randomOffset += effectiveSaltLength + nonceLength;
+
+                final byte[] input = saltedValue;
+                final byte[] encryptedValue = Throwing.supplier(() -> {
+                    final Cipher cipher = ecbCipher != null ? ecbCipher
+                        : getAeadCipher(engine, algorithm, secretKey, Cipher.ENCRYPT_MODE, prefix, headerLength);
+                    final byte[] output = Arrays.copyOf(prefix, prefix.length + cipher.getOutputSize(saltedValueLength));
+                    final int length = prefix.length + doFinal(cipher, input, saltedValueLength, output, prefix.length);
+                    return length == output.length ? output : Arrays.copyOf(output, length);
+                }).get();
+                result.add(format.toText(encryptedValue));
+            }
+        } finally {
+            Arrays.fill(saltedValue, (byte) 0);
+        }
+        return result;
+    }
+
+    private static <T> List<T> decryptBatch(final SecretContainer secretContainer, final int saltLength, final List<String> encryptedValues,
+            final PlainText<T> plainText) {
+        final DecryptBuffers buffers = DECRYPT_BUFFERS.get();
+        final List<T> result = new ArrayList<>(encryptedValues.size());
+        for (String encryptedValue : encryptedValues) {
+            final SecretContainer key = getDecryptionKey(secretContainer, encryptedValue);
+            result.add(decrypt(secretContainer.getOptions(), key.getAlgorithm(), key.getSecretKey(), saltLength, encryptedValue, plainText, buffers));
+        }
+        return result;
+    }
+
+    private static SecretContainer getDecryptionKey(final SecretContainer secretContainer, final String encryptedValue) {
+        final String keyId = getKeyId(encryptedValue);
+        final SecretContainer key = secretContainer.getKey(keyId);
+        if (key == null) {
+            throw new IllegalArgumentException(String.format("Unknown key-id '%s'. Known key-ids are: %s", keyId, secretContainer.getKeyRing().keySet()));
+        }
+        return key;
     }
 
     /**
      * Encrypt the given plain-text value with the given {@link SecretKey} and the given {@link Algorithm}.
+     * <p>
+     * For an {@link Algorithm} with a {@link Algorithm#getNonceLength() nonce} (like AES-GCM) the salt length is ignored: the encrypted bytes are
+     * the envelope "version (1 byte), random nonce, cipher-text with authentication tag", where the version byte is authenticated as well.
      * 
      * @param algorithm
      *        The {@link Algorithm} to use for the encryption.
@@ -137,14 +555,51 @@ public final class Encryption {
      * @return the encrypted value.
      */
     public static String encrypt(final Algorithm algorithm, final SecretKey secretKey, final int saltLength, final String plainTextValue) {
+        return encrypt(EncryptionOptions.DEFAULT, algorithm, secretKey, saltLength, plainTextValue);
+    }
+
+    private static String encrypt(final EncryptionOptions options, final Algorithm algorithm, final SecretKey secretKey, final int saltLength,
+            final String plainTextValue) {
+        final byte[] header = algorithm.getNonceLength() > 0 ? new byte[] {ENVELOPE_VERSION } : ArrayUtils.EMPTY_BYTE_ARRAY;
+        return "{" + Base64.getEncoder().encodeToString(encrypt(options, algorithm, secretKey, saltLength, plainTextValue, header)) + "}";
+    }
+
+    /**
+     * Like {@link #encrypt(Algorithm, SecretKey, int, String)}, but returns the compact format "{v2:...}": one header byte with the algorithm
+     * family and mode instead of the envelope version, and unpadded URL-safe base64. {@link #isEncryptedValue(String)} recognizes the value by the
+     * prefix, URL-safe base64 chars and a valid header, and decrypt validates the algorithm from the header. Both formats are decrypted by all decrypt methods.
+     * <p>
+     * The value has about the same length as the legacy format: the prefix costs 3 chars, the missing padding saves up to 2. The configured salt is
+     * kept, because without it equal plain-texts would give equal values. Algorithms with a nonce (like AES-GCM) need no salt at all.
+     *
+     * @param algorithm
+     *        The {@link Algorithm} to use for the encryption.
+     * @param secretKey
+     *        The {@link SecretKey} to use for the encryption.
+     * @param plainTextValue
+     *        The value which should be encrypted.
+     * @return the encrypted value.
+     */
+    public static String encryptCompact(final Algorithm algorithm, final SecretKey secretKey, final int saltLength, final String plainTextValue) {
+        return CompactValueFormat.encode(
+            encrypt(EncryptionOptions.DEFAULT, algorithm, secretKey, saltLength, plainTextValue, CompactValueFormat.newHeader(algorithm, null)));
+    }
+
+    /**
+     * @return the bytes "header, nonce, cipher-text", where the nonce exists only for algorithms with a nonce.
+     */
+    private static byte[] encrypt(final EncryptionOptions options, final Algorithm algorithm, final SecretKey secretKey, final int saltLength,
+            final String plainTextValue, final byte[] header) {
+        if (options.useOffHeapBuffers()) {
+            return Throwing.supplier(() -> encryptOffHeap(options, algorithm, secretKey, saltLength, plainTextValue, header)).get();
+        }
         byte[] valueBytes = plainTextValue.getBytes(StandardCharsets.UTF_8);
-        byte[] saltedValue = ArrayUtils.addAll(RandomUtils.nextBytes(saltLength), valueBytes);
-        byte[] encryptedValue = Throwing.supplier(() -> encrypt(algorithm, secretKey, saltedValue)).get();
-        return "{" + Base64.getEncoder().encodeToString(encryptedValue) + "}";
+        byte[] saltedValue = ArrayUtils.addAll(options.nextBytes(saltLength(algorithm, saltLength)), valueBytes);
+        return Throwing.supplier(() -> encrypt(options, algorithm, secretKey, header, saltedValue)).get();
     }
 
     /**
-     * Decrypt the given encrypted value with the given {@link SecretKey} and the given {@link Algorithm}.
+     * Decrypt the given encrypted value with the given {@link SecretKey} and the given {@link Algorithm}. A key-id in the encrypted value is ignored.
      * 
      * @param algorithm
      *        The {@link Algorithm} to use for the decryption.
@@ -155,21 +610,438 @@ public final class Encryption {
      * @return the decrypted value.
      */
     public static String decrypt(final Algorithm algorithm, final SecretKey secretKey, final int saltLength, final String encryptedValue) {
-        byte[] encryptedValueBytes = Base64.getDecoder().decode(StringUtils.strip(encryptedValue, "{}"));
-        byte[] saltedValueBytes = Throwing.supplier(() -> decrypt(algorithm, secretKey, encryptedValueBytes)).get();
-        byte[] valueBytes = ArrayUtils.subarray(saltedValueBytes, saltLength, saltedValueBytes.length);
-        return new String(valueBytes, StandardCharsets.UTF_8);
+        return decrypt(EncryptionOptions.DEFAULT, algorithm, secretKey, saltLength, encryptedValue, PlainText.STRING);
+    }
+
+    /**
+     * Like {@link #decrypt(Algorithm, SecretKey, int, String)}, but the UTF-8 plain-text is decoded directly into a char array, without a String.
+     * The caller can (and should) overwrite the array after usage.
+     *
+     * @param algorithm
+     *        The {@link Algorithm} to use for the decryption.
+     * @param secretKey
+     *        The {@link SecretKey} to use for the decryption.
+     * @param encryptedValue
+     *        the encrypted value to decrypt.
+     * @return the decrypted value.
+     */
+    public static char[] decryptToChars(final Algorithm algorithm, final SecretKey secretKey, final int saltLength, final String encryptedValue) {
+        return decrypt(EncryptionOptions.DEFAULT, algorithm, secretKey, saltLength, encryptedValue, PlainText.CHARS);
+    }
+
+    /**
+     * Like {@link #decrypt(Algorithm, SecretKey, int, String)}, but returns the UTF-8 bytes of the plain-text, without a String. The caller can (and
+     * should) overwrite the array after usage.
+     *
+     * @param algorithm
+     *        The {@link Algorithm} to use for the decryption.
+     * @param secretKey
+     *        The {@link SecretKey} to use for the decryption.
+     * @param encryptedValue
+     *        the encrypted value to decrypt.
+     * @return the UTF-8 bytes of the decrypted value.
+     */
+    public static byte[] decryptToBytes(final Algorithm algorithm, final SecretKey secretKey, final int saltLength, final String encryptedValue) {
+        return decrypt(EncryptionOptions.DEFAULT, algorithm, secretKey, saltLength, encryptedValue, PlainText.BYTES);
+    }
+
+    private static <T> T decrypt(final EncryptionOptions options, final Algorithm algorithm, final SecretKey secretKey, final int saltLength,
+            final String encryptedValue, final PlainText<T> plainText) {
+        return decrypt(options, algorithm, secretKey, saltLength, encryptedValue, plainText, DECRYPT_BUFFERS.get());
+    }
+
+    private static <T> T decrypt(final EncryptionOptions options, final Algorithm algorithm, final SecretKey secretKey, final int saltLength,
+            final String encryptedValue, final PlainText<T> plainText, final DecryptBuffers buffers) {
+        final boolean compact = CompactValueFormat.hasPrefix(encryptedValue);
+        int start;
+        int end = encryptedValue.length();
+        if (compact) {
+            start = CompactValueFormat.PREFIX.length();
+            end--;
+        } else {
+            // skip the optional key-id and the braces: "{keyId:...}"
+            start = encryptedValue.indexOf(':') + 1;
+            while (start < end && isBrace(encryptedValue.charAt(start))) {
+                start++;
+            }
+            while (end > start && isBrace(encryptedValue.charAt(end - 1))) {
+                end--;
+            }
+        }
+
+        final byte[] encryptedValueBytes;
+        final int encryptedValueLength;
+        if (end - start <= MAX_INLINE_BASE64_LENGTH) {
+            encryptedValueBytes = buffers.encrypted(Base64Chars.maxDecodedLength(end - start));
+            encryptedValueLength = compact ? Base64Chars.decodeUrlSafe(encryptedValue, start, end, encryptedValueBytes)
+                : Base64Chars.decode(encryptedValue, start, end, encryptedValueBytes);
+        } else {
+            // the JDK decoder is vectorized on newer JVMs, which outweighs the two allocations for larger values.
+            final String base64 = encryptedValue.substring(start, end);
+            encryptedValueBytes = compact ? Base64.getUrlDecoder().decode(base64) : Base64.getDecoder().decode(base64);
+            encryptedValueLength = encryptedValueBytes.length;
+        }
+        final int headerLength;
+        if (compact) {
+            headerLength = CompactValueFormat.headerLength(encryptedValueBytes, encryptedValueLength);
+            CompactValueFormat.validateAlgorithm(encryptedValueBytes, algorithm);
+        } else {
+            headerLength = legacyHeaderLength(algorithm, encryptedValueBytes, encryptedValueLength);
+        }
+        final CipherEngine engine = options.resolveCipherEngine();
+        if (options.useOffHeapBuffers()) {
+            return Throwing.supplier(() -> decryptOffHeap(engine, algorithm, secretKey, saltLength, encryptedValueBytes, headerLength,
+                encryptedValueLength, plainText)).get();
+        }
+        return Throwing.supplier(() -> decrypt(engine, algorithm, secretKey, saltLength, encryptedValueBytes, headerLength, encryptedValueLength,
+            buffers, plainText)).get();
+    }
+
+    /**
+     * @return the length of the envelope version in front of the nonce of a legacy value: 1 for algorithms with a nonce, otherwise 0.
+     */
+    private static int legacyHeaderLength(final Algorithm algorithm, final byte[] encryptedValueBytes, final int encryptedValueLength) {
+        final int nonceLength = algorithm.getNonceLength();
+        if (nonceLength == 0) {
+            return 0;
+        }
+        // a too short value is reported by getDecryptCipher.
+        if (encryptedValueLength >= 1 + nonceLength + TAG_LENGTH && encryptedValueBytes[0] != ENVELOPE_VERSION) {
+            throw new IllegalArgumentException(String.format("Unsupported envelope version %d of the encrypted value for the algorithm %s.",
+                encryptedValueBytes[0], algorithm));
+        }
+        return 1;
+    }
+
+    private static boolean isBrace(final char c) {
+        return c == '{' || c == '}';
+    }
+
+    /**
+     * Decrypts into the reused buffer of the current thread and creates the plain-text directly from the salt offset. The buffer is zeroed
+     * afterwards.
+     */
+    private static <T> T decrypt(final CipherEngine engine, final Algorithm algorithm, final SecretKey secretKey, final int saltLength,
+            final byte[] encryptedValueBytes, final int headerLength, final int encryptedValueLength, final DecryptBuffers buffers,
+            final PlainText<T> plainText) throws GeneralSecurityException {
+        final Cipher cipher = getDecryptCipher(engine, algorithm, secretKey, encryptedValueBytes, headerLength, encryptedValueLength);
+        final int offset = headerLength + algorithm.getNonceLength();
+        final int maxLength = cipher.getOutputSize(encryptedValueLength - offset);
+        final byte[] saltedValueBytes = buffers.decrypted(maxLength);
+        try {
+            final int saltedValueLength = cipher.doFinal(encryptedValueBytes, offset, encryptedValueLength - offset, saltedValueBytes, 0);
+            final int saltOffset = Math.min(saltLength(algorithm, saltLength), saltedValueLength);
+            return plainText.fromBytes(saltedValueBytes, saltOffset, saltedValueLength - saltOffset, buffers);
+        } catch (GeneralSecurityException | RuntimeException e) {
+            CipherCache.evict(cipher);
+            throw e;
+        } finally {
+            Arrays.fill(saltedValueBytes, 0, maxLength, (byte) 0);
+        }
+    }
+
+    /**
+     * Like {@link #encrypt(Algorithm, SecretKey, int, String)}, but the salted plain-text bytes are only written into the zeroed off-heap buffer of
+     * the current thread, see {@link SecretBuffers}.
+     */
+    private static byte[] encryptOffHeap(final EncryptionOptions options, final Algorithm algorithm, final SecretKey secretKey, final int saltLength,
+            final String plainTextValue, final byte[] header) throws GeneralSecurityException {
+        final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        final int effectiveSaltLength = saltLength(algorithm, saltLength);
+        final ByteBuffer saltedValue = SecretBuffers.bytes(effectiveSaltLength + (int) (plainTextValue.length() * encoder.maxBytesPerChar()));
+        try {
+            saltedValue.put(options.nextBytes(effectiveSaltLength));
+            encoder.encode(CharBuffer.wrap(plainTextValue), saltedValue, true);
+            encoder.flush(saltedValue);
+            saltedValue.flip();
+
+            final byte[] prefix = withNonce(options, algorithm, header);
+            final Cipher cipher = getEncryptCipher(options.resolveCipherEngine(), algorithm, secretKey, prefix, header.length);
+            final ByteBuffer encryptedValue = ByteBuffer.allocate(prefix.length + cipher.getOutputSize(saltedValue.remaining()));
+            encryptedValue.put(prefix);
+            doFinal(cipher, saltedValue, encryptedValue);
+            return Arrays.copyOf(encryptedValue.array(), encryptedValue.position());
+        } finally {
+            SecretBuffers.release();
+        }
+    }
+
+    /**
+     * Like {@link #decrypt(Algorithm, SecretKey, int, String)}, but the decrypted bytes and chars are only written into the zeroed off-heap buffers of
+     * the current thread, see {@link SecretBuffers}.
+     */
+    private static <T> T decryptOffHeap(final CipherEngine engine, final Algorithm algorithm, final SecretKey secretKey, final int saltLength,
+            final byte[] encryptedValueBytes, final int headerLength, final int encryptedValueLength, final PlainText<T> plainText)
+            throws GeneralSecurityException {
+        try {
+            final Cipher cipher = getDecryptCipher(engine, algorithm, secretKey, encryptedValueBytes, headerLength, encryptedValueLength);
+            final int offset = headerLength + algorithm.getNonceLength();
+            final ByteBuffer saltedValue = SecretBuffers.bytes(cipher.getOutputSize(encryptedValueLength - offset));
+            doFinal(cipher, ByteBuffer.wrap(encryptedValueBytes, offset, encryptedValueLength - offset), saltedValue);
+            saltedValue.flip();
+            saltedValue.position(Math.min(saltLength(algorithm, saltLength), saltedValue.limit()));
+            return plainText.fromBuffer(saltedValue);
+        } finally {
+            SecretBuffers.release();
+        }
+    }
+
+    private static byte[] encrypt(final EncryptionOptions options, final Algorithm algorithm, final SecretKey secretKey, final byte[] header,
+            final byte[] valueBytes) throws GeneralSecurityException {
+        final byte[] prefix = withNonce(options, algorithm, header);
+        return ArrayUtils.addAll(prefix, doFinal(getEncryptCipher(options.resolveCipherEngine(), algorithm, secretKey, prefix, header.length),
+            valueBytes));
+    }
+
+    /**
+     * @return the salt length to use: algorithms with a nonce need no salt.
+     */
+    private static int saltLength(final Algorithm algorithm, final int saltLength) {
+        return algorithm.getNonceLength() > 0 ? 0 : saltLength;
+    }
+
+    /**
+     * @return the given header followed by a random nonce, or the header itself for algorithms without nonce.
+     */
+    private static byte[] withNonce(final EncryptionOptions options, final Algorithm algorithm, final byte[] header) {
+        final int nonceLength = algorithm.getNonceLength();
+        if (nonceLength == 0) {
+            return header;
+        }
+        return ArrayUtils.addAll(header, options.nextBytes(nonceLength));
     }
 
-    private static byte[] encrypt(final Algorithm algorithm, final SecretKey secretKey, final byte[] valueBytes) throws GeneralSecurityException {
-        Cipher cipher = Cipher.getInstance(algorithm.getKey());
-        cipher.init(Cipher.ENCRYPT_MODE, secretKey);
-        return cipher.doFinal(valueBytes);
+    private static Cipher getEncryptCipher(final CipherEngine engine, final Algorithm algorithm, final SecretKey secretKey, final byte[] prefix,
+            final int headerLength) throws GeneralSecurityException {
+        if (algorithm.getNonceLength() == 0) {
+            return CipherCache.getCipher(engine, algorithm, secretKey, Cipher.ENCRYPT_MODE, null);
+        }
+        return getAeadCipher(engine, algorithm, secretKey, Cipher.ENCRYPT_MODE, prefix, headerLength);
+    }
+
+    private static Cipher getDecryptCipher(final CipherEngine engine, final Algorithm algorithm, final SecretKey secretKey,
+            final byte[] encryptedValueBytes, final int headerLength, final int encryptedValueLength) throws GeneralSecurityException {
+        final int nonceLength = algorithm.getNonceLength();
+        if (nonceLength == 0) {
+            return CipherCache.getCipher(engine, algorithm, secretKey, Cipher.DECRYPT_MODE, null);
+        }
+        if (encryptedValueLength < headerLength + nonceLength + TAG_LENGTH) {
+            throw new IllegalArgumentException(String.format("The encrypted value is too short for the algorithm %s.", algorithm));
+        }
+        return getAeadCipher(engine, algorithm, secretKey, Cipher.DECRYPT_MODE, encryptedValueBytes, headerLength);
     }
 
-    private static byte[] decrypt(final Algorithm algorithm, final SecretKey secretKey, final byte[] valueBytes) throws GeneralSecurityException {
-        Cipher cipher = Cipher.getInstance(algorithm.getKey());
-        cipher.init(Cipher.DECRYPT_MODE, secretKey);
-        return cipher.doFinal(valueBytes);
+    /**
+     * @return the cipher initialized with the nonce after the header, and with the header (envelope version or compact header) as additional
+     *         authenticated data.
+     */
+    private static Cipher getAeadCipher(final CipherEngine engine, final Algorithm algorithm, final SecretKey secretKey, final int mode,
+            final byte[] bytes, final int headerLength) throws GeneralSecurityException {
+        final Cipher cipher = CipherCache.getCipher(engine, algorithm, secretKey, mode, nonceSpec(algorithm, bytes, headerLength));
+        try {
+            cipher.updateAAD(bytes, 0, headerLength);
+            return cipher;
+        } catch (RuntimeException e) {
+            CipherCache.evict(cipher);
+            throw e;
+        }
+    }
+
+    private static AlgorithmParameterSpec nonceSpec(final Algorithm algorithm, final byte[] bytes, final int offset) {
+        if (algorithm.getTransformation().contains("/GCM/")) {
+            return new GCMParameterSpec(TAG_LENGTH * Byte.SIZE, bytes, offset, algorithm.getNonceLength());
+        }
+        return new IvParameterSpec(bytes, offset, algorithm.getNonceLength());
+    }
+
+    private static byte[] doFinal(final Cipher cipher, final byte[] valueBytes) throws GeneralSecurityException {
+        try {
+            return cipher.doFinal(valueBytes);
+        } catch (GeneralSecurityException | RuntimeException e) {
+            CipherCache.evict(cipher);
+            throw e;
+        }
+    }
+
+    private static int doFinal(final Cipher cipher, final byte[] input, final int inputLength, final byte[] output, final int outputOffset)
+            throws GeneralSecurityException {
+        try {
+            return cipher.doFinal(input, 0, inputLength, output, outputOffset);
+        } catch (GeneralSecurityException | RuntimeException e) {
+            CipherCache.evict(cipher);
+            throw e;
+        }
+    }
+
+    private static void doFinal(final Cipher cipher, final ByteBuffer input, final ByteBuffer output) throws GeneralSecurityException {
+        try {
+            cipher.doFinal(input, output);
+        } catch (GeneralSecurityException | RuntimeException e) {
+            CipherCache.evict(cipher);
+            throw e;
+        }
+    }
+
+    /**
+     * The text format of the encrypted values of one batch: "prefix + base64 + }", where the bytes start with the header.
+     */
+    private static final class ValueFormat {
+        private final String prefix;
+        private final byte[] header;
+        private final Base64.Encoder encoder;
+
+        ValueFormat(final String prefix, final byte[] header, final Base64.Encoder encoder) {
+            this.prefix = prefix;
+            this.header = header;
+            this.encoder = encoder;
+        }
+
+        String toText(final byte[] encryptedValue) {
+            return prefix + encoder.encodeToString(encryptedValue) + "}";
+        }
+    }
+
+    /**
+     * The reused decryption buffers of one thread. Buffers for values larger than {@link #MAX_RETAINED_LENGTH} are not kept.
+     */
+    private static final class DecryptBuffers {
+        private static final int MAX_RETAINED_LENGTH = 64 * 1024;
+        private static final int MIN_LENGTH = 256;
+
+        private byte[] encrypted = new byte[MIN_LENGTH];
+        private byte[] decrypted = new byte[MIN_LENGTH];
+        private char[] chars = new char[MIN_LENGTH];
+        private final CharsetDecoder decoder = newUtf8Decoder();
+
+        byte[] encrypted(final int length) {
+            if (encrypted.length >= length) {
+                return encrypted;
+            }
+            final byte[] buffer = new byte[length];
+            if (length <= MAX_RETAINED_LENGTH) {
+                encrypted = buffer;
+            }
+            return buffer;
+        }
+
+        byte[] decrypted(final int length) {
+            if (decrypted.length >= length) {
+                return decrypted;
+            }
+            final byte[] buffer = new byte[length];
+            if (length <= MAX_RETAINED_LENGTH) {
+                decrypted = buffer;
+            }
+            return buffer;
+        }
+
+        /**
+         * Decodes the UTF-8 bytes: ASCII directly into the result, otherwise with the reused decoder into the reused char buffer, which is zeroed
+         * afterwards.
+         */
+        char[] decodeUtf8(final byte[] bytes, final int offset, final int length) {
+            final char[] ascii = new char[length];
+            int i = 0;
+            while (i < length && bytes[offset + i] >= 0) {
+                ascii[i] = (char) bytes[offset + i];
+                i++;
+            }
+            if (i == length) {
+                return ascii;
+            }
+            Arrays.fill(ascii, 0, i, '\0');
+
+            final char[] buffer = chars.length >= length ? chars : new char[length];
+            if (buffer.length <= MAX_RETAINED_LENGTH) {
+                chars = buffer;
+            }
+            final CharBuffer value = CharBuffer.wrap(buffer, 0, length);
+            try {
+                Encryption.decodeUtf8(decoder, ByteBuffer.wrap(bytes, offset, length), value);
+                return Arrays.copyOf(buffer, value.position());
+            } finally {
+                Arrays.fill(buffer, 0, value.position(), '\0');
+            }
+        }
+    }
+
+    private static CharsetDecoder newUtf8Decoder() {
+        return StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    /**
+     * Decodes all remaining bytes into the given chars (like {@link String#String(byte[], java.nio.charset.Charset)} with replacement of malformed
+     * input). The position of the chars is after the last decoded char.
+     */
+    private static void decodeUtf8(final CharsetDecoder decoder, final ByteBuffer bytes, final CharBuffer chars) {
+        decoder.reset();
+        decoder.decode(bytes, chars, true);
+        decoder.flush(chars);
+    }
+
+    /**
+     * The representation of a decrypted plain-text value: {@link #STRING}, {@link #CHARS} or {@link #BYTES}.
+     */
+    private abstract static class PlainText<T> {
+
+        static final PlainText<String> STRING = new PlainText<String>() {
+            @Override
+            String fromBytes(final byte[] bytes, final int offset, final int length, final DecryptBuffers buffers) {
+                return new String(bytes, offset, length, StandardCharsets.UTF_8);
+            }
+
+            @Override
+            String fromBuffer(final ByteBuffer bytes) {
+                final CharBuffer value = SecretBuffers.chars(bytes.remaining());
+                decodeUtf8(newUtf8Decoder(), bytes, value);
+                value.flip();
+                return value.toString();
+            }
+        };
+
+        static final PlainText<char[]> CHARS = new PlainText<char[]>() {
+            @Override
+            char[] fromBytes(final byte[] bytes, final int offset, final int length, final DecryptBuffers buffers) {
+                return buffers.decodeUtf8(bytes, offset, length);
+            }
+
+            @Override
+            char[] fromBuffer(final ByteBuffer bytes) {
+                final CharBuffer value = SecretBuffers.chars(bytes.remaining());
+                decodeUtf8(newUtf8Decoder(), bytes, value);
+                value.flip();
+                final char[] result = new char[value.remaining()];
+                value.get(result);
+                return result;
+            }
+        };
+
+        static final PlainText<byte[]> BYTES = new PlainText<byte[]>() {
+            @Override
+            byte[] fromBytes(final byte[] bytes, final int offset, final int length, final DecryptBuffers buffers) {
+                return Arrays.copyOfRange(bytes, offset, offset + length);
+            }
+
+            @Override
+            byte[] fromBuffer(final ByteBuffer bytes) {
+                final byte[] result = new byte[bytes.remaining()];
+                bytes.get(result);
+                return result;
+            }
+        };
+
+        /**
+         * @return the plain-text from the given region of a heap buffer.
+         */
+        abstract T fromBytes(byte[] bytes, int offset, int length, DecryptBuffers buffers);
+
+        /**
+         * @return the plain-text from the remaining bytes of an off-heap buffer, see {@link SecretBuffers}.
+         */
+        abstract T fromBuffer(ByteBuffer bytes);
     }
 }
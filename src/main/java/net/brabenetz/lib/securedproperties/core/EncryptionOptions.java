@@ -0,0 +1,123 @@
+/*-
+ * #%L
+ * Secured Properties
+ * ===============================================================
+ * Copyright (C) 2016 - 2026 Brabenetz Harald, Austria
+ * ===============================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package net.brabenetz.lib.securedproperties.core;
+
+import java.security.SecureRandom;
+
+/**
+ * The options of a {@link SecretContainer} for {@link Encryption}, see {@link SecretContainer#withOptions(EncryptionOptions)}. An option which is
+ * not set falls back to the JVM-wide default, so two configurations in the same JVM never change each other's options.
+ */
+public final class EncryptionOptions {
+
+    /** No option is set: the JVM-wide defaults are used. */
+    public static final EncryptionOptions DEFAULT = new EncryptionOptions(null, false, null);
+
+    private final String secureRandomStrategy;
+    private final boolean offHeapBuffers;
+    private final CipherEngine cipherEngine;
+
+    private EncryptionOptions(final String secureRandomStrategy, final boolean offHeapBuffers, final CipherEngine cipherEngine) {
+        this.secureRandomStrategy = secureRandomStrategy;
+        this.offHeapBuffers = offHeapBuffers;
+        this.cipherEngine = cipherEngine;
+    }
+
+    /**
+     * @param newSecureRandomStrategy
+     *        the {@link SecureRandom} algorithm for new keys, salts and nonces (see {@link SecureRandoms#getSecureRandom(String)}), or null for
+     *        the JVM-wide {@link SecureRandoms#setStrategy(String) strategy}.
+     * @return a copy of these options with the given strategy.
+     */
+    public EncryptionOptions withSecureRandomStrategy(final String newSecureRandomStrategy) {
+        return new EncryptionOptions(newSecureRandomStrategy, offHeapBuffers, cipherEngine);
+    }
+
+    /**
+     * @return the {@link SecureRandom} algorithm for new keys, salts and nonces, or null for the JVM-wide strategy.
+     */
+    public String getSecureRandomStrategy() {
+        return secureRandomStrategy;
+    }
+
+    /**
+     * @param newOffHeapBuffers
+     *        true to keep the plain-text values in zeroed off-heap buffers, see {@link SecretBuffers}. If false, the JVM-wide
+     *        {@link SecretBuffers#setEnabled(boolean) setting} applies.
+     * @return a copy of these options with the given flag.
+     */
+    public EncryptionOptions withOffHeapBuffers(final boolean newOffHeapBuffers) {
+        return new EncryptionOptions(secureRandomStrategy, newOffHeapBuffers, cipherEngine);
+    }
+
+    public boolean isOffHeapBuffers() {
+        return offHeapBuffers;
+    }
+
+    /**
+     * @return true if the plain-text values are kept in off-heap buffers, by these options or by the JVM-wide setting.
+     */
+    boolean useOffHeapBuffers() {
+        return offHeapBuffers || SecretBuffers.isEnabled();
+    }
+
+    /**
+     * @param newCipherEngine
+     *        the engine which creates the ciphers and new secret keys, or null for the JVM-wide {@link CipherEngines#getDefault() default}.
+     * @return a copy of these options with the given engine.
+     */
+    public EncryptionOptions withCipherEngine(final CipherEngine newCipherEngine) {
+        return new EncryptionOptions(secureRandomStrategy, offHeapBuffers, newCipherEngine);
+    }
+
+    /**
+     * @return the engine which creates the ciphers, or null for the JVM-wide default.
+     */
+    public CipherEngine getCipherEngine() {
+        return cipherEngine;
+    }
+
+    /**
+     * @return the engine of these options or the JVM-wide default.
+     */
+    CipherEngine resolveCipherEngine() {
+        return cipherEngine == null ? CipherEngines.getDefault() : cipherEngine;
+    }
+
+    /**
+     * @return the {@link SecureRandom} of these options for new keys, salts and nonces.
+     */
+    SecureRandom secureRandom() {
+        return secureRandomStrategy == null ? SecureRandoms.getSecureRandom() : SecureRandoms.getSecureRandom(secureRandomStrategy);
+    }
+
+    /**
+     * @return random bytes for salts and nonces.
+     */
+    byte[] nextBytes(final int length) {
+        return SecureRandoms.nextBytes(secureRandomStrategy, length);
+    }
+
+    @Override
+    public String toString() {
+        return "EncryptionOptions [secureRandomStrategy=" + secureRandomStrategy + ", offHeapBuffers=" + offHeapBuffers + ", cipherEngine="
+            + cipherEngine + "]";
+    }
+}
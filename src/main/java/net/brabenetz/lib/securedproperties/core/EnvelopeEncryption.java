@@ -0,0 +1,235 @@
+/*-
+ * #%L
+ * Secured Properties
+ * ===============================================================
+ * Copyright (C) 2016 - 2026 Brabenetz Harald, Austria
+ * ===============================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package net.brabenetz.lib.securedproperties.core;
+
+import com.github.fge.lambdas.Throwing;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.UnaryOperator;
+
+/**
+ * Envelope encryption: each property file gets its own random data key. The data key is wrapped (encrypted) by the secret key and stored in a
+ * header comment of the property file:
+ *
+ * <pre>
+ * # secured-properties-data-key: {k2:RXyq4t8O7nsn6bCd1V0aJ3pX0a9D1wYxZ8l2Nn2r1oE=}
+ * mySecretPassword = {wVtvW8lQrwCf8MA9sadwww==}
+ * </pre>
+ *
+ * The wrapped data key is an ordinary encrypted value of the data key line "ALGORITHM:base64-key" (like a key ring entry of the secret File), so it
+ * can carry a key-id and is unwrapped with the matching key of the key ring. The values of the property file are encrypted with the data key.
+ * <p>
+ * A rotation of the secret key only re-encrypts the wrapped data key of each property file instead of every value. The unwrapped data keys are
+ * cached per property file and only unwrapped again if the header of the property file or the key which unwraps it changes.
+ */
+public final class EnvelopeEncryption {
+
+    /** The prefix of the header comment with the wrapped data key. */
+    public static final String DATA_KEY_HEADER = "# secured-properties-data-key:";
+
+    private static final ConcurrentMap<Path, DataKeyEntry> DATA_KEYS = new ConcurrentHashMap<>();
+
+    private EnvelopeEncryption() {
+        super();
+    }
+
+    /**
+     * Reads the wrapped data key from the header comment of the given property file. Only the leading comment lines are read.
+     *
+     * @param propertyFile
+     *        the property file.
+     * @return the wrapped data key, or null if the property file has no data key header.
+     */
+    public static String readWrappedDataKey(final File propertyFile) {
+        return Throwing.supplier(() -> {
+            try (BufferedReader reader = Files.newBufferedReader(propertyFile.toPath(), StandardCharsets.ISO_8859_1)) {
+                return findWrappedDataKey(reader);
+            }
+        }).get();
+    }
+
+    /**
+     * Like {@link #readWrappedDataKey(File)} but from the content of a property file.
+     *
+     * @param propertyFileContent
+     *        the content of the property file.
+     * @return the wrapped data key, or null if the content has no data key header.
+     */
+    public static String findWrappedDataKey(final String propertyFileContent) {
+        return Throwing.supplier(() -> findWrappedDataKey(new BufferedReader(new StringReader(propertyFileContent)))).get();
+    }
+
+    private static String findWrappedDataKey(final BufferedReader reader) throws IOException {
+        String line = reader.readLine();
+        while (line != null) {
+            final String trimmedLine = line.trim();
+            if (trimmedLine.startsWith(DATA_KEY_HEADER)) {
+                return StringUtils.trimToNull(trimmedLine.substring(DATA_KEY_HEADER.length()));
+            }
+            if (!trimmedLine.isEmpty() && !trimmedLine.startsWith("#") && !trimmedLine.startsWith("!")) {
+                // the header is only searched before the first property.
+                return null;
+            }
+            line = reader.readLine();
+        }
+        return null;
+    }
+
+    /**
+     * @param wrappedDataKey
+     *        the wrapped data key.
+     * @return the header comment line for the given wrapped data key.
+     */
+    public static String toHeaderLine(final String wrappedDataKey) {
+        return DATA_KEY_HEADER + " " + wrappedDataKey;
+    }
+
+    /**
+     * Creates a new random data key.
+     *
+     * @param algorithm
+     *        the {@link Algorithm} of the data key.
+     * @return the data key.
+     */
+    public static SecretContainer createDataKey(final Algorithm algorithm) {
+        return createDataKey(algorithm, EncryptionOptions.DEFAULT);
+    }
+
+    /**
+     * Creates a new random data key with the {@link java.security.SecureRandom} of the given {@link EncryptionOptions}.
+     *
+     * @param algorithm
+     *        the {@link Algorithm} of the data key.
+     * @param options
+     *        the options of the configuration, which the data key also uses.
+     * @return the data key.
+     */
+    public static SecretContainer createDataKey(final Algorithm algorithm, final EncryptionOptions options) {
+        return new SecretContainer(algorithm, Encryption.createKey(algorithm, options)).withOptions(options);
+    }
+
+    /**
+     * @param dataKey
+     *        the data key.
+     * @return the plain-text data key line "ALGORITHM:base64-key" which must be encrypted with the secret key before it is stored.
+     */
+    public static String toDataKeyLine(final SecretContainer dataKey) {
+        return dataKey.getAlgorithm() + ":" + Encryption.toBase64String(dataKey.getSecretKey());
+    }
+
+    /**
+     * Returns the unwrapped data key of the given property file. The data key is only unwrapped if it is not already cached for the property file,
+     * wrapped data key and unwrapping key. So a replaced secret key must also be able to unwrap the data key before it is used again.
+     *
+     * @param propertyFile
+     *        the property file.
+     * @param wrappedDataKey
+     *        the wrapped data key from the header of the property file, see {@link #readWrappedDataKey(File)}.
+     * @param unwrappingKey
+     *        the key which unwraps the data key, e.g. the {@link SecretContainer} with the secret key. It is compared by identity with the
+     *        unwrapping key of the cached data key.
+     * @param unwrap
+     *        decrypts the wrapped data key with the secret key, e.g. <code>value -&gt; Encryption.decrypt(secretContainer, saltLength, value)</code>.
+     * @param allowedAlgorithms
+     *        A list of allowed {@link Algorithm}s of the data key.
+     * @return the data key.
+     */
+    public static SecretContainer getDataKey(final File propertyFile, final String wrappedDataKey, final Object unwrappingKey,
+            final UnaryOperator<String> unwrap, final Algorithm... allowedAlgorithms) {
+        Validate.notNull(unwrappingKey, "The unwrapping key is required");
+        final Path path = toPath(propertyFile);
+        final DataKeyEntry entry = DATA_KEYS.get(path);
+        if (entry != null && entry.unwrappingKey == unwrappingKey && entry.wrappedDataKey.equals(wrappedDataKey)) {
+            return entry.dataKey;
+        }
+        final SecretContainer dataKey = readDataKeyLine(unwrap.apply(wrappedDataKey), allowedAlgorithms);
+        DATA_KEYS.put(path, new DataKeyEntry(wrappedDataKey, unwrappingKey, dataKey));
+        return dataKey;
+    }
+
+    /**
+     * Caches a new data key which was just written into the header of the given property file, so it doesn't need to be unwrapped again.
+     *
+     * @param propertyFile
+     *        the property file.
+     * @param wrappedDataKey
+     *        the wrapped data key in the header of the property file.
+     * @param unwrappingKey
+     *        the key which wrapped the data key, see {@link #getDataKey(File, String, Object, UnaryOperator, Algorithm...)}.
+     * @param dataKey
+     *        the data key.
+     */
+    public static void putDataKey(final File propertyFile, final String wrappedDataKey, final Object unwrappingKey, final SecretContainer dataKey) {
+        Validate.notNull(unwrappingKey, "The unwrapping key is required");
+        DATA_KEYS.put(toPath(propertyFile), new DataKeyEntry(wrappedDataKey, unwrappingKey, dataKey));
+    }
+
+    /**
+     * Removes the cached data key of the given property file.
+     */
+    public static void invalidate(final File propertyFile) {
+        DATA_KEYS.remove(toPath(propertyFile));
+    }
+
+    /**
+     * Removes all cached data keys.
+     */
+    public static void clear() {
+        DATA_KEYS.clear();
+    }
+
+    private static SecretContainer readDataKeyLine(final String dataKeyLine, final Algorithm... allowedAlgorithms) {
+        final String algorithmStr = StringUtils.substringBefore(dataKeyLine, ":");
+        final Algorithm algorithm = SecretContainerStore.parseAlgorithm(allowedAlgorithms, algorithmStr);
+        Validate.isTrue(algorithm != null, "Unable to parse algorithm '%s' of the data key. Allowed algorithms are: %s",
+            algorithmStr, Arrays.asList(allowedAlgorithms));
+        return new SecretContainer(algorithm, Encryption.readSecretKey(algorithm, StringUtils.substringAfter(dataKeyLine, ":")));
+    }
+
+    private static Path toPath(final File propertyFile) {
+        return propertyFile.toPath().toAbsolutePath().normalize();
+    }
+
+    /**
+     * A cached data key with the wrapped data key and the unwrapping key it was unwrapped from.
+     */
+    private static final class DataKeyEntry {
+        private final String wrappedDataKey;
+        private final Object unwrappingKey;
+        private final SecretContainer dataKey;
+
+        DataKeyEntry(final String wrappedDataKey, final Object unwrappingKey, final SecretContainer dataKey) {
+            this.wrappedDataKey = wrappedDataKey;
+            this.unwrappingKey = unwrappingKey;
+            this.dataKey = dataKey;
+        }
+    }
+}
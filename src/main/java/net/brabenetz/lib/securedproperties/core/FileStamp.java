@@ -0,0 +1,79 @@
+/*-
+ * #%L
+ * Secured Properties
+ * ===============================================================
+ * Copyright (C) 2016 - 2026 Brabenetz Harald, Austria
+ * ===============================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package net.brabenetz.lib.securedproperties.core;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Objects;
+
+/**
+ * The cheap to read attributes of a file: last-modified time, size and file-key (e.g. device and inode).
+ */
+final class FileStamp {
+
+    private static final org.slf4j.Logger LOG = org.slf4j.LoggerFactory.getLogger(FileStamp.class);
+
+    private final FileTime lastModifiedTime;
+    private final long size;
+    private final Object fileKey;
+
+    private FileStamp(final BasicFileAttributes attributes) {
+        this.lastModifiedTime = attributes.lastModifiedTime();
+        this.size = attributes.size();
+        this.fileKey = attributes.fileKey();
+    }
+
+    /**
+     * @return the {@link FileStamp} of the given file, or null if the file doesn't exist (or is not readable).
+     */
+    static FileStamp of(final Path path) {
+        try {
+            return new FileStamp(Files.readAttributes(path, BasicFileAttributes.class));
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            LOG.debug("Unable to read the attributes of '{}': {}", path, e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof FileStamp)) {
+            return false;
+        }
+        final FileStamp other = (FileStamp) obj;
+        return size == other.size
+            && lastModifiedTime.equals(other.lastModifiedTime)
+            && Objects.equals(fileKey, other.fileKey);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(lastModifiedTime, size, fileKey);
+    }
+}
@@ -0,0 +1,274 @@
+/*-
+ * #%L
+ * Secured Properties
+ * ===============================================================
+ * Copyright (C) 2016 - 2026 Brabenetz Harald, Austria
+ * ===============================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package net.brabenetz.lib.securedproperties.core;
+
+import net.brabenetz.lib.securedproperties.core.KeyAgentProtocol.Frame;
+import net.brabenetz.lib.securedproperties.core.KeyAgentProtocol.FrameReader;
+import org.apache.commons.lang3.Validate;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Client of a {@link KeyAgentServer}: encrypts and decrypts values with the secret key of the agent, without reading the secret key in this JVM.
+ * <p>
+ * A client is thread-safe and keeps one connection. Requests are pipelined: the asynchronous methods send the request and return immediately,
+ * and requests of concurrent threads are written together. A list of values is sent as one batch.
+ */
+public final class KeyAgentClient implements Closeable {
+
+    private static final org.slf4j.Logger LOG = org.slf4j.LoggerFactory.getLogger(KeyAgentClient.class);
+
+    private static final long TIMEOUT_SECONDS = 30;
+    private static final ConcurrentMap<Path, KeyAgentClient> SHARED_CLIENTS = new ConcurrentHashMap<>();
+
+    private final Path socketPath;
+    private final SocketChannel channel;
+    private final AtomicInteger nextRequestId = new AtomicInteger();
+    private final ConcurrentMap<Integer, CompletableFuture<List<String>>> pendingRequests = new ConcurrentHashMap<>();
+    private final Queue<ByteBuffer> pendingWrites = new ConcurrentLinkedQueue<>();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private volatile IOException failure;
+
+    private KeyAgentClient(final Path socketPath, final SocketChannel channel) {
+        this.socketPath = socketPath;
+        this.channel = channel;
+    }
+
+    /**
+     * Connects to the {@link KeyAgentServer} on the given socket path.
+     *
+     * @param socketPath
+     *        The path of the Unix domain socket of the key agent.
+     * @return the connected {@link KeyAgentClient}.
+     */
+    public static KeyAgentClient connect(final Path socketPath) {
+        Validate.notNull(socketPath, "The socket path is required");
+        try {
+            final SocketChannel channel = UnixDomainSockets.openChannel();
+            try {
+                channel.connect(UnixDomainSockets.address(socketPath));
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+            final KeyAgentClient client = new KeyAgentClient(socketPath, channel);
+            final Thread reader = new Thread(client::readResponses, "secured-properties-key-agent-client");
+            reader.setDaemon(true);
+            reader.start();
+            return client;
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("The key agent on '%s' is not available: %s", socketPath, e.getMessage()), e);
+        }
+    }
+
+    /**
+     * Returns the connection to the key agent on the given socket path which is shared in this JVM, and reconnects if the previous connection
+     * was lost.
+     *
+     * @param socketPath
+     *        The path of the Unix domain socket of the key agent.
+     * @return the shared {@link KeyAgentClient}.
+     */
+    public static KeyAgentClient getShared(final Path socketPath) {
+        final Path key = socketPath.toAbsolutePath().normalize();
+        final KeyAgentClient client = SHARED_CLIENTS.get(key);
+        if (client != null && client.isOpen()) {
+            return client;
+        }
+        return SHARED_CLIENTS.compute(key, (path, oldClient) -> oldClient != null && oldClient.isOpen() ? oldClient : connect(path));
+    }
+
+    public Path getSocketPath() {
+        return socketPath;
+    }
+
+    /**
+     * @return false if the connection to the key agent is closed or lost.
+     */
+    public boolean isOpen() {
+        return failure == null && channel.isOpen();
+    }
+
+    public String encrypt(final int saltLength, final String plainTextValue) {
+        return encryptAll(saltLength, Collections.singletonList(plainTextValue)).get(0);
+    }
+
+    public String decrypt(final int saltLength, final String encryptedValue) {
+        return decryptAll(saltLength, Collections.singletonList(encryptedValue)).get(0);
+    }
+
+    /**
+     * Encrypts all given values with one request.
+     *
+     * @return the encrypted values in the order of the given values.
+     */
+    public List<String> encryptAll(final int saltLength, final List<String> plainTextValues) {
+        return await(encryptAllAsync(saltLength, plainTextValues));
+    }
+
+    /**
+     * Decrypts all given values with one request.
+     *
+     * @return the decrypted values in the order of the given values.
+     */
+    public List<String> decryptAll(final int saltLength, final List<String> encryptedValues) {
+        return await(decryptAllAsync(saltLength, encryptedValues));
+    }
+
+    public CompletableFuture<List<String>> encryptAllAsync(final int saltLength, final List<String> plainTextValues) {
+        return send(KeyAgentProtocol.TYPE_ENCRYPT, saltLength, plainTextValues);
+    }
+
+    public CompletableFuture<List<String>> decryptAllAsync(final int saltLength, final List<String> encryptedValues) {
+        return send(KeyAgentProtocol.TYPE_DECRYPT, saltLength, encryptedValues);
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOG.debug("Close failed: {}", e.getMessage());
+        }
+    }
+
+    private CompletableFuture<List<String>> send(final byte type, final int saltLength, final List<String> values) {
+        final int requestId = nextRequestId.incrementAndGet();
+        final CompletableFuture<List<String>> response = new CompletableFuture<>();
+        final ByteBuffer request = KeyAgentProtocol.encode(new Frame(requestId, type, saltLength, values));
+        pendingRequests.put(requestId, response);
+        if (failure != null) {
+            failPendingRequests(failure);
+            return response;
+        }
+        pendingWrites.add(request);
+        flushPendingWrites();
+        return response;
+    }
+
+    /**
+     * Writes all queued requests with one write call. If another thread is already writing, it will also write the request of this thread.
+     */
+    private void flushPendingWrites() {
+        while (!pendingWrites.isEmpty() && writeLock.tryLock()) {
+            try {
+                final List<ByteBuffer> buffers = new ArrayList<>();
+                for (ByteBuffer buffer = pendingWrites.poll(); buffer != null; buffer = pendingWrites.poll()) {
+                    buffers.add(buffer);
+                }
+                final ByteBuffer[] requests = buffers.toArray(new ByteBuffer[buffers.size()]);
+                while (requests.length > 0 && requests[requests.length - 1].hasRemaining()) {
+                    channel.write(requests);
+                }
+            } catch (IOException e) {
+                fail(e);
+            } finally {
+                writeLock.unlock();
+            }
+        }
+    }
+
+    private void readResponses() {
+        try {
+            final FrameReader reader = new FrameReader(channel);
+            List<Frame> responses = reader.read();
+            while (!responses.isEmpty()) {
+                for (Frame response : responses) {
+                    complete(response);
+                }
+                responses = reader.read();
+            }
+            fail(new IOException("The key agent closed the connection."));
+        } catch (IOException e) {
+            fail(e);
+        } catch (RuntimeException e) {
+            // without the reader thread no request would ever be answered, so the connection is failed instead.
+            fail(new IOException("Invalid response of the key agent: " + e.getMessage(), e));
+        }
+    }
+
+    private void complete(final Frame response) {
+        final CompletableFuture<List<String>> request = pendingRequests.remove(response.getRequestId());
+        if (request == null) {
+            LOG.warn("Unexpected response from key agent '{}' with request-id {}", socketPath, response.getRequestId());
+        } else if (response.getType() == KeyAgentProtocol.TYPE_OK) {
+            request.complete(response.getValues());
+        } else if (response.getValues().isEmpty()) {
+            request.completeExceptionally(new IllegalArgumentException("The key agent rejected the request without a message."));
+        } else {
+            request.completeExceptionally(new IllegalArgumentException(response.getValues().get(0)));
+        }
+    }
+
+    private void fail(final IOException exception) {
+        if (failure == null) {
+            failure = exception;
+        }
+        close();
+        failPendingRequests(failure);
+    }
+
+    private void failPendingRequests(final IOException exception) {
+        for (Integer requestId : pendingRequests.keySet()) {
+            final CompletableFuture<List<String>> request = pendingRequests.remove(requestId);
+            if (request != null) {
+                request.completeExceptionally(new UncheckedIOException(
+                    String.format("The key agent on '%s' is not available: %s", socketPath, exception.getMessage()), exception));
+            }
+        }
+    }
+
+    private List<String> await(final CompletableFuture<List<String>> response) {
+        try {
+            return response.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause().getMessage(), e.getCause());
+        } catch (TimeoutException e) {
+            // a late response is ignored like any unknown request-id.
+            pendingRequests.values().remove(response);
+            throw new IllegalStateException(String.format("The key agent on '%s' didn't answer within %s seconds.", socketPath, TIMEOUT_SECONDS), e);
+        } catch (InterruptedException e) {
+            pendingRequests.values().remove(response);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the key agent.", e);
+        }
+    }
+}
@@ -0,0 +1,230 @@
+/*-
+ * #%L
+ * Secured Properties
+ * ===============================================================
+ * Copyright (C) 2016 - 2026 Brabenetz Harald, Austria
+ * ===============================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package net.brabenetz.lib.securedproperties.core;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The binary framing between {@link KeyAgentServer} and {@link KeyAgentClient}.
+ * <p>
+ * Every request and every response is one frame, and one frame can carry many values (batching):
+ *
+ * <pre>
+ * int    frame length (without these 4 bytes)
+ * int    request-id (a response has the id of its request)
+ * byte   type: ENCRYPT / DECRYPT for requests, OK / ERROR for responses
+ * int    salt length (requests only, 0 in responses)
+ * int    value count
+ * value count times:
+ *   int    value length
+ *   byte[] UTF-8 value
+ * </pre>
+ *
+ * A client doesn't wait for a response before it sends the next request (pipelining), and the server writes the responses of all requests it has
+ * read together.
+ */
+final class KeyAgentProtocol {
+
+    static final byte TYPE_ENCRYPT = 1;
+    static final byte TYPE_DECRYPT = 2;
+    static final byte TYPE_OK = 3;
+    static final byte TYPE_ERROR = 4;
+
+    /** The maximum length of a frame, protects against corrupted length fields. */
+    static final int MAX_FRAME_LENGTH = 16 * 1024 * 1024;
+    /**
+     * The maximum salt length of a request. The agent allocates the salts of all values of a batch at once, so the salts of a batch are also
+     * limited to {@link #MAX_FRAME_LENGTH}.
+     */
+    static final int MAX_SALT_LENGTH = 1024;
+
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+    private static final int HEADER_LENGTH = 4 + 4 + 1 + 4 + 4;
+
+    private KeyAgentProtocol() {
+        super();
+    }
+
+    /**
+     * One decoded frame.
+     */
+    static final class Frame {
+        private final int requestId;
+        private final byte type;
+        private final int saltLength;
+        private final List<String> values;
+
+        Frame(final int requestId, final byte type, final int saltLength, final List<String> values) {
+            this.requestId = requestId;
+            this.type = type;
+            this.saltLength = saltLength;
+            this.values = values;
+        }
+
+        int getRequestId() {
+            return requestId;
+        }
+
+        byte getType() {
+            return type;
+        }
+
+        int getSaltLength() {
+            return saltLength;
+        }
+
+        List<String> getValues() {
+            return values;
+        }
+    }
+
+    static ByteBuffer encode(final Frame frame) {
+        if (!isValidSaltLength(frame.getSaltLength(), frame.getValues().size())) {
+            throw new IllegalArgumentException(String.format("The salt length %s is too large for %s values (max %s per value, %s per frame)",
+                frame.getSaltLength(), frame.getValues().size(), MAX_SALT_LENGTH, MAX_FRAME_LENGTH));
+        }
+        final List<byte[]> encodedValues = new ArrayList<>(frame.getValues().size());
+        int length = HEADER_LENGTH;
+        for (String value : frame.getValues()) {
+            final byte[] encodedValue = value.getBytes(StandardCharsets.UTF_8);
+            encodedValues.add(encodedValue);
+            length += 4 + encodedValue.length;
+        }
+        if (length - 4 > MAX_FRAME_LENGTH) {
+            throw new IllegalArgumentException(String.format("The frame is too large: %s bytes (max %s)", length - 4, MAX_FRAME_LENGTH));
+        }
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+        buffer.putInt(length - 4).putInt(frame.getRequestId()).put(frame.getType()).putInt(frame.getSaltLength()).putInt(encodedValues.size());
+        for (byte[] encodedValue : encodedValues) {
+            buffer.putInt(encodedValue.length).put(encodedValue);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * @return true if the salt length is at most {@link #MAX_SALT_LENGTH} and the salts of all values fit into one frame.
+     */
+    private static boolean isValidSaltLength(final int saltLength, final int count) {
+        return saltLength >= 0 && saltLength <= MAX_SALT_LENGTH && (long) saltLength * count <= MAX_FRAME_LENGTH;
+    }
+
+    /**
+     * Reads frames from a blocking channel, and returns all frames which are completely received with one read call.
+     */
+    static final class FrameReader {
+        private final ByteChannel channel;
+        private ByteBuffer buffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+
+        FrameReader(final ByteChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * Blocks until at least one frame is completely received.
+         *
+         * @return all complete frames, or an empty list if the channel was closed by the other side between two frames.
+         * @throws IOException
+         *         if the channel failed or was closed in the middle of a frame.
+         */
+        List<Frame> read() throws IOException {
+            while (true) {
+                final List<Frame> frames = decodeCompleteFrames();
+                if (!frames.isEmpty()) {
+                    return frames;
+                }
+                if (channel.read(buffer) < 0) {
+                    if (buffer.position() == 0) {
+                        return Collections.emptyList();
+                    }
+                    throw new EOFException("The key agent connection was closed in the middle of a frame.");
+                }
+            }
+        }
+
+        private List<Frame> decodeCompleteFrames() throws IOException {
+            buffer.flip();
+            final List<Frame> frames = new ArrayList<>();
+            while (buffer.remaining() >= 4) {
+                final int frameLength = buffer.getInt(buffer.position());
+                if (frameLength < HEADER_LENGTH - 4 || frameLength > MAX_FRAME_LENGTH) {
+                    throw new IOException("Invalid key agent frame length: " + frameLength);
+                }
+                if (buffer.remaining() < 4 + frameLength) {
+                    ensureCapacity(4 + frameLength);
+                    break;
+                }
+                buffer.getInt();
+                final ByteBuffer frameBuffer = buffer.slice();
+                frameBuffer.limit(frameLength);
+                buffer.position(buffer.position() + frameLength);
+                frames.add(decode(frameBuffer));
+            }
+            buffer.compact();
+            return frames;
+        }
+
+        private void ensureCapacity(final int frameLength) {
+            if (buffer.capacity() < frameLength) {
+                final ByteBuffer newBuffer = ByteBuffer.allocate(frameLength);
+                newBuffer.put(buffer);
+                newBuffer.flip();
+                buffer = newBuffer;
+            }
+        }
+
+        /**
+         * Decodes one frame from a buffer which is limited to the frame length, so corrupted counts and lengths can't read beyond the frame.
+         */
+        private static Frame decode(final ByteBuffer frameBuffer) throws IOException {
+            final int requestId = frameBuffer.getInt();
+            final byte type = frameBuffer.get();
+            final int saltLength = frameBuffer.getInt();
+            validate(saltLength >= 0 && saltLength <= MAX_SALT_LENGTH, "salt length", saltLength);
+            final int count = frameBuffer.getInt();
+            // each value needs at least its length field.
+            validate(count >= 0 && count <= frameBuffer.remaining() / 4, "value count", count);
+            validate(isValidSaltLength(saltLength, count), "salt length", saltLength);
+            final List<String> values = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                final int valueLength = frameBuffer.getInt();
+                validate(valueLength >= 0 && valueLength <= frameBuffer.remaining(), "value length", valueLength);
+                final byte[] value = new byte[valueLength];
+                frameBuffer.get(value);
+                values.add(new String(value, StandardCharsets.UTF_8));
+            }
+            validate(!frameBuffer.hasRemaining(), "number of trailing bytes", frameBuffer.remaining());
+            return new Frame(requestId, type, saltLength, values);
+        }
+
+        private static void validate(final boolean valid, final String field, final int value) throws IOException {
+            if (!valid) {
+                throw new IOException(String.format("Invalid key agent frame %s: %s", field, value));
+            }
+        }
+    }
+}
@@ -0,0 +1,293 @@
+/*-
+ * #%L
+ * Secured Properties
+ * ===============================================================
+ * Copyright (C) 2016 - 2026 Brabenetz Harald, Austria
+ * ===============================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package net.brabenetz.lib.securedproperties.core;
+
+import net.brabenetz.lib.securedproperties.core.KeyAgentProtocol.Frame;
+import net.brabenetz.lib.securedproperties.core.KeyAgentProtocol.FrameReader;
+import org.apache.commons.lang3.Validate;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A local key agent: loads the {@link SecretContainer} once and serves encrypt and decrypt requests of many JVMs on the same node over a Unix
+ * domain socket (requires Java 16+). The secret key stays in the agent process, the JVMs use a {@link KeyAgentClient}.
+ * <p>
+ * The agent can be started as its own process:
+ *
+ * <pre>
+ * java -cp secured-properties.jar:... net.brabenetz.lib.securedproperties.core.KeyAgentServer /run/secured-properties/agent.sock file:/etc/app.key
+ * </pre>
+ *
+ * The second argument is a {@link SecretContainerSources#parse(String) secret container source definition}. The socket File is restricted to the
+ * owner before it is linked to the socket path, but it should also be placed in a directory which is only accessible by the users of the agent.
+ */
+public final class KeyAgentServer implements Closeable {
+
+    private static final org.slf4j.Logger LOG = org.slf4j.LoggerFactory.getLogger(KeyAgentServer.class);
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    private final Path socketPath;
+    private final SecretContainerSource source;
+    private final Algorithm[] allowedAlgorithm;
+    private final ServerSocketChannel serverChannel;
+    private final Set<SocketChannel> connections = ConcurrentHashMap.newKeySet();
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        final Thread thread = new Thread(runnable, "secured-properties-key-agent-" + THREAD_COUNT.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final CountDownLatch closed = new CountDownLatch(1);
+    private final LongAdder frameCount = new LongAdder();
+    private final LongAdder valueCount = new LongAdder();
+
+    private KeyAgentServer(final Path socketPath, final SecretContainerSource source, final Algorithm[] allowedAlgorithm,
+            final ServerSocketChannel serverChannel) {
+        this.socketPath = socketPath;
+        this.source = source;
+        this.allowedAlgorithm = allowedAlgorithm.clone();
+        this.serverChannel = serverChannel;
+    }
+
+    /**
+     * Starts the key agent on the given socket path. The {@link SecretContainer} is loaded before this method returns, so a missing or invalid
+     * secret key fails immediately.
+     *
+     * @param socketPath
+     *        The path of the Unix domain socket. A stale socket File (without running agent) is replaced.
+     * @param source
+     *        The {@link SecretContainerSource} with the secret key.
+     * @param allowedAlgorithm
+     *        A list of allowed {@link Algorithm}s.
+     * @return the running {@link KeyAgentServer}.
+     */
+    public static KeyAgentServer start(final Path socketPath, final SecretContainerSource source, final Algorithm... allowedAlgorithm) {
+        Validate.notNull(socketPath, "The socket path is required");
+        Validate.notNull(source, "The SecretContainerSource is required");
+        SecretContainerCache.getSecretContainer(source, allowedAlgorithm);
+        try {
+            removeStaleSocket(socketPath);
+            final ServerSocketChannel serverChannel = UnixDomainSockets.openServerChannel();
+            bindRestrictedToOwner(serverChannel, socketPath);
+            final KeyAgentServer server = new KeyAgentServer(socketPath, source, allowedAlgorithm, serverChannel);
+            server.executor.execute(server::acceptConnections);
+            LOG.info("Key agent is listening on '{}'.", socketPath);
+            return server;
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("The key agent could not be started on '%s': %s", socketPath, e.getMessage()), e);
+        }
+    }
+
+    /**
+     * @return true if the running JVM supports Unix domain sockets (Java 16+), which are required for the key agent and the {@link KeyAgentClient}.
+     */
+    public static boolean isSupported() {
+        return UnixDomainSockets.isSupported();
+    }
+
+    /**
+     * Starts the key agent and runs until the JVM is stopped.
+     *
+     * @param args
+     *        The socket path and the {@link SecretContainerSources#parse(String) secret container source definition}.
+     */
+    public static void main(final String[] args) throws InterruptedException {
+        Validate.isTrue(args.length == 2, "Usage: KeyAgentServer <socket-path> <secret-container-source>");
+        final KeyAgentServer server = start(Paths.get(args[0]), SecretContainerSources.parse(args[1]), SupportedAlgorithm.values());
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close, "secured-properties-key-agent-shutdown"));
+        server.awaitClose();
+    }
+
+    public Path getSocketPath() {
+        return socketPath;
+    }
+
+    /**
+     * @return the number of request frames handled so far. A batch of values is one frame.
+     */
+    public long getFrameCount() {
+        return frameCount.sum();
+    }
+
+    /**
+     * @return the number of values encrypted or decrypted so far.
+     */
+    public long getValueCount() {
+        return valueCount.sum();
+    }
+
+    /**
+     * Waits until the key agent is closed.
+     */
+    public void awaitClose() throws InterruptedException {
+        closed.await();
+    }
+
+    /**
+     * Stops the key agent, closes all client connections and removes the socket File.
+     */
+    @Override
+    public void close() {
+        if (closed.getCount() == 0) {
+            return;
+        }
+        closed.countDown();
+        closeQuietly(serverChannel);
+        connections.forEach(KeyAgentServer::closeQuietly);
+        executor.shutdownNow();
+        try {
+            Files.deleteIfExists(socketPath);
+        } catch (IOException e) {
+            LOG.warn("The socket File '{}' could not be removed: {}", socketPath, e.getMessage());
+        }
+        LOG.info("Key agent on '{}' is stopped.", socketPath);
+    }
+
+    private void acceptConnections() {
+        while (closed.getCount() > 0) {
+            try {
+                final SocketChannel connection = serverChannel.accept();
+                connections.add(connection);
+                executor.execute(() -> serve(connection));
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                LOG.warn("Key agent connection could not be accepted: {}", e.getMessage());
+            }
+        }
+    }
+
+    // SuppressWarnings "PMD.AvoidCatchingGenericException": a broken connection must not stop the key agent.
+    @SuppressWarnings("PMD.AvoidCatchingGenericException")
+    private void serve(final SocketChannel connection) {
+        try (SocketChannel channel = connection) {
+            final FrameReader reader = new FrameReader(channel);
+            List<Frame> requests = reader.read();
+            while (!requests.isEmpty()) {
+                final List<ByteBuffer> responses = new ArrayList<>(requests.size());
+                for (Frame request : requests) {
+                    responses.add(KeyAgentProtocol.encode(handle(request)));
+                }
+                final ByteBuffer[] buffers = responses.toArray(new ByteBuffer[responses.size()]);
+                while (buffers[buffers.length - 1].hasRemaining()) {
+                    channel.write(buffers);
+                }
+                requests = reader.read();
+            }
+        } catch (IOException | RuntimeException e) {
+            if (closed.getCount() > 0) {
+                LOG.warn("Key agent connection failed: {}", e.getMessage());
+            }
+        } finally {
+            connections.remove(connection);
+        }
+    }
+
+    // SuppressWarnings "PMD.AvoidCatchingGenericException": every failure is reported to the client instead.
+    @SuppressWarnings("PMD.AvoidCatchingGenericException")
+    private Frame handle(final Frame request) {
+        frameCount.increment();
+        try {
+            final SecretContainer secretContainer = SecretContainerCache.getSecretContainer(source, allowedAlgorithm);
+            final List<String> results = new ArrayList<>(request.getValues().size());
+            for (String value : request.getValues()) {
+                if (request.getType() == KeyAgentProtocol.TYPE_ENCRYPT) {
+                    results.add(Encryption.encrypt(secretContainer, request.getSaltLength(), value));
+                } else if (request.getType() == KeyAgentProtocol.TYPE_DECRYPT) {
+                    results.add(Encryption.decrypt(secretContainer, request.getSaltLength(), value));
+                } else {
+                    throw new IllegalArgumentException("Unknown key agent request type: " + request.getType());
+                }
+            }
+            valueCount.add(results.size());
+            return new Frame(request.getRequestId(), KeyAgentProtocol.TYPE_OK, 0, results);
+        } catch (RuntimeException e) {
+            final String message = e.getMessage() == null ? e.getClass().getName() : e.getMessage();
+            return new Frame(request.getRequestId(), KeyAgentProtocol.TYPE_ERROR, 0, Collections.singletonList(message));
+        }
+    }
+
+    private static void removeStaleSocket(final Path socketPath) throws IOException {
+        if (!Files.exists(socketPath)) {
+            return;
+        }
+        try (SocketChannel probe = UnixDomainSockets.openChannel()) {
+            probe.connect(UnixDomainSockets.address(socketPath));
+            throw new IllegalStateException(String.format("A key agent is already running on '%s'.", socketPath));
+        } catch (IOException e) {
+            LOG.info("Remove stale key agent socket '{}'.", socketPath);
+            Files.delete(socketPath);
+        }
+    }
+
+    /**
+     * Binds the socket in a new directory which is only accessible by the owner, restricts the socket File to the owner and links it to the
+     * given socket path afterwards. So no other user can connect between the bind and the restriction of the permissions.
+     */
+    private static void bindRestrictedToOwner(final ServerSocketChannel serverChannel, final Path socketPath) throws IOException {
+        final Path privateDirectory;
+        try {
+            privateDirectory = Files.createTempDirectory(socketPath.toAbsolutePath().getParent(), ".agent",
+                PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+        } catch (UnsupportedOperationException e) {
+            LOG.warn("The permissions of the socket File '{}' could not be restricted: {}", socketPath, e.getMessage());
+            serverChannel.bind(UnixDomainSockets.address(socketPath));
+            return;
+        }
+        final Path privateSocketPath = privateDirectory.resolve(socketPath.getFileName());
+        try {
+            serverChannel.bind(UnixDomainSockets.address(privateSocketPath));
+            Files.setPosixFilePermissions(privateSocketPath, PosixFilePermissions.fromString("rw-------"));
+            // fails if another agent has created the socket path in the meantime.
+            Files.createLink(socketPath, privateSocketPath);
+        } finally {
+            Files.deleteIfExists(privateSocketPath);
+            Files.delete(privateDirectory);
+        }
+    }
+
+    private static void closeQuietly(final Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            LOG.debug("Close failed: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,337 @@
+/*-
+ * #%L
+ * Secured Properties
+ * ===============================================================
+ * Copyright (C) 2016 - 2026 Brabenetz Harald, Austria
+ * ===============================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package net.brabenetz.lib.securedproperties.core;
+
+import org.apache.commons.lang3.Validate;
+
+import javax.crypto.SecretKey;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyStore;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * {@link SecretContainerSource} which reads the secret keys from a PKCS12 or JCEKS {@link KeyStore} instead of a secret File.
+ * <p>
+ * The secret key entry with the alias {@value #DEFAULT_ALIAS} (see {@link #withAlias(String)}) is used for all encrypted values without a key-id
+ * "{...}". All other secret key entries form the key ring with their alias as key-id (PKCS12 stores the aliases in lower case), and
+ * {@link #withPrimaryAlias(String)} defines the key for new encryptions. The {@link Algorithm} of each key is determined by its JCE algorithm and
+ * key length.
+ * <p>
+ * Loading a {@link KeyStore} is expensive because of its integrity check and password based encryption, so it is loaded only once and kept in
+ * memory. The key ring entries are only decoded on first use. The {@link KeyStore} is loaded again if the attributes of the file change (checked at
+ * most once per revalidation interval); if the changed {@link KeyStore} can't be read the previous {@link SecretContainer} will still be used.
+ * <p>
+ * <b>Example:</b>
+ *
+ * <pre>
+ * config.withSecretContainerSource(new KeyStoreSecretContainerSource(new File("/etc/app/keys.p12"), password)
+ *         .withPrimaryAlias("k2"));
+ * </pre>
+ */
+public final class KeyStoreSecretContainerSource implements SecretContainerSource {
+
+    private static final org.slf4j.Logger LOG = org.slf4j.LoggerFactory.getLogger(KeyStoreSecretContainerSource.class);
+
+    /** The default alias of the secret key for values without key-id. */
+    public static final String DEFAULT_ALIAS = "secured-properties";
+    /** The default {@link KeyStore} type. */
+    public static final String DEFAULT_TYPE = "PKCS12";
+
+    private final File keyStoreFile;
+    private final char[] storePassword;
+    private final List<SecretContainerListener> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicInteger loadCount = new AtomicInteger();
+    private final AtomicInteger decodeCount = new AtomicInteger();
+    private final AtomicReference<LoadedKeyStore> loadedKeyStore = new AtomicReference<>();
+    private String type = DEFAULT_TYPE;
+    private char[] keyPassword;
+    private String alias = DEFAULT_ALIAS;
+    private String primaryAlias;
+    private long revalidationIntervalMillis;
+
+    /**
+     * @param keyStoreFile
+     *        The {@link KeyStore} File.
+     * @param storePassword
+     *        The password of the {@link KeyStore}, also used for the key entries if no {@link #withKeyPassword(char[])} is set.
+     */
+    public KeyStoreSecretContainerSource(final File keyStoreFile, final char[] storePassword) {
+        Validate.notNull(keyStoreFile, "The KeyStore File is required");
+        Validate.notNull(storePassword, "The KeyStore password is required");
+        this.keyStoreFile = keyStoreFile;
+        this.storePassword = storePassword.clone();
+    }
+
+    /**
+     * @param newType
+     *        The {@link KeyStore} type like "PKCS12" or "JCEKS". Default is {@value #DEFAULT_TYPE}.
+     * @return this for fluent style.
+     */
+    public KeyStoreSecretContainerSource withType(final String newType) {
+        type = newType;
+        return this;
+    }
+
+    /**
+     * @param newKeyPassword
+     *        The password of the key entries, if it differs from the password of the {@link KeyStore}.
+     * @return this for fluent style.
+     */
+    public KeyStoreSecretContainerSource withKeyPassword(final char[] newKeyPassword) {
+        keyPassword = newKeyPassword == null ? null : newKeyPassword.clone();
+        return this;
+    }
+
+    /**
+     * @param newAlias
+     *        The alias of the secret key for all encrypted values without a key-id. Default is {@value #DEFAULT_ALIAS}.
+     * @return this for fluent style.
+     */
+    public KeyStoreSecretContainerSource withAlias(final String newAlias) {
+        alias = newAlias;
+        return this;
+    }
+
+    /**
+     * @param newPrimaryAlias
+     *        The alias (key-id) of the secret key for new encryptions. Default is null: the key of {@link #withAlias(String)} without a key-id.
+     * @return this for fluent style.
+     */
+    public KeyStoreSecretContainerSource withPrimaryAlias(final String newPrimaryAlias) {
+        primaryAlias = newPrimaryAlias;
+        return this;
+    }
+
+    /**
+     * @param newRevalidationInterval
+     *        The minimum time in milliseconds between two checks if the {@link KeyStore} File has changed. Default is 0: the file attributes are
+     *        checked on every access, but the {@link KeyStore} is only loaded again if it has changed.
+     * @return this for fluent style.
+     */
+    public KeyStoreSecretContainerSource withRevalidationInterval(final long newRevalidationInterval) {
+        revalidationIntervalMillis = newRevalidationInterval;
+        return this;
+    }
+
+    public void addListener(final SecretContainerListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(final SecretContainerListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * @return how often the {@link KeyStore} File was loaded.
+     */
+    public int getLoadCount() {
+        return loadCount.get();
+    }
+
+    /**
+     * @return how many key entries were decoded.
+     */
+    public int getDecodeCount() {
+        return decodeCount.get();
+    }
+
+    @Override
+    public SecretContainer getSecretContainer(final Algorithm... allowedAlgorithm) {
+        final LoadedKeyStore current = loadedKeyStore.get();
+        if (current != null) {
+            if (System.nanoTime() - current.nextRevalidation < 0) {
+                return current.secretContainer;
+            }
+            if (Objects.equals(current.fileStamp, FileStamp.of(keyStoreFile.toPath()))) {
+                if (revalidationIntervalMillis > 0) {
+                    // a failed CAS means a concurrent reload, which must not be overwritten.
+                    loadedKeyStore.compareAndSet(current, current.withNextRevalidation(nextRevalidation()));
+                }
+                return current.secretContainer;
+            }
+        }
+        synchronized (this) {
+            final LoadedKeyStore oldKeyStore = loadedKeyStore.get();
+            final FileStamp fileStamp = FileStamp.of(keyStoreFile.toPath());
+            if (oldKeyStore == null) {
+                loadedKeyStore.set(load(fileStamp, allowedAlgorithm));
+            } else if (!Objects.equals(oldKeyStore.fileStamp, fileStamp)) {
+                reload(oldKeyStore, fileStamp, allowedAlgorithm);
+            }
+            return loadedKeyStore.get().secretContainer;
+        }
+    }
+
+    /**
+     * The {@link KeyStore} File can change, so the source is not immutable.
+     */
+    @Override
+    public boolean isImmutable() {
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return type + " KeyStore '" + keyStoreFile + "'";
+    }
+
+    // SuppressWarnings "PMD.AvoidCatchingGenericException": every failure must keep the last valid SecretContainer.
+    @SuppressWarnings("PMD.AvoidCatchingGenericException")
+    private void reload(final LoadedKeyStore oldKeyStore, final FileStamp fileStamp, final Algorithm... allowedAlgorithm) {
+        final LoadedKeyStore newKeyStore;
+        try {
+            newKeyStore = load(fileStamp, allowedAlgorithm);
+        } catch (RuntimeException e) {
+            LOG.warn("The changed {} could not be read. The previous secret key will be used: {}", this, e.getMessage());
+            // don't try again until the File changes again.
+            loadedKeyStore.set(new LoadedKeyStore(oldKeyStore.secretContainer, fileStamp, nextRevalidation()));
+            notifyListeners(listener -> listener.secretContainerReloadFailed(e));
+            return;
+        }
+        loadedKeyStore.set(newKeyStore);
+        LOG.info("The secret key from {} was reloaded.", this);
+        notifyListeners(listener -> listener.secretContainerChanged(oldKeyStore.secretContainer, newKeyStore.secretContainer));
+    }
+
+    private LoadedKeyStore load(final FileStamp fileStamp, final Algorithm... allowedAlgorithm) {
+        try {
+            Validate.isTrue(fileStamp != null, "The File doesn't exist.");
+            final KeyStore keyStore = KeyStore.getInstance(type);
+            try (InputStream input = Files.newInputStream(keyStoreFile.toPath())) {
+                keyStore.load(input, storePassword);
+            }
+            loadCount.incrementAndGet();
+
+            Validate.isTrue(keyStore.isKeyEntry(alias), "The secret key with the alias '%s' doesn't exist.", alias);
+            final SecretContainer legacyKey = decode(keyStore, alias, allowedAlgorithm);
+            final List<String> keyIds = new ArrayList<>();
+            for (String keyId : Collections.list(keyStore.aliases())) {
+                if (!keyId.equalsIgnoreCase(alias) && keyStore.isKeyEntry(keyId) && SecretContainer.KEY_ID_PATTERN.matcher(keyId).matches()) {
+                    keyIds.add(keyId);
+                }
+            }
+            final LazyKeyRing keyRing = new LazyKeyRing(keyIds, keyId -> decode(keyStore, keyId, allowedAlgorithm));
+            final SecretContainer secretContainer = new SecretContainer(legacyKey.getAlgorithm(), legacyKey.getSecretKey(), keyRing, primaryAlias);
+            return new LoadedKeyStore(secretContainer, fileStamp, nextRevalidation());
+        } catch (IOException | GeneralSecurityException | RuntimeException e) {
+            throw readFailed(e);
+        }
+    }
+
+    private SecretContainer decode(final KeyStore keyStore, final String keyAlias, final Algorithm... allowedAlgorithm) {
+        final Key key;
+        try {
+            // the KeyStore implementations are not documented to be thread-safe.
+            synchronized (keyStore) {
+                key = keyStore.getKey(keyAlias, keyPassword == null ? storePassword : keyPassword);
+            }
+        } catch (GeneralSecurityException e) {
+            throw readFailed(e);
+        }
+        Validate.isTrue(key instanceof SecretKey, "The entry with the alias '%s' is not a secret key.", keyAlias);
+        decodeCount.incrementAndGet();
+        final byte[] keyBytes = key.getEncoded();
+        try {
+            final Algorithm algorithm = toAlgorithm(keyAlias, key.getAlgorithm(), keyBytes.length * Byte.SIZE, allowedAlgorithm);
+            return new SecretContainer(algorithm, new DestroyableSecretKey(keyBytes, algorithm.getKey()));
+        } finally {
+            Arrays.fill(keyBytes, (byte) 0);
+        }
+    }
+
+    /**
+     * @return the allowed {@link Algorithm} with the same JCE algorithm and key size, or the first with the same JCE algorithm (the key size of
+     *         e.g. DESede includes parity bits).
+     */
+    private static Algorithm toAlgorithm(final String keyAlias, final String jceAlgorithm, final int keySize, final Algorithm... allowedAlgorithm) {
+        Algorithm sameJceAlgorithm = null;
+        for (Algorithm algorithm : allowedAlgorithm) {
+            if (algorithm.getKey().equalsIgnoreCase(jceAlgorithm)) {
+                if (algorithm.getSize() == keySize) {
+                    return algorithm;
+                }
+                if (sameJceAlgorithm == null) {
+                    sameJceAlgorithm = algorithm;
+                }
+            }
+        }
+        Validate.isTrue(sameJceAlgorithm != null, "The algorithm %s (%s bit) of the secret key '%s' is not allowed. Allowed algorithms are: %s",
+            jceAlgorithm, keySize, keyAlias, Arrays.asList(allowedAlgorithm));
+        return sameJceAlgorithm;
+    }
+
+    // SuppressWarnings "PMD.PreserveStackTrace": Stacktrace will be logged on debug level if really required.
+    @SuppressWarnings("PMD.PreserveStackTrace")
+    private IllegalArgumentException readFailed(final Exception e) {
+        final String errorMessage = String.format("The secret key could not be read from %s. %s", this, e.getMessage());
+        LOG.debug("{}", errorMessage, e);
+        return new IllegalArgumentException(errorMessage);
+    }
+
+    private long nextRevalidation() {
+        return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(revalidationIntervalMillis);
+    }
+
+    // SuppressWarnings "PMD.AvoidCatchingGenericException": a failing listener must not stop the reload.
+    @SuppressWarnings("PMD.AvoidCatchingGenericException")
+    private void notifyListeners(final Consumer<SecretContainerListener> notification) {
+        for (SecretContainerListener listener : listeners) {
+            try {
+                notification.accept(listener);
+            } catch (RuntimeException e) {
+                LOG.warn("SecretContainerListener {} failed: {}", listener, e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * The loaded {@link SecretContainer} with the attributes of the {@link KeyStore} File.
+     */
+    private static final class LoadedKeyStore {
+        private final SecretContainer secretContainer;
+        private final FileStamp fileStamp;
+        private final long nextRevalidation;
+
+        LoadedKeyStore(final SecretContainer secretContainer, final FileStamp fileStamp, final long nextRevalidation) {
+            this.secretContainer = secretContainer;
+            this.fileStamp = fileStamp;
+            this.nextRevalidation = nextRevalidation;
+        }
+
+        LoadedKeyStore withNextRevalidation(final long newNextRevalidation) {
+            return new LoadedKeyStore(secretContainer, fileStamp, newNextRevalidation);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*-
+ * #%L
+ * Secured Properties
+ * ===============================================================
+ * Copyright (C) 2016 - 2026 Brabenetz Harald, Austria
+ * ===============================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package net.brabenetz.lib.securedproperties.core;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * A read-only key ring for {@link SecretContainer} where the keys are only known by their key-id and decoded on first access, e.g. the aliases of a
+ * {@link java.security.KeyStore}. Every key is decoded at most once.
+ * <p>
+ * Iterating over the entries or values decodes all keys.
+ */
+final class LazyKeyRing extends AbstractMap<String, SecretContainer> {
+
+    private final Set<String> keyIds;
+    private final Function<String, SecretContainer> decoder;
+    private final ConcurrentMap<String, SecretContainer> decodedKeys = new ConcurrentHashMap<>();
+
+    /**
+     * @param keyIds
+     *        the key-ids of the key ring.
+     * @param decoder
+     *        decodes the key of one key-id.
+     */
+    LazyKeyRing(final Collection<String> keyIds, final Function<String, SecretContainer> decoder) {
+        this.keyIds = Collections.unmodifiableSet(new LinkedHashSet<>(keyIds));
+        this.decoder = decoder;
+    }
+
+    @Override
+    public SecretContainer get(final Object keyId) {
+        if (!keyIds.contains(keyId)) {
+            return null;
+        }
+        return decodedKeys.computeIfAbsent((String) keyId, decoder);
+    }
+
+    @Override
+    public boolean containsKey(final Object keyId) {
+        return keyIds.contains(keyId);
+    }
+
+    @Override
+    public Set<String> keySet() {
+        return keyIds;
+    }
+
+    @Override
+    public int size() {
+        return keyIds.size();
+    }
+
+    /**
+     * @return the keys which are already decoded, without decoding the others.
+     */
+    Collection<SecretContainer> getDecodedKeys() {
+        return decodedKeys.values();
+    }
+
+    @Override
+    public Set<Map.Entry<String, SecretContainer>> entrySet() {
+        return new AbstractSet<Map.Entry<String, SecretContainer>>() {
+            @Override
+            public Iterator<Map.Entry<String, SecretContainer>> iterator() {
+                final Iterator<String> keyIdIterator = keyIds.iterator();
+                return new Iterator<Map.Entry<String, SecretContainer>>() {
+                    @Override
+                    public boolean hasNext() {
+                        return keyIdIterator.hasNext();
+                    }
+
+                    @Override
+                    public Map.Entry<String, SecretContainer> next() {
+                        final String keyId = keyIdIterator.next();
+                        return new AbstractMap.SimpleImmutableEntry<>(keyId, get(keyId));
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return keyIds.size();
+            }
+        };
+    }
+}
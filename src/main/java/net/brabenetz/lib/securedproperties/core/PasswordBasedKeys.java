@@ -0,0 +1,197 @@
+/*-
+ * #%L
+ * Secured Properties
+ * ===============================================================
+ * Copyright (C) 2016 - 2026 Brabenetz Harald, Austria
+ * ===============================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package net.brabenetz.lib.securedproperties.core;
+
+import com.github.fge.lambdas.Throwing;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+
+import javax.crypto.SecretKey;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Secret keys derived from a passphrase with PBKDF2WithHmacSHA256.
+ * <p>
+ * Instead of the base64 encoded secret key, the secret File contains the iteration count and the salt of the derivation, optional followed by the name
+ * of the environment variable with the passphrase (default is {@value #DEFAULT_PASSPHRASE_ENVIRONMENT_VARIABLE}):
+ *
+ * <pre>
+ * AES_256
+ * pbkdf2:310000:bT3kR0wZ2Xy1y5S0ZXo5bw==:MY_APP_PASSPHRASE
+ * </pre>
+ *
+ * The derivation is deliberately slow. It is started in the background as soon as the secret File is read, and memoized per JVM by salt, iteration
+ * count and a hash of the passphrase, so it runs only once even if the secret File is read again.
+ */
+public final class PasswordBasedKeys {
+
+    /** The prefix of a key definition in the secret File. */
+    public static final String PREFIX = "pbkdf2:";
+    /** The default environment variable with the passphrase. */
+    public static final String DEFAULT_PASSPHRASE_ENVIRONMENT_VARIABLE = "SECURED_PROPERTIES_PASSPHRASE";
+    /** The recommended minimum iteration count for PBKDF2WithHmacSHA256. */
+    public static final int DEFAULT_ITERATIONS = 310_000;
+
+    private static final String KEY_DERIVATION_ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int SALT_LENGTH = 16;
+    private static final int DESEDE_KEY_SIZE = 192;
+
+    private static final ConcurrentMap<List<Object>, CompletableFuture<byte[]>> DERIVED_KEYS = new ConcurrentHashMap<>();
+    private static final LongAdder DERIVATION_COUNT = new LongAdder();
+    private static final ExecutorService DERIVATION_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        final Thread thread = new Thread(runnable, "secured-properties-key-derivation");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private PasswordBasedKeys() {
+        super();
+    }
+
+    /**
+     * @return true if the given secret key line of the secret File is a key definition like "pbkdf2:310000:salt".
+     */
+    public static boolean isDefinition(final String secretKeyLine) {
+        return secretKeyLine.startsWith(PREFIX);
+    }
+
+    /**
+     * Creates a new key definition with a random salt for the secret File.
+     *
+     * @param iterations
+     *        the iteration count, e.g. {@link #DEFAULT_ITERATIONS}.
+     * @param passphraseEnvironmentVariable
+     *        the environment variable with the passphrase, or null for {@link #DEFAULT_PASSPHRASE_ENVIRONMENT_VARIABLE}.
+     * @return the key definition like "pbkdf2:310000:salt:MY_APP_PASSPHRASE".
+     */
+    public static String createDefinition(final int iterations, final String passphraseEnvironmentVariable) {
+        Validate.isTrue(iterations > 0, "The iteration count must be positive");
+        final String definition = PREFIX + iterations + ":" + Base64.getEncoder().encodeToString(SecureRandoms.nextBytes(SALT_LENGTH));
+        if (passphraseEnvironmentVariable == null) {
+            return definition;
+        }
+        return definition + ":" + passphraseEnvironmentVariable;
+    }
+
+    /**
+     * Starts the derivation of the secret key for the given key definition in the background (or reuses an already derived key) and returns
+     * immediately. The returned {@link SecretKey} waits for the derivation on the first access of its key material.
+     *
+     * @param algorithm
+     *        The {@link Algorithm} of the secret key.
+     * @param definition
+     *        The key definition like "pbkdf2:310000:salt:MY_APP_PASSPHRASE".
+     * @return the (maybe not yet derived) {@link SecretKey}.
+     */
+    public static SecretKey readSecretKey(final Algorithm algorithm, final String definition) {
+        final String[] parts = StringUtils.removeStart(definition, PREFIX).split(":");
+        Validate.isTrue(isDefinition(definition) && (parts.length == 2 || parts.length == 3),
+            "Invalid key definition, expected 'pbkdf2:<iterations>:<base64-salt>[:<passphrase-environment-variable>]'");
+        final int iterations = Integer.parseInt(parts[0]);
+        final byte[] salt = Base64.getDecoder().decode(parts[1]);
+        final String passphraseVariable = parts.length == 3 ? parts[2] : DEFAULT_PASSPHRASE_ENVIRONMENT_VARIABLE;
+        final String passphrase = System.getenv(passphraseVariable);
+        Validate.isTrue(StringUtils.isNotEmpty(passphrase), "The passphrase environment variable '%s' is not set.", passphraseVariable);
+
+        return new DerivedSecretKey(algorithm.getKey(), definition, deriveKey(algorithm, passphrase.toCharArray(), salt, iterations));
+    }
+
+    /**
+     * Derives the key material with PBKDF2WithHmacSHA256 in the background, memoized by (algorithm, salt, iterations, passphrase hash). A failed
+     * derivation is not memoized, so the next call tries again.
+     *
+     * @param algorithm
+     *        The {@link Algorithm} of the secret key, defines the key length.
+     * @param passphrase
+     *        The passphrase.
+     * @param salt
+     *        The salt.
+     * @param iterations
+     *        The iteration count.
+     * @return the future key material.
+     */
+    public static CompletableFuture<byte[]> deriveKey(final Algorithm algorithm, final char[] passphrase, final byte[] salt, final int iterations) {
+        final int keyLength = "DESede".equals(algorithm.getKey()) ? DESEDE_KEY_SIZE : algorithm.getSize();
+        final List<Object> memoKey = Arrays.asList(algorithm.getKey(), keyLength, Base64.getEncoder().encodeToString(salt), iterations,
+            hash(passphrase));
+        final CompletableFuture<byte[]> derivedKey = DERIVED_KEYS.get(memoKey);
+        if (derivedKey != null) {
+            return derivedKey;
+        }
+        final char[] passphraseCopy = passphrase.clone();
+        final CompletableFuture<byte[]> newDerivedKey = DERIVED_KEYS.computeIfAbsent(memoKey, key -> CompletableFuture.supplyAsync(() -> {
+            DERIVATION_COUNT.increment();
+            final PBEKeySpec keySpec = new PBEKeySpec(passphraseCopy, salt, iterations, keyLength);
+            try {
+                final SecretKeyFactory factory = Throwing.supplier(() -> SecretKeyFactory.getInstance(KEY_DERIVATION_ALGORITHM)).get();
+                return Throwing.supplier(() -> factory.generateSecret(keySpec)).get().getEncoded();
+            } finally {
+                keySpec.clearPassword();
+                Arrays.fill(passphraseCopy, '\0');
+            }
+        }, DERIVATION_EXECUTOR));
+        newDerivedKey.whenComplete((key, failure) -> {
+            if (failure != null) {
+                DERIVED_KEYS.remove(memoKey, newDerivedKey);
+            }
+        });
+        return newDerivedKey;
+    }
+
+    /**
+     * @return the number of key derivations which were really executed in this JVM.
+     */
+    public static long getDerivationCount() {
+        return DERIVATION_COUNT.sum();
+    }
+
+    /**
+     * Removes all memoized derived keys.
+     */
+    public static void clear() {
+        DERIVED_KEYS.clear();
+    }
+
+    private static String hash(final char[] passphrase) {
+        final MessageDigest digest = Throwing.supplier(() -> MessageDigest.getInstance("SHA-256")).get();
+        final ByteBuffer passphraseBytes = StandardCharsets.UTF_8.encode(CharBuffer.wrap(passphrase));
+        try {
+            digest.update(passphraseBytes.duplicate());
+            return Base64.getEncoder().encodeToString(digest.digest());
+        } finally {
+            Arrays.fill(passphraseBytes.array(), (byte) 0);
+        }
+    }
+}
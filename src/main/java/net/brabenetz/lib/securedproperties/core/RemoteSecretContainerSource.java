@@ -0,0 +1,320 @@
+/*-
+ * #%L
+ * Secured Properties
+ * ===============================================================
+ * Copyright (C) 2016 - 2026 Brabenetz Harald, Austria
+ * ===============================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package net.brabenetz.lib.securedproperties.core;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.Validate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * {@link SecretContainerSource} which fetches the secret key from an HTTP(S) endpoint. The response body has the same format as the secret File (see
+ * {@link SecretContainerStore}).
+ * <p>
+ * The first call of {@link #getSecretContainer(Algorithm...)} fetches the secret key synchronously. After that the {@link SecretContainer} is served
+ * from memory, and once the revalidation interval has elapsed a background thread revalidates it with a conditional GET (If-None-Match /
+ * If-Modified-Since). Callers never wait for a revalidation, and if a revalidation fails the cached {@link SecretContainer} will still be used.
+ * The {@link SecretContainer} is cached per list of allowed {@link Algorithm}s. Only a SHA-256 digest of the response body is kept to detect an
+ * unchanged secret key, not the body itself.
+ * <p>
+ * <b>Example:</b>
+ *
+ * <pre>
+ * config.withSecretContainerSource(new RemoteSecretContainerSource(new URL("https://keys.internal/app.key"))
+ *         .withRevalidationInterval(60_000)
+ *         .withHeader("Authorization", "Bearer " + token));
+ * </pre>
+ */
+public final class RemoteSecretContainerSource implements SecretContainerSource {
+
+    private static final org.slf4j.Logger LOG = org.slf4j.LoggerFactory.getLogger(RemoteSecretContainerSource.class);
+
+    private static final long DEFAULT_REVALIDATION_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+    private static final int DEFAULT_TIMEOUT = (int) TimeUnit.SECONDS.toMillis(5);
+    private static final int HTTP_OK = 200;
+    private static final int HTTP_NOT_MODIFIED = 304;
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+    private static final ExecutorService REVALIDATION_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        final Thread thread = new Thread(runnable, "secured-properties-remote-revalidation-" + THREAD_COUNT.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final URL url;
+    private final Map<String, String> headers = new LinkedHashMap<>();
+    private final List<SecretContainerListener> listeners = new CopyOnWriteArrayList<>();
+    private final ConcurrentMap<List<Algorithm>, CachedResponse> cachedResponses = new ConcurrentHashMap<>();
+    private final Set<List<Algorithm>> revalidating = ConcurrentHashMap.newKeySet();
+    private long revalidationIntervalMillis = DEFAULT_REVALIDATION_INTERVAL;
+    private int connectTimeoutMillis = DEFAULT_TIMEOUT;
+    private int readTimeoutMillis = DEFAULT_TIMEOUT;
+
+    /**
+     * @param url
+     *        The HTTP(S) endpoint which returns the content of a secret File.
+     */
+    public RemoteSecretContainerSource(final URL url) {
+        Validate.notNull(url, "The URL is required");
+        this.url = url;
+    }
+
+    /**
+     * @param newRevalidationInterval
+     *        The minimum time in milliseconds between two revalidations of the cached secret key. Default is one minute.
+     * @return this for fluent style.
+     */
+    public RemoteSecretContainerSource withRevalidationInterval(final long newRevalidationInterval) {
+        revalidationIntervalMillis = newRevalidationInterval;
+        return this;
+    }
+
+    /**
+     * @param newConnectTimeout
+     *        The connect timeout in milliseconds. Default is 5 seconds.
+     * @return this for fluent style.
+     */
+    public RemoteSecretContainerSource withConnectTimeout(final int newConnectTimeout) {
+        Validate.isTrue(newConnectTimeout > 0, "The connect timeout must be positive");
+        connectTimeoutMillis = newConnectTimeout;
+        return this;
+    }
+
+    /**
+     * @param newReadTimeout
+     *        The read timeout in milliseconds. Default is 5 seconds.
+     * @return this for fluent style.
+     */
+    public RemoteSecretContainerSource withReadTimeout(final int newReadTimeout) {
+        Validate.isTrue(newReadTimeout > 0, "The read timeout must be positive");
+        readTimeoutMillis = newReadTimeout;
+        return this;
+    }
+
+    /**
+     * @param name
+     *        The name of an additional request header, e.g. "Authorization".
+     * @param value
+     *        The value of the request header.
+     * @return this for fluent style.
+     */
+    public RemoteSecretContainerSource withHeader(final String name, final String value) {
+        headers.put(name, value);
+        return this;
+    }
+
+    public void addListener(final SecretContainerListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(final SecretContainerListener listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public SecretContainer getSecretContainer(final Algorithm... allowedAlgorithm) {
+        final List<Algorithm> cacheKey = Arrays.asList(allowedAlgorithm.clone());
+        CachedResponse current = cachedResponses.get(cacheKey);
+        if (current == null) {
+            synchronized (this) {
+                current = cachedResponses.get(cacheKey);
+                if (current == null) {
+                    current = fetch(null, allowedAlgorithm);
+                    cachedResponses.put(cacheKey, current);
+                }
+            }
+        } else if (System.nanoTime() - current.nextRevalidation >= 0 && revalidating.add(cacheKey)) {
+            REVALIDATION_EXECUTOR.execute(() -> revalidate(cacheKey));
+        }
+        return current.secretContainer;
+    }
+
+    /**
+     * The remote secret key can change, so the source is not immutable.
+     */
+    @Override
+    public boolean isImmutable() {
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return url.toString();
+    }
+
+    // SuppressWarnings "PMD.AvoidCatchingGenericException": every failure must keep the last valid SecretContainer.
+    @SuppressWarnings("PMD.AvoidCatchingGenericException")
+    private void revalidate(final List<Algorithm> cacheKey) {
+        try {
+            final CachedResponse oldResponse = cachedResponses.get(cacheKey);
+            final CachedResponse newResponse;
+            try {
+                newResponse = fetch(oldResponse, cacheKey.toArray(new Algorithm[cacheKey.size()]));
+            } catch (RuntimeException e) {
+                LOG.warn("The secret key could not be revalidated from '{}'. The previous secret key will be used: {}", url, e.getMessage());
+                cachedResponses.put(cacheKey, oldResponse.withNextRevalidation(nextRevalidation()));
+                notifyListeners(listener -> listener.secretContainerReloadFailed(e));
+                return;
+            }
+            cachedResponses.put(cacheKey, newResponse);
+            if (newResponse.secretContainer != oldResponse.secretContainer) {
+                LOG.info("The secret key from '{}' was reloaded.", url);
+                notifyListeners(listener -> listener.secretContainerChanged(oldResponse.secretContainer, newResponse.secretContainer));
+            }
+        } finally {
+            revalidating.remove(cacheKey);
+        }
+    }
+
+    private CachedResponse fetch(final CachedResponse oldResponse, final Algorithm... allowedAlgorithm) {
+        try {
+            final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            connection.setConnectTimeout(connectTimeoutMillis);
+            connection.setReadTimeout(readTimeoutMillis);
+            connection.setUseCaches(false);
+            headers.forEach(connection::setRequestProperty);
+            if (oldResponse != null) {
+                if (oldResponse.etag != null) {
+                    connection.setRequestProperty("If-None-Match", oldResponse.etag);
+                }
+                connection.setIfModifiedSince(oldResponse.lastModified);
+            }
+
+            final int responseCode = connection.getResponseCode();
+            if (responseCode == HTTP_NOT_MODIFIED && oldResponse != null) {
+                LOG.debug("The secret key from '{}' is not modified.", url);
+                drain(connection.getInputStream());
+                return oldResponse.withNextRevalidation(nextRevalidation());
+            }
+            if (responseCode != HTTP_OK) {
+                drain(connection.getErrorStream());
+                throw new IllegalArgumentException(String.format("Unexpected HTTP status %s from '%s'.", responseCode, url));
+            }
+            final byte[] content;
+            try (InputStream input = connection.getInputStream()) {
+                content = IOUtils.toByteArray(input);
+            }
+            try {
+                final byte[] digest = sha256(content);
+                final String etag = connection.getHeaderField("ETag");
+                if (oldResponse != null && MessageDigest.isEqual(digest, oldResponse.digest)) {
+                    // the endpoint doesn't support conditional requests, but the secret key is unchanged.
+                    return new CachedResponse(oldResponse.secretContainer, digest, etag, connection.getLastModified(), nextRevalidation());
+                }
+                final SecretContainer secretContainer = SecretContainerStore.read("URL '" + url + "'", toLines(content), allowedAlgorithm);
+                return new CachedResponse(secretContainer, digest, etag, connection.getLastModified(), nextRevalidation());
+            } finally {
+                Arrays.fill(content, (byte) 0);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("The secret key could not be fetched from '%s': %s", url, e.getMessage()), e);
+        }
+    }
+
+    private static byte[] sha256(final byte[] content) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(content);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("SHA-256 is not available: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Decodes the response body into the lines of a secret File, without keeping the body as String.
+     */
+    private static List<String> toLines(final byte[] content) {
+        final CharBuffer chars = StandardCharsets.UTF_8.decode(ByteBuffer.wrap(content));
+        try {
+            return Arrays.asList(chars.toString().trim().split("\\s*[\\r\\n]+\\s*"));
+        } finally {
+            Arrays.fill(chars.array(), '\0');
+        }
+    }
+
+    private long nextRevalidation() {
+        return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(revalidationIntervalMillis);
+    }
+
+    private static void drain(final InputStream input) throws IOException {
+        if (input != null) {
+            try (InputStream in = input) {
+                IOUtils.skip(in, Long.MAX_VALUE);
+            }
+        }
+    }
+
+    // SuppressWarnings "PMD.AvoidCatchingGenericException": a failing listener must not stop the revalidation.
+    @SuppressWarnings("PMD.AvoidCatchingGenericException")
+    private void notifyListeners(final Consumer<SecretContainerListener> notification) {
+        for (SecretContainerListener listener : listeners) {
+            try {
+                notification.accept(listener);
+            } catch (RuntimeException e) {
+                LOG.warn("SecretContainerListener {} failed: {}", listener, e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * The cached {@link SecretContainer} with the validators of the HTTP response and the SHA-256 digest of the response body.
+     */
+    private static final class CachedResponse {
+        private final SecretContainer secretContainer;
+        private final byte[] digest;
+        private final String etag;
+        private final long lastModified;
+        private final long nextRevalidation;
+
+        CachedResponse(final SecretContainer secretContainer, final byte[] digest, final String etag, final long lastModified,
+                final long nextRevalidation) {
+            this.secretContainer = secretContainer;
+            this.digest = digest;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.nextRevalidation = nextRevalidation;
+        }
+
+        CachedResponse withNextRevalidation(final long newNextRevalidation) {
+            return new CachedResponse(secretContainer, digest, etag, lastModified, newNextRevalidation);
+        }
+    }
+}
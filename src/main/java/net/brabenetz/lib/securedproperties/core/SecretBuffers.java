@@ -0,0 +1,139 @@
+/*-
+ * #%L
+ * Secured Properties
+ * ===============================================================
+ * Copyright (C) 2016 - 2026 Brabenetz Harald, Austria
+ * ===============================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package net.brabenetz.lib.securedproperties.core;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+
+/**
+ * Per-thread direct (off-heap) scratch buffers for the plain-text values in {@link Encryption}.
+ * <p>
+ * By default {@link Encryption} works with heap byte arrays, and the copies of the plain-text values stay on the heap until the GC collects them
+ * (and show up in heap dumps). With {@link #setEnabled(boolean)} the salted plain-text bytes and chars are kept in direct buffers instead, which
+ * are allocated once per thread, reused for every value and zeroed after each operation. Only the resulting String (decryption) and the input
+ * String (encryption) remain on the heap. The JCE provider may still use internal heap buffers.
+ * <p>
+ * The setting applies to the whole JVM. The buffers can also be enabled per {@link SecretContainer} with
+ * {@link EncryptionOptions#withOffHeapBuffers(boolean)}.
+ */
+public final class SecretBuffers {
+
+    private static final int MIN_CAPACITY = 256;
+    private static final byte[] ZEROS = new byte[MIN_CAPACITY];
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    private static volatile boolean enabled;
+
+    private SecretBuffers() {
+        super();
+    }
+
+    /**
+     * @param newEnabled
+     *        true to use zeroed off-heap buffers for the plain-text values in {@link Encryption}.
+     */
+    public static void setEnabled(final boolean newEnabled) {
+        enabled = newEnabled;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return the direct byte buffer of the current thread with at least the given capacity, cleared and limited to the capacity. Must be released
+     *         with {@link #release()}.
+     */
+    static ByteBuffer bytes(final int capacity) {
+        return SCRATCH.get().bytes(capacity);
+    }
+
+    /**
+     * @return the direct char buffer of the current thread with at least the given capacity, cleared and limited to the capacity. Must be released
+     *         with {@link #release()}.
+     */
+    static CharBuffer chars(final int capacity) {
+        return SCRATCH.get().chars(capacity);
+    }
+
+    /**
+     * Zeroes the used part of the buffers of the current thread.
+     */
+    static void release() {
+        SCRATCH.get().zero();
+    }
+
+    /**
+     * Zeroes the first bytes of the given buffer.
+     */
+    static void zero(final ByteBuffer buffer, final int length) {
+        final ByteBuffer target = buffer.duplicate();
+        target.clear();
+        int remaining = Math.min(length, target.capacity());
+        while (remaining > 0) {
+            final int chunk = Math.min(remaining, ZEROS.length);
+            target.put(ZEROS, 0, chunk);
+            remaining -= chunk;
+        }
+    }
+
+    /**
+     * The buffers of one thread.
+     */
+    private static final class Scratch {
+        private ByteBuffer bytes = ByteBuffer.allocateDirect(MIN_CAPACITY);
+        private ByteBuffer charBytes = ByteBuffer.allocateDirect(MIN_CAPACITY * 2);
+        private int usedBytes;
+        private int usedChars;
+
+        ByteBuffer bytes(final int capacity) {
+            if (bytes.capacity() < capacity) {
+                SecretBuffers.zero(bytes, usedBytes);
+                bytes = ByteBuffer.allocateDirect(grow(capacity));
+            }
+            usedBytes = Math.max(usedBytes, capacity);
+            bytes.clear();
+            bytes.limit(capacity);
+            return bytes;
+        }
+
+        CharBuffer chars(final int capacity) {
+            if (charBytes.capacity() < capacity * 2) {
+                SecretBuffers.zero(charBytes, usedChars * 2);
+                charBytes = ByteBuffer.allocateDirect(grow(capacity) * 2);
+            }
+            usedChars = Math.max(usedChars, capacity);
+            final CharBuffer chars = charBytes.asCharBuffer();
+            chars.limit(capacity);
+            return chars;
+        }
+
+        void zero() {
+            SecretBuffers.zero(bytes, usedBytes);
+            SecretBuffers.zero(charBytes, usedChars * 2);
+            usedBytes = 0;
+            usedChars = 0;
+        }
+
+        private static int grow(final int capacity) {
+            return Math.max(MIN_CAPACITY, Integer.highestOneBit(capacity - 1) << 1);
+        }
+    }
+}
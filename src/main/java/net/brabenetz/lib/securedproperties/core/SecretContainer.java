@@ -19,15 +19,38 @@
  */
 package net.brabenetz.lib.securedproperties.core;
 
+import org.apache.commons.lang3.Validate;
+
 import javax.crypto.SecretKey;
+import javax.security.auth.DestroyFailedException;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
 
 /**
  * A container class to store the values from the secret key file.
+ * <p>
+ * Beside the legacy secret key (used for all encrypted values without a key-id like "{...}") the container can hold a key ring: additional secret keys
+ * identified by a short key-id. Encrypted values of the form "{keyId:...}" are decrypted with the matching key of the key ring. New values are encrypted
+ * with the primary key, which is the legacy secret key if no primary key-id is set.
  */
 public class SecretContainer {
 
+    private static final org.slf4j.Logger LOG = org.slf4j.LoggerFactory.getLogger(SecretContainer.class);
+
+    /** The allowed format of a key-id: 1 to 16 characters of [A-Za-z0-9_-]. */
+    public static final Pattern KEY_ID_PATTERN = Pattern.compile("[A-Za-z0-9_-]{1,16}");
+
     private final Algorithm algorithm;
     private final SecretKey secretKey;
+    private final Map<String, SecretContainer> keyRing;
+    private final String primaryKeyId;
+    private final EncryptionOptions options;
+    /** The last copy of {@link #withOptions(EncryptionOptions)}, so a config with options doesn't create a new copy per call. */
+    private volatile SecretContainer lastCopyWithOptions;
 
     /**
      * @param algorithm
@@ -36,9 +59,43 @@ public class SecretContainer {
      *        the {@link SecretKey}
      */
     public SecretContainer(final Algorithm algorithm, final SecretKey secretKey) {
+        this(algorithm, secretKey, Collections.emptyMap(), null);
+    }
+
+    /**
+     * @param algorithm
+     *        the {@link Algorithm} which was used to generate the legacy secretKey.
+     * @param secretKey
+     *        the legacy {@link SecretKey}
+     * @param keyRing
+     *        additional keys per key-id.
+     * @param primaryKeyId
+     *        the key-id of the key which should be used for new encryptions, or null to use the legacy secretKey.
+     */
+    public SecretContainer(final Algorithm algorithm, final SecretKey secretKey, final Map<String, SecretContainer> keyRing, final String primaryKeyId) {
         super();
+        for (String keyId : keyRing.keySet()) {
+            Validate.isTrue(KEY_ID_PATTERN.matcher(keyId).matches(), "Invalid key-id '%s'. Allowed pattern is %s", keyId, KEY_ID_PATTERN);
+            Validate.isTrue(!CompactValueFormat.RESERVED_KEY_ID.equals(keyId), "The key-id '%s' is reserved for the compact format of encrypted values.",
+                keyId);
+        }
+        Validate.isTrue(primaryKeyId == null || keyRing.containsKey(primaryKeyId), "The primary key-id '%s' is not part of the key ring %s",
+            primaryKeyId, keyRing.keySet());
         this.algorithm = algorithm;
         this.secretKey = secretKey;
+        // a lazy key ring is read-only already, and copying it would decode all keys.
+        this.keyRing = keyRing instanceof LazyKeyRing ? keyRing : Collections.unmodifiableMap(new LinkedHashMap<>(keyRing));
+        this.primaryKeyId = primaryKeyId;
+        this.options = EncryptionOptions.DEFAULT;
+    }
+
+    private SecretContainer(final SecretContainer other, final EncryptionOptions options) {
+        super();
+        this.algorithm = other.algorithm;
+        this.secretKey = other.secretKey;
+        this.keyRing = other.keyRing;
+        this.primaryKeyId = other.primaryKeyId;
+        this.options = options;
     }
 
     public Algorithm getAlgorithm() {
@@ -49,4 +106,101 @@ public class SecretContainer {
         return this.secretKey;
     }
 
+    /**
+     * @return the additional keys per key-id (without the legacy secret key).
+     */
+    public Map<String, SecretContainer> getKeyRing() {
+        return this.keyRing;
+    }
+
+    /**
+     * @return the key-id of the key used for new encryptions, or null if the legacy secret key is used.
+     */
+    public String getPrimaryKeyId() {
+        return this.primaryKeyId;
+    }
+
+    /**
+     * @param keyId
+     *        the key-id, or null for the legacy secret key.
+     * @return the {@link SecretContainer} with the {@link Algorithm} and {@link SecretKey} for the given key-id, or null if the key-id is unknown.
+     */
+    public SecretContainer getKey(final String keyId) {
+        if (keyId == null) {
+            return this;
+        }
+        return this.keyRing.get(keyId);
+    }
+
+    /**
+     * @return the {@link SecretContainer} with the {@link Algorithm} and {@link SecretKey} which should be used for new encryptions.
+     */
+    public SecretContainer getPrimaryKey() {
+        return getKey(this.primaryKeyId);
+    }
+
+    /**
+     * @return a copy of this {@link SecretContainer} with an additional (or replaced) key in the key ring.
+     */
+    public SecretContainer withKey(final String keyId, final Algorithm keyAlgorithm, final SecretKey key) {
+        final Map<String, SecretContainer> newKeyRing = new LinkedHashMap<>(this.keyRing);
+        newKeyRing.put(keyId, new SecretContainer(keyAlgorithm, key));
+        return new SecretContainer(this.algorithm, this.secretKey, newKeyRing, this.primaryKeyId).withOptions(this.options);
+    }
+
+    /**
+     * Destroys the key material of the secret key and all keys of the key ring, if the keys support it (e.g. keys read from a secret File). The
+     * {@link SecretContainer} can't be used anymore after that.
+     */
+    public void destroy() {
+        destroy(this.secretKey);
+        final Collection<SecretContainer> keys = this.keyRing instanceof LazyKeyRing ? ((LazyKeyRing) this.keyRing).getDecodedKeys() : this.keyRing.values();
+        for (SecretContainer key : keys) {
+            key.destroy();
+        }
+    }
+
+    private static void destroy(final SecretKey key) {
+        if (key.isDestroyed()) {
+            return;
+        }
+        try {
+            key.destroy();
+        } catch (DestroyFailedException e) {
+            LOG.debug("The secret key {} can't be destroyed: {}", key.getClass().getName(), e.getMessage());
+        }
+    }
+
+    /**
+     * @return a copy of this {@link SecretContainer} with a different primary key (null for the legacy secret key).
+     */
+    public SecretContainer withPrimaryKeyId(final String newPrimaryKeyId) {
+        return new SecretContainer(this.algorithm, this.secretKey, this.keyRing, newPrimaryKeyId).withOptions(this.options);
+    }
+
+    /**
+     * @return the options for {@link Encryption} with this {@link SecretContainer}.
+     */
+    public EncryptionOptions getOptions() {
+        return this.options;
+    }
+
+    /**
+     * @return a copy of this {@link SecretContainer} with the given options for {@link Encryption}. The copy shares the keys with this
+     *         {@link SecretContainer}, so {@link #destroy()} affects both.
+     */
+    public SecretContainer withOptions(final EncryptionOptions newOptions) {
+        Validate.notNull(newOptions, "The EncryptionOptions are required");
+        if (newOptions == this.options) {
+            return this;
+        }
+        final SecretContainer lastCopy = this.lastCopyWithOptions;
+        if (lastCopy != null && lastCopy.options == newOptions) {
+            return lastCopy;
+        }
+        final SecretContainer copy = new SecretContainer(this, newOptions);
+        this.lastCopyWithOptions = copy;
+        return copy;
+    }
+
 }
@@ -0,0 +1,414 @@
+/*-
+ * #%L
+ * Secured Properties
+ * ===============================================================
+ * Copyright (C) 2016 - 2026 Brabenetz Harald, Austria
+ * ===============================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package net.brabenetz.lib.securedproperties.core;
+
+import org.apache.commons.lang3.Validate;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Process-wide cache in front of {@link SecretContainerStore} so that the secret File is not read and parsed on every lookup.
+ * <p>
+ * The cache is keyed by the normalized absolute path of the secret File plus the allowed {@link Algorithm}s. A cached {@link SecretContainer} is
+ * revalidated only by comparing the last-modified time, the size and the file-key (inode) of the secret File, and only if the configured revalidation
+ * interval has elapsed since the last check.
+ * <p>
+ * The cache is bounded, so it can hold the secret Files of thousands of tenants: if it exceeds the {@link #setMaximumSize(int) maximum size}, the
+ * least recently used entries are evicted, and entries which were not used within the {@link #setMaximumIdleTime(long) maximum idle time} expire.
+ * Another thread may still use an evicted {@link SecretContainer}, so its key material is left to the GC by default. With
+ * {@link #setDestroyOnEviction(boolean)} it is destroyed instead, which is only safe if no caller keeps a reference to a {@link SecretContainer}
+ * from this cache.
+ * Hit and miss counts are available per secret File with {@link #getStatistics(File)}.
+ *
+ * @see #getSecretContainer(File, boolean, long, Algorithm...)
+ */
+public final class SecretContainerCache {
+
+    private static final org.slf4j.Logger LOG = org.slf4j.LoggerFactory.getLogger(SecretContainerCache.class);
+
+    /** The default maximum number of cached secret Files. */
+    public static final int DEFAULT_MAXIMUM_SIZE = 10_000;
+    /** The default maximum idle time of a cached secret File in milliseconds: one hour. */
+    public static final long DEFAULT_MAXIMUM_IDLE_TIME = TimeUnit.HOURS.toMillis(1);
+
+    /** The last-access time is only updated if it is older than this, so concurrent hits don't write the same field all the time. */
+    private static final long ACCESS_TIME_GRANULARITY = TimeUnit.MILLISECONDS.toNanos(1);
+    /** The maximum time between two scans for idle entries. */
+    private static final long MAXIMUM_IDLE_SCAN_INTERVAL = TimeUnit.MINUTES.toNanos(1);
+    /** A size eviction removes additional 10% of the entries, so the next misses don't need to scan the cache again. */
+    private static final int SIZE_EVICTION_BATCH_DIVISOR = 10;
+
+    private static final ConcurrentMap<SecretFileKey, CacheEntry> CACHE = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<List<Object>, SecretContainer> IMMUTABLE_SOURCES = new ConcurrentHashMap<>();
+    private static final LongAdder HIT_COUNT = new LongAdder();
+    private static final LongAdder MISS_COUNT = new LongAdder();
+    private static final List<SecretContainerEvictionListener> EVICTION_LISTENERS = new CopyOnWriteArrayList<>();
+    private static final ReentrantLock EVICTION_LOCK = new ReentrantLock();
+
+    private static volatile int maximumSize = DEFAULT_MAXIMUM_SIZE;
+    private static volatile long maximumIdleNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_MAXIMUM_IDLE_TIME);
+    private static volatile boolean destroyOnEviction;
+    private static volatile long nextIdleScan = System.nanoTime();
+
+    private SecretContainerCache() {
+        super();
+    }
+
+    /**
+     * Same as {@link SecretContainerStore#getSecretContainer(File, boolean, Algorithm...)} but returns a cached {@link SecretContainer} as long as the
+     * secret File is unchanged.
+     *
+     * @param secretContainerFile
+     *        The location where the secret file should be placed.
+     * @param autoCreateSecretKey
+     *        flag to auto create the secret File if it doesn't already exists.
+     * @param revalidationIntervalMillis
+     *        The minimum time in milliseconds between two checks if the secret File has changed. 0 will check the file attributes on every call.
+     * @param allowedAlgorithm
+     *        A list of allowed {@link Algorithm}s.
+     * @return the {@link SecretContainer}
+     */
+    public static SecretContainer getSecretContainer(final File secretContainerFile, final boolean autoCreateSecretKey,
+            final long revalidationIntervalMillis, final Algorithm... allowedAlgorithm) {
+        return getSecretContainer(secretContainerFile, autoCreateSecretKey, revalidationIntervalMillis,
+            () -> AlgorithmSelection.firstSupported(allowedAlgorithm), allowedAlgorithm);
+    }
+
+    /**
+     * Same as {@link #getSecretContainer(File, boolean, long, Algorithm...)}, but the {@link Algorithm} of an auto-created secret File is selected
+     * by the given supplier, which is only called on a cache miss if the secret File must be created, see
+     * {@link SecretContainerStore#getSecretContainer(File, boolean, Supplier, Algorithm...)}.
+     *
+     * @param selection
+     *        The selection of the {@link Algorithm} in case the secret File must be generated.
+     */
+    public static SecretContainer getSecretContainer(final File secretContainerFile, final boolean autoCreateSecretKey,
+            final long revalidationIntervalMillis, final Supplier<AlgorithmSelection> selection, final Algorithm... allowedAlgorithm) {
+
+        final SecretFileKey cacheKey = new SecretFileKey(secretContainerFile, allowedAlgorithm);
+        final Path path = cacheKey.getPath();
+        final long now = System.nanoTime();
+
+        if (now - nextIdleScan >= 0) {
+            evictIfNecessary(now);
+        }
+
+        final CacheEntry cacheEntry = CACHE.get(cacheKey);
+        CacheStatistics previousStatistics = null;
+        if (cacheEntry != null) {
+            if (cacheEntry.isIdle(now)) {
+                evict(cacheEntry, SecretContainerEvictionListener.Cause.IDLE);
+            } else if (now - cacheEntry.nextValidation < 0) {
+                return cacheEntry.hit(now);
+            } else if (cacheEntry.fileStamp.equals(FileStamp.of(path))) {
+                cacheEntry.nextValidation = now + TimeUnit.MILLISECONDS.toNanos(revalidationIntervalMillis);
+                return cacheEntry.hit(now);
+            } else {
+                LOG.debug("Secret file '{}' has changed and will be read again.", path);
+                previousStatistics = cacheEntry.getStatistics();
+                evict(cacheEntry, SecretContainerEvictionListener.Cause.CHANGED);
+            }
+        }
+
+        MISS_COUNT.increment();
+        // take the stamp before reading, so a concurrent change will be detected by the next validation.
+        FileStamp fileStamp = FileStamp.of(path);
+        final SecretContainer secretContainer = SecretContainerStore.getSecretContainer(secretContainerFile, autoCreateSecretKey, selection,
+            allowedAlgorithm);
+        if (fileStamp == null) {
+            // the secret file was just created.
+            fileStamp = FileStamp.of(path);
+        }
+        if (fileStamp != null) {
+            final CacheEntry newEntry = new CacheEntry(cacheKey, secretContainer, fileStamp,
+                now + TimeUnit.MILLISECONDS.toNanos(revalidationIntervalMillis), now, previousStatistics);
+            final CacheEntry replacedEntry = CACHE.put(cacheKey, newEntry);
+            if (replacedEntry != null && replacedEntry.secretContainer != secretContainer) {
+                notifyEvictionListeners(replacedEntry, SecretContainerEvictionListener.Cause.CHANGED);
+            }
+            if (CACHE.size() > maximumSize) {
+                evictIfNecessary(now);
+            }
+        }
+        return secretContainer;
+    }
+
+    /**
+     * Returns the {@link SecretContainer} of the given {@link SecretContainerSource}. If the source is {@link SecretContainerSource#isImmutable()
+     * immutable}, it is loaded only once and cached for the lifetime of the JVM (or until {@link #clear()}).
+     *
+     * @param source
+     *        The {@link SecretContainerSource}.
+     * @param allowedAlgorithm
+     *        A list of allowed {@link Algorithm}s.
+     * @return the {@link SecretContainer}
+     */
+    public static SecretContainer getSecretContainer(final SecretContainerSource source, final Algorithm... allowedAlgorithm) {
+        if (!source.isImmutable()) {
+            return source.getSecretContainer(allowedAlgorithm);
+        }
+        final List<Object> cacheKey = Arrays.asList(source, Arrays.asList(allowedAlgorithm));
+        final SecretContainer secretContainer = IMMUTABLE_SOURCES.get(cacheKey);
+        if (secretContainer != null) {
+            HIT_COUNT.increment();
+            return secretContainer;
+        }
+        MISS_COUNT.increment();
+        return IMMUTABLE_SOURCES.computeIfAbsent(cacheKey, key -> source.getSecretContainer(allowedAlgorithm));
+    }
+
+    /**
+     * Removes all cached {@link SecretContainer} for the given secret File.
+     */
+    public static void invalidate(final File secretContainerFile) {
+        final Path path = SecretFileKey.normalize(secretContainerFile);
+        for (CacheEntry cacheEntry : CACHE.values()) {
+            if (cacheEntry.key.getPath().equals(path)) {
+                evict(cacheEntry, SecretContainerEvictionListener.Cause.INVALIDATED);
+            }
+        }
+    }
+
+    /**
+     * Removes all cached {@link SecretContainer} and resets the hit and miss counters.
+     */
+    public static void clear() {
+        for (CacheEntry cacheEntry : CACHE.values()) {
+            evict(cacheEntry, SecretContainerEvictionListener.Cause.INVALIDATED);
+        }
+        IMMUTABLE_SOURCES.clear();
+        HIT_COUNT.reset();
+        MISS_COUNT.reset();
+    }
+
+    /**
+     * @param newMaximumSize
+     *        The maximum number of cached secret Files (per allowed {@link Algorithm}s). Default is {@value #DEFAULT_MAXIMUM_SIZE}.
+     */
+    public static void setMaximumSize(final int newMaximumSize) {
+        Validate.isTrue(newMaximumSize > 0, "The maximum size must be positive");
+        maximumSize = newMaximumSize;
+        evictIfNecessary(System.nanoTime());
+    }
+
+    /**
+     * @param newMaximumIdleTime
+     *        The time in milliseconds after which an unused secret File expires. 0 disables the expiration. Default is one hour.
+     */
+    public static void setMaximumIdleTime(final long newMaximumIdleTime) {
+        Validate.isTrue(newMaximumIdleTime >= 0, "The maximum idle time must not be negative");
+        maximumIdleNanos = TimeUnit.MILLISECONDS.toNanos(newMaximumIdleTime);
+        nextIdleScan = System.nanoTime();
+    }
+
+    /**
+     * @param destroy
+     *        true to destroy the key material of {@link SecretContainer}s which were evicted because of the maximum size or the maximum idle time.
+     *        A thread which still uses an evicted {@link SecretContainer} then fails with "secret key was destroyed". Default is false.
+     */
+    public static void setDestroyOnEviction(final boolean destroy) {
+        destroyOnEviction = destroy;
+    }
+
+    public static void addEvictionListener(final SecretContainerEvictionListener listener) {
+        EVICTION_LISTENERS.add(listener);
+    }
+
+    public static void removeEvictionListener(final SecretContainerEvictionListener listener) {
+        EVICTION_LISTENERS.remove(listener);
+    }
+
+    /**
+     * Evicts idle entries and, if the maximum size is exceeded, the least recently used entries. This is done automatically on access, but can be
+     * called explicitly, e.g. by a scheduler, to remove idle key material even if the cache isn't used.
+     */
+    public static void cleanUp() {
+        nextIdleScan = System.nanoTime();
+        evictIfNecessary(System.nanoTime());
+    }
+
+    /**
+     * @return the number of cached secret Files (per allowed {@link Algorithm}s).
+     */
+    public static int size() {
+        return CACHE.size();
+    }
+
+    /**
+     * @param secretContainerFile
+     *        the secret File, e.g. of one tenant.
+     * @return the hit and miss counts of the given secret File while it is cached, or zero counts if it isn't cached.
+     */
+    public static CacheStatistics getStatistics(final File secretContainerFile) {
+        final Path path = SecretFileKey.normalize(secretContainerFile);
+        CacheStatistics result = new CacheStatistics(0, 0);
+        for (CacheEntry cacheEntry : CACHE.values()) {
+            if (cacheEntry.key.getPath().equals(path)) {
+                result = result.plus(cacheEntry.getStatistics());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the hit and miss counts of all cached secret Files.
+     */
+    public static Map<Path, CacheStatistics> getStatistics() {
+        final Map<Path, CacheStatistics> result = new LinkedHashMap<>();
+        for (CacheEntry cacheEntry : CACHE.values()) {
+            result.merge(cacheEntry.key.getPath(), cacheEntry.getStatistics(), CacheStatistics::plus);
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of lookups which were answered from the cache.
+     */
+    public static long getHitCount() {
+        return HIT_COUNT.sum();
+    }
+
+    /**
+     * @return the number of lookups which had to read the secret File.
+     */
+    public static long getMissCount() {
+        return MISS_COUNT.sum();
+    }
+
+    /**
+     * Removes idle entries and the least recently used entries above the maximum size. Only one thread scans the cache at a time, others skip it.
+     */
+    private static void evictIfNecessary(final long now) {
+        if (!EVICTION_LOCK.tryLock()) {
+            return;
+        }
+        try {
+            final long idleNanos = maximumIdleNanos;
+            nextIdleScan = now + (idleNanos > 0 ? Math.min(idleNanos, MAXIMUM_IDLE_SCAN_INTERVAL) : MAXIMUM_IDLE_SCAN_INTERVAL);
+            final List<CacheEntry> entries = new ArrayList<>(CACHE.size());
+            for (CacheEntry cacheEntry : CACHE.values()) {
+                if (cacheEntry.isIdle(now)) {
+                    evict(cacheEntry, SecretContainerEvictionListener.Cause.IDLE);
+                } else {
+                    cacheEntry.lastAccessSnapshot = cacheEntry.lastAccess;
+                    entries.add(cacheEntry);
+                }
+            }
+            final int excess = entries.size() - maximumSize;
+            if (excess > 0) {
+                entries.sort(Comparator.comparingLong(cacheEntry -> cacheEntry.lastAccessSnapshot));
+                final int evictionCount = Math.min(entries.size(), excess + maximumSize / SIZE_EVICTION_BATCH_DIVISOR);
+                for (int i = 0; i < evictionCount; i++) {
+                    evict(entries.get(i), SecretContainerEvictionListener.Cause.SIZE);
+                }
+                LOG.debug("Evicted {} least recently used secret files from the cache.", evictionCount);
+            }
+        } finally {
+            EVICTION_LOCK.unlock();
+        }
+    }
+
+    private static void evict(final CacheEntry cacheEntry, final SecretContainerEvictionListener.Cause cause) {
+        if (!CACHE.remove(cacheEntry.key, cacheEntry)) {
+            // already removed by another thread.
+            return;
+        }
+        notifyEvictionListeners(cacheEntry, cause);
+        // the ciphers of the evicted keys must not keep their key schedules in the threads.
+        CipherCache.purge();
+        if (destroyOnEviction && (cause == SecretContainerEvictionListener.Cause.SIZE || cause == SecretContainerEvictionListener.Cause.IDLE)) {
+            cacheEntry.secretContainer.destroy();
+        }
+    }
+
+    // SuppressWarnings "PMD.AvoidCatchingGenericException": a failing listener must not break the cache.
+    @SuppressWarnings("PMD.AvoidCatchingGenericException")
+    private static void notifyEvictionListeners(final CacheEntry cacheEntry, final SecretContainerEvictionListener.Cause cause) {
+        for (SecretContainerEvictionListener listener : EVICTION_LISTENERS) {
+            try {
+                listener.secretContainerEvicted(cacheEntry.key.getPath(), cacheEntry.secretContainer, cause);
+            } catch (RuntimeException e) {
+                LOG.warn("SecretContainerEvictionListener {} failed: {}", listener, e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Cache value with the information needed for revalidation, eviction and statistics.
+     */
+    private static final class CacheEntry {
+        private final SecretFileKey key;
+        private final SecretContainer secretContainer;
+        private final FileStamp fileStamp;
+        private final LongAdder hitCount = new LongAdder();
+        private final long missCount;
+        private volatile long nextValidation;
+        private volatile long lastAccess;
+        /** stable copy of lastAccess for sorting, only used while holding the EVICTION_LOCK. */
+        private long lastAccessSnapshot;
+
+        CacheEntry(final SecretFileKey key, final SecretContainer secretContainer, final FileStamp fileStamp, final long nextValidation,
+                final long now, final CacheStatistics previousStatistics) {
+            this.key = key;
+            this.secretContainer = secretContainer;
+            this.fileStamp = fileStamp;
+            this.nextValidation = nextValidation;
+            this.lastAccess = now;
+            if (previousStatistics == null) {
+                this.missCount = 1;
+            } else {
+                this.hitCount.add(previousStatistics.getHitCount());
+                this.missCount = previousStatistics.getMissCount() + 1;
+            }
+        }
+
+        SecretContainer hit(final long now) {
+            HIT_COUNT.increment();
+            hitCount.increment();
+            if (now - lastAccess > ACCESS_TIME_GRANULARITY) {
+                lastAccess = now;
+            }
+            return secretContainer;
+        }
+
+        boolean isIdle(final long now) {
+            final long idleNanos = maximumIdleNanos;
+            return idleNanos > 0 && now - lastAccess > idleNanos;
+        }
+
+        CacheStatistics getStatistics() {
+            return new CacheStatistics(hitCount.sum(), missCount);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+/*-
+ * #%L
+ * Secured Properties
+ * ===============================================================
+ * Copyright (C) 2016 - 2026 Brabenetz Harald, Austria
+ * ===============================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package net.brabenetz.lib.securedproperties.core;
+
+import java.nio.file.Path;
+
+/**
+ * Listener to get notified about {@link SecretContainer}s which are removed from the {@link SecretContainerCache}, see
+ * {@link SecretContainerCache#addEvictionListener(SecretContainerEvictionListener)}.
+ */
+@FunctionalInterface
+public interface SecretContainerEvictionListener {
+
+    /**
+     * Why a {@link SecretContainer} was removed from the {@link SecretContainerCache}.
+     */
+    enum Cause {
+        /** The cache exceeded its maximum size and this was one of the least recently used entries. */
+        SIZE,
+        /** The entry was not used within the maximum idle time. */
+        IDLE,
+        /** The secret File has changed and will be read again. */
+        CHANGED,
+        /** The entry was removed explicitly with {@link SecretContainerCache#invalidate(java.io.File)} or {@link SecretContainerCache#clear()}. */
+        INVALIDATED
+    }
+
+    /**
+     * Called after the {@link SecretContainer} was removed from the cache. For the causes {@link Cause#SIZE} and {@link Cause#IDLE} the key material
+     * is destroyed right after all listeners were called (see {@link SecretContainerCache#setDestroyOnEviction(boolean)}).
+     *
+     * @param secretFile
+     *        the normalized path of the secret File.
+     * @param secretContainer
+     *        the removed {@link SecretContainer}.
+     * @param cause
+     *        why the {@link SecretContainer} was removed.
+     */
+    void secretContainerEvicted(Path secretFile, SecretContainer secretContainer, Cause cause);
+}
@@ -0,0 +1,48 @@
+/*-
+ * #%L
+ * Secured Properties
+ * ===============================================================
+ * Copyright (C) 2016 - 2026 Brabenetz Harald, Austria
+ * ===============================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package net.brabenetz.lib.securedproperties.core;
+
+/**
+ * Listener to get notified about a reloaded secret key, see {@link SecretContainerWatcher#addListener(SecretContainerListener)} and
+ * {@link RemoteSecretContainerSource#addListener(SecretContainerListener)}.
+ */
+@FunctionalInterface
+public interface SecretContainerListener {
+
+    /**
+     * Called after the new {@link SecretContainer} was published.
+     *
+     * @param oldSecretContainer
+     *        the {@link SecretContainer} which was used until now.
+     * @param newSecretContainer
+     *        the new {@link SecretContainer} read from the changed secret File.
+     */
+    void secretContainerChanged(SecretContainer oldSecretContainer, SecretContainer newSecretContainer);
+
+    /**
+     * Called if the changed secret File could not be read. The last valid {@link SecretContainer} will still be used.
+     *
+     * @param exception
+     *        the reason why the secret File could not be read.
+     */
+    default void secretContainerReloadFailed(final Exception exception) {
+        // nothing to do by default.
+    }
+}
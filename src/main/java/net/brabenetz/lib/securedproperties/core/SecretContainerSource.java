@@ -0,0 +1,44 @@
+/*-
+ * #%L
+ * Secured Properties
+ * ===============================================================
+ * Copyright (C) 2016 - 2026 Brabenetz Harald, Austria
+ * ===============================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package net.brabenetz.lib.securedproperties.core;
+
+/**
+ * SPI for the place where the {@link SecretContainer} comes from, e.g. a secret File, an environment variable or a classpath resource.
+ * <p>
+ * The default implementations can be created with {@link SecretContainerSources}.
+ */
+public interface SecretContainerSource {
+
+    /**
+     * Loads the {@link SecretContainer} from this source.
+     *
+     * @param allowedAlgorithm
+     *        A list of allowed {@link Algorithm}s.
+     * @return the {@link SecretContainer}
+     */
+    SecretContainer getSecretContainer(Algorithm... allowedAlgorithm);
+
+    /**
+     * @return true if the {@link SecretContainer} of this source can never change, so it can be cached for the lifetime of the JVM and
+     *         {@link #getSecretContainer(Algorithm...)} is only called once. The cache is keyed by the source, so an immutable source should
+     *         implement equals() and hashCode() if it can be created several times for the same definition.
+     */
+    boolean isImmutable();
+}
@@ -0,0 +1,242 @@
+/*-
+ * #%L
+ * Secured Properties
+ * ===============================================================
+ * Copyright (C) 2016 - 2026 Brabenetz Harald, Austria
+ * ===============================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package net.brabenetz.lib.securedproperties.core;
+
+import com.github.fge.lambdas.Throwing;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+
+import java.io.File;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Factory for the default {@link SecretContainerSource} implementations.
+ * <p>
+ * Environment variables and System-Properties have the same format as the secret File (see {@link SecretContainerStore}), but the
+ * lines can also be separated by ';', e.g. "AES_128;vpOATkkaMQ8EYnXgP3+nLw==".
+ */
+public final class SecretContainerSources {
+
+    /** Prefix for {@link #parse(String)}: environment variable. */
+    public static final String PREFIX_ENV = "env:";
+    /** Prefix for {@link #parse(String)}: System-Property. */
+    public static final String PREFIX_SYSTEM_PROPERTY = "sysprop:";
+    /** Prefix for {@link #parse(String)}: classpath resource. */
+    public static final String PREFIX_CLASSPATH = "classpath:";
+    /** Prefix for {@link #parse(String)}: secret File. */
+    public static final String PREFIX_FILE = "file:";
+    /** Prefix for {@link #parse(String)}: HTTP endpoint, see {@link RemoteSecretContainerSource}. */
+    public static final String PREFIX_HTTP = "http:";
+    /** Prefix for {@link #parse(String)}: HTTPS endpoint, see {@link RemoteSecretContainerSource}. */
+    public static final String PREFIX_HTTPS = "https:";
+    /** Prefix for {@link #parse(String)}: PKCS12 KeyStore, see {@link KeyStoreSecretContainerSource}. */
+    public static final String PREFIX_PKCS12 = "pkcs12:";
+    /** Prefix for {@link #parse(String)}: JCEKS KeyStore, see {@link KeyStoreSecretContainerSource}. */
+    public static final String PREFIX_JCEKS = "jceks:";
+    /** The environment variable with the password of a KeyStore defined by {@link #parse(String)}. */
+    public static final String KEY_STORE_PASSWORD_ENV = "SECURED_PROPERTIES_KEYSTORE_PASSWORD";
+
+    /** The KeyStores defined by {@link #parse(String)}, so each is loaded only once per JVM. */
+    private static final ConcurrentMap<String, KeyStoreSecretContainerSource> KEY_STORES = new ConcurrentHashMap<>();
+    /** The HTTP(S) endpoints defined by {@link #parse(String)}, so each is fetched and cached only once per JVM. */
+    private static final ConcurrentMap<String, RemoteSecretContainerSource> REMOTE_SOURCES = new ConcurrentHashMap<>();
+
+    private SecretContainerSources() {
+        super();
+    }
+
+    /**
+     * Creates a {@link SecretContainerSource} from a String like "env:MY_SECRET_KEY", "sysprop:my.secret.key", "classpath:secret/app.key",
+     * "file:/path/to/secret.key", "https://keys.internal/app.key" or "pkcs12:/path/to/keys.p12".
+     * <p>
+     * The password of a PKCS12 or JCEKS KeyStore is read from the environment variable {@value #KEY_STORE_PASSWORD_ENV}, and each KeyStore is loaded
+     * only once per JVM, also if it is parsed several times. The same applies to the {@link RemoteSecretContainerSource} of an HTTP(S) endpoint.
+     *
+     * @param sourceDefinition
+     *        the definition with one of the prefixes {@link #PREFIX_ENV}, {@link #PREFIX_SYSTEM_PROPERTY}, {@link #PREFIX_CLASSPATH},
+     *        {@link #PREFIX_FILE}, {@link #PREFIX_HTTP}, {@link #PREFIX_HTTPS}, {@link #PREFIX_PKCS12} or {@link #PREFIX_JCEKS}. A secret File defined
+     *        this way will not be auto-created.
+     * @return the {@link SecretContainerSource}
+     */
+    public static SecretContainerSource parse(final String sourceDefinition) {
+        if (sourceDefinition.startsWith(PREFIX_ENV)) {
+            return environmentVariable(sourceDefinition.substring(PREFIX_ENV.length()));
+        } else if (sourceDefinition.startsWith(PREFIX_SYSTEM_PROPERTY)) {
+            return systemProperty(sourceDefinition.substring(PREFIX_SYSTEM_PROPERTY.length()));
+        } else if (sourceDefinition.startsWith(PREFIX_CLASSPATH)) {
+            return classpath(sourceDefinition.substring(PREFIX_CLASSPATH.length()));
+        } else if (sourceDefinition.startsWith(PREFIX_FILE)) {
+            return file(new File(sourceDefinition.substring(PREFIX_FILE.length())), false, 0);
+        } else if (sourceDefinition.startsWith(PREFIX_HTTP) || sourceDefinition.startsWith(PREFIX_HTTPS)) {
+            return REMOTE_SOURCES.computeIfAbsent(sourceDefinition,
+                definition -> new RemoteSecretContainerSource(Throwing.supplier(() -> new URL(definition)).get()));
+        } else if (sourceDefinition.startsWith(PREFIX_PKCS12)) {
+            return KEY_STORES.computeIfAbsent(sourceDefinition, definition -> keyStore(definition.substring(PREFIX_PKCS12.length()), "PKCS12"));
+        } else if (sourceDefinition.startsWith(PREFIX_JCEKS)) {
+            return KEY_STORES.computeIfAbsent(sourceDefinition, definition -> keyStore(definition.substring(PREFIX_JCEKS.length()), "JCEKS"));
+        }
+        throw new IllegalArgumentException(String.format("Unknown secret container source '%s'. Supported prefixes are: %s", sourceDefinition,
+            Arrays.asList(PREFIX_ENV, PREFIX_SYSTEM_PROPERTY, PREFIX_CLASSPATH, PREFIX_FILE, PREFIX_HTTP, PREFIX_HTTPS, PREFIX_PKCS12, PREFIX_JCEKS)));
+    }
+
+    private static KeyStoreSecretContainerSource keyStore(final String file, final String type) {
+        final String password = System.getenv(KEY_STORE_PASSWORD_ENV);
+        Validate.isTrue(password != null, "The environment variable %s with the password of the KeyStore '%s' is not set.", KEY_STORE_PASSWORD_ENV, file);
+        return new KeyStoreSecretContainerSource(new File(file), password.toCharArray()).withType(type);
+    }
+
+    /**
+     * The secret File, cached by {@link SecretContainerCache}.
+     *
+     * @param secretContainerFile
+     *        The location of the secret file.
+     * @param autoCreateSecretKey
+     *        flag to auto create the secret File if it doesn't already exists.
+     * @param revalidationIntervalMillis
+     *        The minimum time in milliseconds between two checks if the secret File has changed.
+     * @return the {@link SecretContainerSource}
+     */
+    public static SecretContainerSource file(final File secretContainerFile, final boolean autoCreateSecretKey, final long revalidationIntervalMillis) {
+        return new Source("File '" + secretContainerFile + "'", Arrays.asList(secretContainerFile, autoCreateSecretKey, revalidationIntervalMillis), false,
+            allowedAlgorithm -> SecretContainerCache.getSecretContainer(secretContainerFile, autoCreateSecretKey, revalidationIntervalMillis,
+                allowedAlgorithm));
+    }
+
+    /**
+     * The content of an environment variable. Environment variables cannot change, so the source is immutable.
+     *
+     * @param name
+     *        the name of the environment variable.
+     * @return the {@link SecretContainerSource}
+     */
+    public static SecretContainerSource environmentVariable(final String name) {
+        final String description = "environment variable '" + name + "'";
+        return new Source(description, description, true, allowedAlgorithm -> fromString(description, System.getenv(name), allowedAlgorithm));
+    }
+
+    /**
+     * The content of a System-Property. System-Properties can be changed at runtime, so the source is not immutable.
+     *
+     * @param name
+     *        the name of the System-Property.
+     * @return the {@link SecretContainerSource}
+     */
+    public static SecretContainerSource systemProperty(final String name) {
+        final String description = "System-Property '" + name + "'";
+        return new Source(description, description, false, allowedAlgorithm -> fromString(description, System.getProperty(name), allowedAlgorithm));
+    }
+
+    /**
+     * A classpath resource with the content of a secret File, loaded by the ClassLoader of this library. The source is immutable.
+     *
+     * @param resource
+     *        the path of the classpath resource, like "secret/app.key".
+     * @return the {@link SecretContainerSource}
+     */
+    public static SecretContainerSource classpath(final String resource) {
+        final String description = "classpath resource '" + resource + "'";
+        return new Source(description, description, true, allowedAlgorithm -> {
+            final InputStream input = SecretContainerSources.class.getClassLoader().getResourceAsStream(StringUtils.removeStart(resource, "/"));
+            Validate.isTrue(input != null, "The %s doesn't exist.", description);
+            final String content = Throwing.supplier(() -> {
+                try (InputStream in = input) {
+                    return IOUtils.toString(in, StandardCharsets.UTF_8);
+                }
+            }).get();
+            return fromString(description, content, allowedAlgorithm);
+        });
+    }
+
+    /**
+     * A pre-built {@link SecretContainer}. The source is immutable.
+     *
+     * @param secretContainer
+     *        the {@link SecretContainer}
+     * @return the {@link SecretContainerSource}
+     */
+    public static SecretContainerSource inMemory(final SecretContainer secretContainer) {
+        Validate.notNull(secretContainer, "The SecretContainer is required");
+        return new Source("in-memory", secretContainer, true, allowedAlgorithm -> secretContainer);
+    }
+
+    private static SecretContainer fromString(final String description, final String content, final Algorithm... allowedAlgorithm) {
+        Validate.isTrue(StringUtils.isNotBlank(content), "The %s is not set.", description);
+        final List<String> lines = Arrays.asList(content.trim().split("\\s*[;\\r\\n]+\\s*"));
+        return SecretContainerStore.read(description, lines, allowedAlgorithm);
+    }
+
+    /**
+     * Function to load the {@link SecretContainer} with the allowed {@link Algorithm}s.
+     */
+    @FunctionalInterface
+    private interface Loader {
+        SecretContainer load(Algorithm... allowedAlgorithm);
+    }
+
+    /**
+     * Simple {@link SecretContainerSource} implementation for the factory methods. Two sources with the same definition are equal, so the
+     * {@link SecretContainerCache} finds an immutable source again, also if it was created again (e.g. by {@link #parse(String)}).
+     */
+    private static final class Source implements SecretContainerSource {
+        private final String description;
+        private final Object definition;
+        private final boolean immutable;
+        private final Loader loader;
+
+        Source(final String description, final Object definition, final boolean immutable, final Loader loader) {
+            this.description = description;
+            this.definition = definition;
+            this.immutable = immutable;
+            this.loader = loader;
+        }
+
+        @Override
+        public SecretContainer getSecretContainer(final Algorithm... allowedAlgorithm) {
+            return loader.load(allowedAlgorithm);
+        }
+
+        @Override
+        public boolean isImmutable() {
+            return immutable;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            return obj instanceof Source && definition.equals(((Source) obj).definition);
+        }
+
+        @Override
+        public int hashCode() {
+            return definition.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return description;
+        }
+    }
+}
@@ -21,17 +21,46 @@ package net.brabenetz.lib.securedproperties.core;
 
 import com.github.fge.lambdas.Throwing;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
 
 import javax.crypto.SecretKey;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
 
 /**
  * Utility to read (and write if not already exists) a {@link SecretContainer} object from FileSystem.
+ * <p>
+ * The secret File contains the {@link Algorithm} in the first line and the base64 encoded secret key in the second line. Optional following lines
+ * define the key ring of the {@link SecretContainer}:
+ *
+ * <pre>
+ * AES_128
+ * vpOATkkaMQ8EYnXgP3+nLw==
+ * k2=AES_256:Oi2q8ul8BzWZJe4pC7U8RbZ/5t3hUv8m0nh2J2fM6uY=
+ * primary=k2
+ * </pre>
+ *
+ * Lines like "keyId=ALGORITHM:base64-key" add a key to the key ring, and "primary=keyId" defines the key for new encryptions. Empty lines and lines
+ * starting with "#" are ignored. The algorithm lines can end with a comment like "AES_128 # fastest of min 128 bit, ns per value: AES_128=1520",
+ * see {@link AlgorithmSelection}.
+ * <p>
+ * Instead of a base64 encoded secret key, each key can also be derived from a passphrase, see {@link PasswordBasedKeys}.
  * 
  * @see #getSecretContainer(File, boolean, Algorithm...)
  */
@@ -39,6 +68,11 @@ public final class SecretContainerStore {
 
     private static final org.slf4j.Logger LOG = org.slf4j.LoggerFactory.getLogger(SecretContainerStore.class);
 
+    /** The reserved key in the secret File to define the primary key-id. */
+    private static final String PRIMARY_KEY_ID = "primary";
+    /** The start of a comment after an algorithm. */
+    private static final String COMMENT = "#";
+
     private SecretContainerStore() {
         super();
     }
@@ -56,49 +90,272 @@ public final class SecretContainerStore {
      * @return the {@link SecretContainer}
      */
     public static SecretContainer getSecretContainer(final File secretContainerFile, final boolean autoCreateSecretKey, final Algorithm... allowedAlgorithm) {
+        return getSecretContainer(secretContainerFile, autoCreateSecretKey, () -> AlgorithmSelection.firstSupported(allowedAlgorithm), allowedAlgorithm);
+    }
+
+    /**
+     * Same as {@link #getSecretContainer(File, boolean, Algorithm...)}, but the {@link Algorithm} of an auto-created secret File is selected by the
+     * given supplier, e.g. <code>() -&gt; AlgorithmSelection.fastest(128, allowedAlgorithm)</code>. The supplier is only called if the secret File
+     * must be created.
+     *
+     * @param selection
+     *        The selection of the {@link Algorithm} in case the secret File must be generated.
+     */
+    public static SecretContainer getSecretContainer(final File secretContainerFile, final boolean autoCreateSecretKey,
+            final Supplier<AlgorithmSelection> selection, final Algorithm... allowedAlgorithm) {
 
         final SecretContainer secretContainer;
         if (secretContainerFile.exists()) {
             secretContainer = read(secretContainerFile, allowedAlgorithm);
         } else if (autoCreateSecretKey) {
-            Algorithm algorithm = Encryption.getFirstSupportedAlgorithm(allowedAlgorithm);
-
-            SecretKey secretKey = Encryption.createKey(algorithm);
-            secretContainer = new SecretContainer(algorithm, secretKey);
-            write(secretContainer, secretContainerFile);
+            secretContainer = getSecretContainer(secretContainerFile, selection.get(), allowedAlgorithm);
         } else {
             throw new IllegalArgumentException(String.format("Secret file '%s' doesn't exist, and auto create is off.", secretContainerFile.getAbsolutePath()));
         }
         return secretContainer;
     }
 
-    private static void write(final SecretContainer secretContainer, final File file) {
+    /**
+     * Read the {@link SecretContainer} object from the given Secret File, or create the secret File with a new key of the selected
+     * {@link Algorithm} if it doesn't exist. The comment of the {@link AlgorithmSelection} (e.g. the measured numbers) is written after the algorithm.
+     *
+     * @param secretContainerFile
+     *        The location where the secret file should be placed.
+     * @param selection
+     *        The {@link Algorithm} in case the secret File must be generated, e.g. {@link AlgorithmSelection#fastest(int, Algorithm...)}.
+     * @param allowedAlgorithm
+     *        A list of allowed {@link Algorithm}s to read the secret File.
+     * @return the {@link SecretContainer}
+     */
+    public static SecretContainer getSecretContainer(final File secretContainerFile, final AlgorithmSelection selection,
+            final Algorithm... allowedAlgorithm) {
+        if (secretContainerFile.exists()) {
+            return read(secretContainerFile, allowedAlgorithm);
+        }
+        return Throwing.supplier(() -> create(secretContainerFile.toPath().toAbsolutePath(), selection, allowedAlgorithm)).get();
+    }
+
+    /**
+     * Creates a new secret File without ever overwriting an existing one, so parallel starting JVMs on a shared volume all end up with the same key.
+     * <p>
+     * The new key is written into a temporary File which is then hard-linked to the target path. Linking fails if the target already exists, in which
+     * case the key of the winner is read instead. If the File-System doesn't support hard links, an exclusive lock on a ".lock" File is used instead.
+     * Readers of an existing secret File never take a lock.
+     */
+    private static SecretContainer create(final Path target, final AlgorithmSelection selection, final Algorithm... allowedAlgorithm)
+            throws IOException {
+        final Algorithm algorithm = selection.getAlgorithm();
+        final SecretContainer secretContainer = new SecretContainer(algorithm, Encryption.createKey(algorithm, selection.getOptions()));
+
+        final Path tempFile = writeTempFile(secretContainer, selection.getComment(), target);
+        try {
+            Files.createLink(target, tempFile);
+            return secretContainer;
+        } catch (FileAlreadyExistsException e) {
+            LOG.debug("Secret file '{}' was created concurrently, the existing key will be used.", target);
+            return read(target.toFile(), allowedAlgorithm);
+        } catch (UnsupportedOperationException | IOException e) {
+            LOG.debug("Hard link to '{}' not possible ({}), use a lock file instead.", target, e.getMessage());
+            return createWithLock(target, tempFile, secretContainer, allowedAlgorithm);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private static SecretContainer createWithLock(final Path target, final Path tempFile, final SecretContainer secretContainer,
+            final Algorithm... allowedAlgorithm) throws IOException {
+        final Path lockFile = target.resolveSibling(target.getFileName() + ".lock");
+        // the FileLock is held per JVM, so threads of the same JVM must be serialized additionally.
+        synchronized (SecretContainerStore.class) {
+            try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                final FileLock lock = channel.lock();
+                try {
+                    if (Files.exists(target)) {
+                        return read(target.toFile(), allowedAlgorithm);
+                    }
+                    Files.move(tempFile, target, StandardCopyOption.ATOMIC_MOVE);
+                    return secretContainer;
+                } finally {
+                    lock.release();
+                }
+            } finally {
+                deleteLockFile(target, lockFile);
+            }
+        }
+    }
+
+    /**
+     * Deletes the lock file once the secret file exists: a process which still waits for the lock of the deleted lock file (or locks a new one)
+     * only reads the existing secret file. A failed deletion is ignored, the lock file is only used again for the same secret file.
+     */
+    private static void deleteLockFile(final Path target, final Path lockFile) {
+        if (!Files.exists(target)) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(lockFile);
+        } catch (IOException e) {
+            LOG.debug("Lock file '{}' could not be deleted: {}", lockFile, e.getMessage());
+        }
+    }
+
+    private static Path writeTempFile(final SecretContainer secretContainer, final String algorithmComment, final Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        final Path tempFile = Files.createTempFile(target.getParent(), "." + target.getFileName(), ".tmp");
+        try {
+            Files.write(tempFile, toLines(secretContainer, algorithmComment), StandardCharsets.UTF_8);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tempFile);
+            throw e;
+        }
+        return tempFile;
+    }
+
+    /**
+     * Writes the given {@link SecretContainer} (including the key ring) into the given secret File.
+     *
+     * @param secretContainer
+     *        The {@link SecretContainer} to store.
+     * @param file
+     *        The secret File.
+     */
+    public static void write(final SecretContainer secretContainer, final File file) {
+        write(secretContainer, file, null);
+    }
+
+    /**
+     * Writes the given {@link SecretContainer} (including the key ring) into the given secret File, with a comment after the algorithm.
+     *
+     * @param secretContainer
+     *        The {@link SecretContainer} to store.
+     * @param file
+     *        The secret File.
+     * @param algorithmComment
+     *        The comment after the algorithm like {@link AlgorithmSelection#getComment()}, or null for no comment.
+     */
+    public static void write(final SecretContainer secretContainer, final File file, final String algorithmComment) {
+        Validate.isTrue(algorithmComment == null || !StringUtils.containsAny(algorithmComment, '\r', '\n'), "The comment must be a single line");
+        Throwing.runnable(() -> {
+            final Path target = file.toPath().toAbsolutePath();
+            final Path tempFile = writeTempFile(secretContainer, algorithmComment, target);
+            try {
+                Files.move(tempFile, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+        }).run();
+    }
+
+    private static List<String> toLines(final SecretContainer secretContainer, final String algorithmComment) {
         List<String> lines = new ArrayList<>();
-        lines.add(secretContainer.getAlgorithm().toString());
-        lines.add(Encryption.toBase64String(secretContainer.getSecretKey()));
-        Throwing.runnable(() -> FileUtils.writeLines(file, "utf-8", lines)).run();
+        if (algorithmComment == null) {
+            lines.add(secretContainer.getAlgorithm().toString());
+        } else {
+            lines.add(secretContainer.getAlgorithm() + " " + COMMENT + " " + algorithmComment);
+        }
+        lines.add(toSecretKeyLine(secretContainer.getSecretKey()));
+        for (Map.Entry<String, SecretContainer> key : secretContainer.getKeyRing().entrySet()) {
+            Validate.isTrue(!PRIMARY_KEY_ID.equals(key.getKey()), "The key-id '%s' is reserved.", PRIMARY_KEY_ID);
+            lines.add(key.getKey() + "=" + key.getValue().getAlgorithm() + ":" + toSecretKeyLine(key.getValue().getSecretKey()));
+        }
+        if (secretContainer.getPrimaryKeyId() != null) {
+            lines.add(PRIMARY_KEY_ID + "=" + secretContainer.getPrimaryKeyId());
+        }
+        return lines;
     }
 
-    // SuppressWarnings "PMD.PreserveStackTrace": Stacktrace will be logged on debug level if really required.
-    @SuppressWarnings("PMD.PreserveStackTrace")
     private static SecretContainer read(final File file, final Algorithm... allowedAlgorithms) {
+        final String source = String.format("File '%s'", file.getAbsolutePath());
         try {
             List<String> readLines = Throwing.supplier(() -> FileUtils.readLines(file, "utf-8")).get();
-            Validate.isTrue(readLines.size() >= 2, "secrete File must have at least two lines");
-            String algorithmStr = readLines.get(0);
+            return read(source, readLines, allowedAlgorithms);
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (Exception e) {
+            throw readFailed(source, e);
+        }
+    }
+
+    /**
+     * Parses a {@link SecretContainer} from the lines of a secret File (see {@link SecretContainerStore} for the format).
+     *
+     * @param source
+     *        A description of the source for error messages, e.g. "File '/path/to/secret.key'".
+     * @param lines
+     *        the lines of the secret File.
+     * @param allowedAlgorithms
+     *        A list of allowed {@link Algorithm}s.
+     * @return the {@link SecretContainer}
+     */
+    public static SecretContainer read(final String source, final List<String> lines, final Algorithm... allowedAlgorithms) {
+        try {
+            Validate.isTrue(lines.size() >= 2, "secrete File must have at least two lines");
+            String algorithmStr = withoutComment(lines.get(0));
             Algorithm algorithm = parseAlgorithm(allowedAlgorithms, algorithmStr);
             Validate.notNull(algorithm, "Unable to parse algorithm '%s'. Allowed algorithms are: %s",
                 algorithmStr, Arrays.asList(allowedAlgorithms));
-            SecretKey secretKey = Encryption.readSecretKey(algorithm, readLines.get(1));
-            return new SecretContainer(algorithm, secretKey);
+            SecretKey secretKey = readSecretKey(algorithm, lines.get(1).trim());
+            return readKeyRing(algorithm, secretKey, lines.subList(2, lines.size()), allowedAlgorithms);
         } catch (Exception e) {
-            String errorMessage = String.format("The secret key could not be read from File '%s'. %s", file.getAbsolutePath(), e.getMessage());
-            LOG.debug("{}", errorMessage, e);
-            throw new IllegalArgumentException(errorMessage);
+            throw readFailed(source, e);
+        }
+    }
+
+    // SuppressWarnings "PMD.PreserveStackTrace": Stacktrace will be logged on debug level if really required.
+    @SuppressWarnings("PMD.PreserveStackTrace")
+    private static IllegalArgumentException readFailed(final String source, final Exception e) {
+        String errorMessage = String.format("The secret key could not be read from %s. %s", source, e.getMessage());
+        LOG.debug("{}", errorMessage, e);
+        return new IllegalArgumentException(errorMessage);
+    }
+
+    private static SecretKey readSecretKey(final Algorithm algorithm, final String secretKeyLine) {
+        if (PasswordBasedKeys.isDefinition(secretKeyLine)) {
+            return PasswordBasedKeys.readSecretKey(algorithm, secretKeyLine);
+        }
+        return Encryption.readSecretKey(algorithm, secretKeyLine);
+    }
+
+    private static String toSecretKeyLine(final SecretKey secretKey) {
+        if (secretKey instanceof DerivedSecretKey) {
+            // never store the derived key itself.
+            return ((DerivedSecretKey) secretKey).getDefinition();
+        }
+        return Encryption.toBase64String(secretKey);
+    }
+
+    private static SecretContainer readKeyRing(final Algorithm algorithm, final SecretKey secretKey, final List<String> keyRingLines,
+            final Algorithm... allowedAlgorithms) {
+        final Map<String, SecretContainer> keyRing = new LinkedHashMap<>();
+        String primaryKeyId = null;
+        for (String line : keyRingLines) {
+            if (StringUtils.isBlank(line) || line.startsWith("#")) {
+                continue;
+            }
+            final String keyId = StringUtils.substringBefore(line, "=").trim();
+            final String value = withoutComment(StringUtils.substringAfter(line, "="));
+            if (PRIMARY_KEY_ID.equals(keyId)) {
+                primaryKeyId = value;
+                continue;
+            }
+            final String keyAlgorithmStr = StringUtils.substringBefore(value, ":");
+            final Algorithm keyAlgorithm = parseAlgorithm(allowedAlgorithms, keyAlgorithmStr);
+            Validate.notNull(keyAlgorithm, "Unable to parse algorithm '%s' of key-id '%s'. Allowed algorithms are: %s",
+                keyAlgorithmStr, keyId, Arrays.asList(allowedAlgorithms));
+            keyRing.put(keyId, new SecretContainer(keyAlgorithm, readSecretKey(keyAlgorithm, StringUtils.substringAfter(value, ":"))));
         }
+        return new SecretContainer(algorithm, secretKey, keyRing, primaryKeyId);
+    }
+
+    /**
+     * @return the given line without a following comment like "AES_128 # fastest of ...", and without whitespace. Base64 keys and key definitions
+     *         never contain the {@link #COMMENT} char.
+     */
+    private static String withoutComment(final String line) {
+        return StringUtils.substringBefore(line, COMMENT).trim();
     }
 
-    private static Algorithm parseAlgorithm(final Algorithm[] allowedAlgorithms, final String algorithmStr) {
+    static Algorithm parseAlgorithm(final Algorithm[] allowedAlgorithms, final String algorithmStr) {
         for (Algorithm allowedAlgorithm : allowedAlgorithms) {
             if (algorithmStr.equals(allowedAlgorithm.toString())) {
                 return allowedAlgorithm;
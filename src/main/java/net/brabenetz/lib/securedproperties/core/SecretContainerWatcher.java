@@ -0,0 +1,206 @@
+/*-
+ * #%L
+ * Secured Properties
+ * ===============================================================
+ * Copyright (C) 2016 - 2026 Brabenetz Harald, Austria
+ * ===============================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package net.brabenetz.lib.securedproperties.core;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the {@link SecretContainer} of a secret File in memory and reloads it in a background thread as soon as the secret File changes.
+ * <p>
+ * The directory of the secret File is registered in a {@link WatchService}. On each change in this directory a daemon thread checks if the secret File
+ * itself has changed (last-modified, size or inode), reads the new {@link SecretContainer} and publishes it atomically. Readers of
+ * {@link #getSecretContainer()} never block and never touch the file system.<br>
+ * If the changed secret File cannot be read (e.g. it was only partially written or deleted), the last valid {@link SecretContainer} will be kept.
+ *
+ * @see #watch(File, boolean, Algorithm...)
+ */
+public final class SecretContainerWatcher implements Closeable {
+
+    private static final org.slf4j.Logger LOG = org.slf4j.LoggerFactory.getLogger(SecretContainerWatcher.class);
+
+    private static final ConcurrentMap<SecretFileKey, SecretContainerWatcher> WATCHERS = new ConcurrentHashMap<>();
+
+    private final SecretFileKey secretFileKey;
+    private final File secretContainerFile;
+    private final Algorithm[] allowedAlgorithm;
+    private final AtomicReference<SecretContainer> secretContainer = new AtomicReference<>();
+    private final List<SecretContainerListener> listeners = new CopyOnWriteArrayList<>();
+    private final WatchService watchService;
+    private volatile FileStamp fileStamp;
+
+    private SecretContainerWatcher(final SecretFileKey secretFileKey, final File secretContainerFile, final boolean autoCreateSecretKey,
+            final Supplier<AlgorithmSelection> selection, final Algorithm... allowedAlgorithm) {
+        this.secretFileKey = secretFileKey;
+        this.secretContainerFile = secretContainerFile;
+        this.allowedAlgorithm = allowedAlgorithm;
+
+        // initial read (or create) is done synchronously, so an invalid secret File is reported to the caller.
+        this.fileStamp = FileStamp.of(secretFileKey.getPath());
+        this.secretContainer.set(SecretContainerStore.getSecretContainer(secretContainerFile, autoCreateSecretKey, selection, allowedAlgorithm));
+        if (this.fileStamp == null) {
+            this.fileStamp = FileStamp.of(secretFileKey.getPath());
+        }
+
+        final Path directory = secretFileKey.getPath().getParent();
+        try {
+            this.watchService = FileSystems.getDefault().newWatchService();
+            directory.register(this.watchService,
+                StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Unable to watch the directory '%s'.", directory), e);
+        }
+
+        final Thread watchThread = new Thread(this::watchLoop, "secured-properties-watcher-" + secretFileKey.getPath().getFileName());
+        watchThread.setDaemon(true);
+        watchThread.start();
+    }
+
+    /**
+     * Returns the (shared) {@link SecretContainerWatcher} for the given secret File and allowed {@link Algorithm}s. The first call per secret File reads
+     * the secret File (or creates it, see {@link SecretContainerStore#getSecretContainer(File, boolean, Algorithm...)}) and starts watching it.
+     *
+     * @param secretContainerFile
+     *        The location where the secret file should be placed.
+     * @param autoCreateSecretKey
+     *        flag to auto create the secret File if it doesn't already exists.
+     * @param allowedAlgorithm
+     *        A list of allowed {@link Algorithm}s.
+     * @return the running {@link SecretContainerWatcher}.
+     */
+    public static SecretContainerWatcher watch(final File secretContainerFile, final boolean autoCreateSecretKey, final Algorithm... allowedAlgorithm) {
+        return watch(secretContainerFile, autoCreateSecretKey, () -> AlgorithmSelection.firstSupported(allowedAlgorithm), allowedAlgorithm);
+    }
+
+    /**
+     * Same as {@link #watch(File, boolean, Algorithm...)}, but the {@link Algorithm} of an auto-created secret File is selected by the given
+     * supplier, which is only called by the first call if the secret File must be created.
+     *
+     * @param selection
+     *        The selection of the {@link Algorithm} in case the secret File must be generated.
+     */
+    public static SecretContainerWatcher watch(final File secretContainerFile, final boolean autoCreateSecretKey,
+            final Supplier<AlgorithmSelection> selection, final Algorithm... allowedAlgorithm) {
+        final SecretFileKey secretFileKey = new SecretFileKey(secretContainerFile, allowedAlgorithm);
+        final SecretContainerWatcher watcher = WATCHERS.get(secretFileKey);
+        if (watcher != null) {
+            return watcher;
+        }
+        return WATCHERS.computeIfAbsent(secretFileKey,
+            key -> new SecretContainerWatcher(key, secretContainerFile, autoCreateSecretKey, selection, allowedAlgorithm));
+    }
+
+    /**
+     * @return the current {@link SecretContainer} without any file system access.
+     */
+    public SecretContainer getSecretContainer() {
+        return secretContainer.get();
+    }
+
+    public void addListener(final SecretContainerListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(final SecretContainerListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Stops watching the secret File. A following {@link #watch(File, boolean, Algorithm...)} will start a new watcher.
+     */
+    @Override
+    public void close() {
+        WATCHERS.remove(secretFileKey, this);
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            LOG.debug("Unable to close the WatchService for '{}': {}", secretFileKey.getPath(), e.getMessage());
+        }
+    }
+
+    private void watchLoop() {
+        try {
+            while (true) {
+                final WatchKey watchKey = watchService.take();
+                // the events are not evaluated: the secret file could also be changed through a symbolic link (e.g. Kubernetes secrets).
+                watchKey.pollEvents();
+                reloadIfChanged();
+                if (!watchKey.reset()) {
+                    LOG.warn("The directory of the secret file '{}' is no longer accessible. Stop watching it.", secretFileKey.getPath());
+                    close();
+                    return;
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            LOG.debug("Stop watching the secret file '{}'.", secretFileKey.getPath());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // SuppressWarnings "PMD.AvoidCatchingGenericException": every failure must keep the last valid SecretContainer.
+    @SuppressWarnings("PMD.AvoidCatchingGenericException")
+    private void reloadIfChanged() {
+        final FileStamp newFileStamp = FileStamp.of(secretFileKey.getPath());
+        if (newFileStamp == null || newFileStamp.equals(fileStamp)) {
+            return;
+        }
+        // remember the stamp also for invalid files, so the same invalid file is not read again on each event.
+        fileStamp = newFileStamp;
+        final SecretContainer newSecretContainer;
+        try {
+            newSecretContainer = SecretContainerStore.getSecretContainer(secretContainerFile, false, allowedAlgorithm);
+        } catch (RuntimeException e) {
+            LOG.warn("The changed secret file could not be read. The previous secret key will be used: {}", e.getMessage());
+            notifyListeners(listener -> listener.secretContainerReloadFailed(e));
+            return;
+        }
+        final SecretContainer oldSecretContainer = secretContainer.getAndSet(newSecretContainer);
+        LOG.info("The secret file '{}' was reloaded.", secretFileKey.getPath());
+        notifyListeners(listener -> listener.secretContainerChanged(oldSecretContainer, newSecretContainer));
+    }
+
+    // SuppressWarnings "PMD.AvoidCatchingGenericException": a failing listener must not stop the watcher thread.
+    @SuppressWarnings("PMD.AvoidCatchingGenericException")
+    private void notifyListeners(final Consumer<SecretContainerListener> notification) {
+        for (SecretContainerListener listener : listeners) {
+            try {
+                notification.accept(listener);
+            } catch (RuntimeException e) {
+                LOG.warn("SecretContainerListener {} failed: {}", listener, e.getMessage(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*-
+ * #%L
+ * Secured Properties
+ * ===============================================================
+ * Copyright (C) 2016 - 2026 Brabenetz Harald, Austria
+ * ===============================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package net.brabenetz.lib.securedproperties.core;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Key for process-wide registries of secret files: the normalized absolute path of the secret file plus the allowed {@link Algorithm}s.
+ * <p>
+ * The path is only normalized lexically (no file system access), so the lookup stays cheap.
+ */
+final class SecretFileKey {
+    private final Path path;
+    private final List<Algorithm> algorithms;
+
+    SecretFileKey(final File secretFile, final Algorithm... algorithms) {
+        this.path = normalize(secretFile);
+        this.algorithms = Arrays.asList(algorithms);
+    }
+
+    static Path normalize(final File secretFile) {
+        return secretFile.getAbsoluteFile().toPath().normalize();
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof SecretFileKey)) {
+            return false;
+        }
+        final SecretFileKey other = (SecretFileKey) obj;
+        return path.equals(other.path) && algorithms.equals(other.algorithms);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * path.hashCode() + algorithms.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return path + " " + algorithms;
+    }
+}
@@ -0,0 +1,225 @@
+/*-
+ * #%L
+ * Secured Properties
+ * ===============================================================
+ * Copyright (C) 2016 - 2026 Brabenetz Harald, Austria
+ * ===============================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package net.brabenetz.lib.securedproperties.core;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@link SecureRandom} which is used for new secret keys and for salts.
+ * <p>
+ * On freshly booted VMs and minimal containers the default {@link SecureRandom} can block for seconds until the entropy pool is filled. With
+ * {@link #setStrategy(String)} a non-blocking algorithm like {@value #NATIVE_PRNG_NON_BLOCKING} (Unix) or {@value #DRBG} (Java 9+) can be used
+ * instead. The {@link SecureRandom} is created once per strategy, and the time of the entropy acquisition is logged and available with
+ * {@link #getEntropyAcquisitionNanos()}.
+ * <p>
+ * The strategy of {@link #setStrategy(String)} applies to the whole JVM. A single configuration can use another strategy for its new keys (see
+ * {@link Encryption#createKey(Algorithm, EncryptionOptions)}), salts and nonces with {@link EncryptionOptions#withSecureRandomStrategy(String)}.
+ * The entropy acquisition time of such a strategy is available with {@link #getEntropyAcquisitionNanos(String)}.
+ */
+public final class SecureRandoms {
+
+    private static final org.slf4j.Logger LOG = org.slf4j.LoggerFactory.getLogger(SecureRandoms.class);
+
+    /** The default {@link SecureRandom} of the JVM (new SecureRandom()). */
+    public static final String DEFAULT = "default";
+    /** Non-blocking /dev/urandom based algorithm on Unix systems. */
+    public static final String NATIVE_PRNG_NON_BLOCKING = "NativePRNGNonBlocking";
+    /** The NIST SP 800-90A DRBG (Java 9+). */
+    public static final String DRBG = "DRBG";
+
+    private static final int SEEDING_BYTES = 16;
+
+    private static volatile Holder holder = new Holder(DEFAULT, null);
+    /** The {@link SecureRandom} per strategy of {@link #getSecureRandom(String)}. */
+    private static final ConcurrentMap<String, Holder> STRATEGIES = new ConcurrentHashMap<>();
+
+    private SecureRandoms() {
+        super();
+    }
+
+    /**
+     * Uses the {@link SecureRandom} with the given algorithm for new secret keys and salts in this JVM. Calling it again with the same strategy keeps
+     * the already created {@link SecureRandom}.
+     *
+     * @param strategy
+     *        {@value #DEFAULT}, {@value #NATIVE_PRNG_NON_BLOCKING}, {@value #DRBG} or any other {@link SecureRandom} algorithm. If the algorithm is not
+     *        available the default {@link SecureRandom} is used.
+     */
+    public static void setStrategy(final String strategy) {
+        setStrategy(strategy, null);
+    }
+
+    /**
+     * Like {@link #setStrategy(String)}, but the {@link SecureRandom} is additionally seeded with the given seed (e.g. {@value #DRBG} with explicit
+     * seeding).
+     *
+     * @param strategy
+     *        the {@link SecureRandom} algorithm.
+     * @param seed
+     *        the additional seed, or null.
+     */
+    public static void setStrategy(final String strategy, final byte[] seed) {
+        final String newStrategy = StringUtils.defaultIfBlank(strategy, DEFAULT);
+        if (holder.isStrategy(newStrategy, seed)) {
+            return;
+        }
+        synchronized (SecureRandoms.class) {
+            if (!holder.isStrategy(newStrategy, seed)) {
+                holder = new Holder(newStrategy, seed == null ? null : seed.clone());
+            }
+        }
+    }
+
+    public static String getStrategy() {
+        return holder.strategy;
+    }
+
+    /**
+     * @return the {@link SecureRandom} of the current strategy. The first call of a strategy waits for the entropy acquisition.
+     */
+    public static SecureRandom getSecureRandom() {
+        return holder.getSecureRandom();
+    }
+
+    /**
+     * @param strategy
+     *        the {@link SecureRandom} algorithm, see {@link #setStrategy(String)}.
+     * @return the {@link SecureRandom} of the given strategy, independent of the JVM-wide strategy. It is created once per strategy.
+     */
+    public static SecureRandom getSecureRandom(final String strategy) {
+        final String newStrategy = StringUtils.defaultIfBlank(strategy, DEFAULT);
+        final Holder current = holder;
+        if (current.isStrategy(newStrategy, null)) {
+            return current.getSecureRandom();
+        }
+        return STRATEGIES.computeIfAbsent(newStrategy, key -> new Holder(key, null)).getSecureRandom();
+    }
+
+    /**
+     * @param length
+     *        the number of bytes.
+     * @return random bytes from {@link #getSecureRandom()}, e.g. for a salt.
+     */
+    public static byte[] nextBytes(final int length) {
+        return nextBytes(null, length);
+    }
+
+    /**
+     * @return random bytes from the {@link SecureRandom} of the given strategy, or of the JVM-wide strategy if it is null.
+     */
+    static byte[] nextBytes(final String strategy, final int length) {
+        final byte[] bytes = new byte[length];
+        if (length > 0) {
+            (strategy == null ? getSecureRandom() : getSecureRandom(strategy)).nextBytes(bytes);
+        }
+        return bytes;
+    }
+
+    /**
+     * @return how long the creation and seeding of the {@link SecureRandom} of the current strategy took in nanoseconds, or -1 if it is not created
+     *         yet.
+     */
+    public static long getEntropyAcquisitionNanos() {
+        return holder.entropyAcquisitionNanos;
+    }
+
+    /**
+     * @param strategy
+     *        the {@link SecureRandom} algorithm, see {@link #getSecureRandom(String)}.
+     * @return how long the creation and seeding of the {@link SecureRandom} of the given strategy took in nanoseconds, or -1 if it is not created
+     *         yet.
+     */
+    public static long getEntropyAcquisitionNanos(final String strategy) {
+        final String otherStrategy = StringUtils.defaultIfBlank(strategy, DEFAULT);
+        final Holder current = holder;
+        if (current.isStrategy(otherStrategy, null)) {
+            return current.entropyAcquisitionNanos;
+        }
+        final Holder strategyHolder = STRATEGIES.get(otherStrategy);
+        return strategyHolder == null ? -1 : strategyHolder.entropyAcquisitionNanos;
+    }
+
+    /**
+     * The lazy created {@link SecureRandom} of one strategy.
+     */
+    private static final class Holder {
+        private final String strategy;
+        private final byte[] seed;
+        private volatile SecureRandom secureRandom;
+        private volatile long entropyAcquisitionNanos = -1;
+
+        Holder(final String strategy, final byte[] seed) {
+            this.strategy = strategy;
+            this.seed = seed;
+        }
+
+        boolean isStrategy(final String otherStrategy, final byte[] otherSeed) {
+            return strategy.equals(otherStrategy) && Arrays.equals(seed, otherSeed);
+        }
+
+        SecureRandom getSecureRandom() {
+            SecureRandom result = secureRandom;
+            if (result == null) {
+                synchronized (this) {
+                    result = secureRandom;
+                    if (result == null) {
+                        result = create();
+                        secureRandom = result;
+                    }
+                }
+            }
+            return result;
+        }
+
+        private SecureRandom create() {
+            final long start = System.nanoTime();
+            final SecureRandom result = newSecureRandom();
+            // the first random bytes trigger the self-seeding, which can block until enough entropy is available.
+            result.nextBytes(new byte[SEEDING_BYTES]);
+            if (seed != null) {
+                // only after the self-seeding, so the explicit seed supplements it and never replaces it (e.g. SHA1PRNG).
+                result.setSeed(seed);
+            }
+            entropyAcquisitionNanos = System.nanoTime() - start;
+            LOG.info("Entropy acquisition for SecureRandom '{}' ({}) took {} ms.", strategy, result.getAlgorithm(),
+                TimeUnit.NANOSECONDS.toMillis(entropyAcquisitionNanos));
+            return result;
+        }
+
+        private SecureRandom newSecureRandom() {
+            if (DEFAULT.equals(strategy)) {
+                return new SecureRandom();
+            }
+            try {
+                return SecureRandom.getInstance(strategy);
+            } catch (NoSuchAlgorithmException e) {
+                LOG.warn("SecureRandom algorithm '{}' is not available, the default SecureRandom will be used: {}", strategy, e.getMessage());
+                return new SecureRandom();
+            }
+        }
+    }
+}
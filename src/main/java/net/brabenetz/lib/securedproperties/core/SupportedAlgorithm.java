@@ -30,16 +30,51 @@ public enum SupportedAlgorithm implements Algorithm {
     /** AES 128 bit encoding. */
     AES_128("AES", 128),
     /** DESede 168 bit encoding. Also known as TripleDES. */
-    DESede_168("DESede", 168),
+    DESede_168("DESede", "DESede", 168, SupportedAlgorithm.DESEDE_168_STRENGTH, 0),
     /** DESede 112 bit encoding. Also known as TripleDES. */
-    DESede_112("DESede", 112);
+    DESede_112("DESede", "DESede", 112, SupportedAlgorithm.DESEDE_112_STRENGTH, 0),
+    /** AES-GCM 256 bit encoding with a random 96 bit nonce per value and an authentication tag. */
+    AES_GCM_256("AES", "AES/GCM/NoPadding", 256, SupportedAlgorithm.GCM_NONCE_LENGTH),
+    /** AES-GCM 192 bit encoding with a random 96 bit nonce per value and an authentication tag. */
+    AES_GCM_192("AES", "AES/GCM/NoPadding", 192, SupportedAlgorithm.GCM_NONCE_LENGTH),
+    /** AES-GCM 128 bit encoding with a random 96 bit nonce per value and an authentication tag. */
+    AES_GCM_128("AES", "AES/GCM/NoPadding", 128, SupportedAlgorithm.GCM_NONCE_LENGTH),
+    /**
+     * ChaCha20-Poly1305 256 bit encoding with a random 96 bit nonce per value and an authentication tag. Fast without AES hardware support
+     * (e.g. on ARM or virtualized hosts without AES-NI). Requires Java 11 or a JCE provider with "ChaCha20-Poly1305"; on Java 8 it is not
+     * {@link Encryption#isAlgorithmSupported(Algorithm) supported}.
+     */
+    CHACHA20_POLY1305("ChaCha20", "ChaCha20-Poly1305", 256, SupportedAlgorithm.CHACHA20_NONCE_LENGTH);
+
+    /** The recommended nonce length of GCM (96 bit), see NIST SP 800-38D. */
+    private static final int GCM_NONCE_LENGTH = 12;
+    /** The nonce length of ChaCha20-Poly1305 (96 bit), see RFC 8439. */
+    private static final int CHACHA20_NONCE_LENGTH = 12;
+    /** The strength of three-key DESede (meet-in-the-middle attack), see NIST SP 800-57. */
+    private static final int DESEDE_168_STRENGTH = 112;
+    /** The strength of two-key DESede, see NIST SP 800-57. */
+    private static final int DESEDE_112_STRENGTH = 80;
 
     private final String key;
+    private final String transformation;
     private final int size;
+    private final int strength;
+    private final int nonceLength;
 
     SupportedAlgorithm(final String key, final int size) {
+        this(key, key, size, 0);
+    }
+
+    SupportedAlgorithm(final String key, final String transformation, final int size, final int nonceLength) {
+        this(key, transformation, size, size, nonceLength);
+    }
+
+    SupportedAlgorithm(final String key, final String transformation, final int size, final int strength, final int nonceLength) {
         this.key = key;
+        this.transformation = transformation;
         this.size = size;
+        this.strength = strength;
+        this.nonceLength = nonceLength;
     }
 
     @Override
@@ -51,4 +86,19 @@ public enum SupportedAlgorithm implements Algorithm {
     public int getSize() {
         return this.size;
     }
+
+    @Override
+    public String getTransformation() {
+        return this.transformation;
+    }
+
+    @Override
+    public int getNonceLength() {
+        return this.nonceLength;
+    }
+
+    @Override
+    public int getStrength() {
+        return this.strength;
+    }
 }
@@ -0,0 +1,104 @@
+/*-
+ * #%L
+ * Secured Properties
+ * ===============================================================
+ * Copyright (C) 2016 - 2026 Brabenetz Harald, Austria
+ * ===============================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package net.brabenetz.lib.securedproperties.core;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+
+/**
+ * Access to Unix domain socket channels (Java 16+) while the library is still compiled against the Java 8 API.
+ */
+final class UnixDomainSockets {
+
+    private static final Method ADDRESS_OF = findMethod("java.net.UnixDomainSocketAddress", "of", Path.class);
+    private static final Method OPEN_SERVER = findMethod(ServerSocketChannel.class.getName(), "open", ProtocolFamily.class);
+    private static final Method OPEN_CLIENT = findMethod(SocketChannel.class.getName(), "open", ProtocolFamily.class);
+    private static final ProtocolFamily UNIX = findUnixProtocolFamily();
+
+    private UnixDomainSockets() {
+        super();
+    }
+
+    /**
+     * @return true if the running JVM supports Unix domain socket channels (Java 16+).
+     */
+    static boolean isSupported() {
+        return ADDRESS_OF != null && OPEN_SERVER != null && OPEN_CLIENT != null && UNIX != null;
+    }
+
+    static SocketAddress address(final Path socketPath) {
+        return (SocketAddress) invoke(ADDRESS_OF, socketPath);
+    }
+
+    static ServerSocketChannel openServerChannel() throws IOException {
+        return (ServerSocketChannel) invokeIo(OPEN_SERVER, UNIX);
+    }
+
+    static SocketChannel openChannel() throws IOException {
+        return (SocketChannel) invokeIo(OPEN_CLIENT, UNIX);
+    }
+
+    private static Object invokeIo(final Method method, final Object argument) throws IOException {
+        try {
+            return invoke(method, argument);
+        } catch (IllegalStateException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static Object invoke(final Method method, final Object argument) {
+        if (!isSupported()) {
+            throw new UnsupportedOperationException("Unix domain sockets require Java 16 or newer.");
+        }
+        try {
+            return method.invoke(null, argument);
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException(e.getCause().getMessage(), e.getCause());
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    private static Method findMethod(final String className, final String methodName, final Class<?> parameterType) {
+        try {
+            return Class.forName(className).getMethod(methodName, parameterType);
+        } catch (ClassNotFoundException | NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private static ProtocolFamily findUnixProtocolFamily() {
+        try {
+            return Enum.valueOf(StandardProtocolFamily.class, "UNIX");
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -26,6 +26,14 @@ import org.apache.commons.lang3.tuple.Pair;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Properties;
@@ -72,7 +80,70 @@ public final class SecuredPropertiesUtils {
         List<String> newLines = lines.stream()
             .map((line) -> replaceValue(line, newProperties))
             .collect(Collectors.toList());
-        Throwing.runnable(() -> FileUtils.writeLines(propertyFile, StandardCharsets.ISO_8859_1.name(), newLines)).run();
+        final StringBuilder content = new StringBuilder();
+        newLines.forEach(line -> content.append(line).append(System.lineSeparator()));
+        writeAtomically(propertyFile, content.toString().getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * Writes the given content into a temporary File in the same directory and moves it over the target File, so readers will see either the old
+     * or the new content but never a partially written File.
+     * <p>
+     * A symbolic link is kept and the File it points to is replaced. The POSIX permissions, owner and group of an existing File are copied to the
+     * new File. If the owner or group can't be set (e.g. the File belongs to another user), the content is overwritten in place instead.
+     *
+     * @param file
+     *        The target File.
+     * @param content
+     *        The new content of the File.
+     */
+    public static void writeAtomically(final File file, final byte[] content) {
+        Throwing.runnable(() -> writeAtomically(file.toPath().toAbsolutePath(), content)).run();
+    }
+
+    private static void writeAtomically(final Path file, final byte[] content) throws IOException {
+        final boolean exists = Files.exists(file);
+        final Path target = exists ? file.toRealPath() : file;
+        Files.createDirectories(target.getParent());
+        final Path tempFile = Files.createTempFile(target.getParent(), "." + target.getFileName(), ".tmp");
+        try {
+            Files.write(tempFile, content);
+            if (exists && !copyPosixAttributes(target, tempFile)) {
+                Files.write(target, content);
+                return;
+            }
+            try {
+                Files.move(tempFile, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * @return false if the owner or group of the source File can't be set on the target File.
+     */
+    private static boolean copyPosixAttributes(final Path source, final Path target) throws IOException {
+        final PosixFileAttributeView targetView = Files.getFileAttributeView(target, PosixFileAttributeView.class);
+        if (targetView == null) {
+            return true;
+        }
+        final PosixFileAttributes sourceAttributes = Files.readAttributes(source, PosixFileAttributes.class);
+        final PosixFileAttributes targetAttributes = targetView.readAttributes();
+        try {
+            if (!sourceAttributes.owner().equals(targetAttributes.owner())) {
+                targetView.setOwner(sourceAttributes.owner());
+            }
+            if (!sourceAttributes.group().equals(targetAttributes.group())) {
+                targetView.setGroup(sourceAttributes.group());
+            }
+        } catch (FileSystemException e) {
+            return false;
+        }
+        targetView.setPermissions(sourceAttributes.permissions());
+        return true;
     }
 
     // SuppressWarnings "PMD.DefaultPackage": only used in UnitTest
@@ -0,0 +1,212 @@
+/*-
+ * #%L
+ * Secured Properties
+ * ===============================================================
+ * Copyright (C) 2016 - 2026 Brabenetz Harald, Austria
+ * ===============================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package net.brabenetz.lib.securedproperties;
+
+import net.brabenetz.lib.securedproperties.core.Encryption;
+import net.brabenetz.lib.securedproperties.core.EnvelopeEncryption;
+import net.brabenetz.lib.securedproperties.core.SecretContainer;
+import net.brabenetz.lib.securedproperties.core.SupportedAlgorithm;
+import net.brabenetz.lib.securedproperties.test.TestUtils;
+import net.brabenetz.lib.securedproperties.utils.SecuredPropertiesUtils;
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.endsWith;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+
+public class SecuredPropertiesReEncryptionTest {
+
+    private final File testFolder = new File("./target/tests/" + getClass().getSimpleName());
+    private final SecuredPropertiesConfig config = new SecuredPropertiesConfig();
+    private final SecretContainer oldSecretContainer = new SecretContainer(SupportedAlgorithm.AES_128, Encryption.createKey(SupportedAlgorithm.AES_128));
+    private final SecretContainer newSecretContainer = new SecretContainer(SupportedAlgorithm.AES_128, Encryption.createKey(SupportedAlgorithm.AES_128))
+        .withKey("k2", SupportedAlgorithm.AES_128, Encryption.createKey(SupportedAlgorithm.AES_128))
+        .withPrimaryKeyId("k2");
+
+    @Before
+    public void cleanupTestFolder() throws IOException {
+        if (this.testFolder.exists()) {
+            FileUtils.forceDelete(this.testFolder);
+        }
+    }
+
+    @Test
+    public void testUtilityPattern() {
+        // this test is more for test-coverage than logic :D
+        Assert.assertTrue(TestUtils.isDefaultConstructorHidden(SecuredPropertiesReEncryption.class));
+    }
+
+    @Test
+    public void testReEncrypt_directoryTree() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            writePropertyFile(new File(this.testFolder, "service" + (i % 4) + "/app" + i + ".properties"), "secret" + i);
+        }
+        final File otherFile = new File(this.testFolder, "service0/app.txt");
+        writePropertyFile(otherFile, "other");
+        final String otherContent = FileUtils.readFileToString(otherFile, StandardCharsets.ISO_8859_1);
+
+        // start Test
+        ReEncryptionReport report = SecuredPropertiesReEncryption.reEncrypt(
+            this.config, this.oldSecretContainer, this.newSecretContainer, this.testFolder.toPath(), "**/*.properties", 4);
+
+        // validate Result
+        assertThat(report.getFileResults(), hasSize(20));
+        assertThat(report.getFailures(), hasSize(0));
+        assertThat(report.getReEncryptedValueCount(), is(40));
+        for (int i = 0; i < 20; i++) {
+            Properties properties = readProperties(new File(this.testFolder, "service" + (i % 4) + "/app" + i + ".properties"));
+            assertThat(decrypt(this.newSecretContainer, properties.getProperty("password")), is("secret" + i));
+            assertThat(decrypt(this.newSecretContainer, properties.getProperty("other.password")), is("other"));
+            assertThat(properties.getProperty("plain"), is("{no-base64}"));
+        }
+        assertThat(FileUtils.readFileToString(otherFile, StandardCharsets.ISO_8859_1), is(otherContent));
+    }
+
+    @Test
+    public void testReEncrypt_wrongKey_shouldLeaveFileUnchangedAndReportFailure() throws Exception {
+        final File goodFile = new File(this.testFolder, "good.properties");
+        final File badFile = new File(this.testFolder, "bad.properties");
+        writePropertyFile(goodFile, "good");
+        final SecretContainer otherSecretContainer = new SecretContainer(SupportedAlgorithm.AES_128, Encryption.createKey(SupportedAlgorithm.AES_128));
+        FileUtils.writeStringToFile(badFile, "password = " + encrypt(otherSecretContainer, "bad") + "\n", StandardCharsets.ISO_8859_1);
+        final String badContent = FileUtils.readFileToString(badFile, StandardCharsets.ISO_8859_1);
+
+        // start Test
+        ReEncryptionReport report = SecuredPropertiesReEncryption.reEncrypt(
+            this.config, this.oldSecretContainer, this.newSecretContainer, this.testFolder.toPath(), "*.properties", 2);
+
+        // validate Result
+        assertThat(report.getFileResults(), hasSize(2));
+        assertThat(report.getFailures(), hasSize(1));
+        assertThat(report.getFailures().get(0).getFile().getName(), is("bad.properties"));
+        assertThat(FileUtils.readFileToString(badFile, StandardCharsets.ISO_8859_1), is(badContent));
+        assertThat(decrypt(this.newSecretContainer, readProperties(goodFile).getProperty("password")), is("good"));
+    }
+
+    @Test
+    public void testReEncrypt_withKeyRing_shouldSkipValuesWithNewPrimaryKeyId() throws Exception {
+        final SecretContainer keyRing = this.oldSecretContainer
+            .withKey("k2", SupportedAlgorithm.AES_128, Encryption.createKey(SupportedAlgorithm.AES_128))
+            .withPrimaryKeyId("k2");
+        final File propertyFile = new File(this.testFolder, "app.properties");
+        writePropertyFile(propertyFile, "secret");
+
+        // start Test
+        ReEncryptionReport first = SecuredPropertiesReEncryption.reEncrypt(this.config, keyRing, keyRing, this.testFolder.toPath(), "*.properties", 1);
+        String firstContent = FileUtils.readFileToString(propertyFile, StandardCharsets.ISO_8859_1);
+        ReEncryptionReport second = SecuredPropertiesReEncryption.reEncrypt(this.config, keyRing, keyRing, this.testFolder.toPath(), "*.properties", 1);
+
+        // validate Result
+        assertThat(first.getReEncryptedValueCount(), is(2));
+        assertThat(readProperties(propertyFile).getProperty("password"), startsWith("{k2:"));
+        assertThat(decrypt(keyRing, readProperties(propertyFile).getProperty("password")), is("secret"));
+        assertThat(second.getReEncryptedValueCount(), is(0));
+        assertThat(FileUtils.readFileToString(propertyFile, StandardCharsets.ISO_8859_1), is(firstContent));
+    }
+
+    @Test
+    public void testReEncrypt_withDataKey_shouldOnlyReEncryptDataKey() throws Exception {
+        final SecretContainer dataKey = EnvelopeEncryption.createDataKey(SupportedAlgorithm.AES_128);
+        final File propertyFile = new File(this.testFolder, "app.properties");
+        final String values = "password = " + encrypt(dataKey, "secret") + "\n"
+            + "other.password=" + encrypt(dataKey, "other") + "\n";
+        FileUtils.writeStringToFile(propertyFile, "# test file\n"
+            + EnvelopeEncryption.toHeaderLine(encrypt(this.oldSecretContainer, EnvelopeEncryption.toDataKeyLine(dataKey))) + "\n"
+            + values, StandardCharsets.ISO_8859_1);
+
+        // start Test
+        ReEncryptionReport report = SecuredPropertiesReEncryption.reEncrypt(
+            this.config, this.oldSecretContainer, this.newSecretContainer, this.testFolder.toPath(), "*.properties", 1);
+
+        // validate Result
+        assertThat(report.getFailures(), hasSize(0));
+        assertThat(report.getReEncryptedValueCount(), is(1));
+        final String content = FileUtils.readFileToString(propertyFile, StandardCharsets.ISO_8859_1);
+        assertThat(content, startsWith("# test file\n" + EnvelopeEncryption.DATA_KEY_HEADER));
+        assertThat(content, endsWith(values));
+        final String wrappedDataKey = EnvelopeEncryption.readWrappedDataKey(propertyFile);
+        assertThat(decrypt(this.newSecretContainer, wrappedDataKey), is(EnvelopeEncryption.toDataKeyLine(dataKey)));
+    }
+
+    @Test
+    public void testReEncryptContent_shouldKeepFormatting() throws Exception {
+        final String content = "# comment = {abcd}\r\n"
+            + "  key1 =\t{abcd}  \r\n"
+            + "key2:{abcd}\r\n"
+            + "key3 {abcd}\r\n"
+            + "key4 = {abcd} suffix\r\n"
+            + "key5 = {no-base64}";
+        StringBuilder newContent = new StringBuilder();
+
+        // start Test
+        int count = SecuredPropertiesReEncryption.reEncryptContent(content, value -> "{new}", newContent);
+
+        // validate Result
+        assertThat(count, is(3));
+        assertThat(newContent.toString(), is("# comment = {abcd}\r\n"
+            + "  key1 =\t{new}  \r\n"
+            + "key2:{new}\r\n"
+            + "key3 {new}\r\n"
+            + "key4 = {abcd} suffix\r\n"
+            + "key5 = {no-base64}"));
+    }
+
+    @Test
+    public void testReEncrypt_invalidArguments() throws Exception {
+        Exception exc = TestUtils.expectException(() -> SecuredPropertiesReEncryption.reEncrypt(
+            this.config, this.oldSecretContainer, this.newSecretContainer, new File(this.testFolder, "missing").toPath(), "*", 1));
+        assertThat(exc.getMessage(), containsString("doesn't exist"));
+
+        this.testFolder.mkdirs();
+        exc = TestUtils.expectException(() -> SecuredPropertiesReEncryption.reEncrypt(
+            this.config, this.oldSecretContainer, this.oldSecretContainer, this.testFolder.toPath(), "*", 1));
+        assertThat(exc.getMessage(), is("The new SecretContainer needs a primary key-id, so already re-encrypted values are recognized."));
+    }
+
+    private void writePropertyFile(final File propertyFile, final String secret) throws IOException {
+        FileUtils.writeStringToFile(propertyFile, "# test file\n"
+            + "password = " + encrypt(this.oldSecretContainer, secret) + "\n"
+            + "plain = {no-base64}\n"
+            + "other.password=" + encrypt(this.oldSecretContainer, "other") + "\n", StandardCharsets.ISO_8859_1);
+    }
+
+    private Properties readProperties(final File propertyFile) {
+        return SecuredPropertiesUtils.readProperties(propertyFile);
+    }
+
+    private String encrypt(final SecretContainer secretContainer, final String value) {
+        return Encryption.encrypt(secretContainer, this.config.getSaltLength(), value);
+    }
+
+    private String decrypt(final SecretContainer secretContainer, final String value) {
+        return Encryption.decrypt(secretContainer, this.config.getSaltLength(), value);
+    }
+}
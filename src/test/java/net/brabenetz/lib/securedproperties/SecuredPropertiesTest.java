@@ -19,11 +19,19 @@
  */
 package net.brabenetz.lib.securedproperties;
 
+import net.brabenetz.lib.securedproperties.core.CipherEngines;
+import net.brabenetz.lib.securedproperties.core.EnvelopeEncryption;
+import net.brabenetz.lib.securedproperties.core.KeyAgentServer;
+import net.brabenetz.lib.securedproperties.core.SecretBuffers;
+import net.brabenetz.lib.securedproperties.core.SecretContainerSources;
+import net.brabenetz.lib.securedproperties.core.SecureRandoms;
+import net.brabenetz.lib.securedproperties.core.SupportedAlgorithm;
 import net.brabenetz.lib.securedproperties.test.TestUtils;
 import net.brabenetz.lib.securedproperties.utils.SecuredPropertiesUtils;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.junit.Assert;
+import org.junit.Assume;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -31,14 +39,17 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
 
 import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.startsWith;
 
 public class SecuredPropertiesTest {
 
@@ -108,6 +119,152 @@ public class SecuredPropertiesTest {
 
     }
 
+    @Test
+    public void testGetSecretValue_withSecretContainerSource() throws Exception {
+        // prepare property File
+        writeProperties(getTestPropertyFile(), "mySecretPassword={buMkr+yZH9RclafjETtlSQ==}");
+
+        // run test: the environment variable with the example key is defined in the surefire configuration of the pom.xml
+        final String secretValue = SecuredProperties.getSecretValue(
+                new SecuredPropertiesConfig()
+                        .withSecretFile(getTestSecretFile())
+                        .withSecretContainerSource(SecretContainerSources.environmentVariable("TEST_SECURED_PROPERTIES_SECRET_KEY")),
+                getTestPropertyFile(), "mySecretPassword");
+
+        // validate result
+        assertThat(secretValue, is("test"));
+        assertThat(getTestSecretFile().exists(), is(false));
+    }
+
+    @Test
+    public void testGetSecretValue_withKeyAgent() throws Exception {
+        Assume.assumeTrue("Unix domain sockets require Java 16+", KeyAgentServer.isSupported());
+        // prepare property File and key agent
+        writeProperties(getTestPropertyFile(), "mySecretPassword={buMkr+yZH9RclafjETtlSQ==}", "myOtherPassword=other");
+        final File socket = new File(getTestPropertyFile().getParentFile(), "agent.sock");
+        try (KeyAgentServer keyAgent = KeyAgentServer.start(socket.toPath(),
+                SecretContainerSources.environmentVariable("TEST_SECURED_PROPERTIES_SECRET_KEY"), SupportedAlgorithm.values())) {
+            final SecuredPropertiesConfig config = new SecuredPropertiesConfig().withSecretFile(getTestSecretFile()).withKeyAgentSocket(socket);
+
+            // run test
+            SecuredProperties.encryptNonEncryptedValues(config, getTestPropertyFile(), "mySecretPassword", "myOtherPassword");
+            final Map<String, String> secretValues = SecuredProperties.getSecretValues(config, getTestPropertyFile(),
+                    "mySecretPassword", "myOtherPassword");
+
+            // validate result: both values are decrypted with one request, and the secret key is only known by the key agent.
+            assertThat(secretValues.get("mySecretPassword"), is("test"));
+            assertThat(secretValues.get("myOtherPassword"), is("other"));
+            assertThat(keyAgent.getFrameCount(), is(2L));
+            assertThat(getTestSecretFile().exists(), is(false));
+            assertThat(SecuredProperties.getSecretValueAsChars(config, getTestPropertyFile(), "mySecretPassword"), is("test".toCharArray()));
+        }
+    }
+
+    @Test
+    public void testGetSecretValuesAsChars() throws Exception {
+        // prepare property File
+        writeProperties(getTestPropertyFile(), "mySecretPassword={buMkr+yZH9RclafjETtlSQ==}", "myOtherPassword=other");
+        final SecuredPropertiesConfig config = new SecuredPropertiesConfig().withSecretFile(getSecretFileExample());
+
+        // run test
+        final Map<String, char[]> secretValues = SecuredProperties.getSecretValuesAsChars(config, getTestPropertyFile(),
+                "mySecretPassword", "myOtherPassword", "notDefined");
+
+        // validate result
+        assertThat(secretValues.get("mySecretPassword"), is("test".toCharArray()));
+        assertThat(secretValues.get("myOtherPassword"), is("other".toCharArray()));
+        assertThat(secretValues.get("notDefined"), is(nullValue()));
+        assertThat(SecuredProperties.getSecretValueAsChars(config, getTestPropertyFile(), "mySecretPassword"), is("test".toCharArray()));
+        assertThat(SecuredProperties.decryptToChars(config, "{buMkr+yZH9RclafjETtlSQ==}"), is("test".toCharArray()));
+        assertThat(SecuredProperties.decryptToBytes(config, "{buMkr+yZH9RclafjETtlSQ==}"), is("test".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void testEncryptNonEncryptedValues_withCompactFormat() throws Exception {
+        // prepare property File
+        writeProperties(getTestPropertyFile(), "mySecretPassword=test", "myOtherPassword={buMkr+yZH9RclafjETtlSQ==}");
+        final SecuredPropertiesConfig config = new SecuredPropertiesConfig().withSecretFile(getSecretFileExample()).withCompactFormat(true);
+
+        // run test
+        SecuredProperties.encryptNonEncryptedValues(config, getTestPropertyFile(), "mySecretPassword", "myOtherPassword");
+        final Map<String, String> secretValues = SecuredProperties.getSecretValues(config, getTestPropertyFile(),
+                "mySecretPassword", "myOtherPassword");
+
+        // validate result: new values are compact, existing legacy values are unchanged.
+        final Properties props = SecuredPropertiesUtils.readProperties(getTestPropertyFile());
+        assertThat((String) props.get("mySecretPassword"), startsWith("{v2:"));
+        assertThat(props.get("myOtherPassword"), is("{buMkr+yZH9RclafjETtlSQ==}"));
+        assertThat(secretValues.get("mySecretPassword"), is("test"));
+        assertThat(secretValues.get("myOtherPassword"), is("test"));
+        assertThat(SecuredProperties.decrypt(config, SecuredProperties.encrypt(config, "other")), is("other"));
+    }
+
+    @Test
+    public void testEncryptAndDecrypt_withEncryptionOptions_shouldNotChangeJvmDefaults() throws Exception {
+        final SecuredPropertiesConfig config = new SecuredPropertiesConfig().withSecretFile(getSecretFileExample())
+                .withSecureRandomStrategy(SecureRandoms.DRBG).withOffHeapBuffers(true).withCipherProvider("SunJCE");
+
+        // run test
+        final String encrypted = SecuredProperties.encrypt(config, "test");
+
+        // validate result: the options apply only to this config.
+        assertThat(SecuredProperties.decrypt(new SecuredPropertiesConfig().withSecretFile(getSecretFileExample()), encrypted), is("test"));
+        assertThat(SecureRandoms.getStrategy(), is(SecureRandoms.DEFAULT));
+        assertThat(SecretBuffers.isEnabled(), is(false));
+        assertThat(CipherEngines.getDefault(), is(CipherEngines.jce()));
+    }
+
+    @Test
+    public void testEncryptAllAndDecryptAll() throws Exception {
+        final SecuredPropertiesConfig config = new SecuredPropertiesConfig().withSecretFile(getSecretFileExample()).withBatchParallelism(2);
+        final Map<String, String> values = new HashMap<>();
+        for (int i = 0; i < 200; i++) {
+            values.put("key" + i, "value" + i);
+        }
+
+        // run test
+        final Map<String, String> encryptedValues = SecuredProperties.encryptAll(config, values);
+        final Map<String, String> decryptedValues = SecuredProperties.decryptAll(config, encryptedValues);
+
+        // validate result
+        assertThat(encryptedValues.keySet(), is(values.keySet()));
+        assertThat(SecuredProperties.isEncryptedValue(encryptedValues.get("key7")), is(true));
+        assertThat(SecuredProperties.decrypt(config, encryptedValues.get("key7")), is("value7"));
+        assertThat(decryptedValues, is(values));
+    }
+
+    @Test
+    public void testEncrypt_withSecureRandomStrategy_shouldCreateTheSecretKeyWithTheStrategy() throws Exception {
+        final SecuredPropertiesConfig config = new SecuredPropertiesConfig().withSecretFile(getTestSecretFile())
+                .withSecureRandomStrategy("NativePRNG");
+
+        // run test
+        final String encrypted = SecuredProperties.encrypt(config, "test");
+
+        // validate result: the strategy of the config was created for the new secret key, the JVM-wide one is unchanged.
+        assertThat(getTestSecretFile().exists(), is(true));
+        assertThat(SecureRandoms.getEntropyAcquisitionNanos("NativePRNG"), is(greaterThanOrEqualTo(0L)));
+        assertThat(SecureRandoms.getStrategy(), is(SecureRandoms.DEFAULT));
+        assertThat(SecuredProperties.decrypt(config, encrypted), is("test"));
+    }
+
+    @Test
+    public void testEncrypt_withFastestAlgorithm_shouldCreateTheSecretFileWithTheMeasuredNumbers() throws Exception {
+        final SecuredPropertiesConfig config = new SecuredPropertiesConfig().withSecretFile(getTestSecretFile())
+                .withAllowedAlgorithm(SupportedAlgorithm.DESede_168, SupportedAlgorithm.AES_128, SupportedAlgorithm.AES_GCM_128)
+                .withFastestAlgorithm(true);
+
+        // run test
+        final String encrypted = SecuredProperties.encrypt(config, "test");
+
+        // validate result
+        final String algorithmLine = FileUtils.readLines(getTestSecretFile(), StandardCharsets.UTF_8).get(0);
+        assertThat(algorithmLine, startsWith("AES_"));
+        assertThat(algorithmLine, containsString(" # fastest of min 128 bit, ns per value: AES_"));
+        assertThat(algorithmLine, not(containsString("DESede")));
+        assertThat(SecuredProperties.decrypt(config, encrypted), is("test"));
+    }
+
     @Test
     public void testGetSecretValue_notDefinedProperty_shouldReturnNull() throws Exception {
         // prepare SystemProperty
@@ -309,6 +466,39 @@ public class SecuredPropertiesTest {
 
     }
 
+    @Test
+    public void testEncryptNonEncryptedValues_withEnvelopeEncryption_shouldAddDataKeyAndReEncryptExistingValues() throws Exception {
+        // prepare property File
+        writeProperties(getTestPropertyFile(), "# my comment", "pwd1=test", "pwd2={buMkr+yZH9RclafjETtlSQ==}");
+
+        // run test
+        final SecuredPropertiesConfig config = new SecuredPropertiesConfig().withSecretFile(getSecretFileExample()).withEnvelopeEncryption(true);
+        SecuredProperties.encryptNonEncryptedValues(config, getTestPropertyFile(), "pwd1");
+
+        // validate result
+        final String content = FileUtils.readFileToString(getTestPropertyFile(), StandardCharsets.ISO_8859_1);
+        assertThat(content, startsWith(EnvelopeEncryption.DATA_KEY_HEADER + " {"));
+        assertThat(content, containsString("# my comment"));
+        final Properties props = SecuredPropertiesUtils.readProperties(getTestPropertyFile());
+        assertThat(SecuredProperties.isEncryptedValue(props.getProperty("pwd1")), is(true));
+        assertThat(props.getProperty("pwd2"), is(not("{buMkr+yZH9RclafjETtlSQ==}")));
+        final String wrappedDataKey = EnvelopeEncryption.readWrappedDataKey(getTestPropertyFile());
+        assertThat(SecuredProperties.decrypt(config, wrappedDataKey), startsWith("AES_"));
+
+        // the data key header is used also without the envelope flag, and also after the cache was cleared
+        EnvelopeEncryption.clear();
+        final Map<String, String> secretValues = SecuredProperties.getSecretValues(
+                new SecuredPropertiesConfig().withSecretFile(getSecretFileExample()), getTestPropertyFile(), "pwd1", "pwd2");
+        assertThat(secretValues.get("pwd1"), is("test"));
+        assertThat(secretValues.get("pwd2"), is("test"));
+
+        // the existing data key is used for further values
+        writeProperties(getTestPropertyFile(), content, "pwd3=test");
+        SecuredProperties.encryptNonEncryptedValues(config, getTestPropertyFile(), "pwd3");
+        assertThat(EnvelopeEncryption.readWrappedDataKey(getTestPropertyFile()), is(wrappedDataKey));
+        assertThat(SecuredProperties.getSecretValue(config, getTestPropertyFile(), "pwd3"), is("test"));
+    }
+
     private String checkSystemProperties(final SecuredPropertiesConfig config, final String key) {
 
         final String systemPropPassword = System.getProperty(key);
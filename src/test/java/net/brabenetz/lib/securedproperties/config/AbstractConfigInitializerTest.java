@@ -48,6 +48,30 @@ public class AbstractConfigInitializerTest {
                         return "AES_128,DESede_168";
                     case AUTO_CREATE_SECRET_KEY:
                         return "false";
+                    case SECRET_FILE_REVALIDATION_INTERVAL:
+                        return "5000";
+                    case WATCH_SECRET_FILE:
+                        return "true";
+                    case SECRET_CONTAINER_SOURCE:
+                        return "env:MY_SECRET_KEY";
+                    case KEY_AGENT_SOCKET:
+                        return "/run/secured-properties/agent.sock";
+                    case SECURE_RANDOM_STRATEGY:
+                        return "NativePRNGNonBlocking";
+                    case ENVELOPE_ENCRYPTION:
+                        return "true";
+                    case OFF_HEAP_BUFFERS:
+                        return "true";
+                    case COMPACT_FORMAT:
+                        return "true";
+                    case BATCH_PARALLELISM:
+                        return "4";
+                    case CIPHER_PROVIDER:
+                        return "SunJCE";
+                    case FASTEST_ALGORITHM:
+                        return "true";
+                    case MIN_ALGORITHM_STRENGTH:
+                        return "256";
                     default:
                         throw new RuntimeException("Invalid Key: " + key);
                 }
@@ -60,6 +84,19 @@ public class AbstractConfigInitializerTest {
         Mockito.verify(config).withSaltLength(15);
         Mockito.verify(config).withAllowedAlgorithm(SupportedAlgorithm.AES_128, SupportedAlgorithm.DESede_168);
         Mockito.verify(config).withAutoCreateSecretKey(false);
+        Mockito.verify(config).withSecretFileRevalidationInterval(5000L);
+        Mockito.verify(config).withWatchSecretFile(true);
+        Mockito.verify(config).withSecretContainerSource(ArgumentMatchers.argThat(source -> source.isImmutable()
+                && source.toString().contains("MY_SECRET_KEY")));
+        Mockito.verify(config).withKeyAgentSocket(new File("/run/secured-properties/agent.sock"));
+        Mockito.verify(config).withSecureRandomStrategy("NativePRNGNonBlocking");
+        Mockito.verify(config).withEnvelopeEncryption(true);
+        Mockito.verify(config).withOffHeapBuffers(true);
+        Mockito.verify(config).withCompactFormat(true);
+        Mockito.verify(config).withBatchParallelism(4);
+        Mockito.verify(config).withCipherProvider("SunJCE");
+        Mockito.verify(config).withFastestAlgorithm(true);
+        Mockito.verify(config).withMinAlgorithmStrength(256);
 
         assertThat(configInitializer.getKeyFactory().apply(ConfigKey.SECRET_FILE),
                 is(equalTo("secured-properties.secret-file")));
@@ -83,6 +120,18 @@ public class AbstractConfigInitializerTest {
         Mockito.verify(config, Mockito.never()).withSaltLength(ArgumentMatchers.anyInt());
         Mockito.verify(config, Mockito.never()).withAllowedAlgorithm(ArgumentMatchers.any(SupportedAlgorithm[].class));
         Mockito.verify(config, Mockito.never()).withAutoCreateSecretKey(ArgumentMatchers.anyBoolean());
+        Mockito.verify(config, Mockito.never()).withSecretFileRevalidationInterval(ArgumentMatchers.anyLong());
+        Mockito.verify(config, Mockito.never()).withWatchSecretFile(ArgumentMatchers.anyBoolean());
+        Mockito.verify(config, Mockito.never()).withSecretContainerSource(ArgumentMatchers.any());
+        Mockito.verify(config, Mockito.never()).withKeyAgentSocket(ArgumentMatchers.any());
+        Mockito.verify(config, Mockito.never()).withSecureRandomStrategy(ArgumentMatchers.any());
+        Mockito.verify(config, Mockito.never()).withEnvelopeEncryption(ArgumentMatchers.anyBoolean());
+        Mockito.verify(config, Mockito.never()).withOffHeapBuffers(ArgumentMatchers.anyBoolean());
+        Mockito.verify(config, Mockito.never()).withCompactFormat(ArgumentMatchers.anyBoolean());
+        Mockito.verify(config, Mockito.never()).withBatchParallelism(ArgumentMatchers.anyInt());
+        Mockito.verify(config, Mockito.never()).withCipherProvider(ArgumentMatchers.any());
+        Mockito.verify(config, Mockito.never()).withFastestAlgorithm(ArgumentMatchers.anyBoolean());
+        Mockito.verify(config, Mockito.never()).withMinAlgorithmStrength(ArgumentMatchers.anyInt());
 
         assertThat(configInitializer.getKeyFactory().apply(ConfigKey.SECRET_FILE),
                 is(equalTo("SECRET_FILE")));
@@ -0,0 +1,88 @@
+/*-
+ * #%L
+ * Secured Properties
+ * ===============================================================
+ * Copyright (C) 2016 - 2026 Brabenetz Harald, Austria
+ * ===============================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package net.brabenetz.lib.securedproperties.core;
+
+import org.apache.commons.lang3.StringUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.crypto.SecretKey;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the encryption and decryption of one property value with the different {@link SupportedAlgorithm}s on the current machine.
+ * <p>
+ * To simulate a host without AES hardware support, disable the AES intrinsics of the JVM:
+ * mvn -Pbenchmark test -Dbenchmark="AlgorithmBenchmark -jvmArgsAppend '-XX:+UnlockDiagnosticVMOptions -XX:-UseAES -XX:-UseAESIntrinsics'"
+ * <p>
+ * Run with: mvn -Pbenchmark test -Dbenchmark=AlgorithmBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AlgorithmBenchmark {
+
+    private static final int SALT_LENGTH = 11;
+
+    @Param({"AES_128", "AES_256", "DESede_168", "AES_GCM_128", "AES_GCM_256", "CHACHA20_POLY1305" })
+    private SupportedAlgorithm algorithm;
+
+    @Param({"16", "1024" })
+    private int valueLength;
+
+    private SecretKey secretKey;
+    private String value;
+    private String[] encryptedValues;
+    private int index;
+
+    @Setup
+    public void setup() {
+        secretKey = Encryption.createKey(algorithm);
+        value = StringUtils.repeat('x', valueLength);
+        // real applications decrypt different values, and SunJCE's ChaCha20-Poly1305 needs a new cipher to decrypt the same nonce twice in a row.
+        encryptedValues = new String[] {
+            Encryption.encrypt(algorithm, secretKey, SALT_LENGTH, value),
+            Encryption.encrypt(algorithm, secretKey, SALT_LENGTH, value) };
+    }
+
+    @Benchmark
+    public String encrypt() {
+        return Encryption.encrypt(algorithm, secretKey, SALT_LENGTH, value);
+    }
+
+    @Benchmark
+    public String decrypt() {
+        index ^= 1;
+        return Encryption.decrypt(algorithm, secretKey, SALT_LENGTH, encryptedValues[index]);
+    }
+}
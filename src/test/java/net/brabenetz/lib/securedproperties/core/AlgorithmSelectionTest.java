@@ -0,0 +1,102 @@
+/*-
+ * #%L
+ * Secured Properties
+ * ===============================================================
+ * Copyright (C) 2016 - 2026 Brabenetz Harald, Austria
+ * ===============================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package net.brabenetz.lib.securedproperties.core;
+
+import net.brabenetz.lib.securedproperties.test.TestUtils;
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.startsWith;
+
+public class AlgorithmSelectionTest {
+
+    private static final long BUDGET_MILLIS = 10;
+
+    @Test
+    public void testStrength() throws Exception {
+        assertThat(SupportedAlgorithm.AES_128.getStrength(), is(128));
+        assertThat(SupportedAlgorithm.AES_GCM_256.getStrength(), is(256));
+        assertThat(SupportedAlgorithm.CHACHA20_POLY1305.getStrength(), is(256));
+        assertThat(SupportedAlgorithm.DESede_168.getStrength(), is(112));
+        assertThat(SupportedAlgorithm.DESede_112.getStrength(), is(80));
+        assertThat(new MockAlgorithm("AES", 192).getStrength(), is(192));
+    }
+
+    @Test
+    public void testFirstSupported() throws Exception {
+        final AlgorithmSelection selection = AlgorithmSelection.firstSupported(new MockAlgorithm("NotExisting", 512), SupportedAlgorithm.DESede_168,
+            SupportedAlgorithm.AES_128);
+
+        assertThat(selection.getAlgorithm(), is(SupportedAlgorithm.DESede_168));
+        assertThat(selection.getNanosPerValue().isEmpty(), is(true));
+        assertThat(selection.getComment(), is(nullValue()));
+        assertThat(selection.toString(), is("DESede_168"));
+    }
+
+    @Test
+    public void testFastest_shouldMeasureAllSupportedAlgorithmsWithTheMinStrength() throws Exception {
+        final AlgorithmSelection selection = AlgorithmSelection.fastest(128, BUDGET_MILLIS, new MockAlgorithm("NotExisting", 512),
+            SupportedAlgorithm.DESede_168, SupportedAlgorithm.AES_GCM_128, SupportedAlgorithm.AES_128);
+
+        assertThat(selection.getNanosPerValue().keySet(), containsInAnyOrder(SupportedAlgorithm.AES_GCM_128, SupportedAlgorithm.AES_128));
+        assertThat(selection.getNanosPerValue().values(), everyItem(greaterThan(0L)));
+        // AES-GCM is about 2.5 times slower because of the nonce and the re-initialization per value.
+        assertThat(selection.getAlgorithm(), is(SupportedAlgorithm.AES_128));
+        // the fastest first.
+        final ArrayList<Long> nanos = new ArrayList<>(selection.getNanosPerValue().values());
+        assertThat(nanos.get(0) <= nanos.get(1), is(true));
+        assertThat(selection.getComment(), startsWith("fastest of min 128 bit, ns per value: " + selection.getAlgorithm() + "="));
+        assertThat(selection.toString(), is(selection.getAlgorithm() + " # " + selection.getComment()));
+    }
+
+    @Test
+    public void testFastest_shouldPreferAesOverDesede() throws Exception {
+        // DESede is about 10 times slower than AES.
+        final AlgorithmSelection selection = AlgorithmSelection.fastest(112, BUDGET_MILLIS, SupportedAlgorithm.DESede_168,
+            SupportedAlgorithm.AES_128);
+
+        assertThat(selection.getAlgorithm(), is(SupportedAlgorithm.AES_128));
+        assertThat(selection.getNanosPerValue().keySet(), contains(SupportedAlgorithm.AES_128, SupportedAlgorithm.DESede_168));
+    }
+
+    @Test
+    public void testFastest_noAlgorithmWithTheMinStrength() throws Exception {
+        final Exception exc = TestUtils.expectException(
+            () -> AlgorithmSelection.fastest(128, BUDGET_MILLIS, SupportedAlgorithm.DESede_168, SupportedAlgorithm.DESede_112));
+
+        assertThat(exc.getClass().getName(), is(IllegalArgumentException.class.getName()));
+        assertThat(exc.getMessage(), is("No supported Algorithm with a strength of at least 128 bit found in: [DESede_168, DESede_112]"));
+    }
+
+    @Test
+    public void testFastest_invalidBudget() throws Exception {
+        final Exception exc = TestUtils.expectException(() -> AlgorithmSelection.fastest(128, 0, SupportedAlgorithm.AES_128));
+
+        assertThat(exc.getMessage(), is("The budget must be positive: 0"));
+    }
+}
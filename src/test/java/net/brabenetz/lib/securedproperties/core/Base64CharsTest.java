@@ -0,0 +1,116 @@
+/*-
+ * #%L
+ * Secured Properties
+ * ===============================================================
+ * Copyright (C) 2016 - 2026 Brabenetz Harald, Austria
+ * ===============================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package net.brabenetz.lib.securedproperties.core;
+
+import net.brabenetz.lib.securedproperties.test.TestUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class Base64CharsTest {
+
+    private static final String CHARS = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/=-_{} ä";
+
+    @Test
+    public void testUtilityPattern() {
+        // this test is more for test-coverage than logic :D
+        Assert.assertTrue(TestUtils.isDefaultConstructorHidden(Base64Chars.class));
+    }
+
+    @Test
+    public void testDecode_region() {
+        final String value = "{abc:" + Base64.getEncoder().encodeToString("test".getBytes()) + "}";
+        final byte[] dst = new byte[Base64Chars.maxDecodedLength(value.length())];
+
+        final int length = Base64Chars.decode(value, 5, value.length() - 1, dst);
+
+        assertThat(new String(dst, 0, length), is("test"));
+    }
+
+    @Test
+    public void testDecodeUrlSafe_unpadded() {
+        final byte[] bytes = {(byte) 0xfb, (byte) 0xff, 0x01, (byte) 0xfe };
+        final String value = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        final byte[] dst = new byte[Base64Chars.maxDecodedLength(value.length())];
+
+        final int length = Base64Chars.decodeUrlSafe(value, 0, value.length(), dst);
+
+        assertThat(value, is("-_8B_g"));
+        assertThat(Arrays.copyOf(dst, length), is(bytes));
+    }
+
+    @Test
+    public void testDecode_sameResultAsJdkDecoder() {
+        final Random random = new Random(42);
+        for (int i = 0; i < 20_000; i++) {
+            final String value;
+            if (i % 2 == 0) {
+                // valid base64 with an occasional modification
+                final byte[] bytes = new byte[random.nextInt(40)];
+                random.nextBytes(bytes);
+                final StringBuilder builder = new StringBuilder(Base64.getEncoder().encodeToString(bytes));
+                if (builder.length() > 0 && random.nextInt(3) == 0) {
+                    builder.setCharAt(random.nextInt(builder.length()), CHARS.charAt(random.nextInt(CHARS.length())));
+                }
+                if (builder.length() > 0 && random.nextInt(5) == 0) {
+                    builder.setLength(random.nextInt(builder.length()));
+                }
+                value = builder.toString();
+            } else {
+                final char[] chars = new char[random.nextInt(12)];
+                for (int c = 0; c < chars.length; c++) {
+                    chars[c] = CHARS.charAt(random.nextInt(CHARS.length()));
+                }
+                value = new String(chars);
+            }
+            assertSameResult(value);
+        }
+    }
+
+    private static void assertSameResult(final String value) {
+        assertThat("Input: '" + value + "'", decode(value, false), is(decodeWithJdk(Base64.getDecoder(), value)));
+        final String urlSafeValue = value.replace('+', '-').replace('/', '_');
+        assertThat("Input: '" + urlSafeValue + "'", decode(urlSafeValue, true), is(decodeWithJdk(Base64.getUrlDecoder(), urlSafeValue)));
+    }
+
+    private static String decodeWithJdk(final Base64.Decoder decoder, final String value) {
+        try {
+            return Arrays.toString(decoder.decode(value));
+        } catch (IllegalArgumentException e) {
+            return "IllegalArgumentException";
+        }
+    }
+
+    private static String decode(final String value, final boolean urlSafe) {
+        try {
+            final byte[] dst = new byte[Base64Chars.maxDecodedLength(value.length())];
+            final int length = urlSafe ? Base64Chars.decodeUrlSafe(value, 0, value.length(), dst) : Base64Chars.decode(value, 0, value.length(), dst);
+            return Arrays.toString(Arrays.copyOf(dst, length));
+        } catch (IllegalArgumentException e) {
+            return "IllegalArgumentException";
+        }
+    }
+}
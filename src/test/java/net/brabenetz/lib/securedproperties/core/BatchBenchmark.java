@@ -0,0 +1,102 @@
+/*-
+ * #%L
+ * Secured Properties
+ * ===============================================================
+ * Copyright (C) 2016 - 2026 Brabenetz Harald, Austria
+ * ===============================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package net.brabenetz.lib.securedproperties.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Compares the encryption and decryption of 500 values one by one with {@link Encryption#encryptAll(SecretContainer, int, java.util.Collection, int)}
+ * and {@link Encryption#decryptAll(SecretContainer, int, java.util.Collection, int)}, sequential and split across 4 threads.
+ * <p>
+ * Run with: mvn -Pbenchmark test -Dbenchmark="BatchBenchmark"
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchBenchmark {
+
+    private static final int SALT_LENGTH = 11;
+    private static final int VALUE_COUNT = 500;
+
+    @Param({"AES_128", "AES_GCM_128" })
+    private SupportedAlgorithm algorithm;
+
+    private SecretContainer secretContainer;
+    private List<String> plainTextValues;
+    private List<String> encryptedValues;
+
+    @Setup
+    public void setup() {
+        secretContainer = new SecretContainer(algorithm, Encryption.createKey(algorithm));
+        plainTextValues = new ArrayList<>();
+        for (int i = 0; i < VALUE_COUNT; i++) {
+            plainTextValues.add("secret-password-" + i);
+        }
+        encryptedValues = Encryption.encryptAll(secretContainer, SALT_LENGTH, plainTextValues);
+    }
+
+    @Benchmark
+    public List<String> encryptOneByOne() {
+        return plainTextValues.stream().map(value -> Encryption.encrypt(secretContainer, SALT_LENGTH, value)).collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<String> encryptAll() {
+        return Encryption.encryptAll(secretContainer, SALT_LENGTH, plainTextValues, 1);
+    }
+
+    @Benchmark
+    public List<String> encryptAllParallel() {
+        return Encryption.encryptAll(secretContainer, SALT_LENGTH, plainTextValues, 4);
+    }
+
+    @Benchmark
+    public List<String> decryptOneByOne() {
+        return encryptedValues.stream().map(value -> Encryption.decrypt(secretContainer, SALT_LENGTH, value)).collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<String> decryptAll() {
+        return Encryption.decryptAll(secretContainer, SALT_LENGTH, encryptedValues, 1);
+    }
+
+    @Benchmark
+    public List<String> decryptAllParallel() {
+        return Encryption.decryptAll(secretContainer, SALT_LENGTH, encryptedValues, 4);
+    }
+}
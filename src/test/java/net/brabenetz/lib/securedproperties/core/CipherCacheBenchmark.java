@@ -0,0 +1,87 @@
+/*-
+ * #%L
+ * Secured Properties
+ * ===============================================================
+ * Copyright (C) 2016 - 2026 Brabenetz Harald, Austria
+ * ===============================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package net.brabenetz.lib.securedproperties.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the decryption of one property value with a new {@link Cipher} per value (the behavior before {@link CipherCache}) to a cached cipher.
+ * <p>
+ * Run with: mvn -Pbenchmark test -Dbenchmark=CipherCacheBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CipherCacheBenchmark {
+
+    private static final int SALT_LENGTH = 11;
+
+    @Param({"AES_128", "AES_192", "AES_256", "DESede_112", "DESede_168" })
+    private SupportedAlgorithm algorithm;
+
+    private SecretKey secretKey;
+    private String encryptedValue;
+    private byte[] encryptedValueBytes;
+
+    @Setup
+    public void setup() throws Exception {
+        secretKey = Encryption.createKey(algorithm);
+        encryptedValue = Encryption.encrypt(algorithm, secretKey, SALT_LENGTH, "jdbc-password-1234");
+        final Cipher cipher = Cipher.getInstance(algorithm.getKey());
+        cipher.init(Cipher.ENCRYPT_MODE, secretKey);
+        encryptedValueBytes = cipher.doFinal("salt-of-11-jdbc-password-1234".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public byte[] newCipherPerValue() throws Exception {
+        final Cipher cipher = Cipher.getInstance(algorithm.getKey());
+        cipher.init(Cipher.DECRYPT_MODE, secretKey);
+        return cipher.doFinal(encryptedValueBytes);
+    }
+
+    @Benchmark
+    public byte[] cachedCipher() throws Exception {
+        return CipherCache.getCipher(algorithm, secretKey, Cipher.DECRYPT_MODE).doFinal(encryptedValueBytes);
+    }
+
+    @Benchmark
+    public String decrypt() {
+        return Encryption.decrypt(algorithm, secretKey, SALT_LENGTH, encryptedValue);
+    }
+}
@@ -0,0 +1,176 @@
+/*-
+ * #%L
+ * Secured Properties
+ * ===============================================================
+ * Copyright (C) 2016 - 2026 Brabenetz Harald, Austria
+ * ===============================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package net.brabenetz.lib.securedproperties.core;
+
+import com.github.fge.lambdas.Throwing;
+import net.brabenetz.lib.securedproperties.test.TestUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class CipherCacheTest {
+
+    private static final int SALT_LENGTH = 11;
+
+    private final SecretKey exampleKey = Encryption.readSecretKey(SupportedAlgorithm.AES_128, "vpOATkkaMQ8EYnXgP3+nLw==");
+
+    @Before
+    public void before() {
+        CipherCache.clear();
+    }
+
+    @After
+    public void after() {
+        CipherCache.clear();
+    }
+
+    @Test
+    public void testUtilityPattern() {
+        // this test is more for test-coverage than logic :D
+        Assert.assertTrue(TestUtils.isDefaultConstructorHidden(CipherCache.class));
+    }
+
+    @Test
+    public void testGetCipher_shouldReuseCipherPerKeyAndMode() throws Exception {
+        final Cipher decryptCipher = CipherCache.getCipher(SupportedAlgorithm.AES_128, exampleKey, Cipher.DECRYPT_MODE);
+        final Cipher encryptCipher = CipherCache.getCipher(SupportedAlgorithm.AES_128, exampleKey, Cipher.ENCRYPT_MODE);
+        final SecretKey otherKey = Encryption.createKey(SupportedAlgorithm.AES_128);
+        final Cipher otherKeyCipher = CipherCache.getCipher(SupportedAlgorithm.AES_128, otherKey, Cipher.DECRYPT_MODE);
+
+        assertThat(CipherCache.getCipher(SupportedAlgorithm.AES_128, exampleKey, Cipher.DECRYPT_MODE), is(sameInstance(decryptCipher)));
+        assertThat(encryptCipher, is(not(sameInstance(decryptCipher))));
+        assertThat(otherKeyCipher, is(not(sameInstance(decryptCipher))));
+        assertThat(CipherCache.size(), is(3));
+
+        // a reused cipher must work for consecutive values
+        for (int i = 0; i < 3; i++) {
+            assertThat(Encryption.decrypt(SupportedAlgorithm.AES_128, exampleKey, SALT_LENGTH, "{buMkr+yZH9RclafjETtlSQ==}"), is("test"));
+            final String encrypted = Encryption.encrypt(SupportedAlgorithm.AES_128, exampleKey, SALT_LENGTH, "value" + i);
+            assertThat(Encryption.decrypt(SupportedAlgorithm.AES_128, exampleKey, SALT_LENGTH, encrypted), is("value" + i));
+        }
+        assertThat(CipherCache.size(), is(3));
+    }
+
+    @Test
+    public void testGetCipher_shouldBeBoundedPerThread() throws Exception {
+        final SecretKey firstKey = Encryption.createKey(SupportedAlgorithm.AES_128);
+        final Cipher firstCipher = CipherCache.getCipher(SupportedAlgorithm.AES_128, firstKey, Cipher.DECRYPT_MODE);
+        for (int i = 0; i < CipherCache.MAX_ENTRIES_PER_THREAD; i++) {
+            CipherCache.getCipher(SupportedAlgorithm.AES_128, Encryption.createKey(SupportedAlgorithm.AES_128), Cipher.DECRYPT_MODE);
+        }
+
+        assertThat(CipherCache.size(), is(CipherCache.MAX_ENTRIES_PER_THREAD));
+        assertThat(CipherCache.getCipher(SupportedAlgorithm.AES_128, firstKey, Cipher.DECRYPT_MODE), is(not(sameInstance(firstCipher))));
+    }
+
+    @Test
+    public void testGetCipher_destroyedKey_shouldNotBeServedFromCache() throws Exception {
+        final SecretKey secretKey = Encryption.createKey(SupportedAlgorithm.AES_128);
+        final String encrypted = Encryption.encrypt(SupportedAlgorithm.AES_128, secretKey, SALT_LENGTH, "test");
+        assertThat(Encryption.decrypt(SupportedAlgorithm.AES_128, secretKey, SALT_LENGTH, encrypted), is("test"));
+
+        // start Test
+        secretKey.destroy();
+
+        // validate Result
+        TestUtils.expectException(() -> Encryption.decrypt(SupportedAlgorithm.AES_128, secretKey, SALT_LENGTH, encrypted));
+        // also the cipher of the other mode is removed.
+        assertThat(CipherCache.size(), is(0));
+    }
+
+    @Test
+    public void testGetCipher_shouldRemoveCiphersOfDestroyedKeys() throws Exception {
+        final SecretKey destroyedKey = Encryption.createKey(SupportedAlgorithm.AES_128);
+        CipherCache.getCipher(SupportedAlgorithm.AES_128, destroyedKey, Cipher.DECRYPT_MODE);
+        final Cipher cipher = CipherCache.getCipher(SupportedAlgorithm.AES_128, exampleKey, Cipher.DECRYPT_MODE);
+
+        // start Test
+        destroyedKey.destroy();
+        CipherCache.getCipher(SupportedAlgorithm.AES_128, exampleKey, Cipher.DECRYPT_MODE);
+
+        // validate Result
+        assertThat(CipherCache.size(), is(1));
+        assertThat(CipherCache.getCipher(SupportedAlgorithm.AES_128, exampleKey, Cipher.DECRYPT_MODE), is(sameInstance(cipher)));
+    }
+
+    @Test
+    public void testPurge_shouldDropTheCiphersOfAllThreads() throws Exception {
+        final Cipher cipher = CipherCache.getCipher(SupportedAlgorithm.AES_128, exampleKey, Cipher.DECRYPT_MODE);
+        final Cipher[] otherThreadCiphers = new Cipher[2];
+        final Thread otherThread = new Thread(() -> {
+            otherThreadCiphers[0] = Throwing.supplier(() -> CipherCache.getCipher(SupportedAlgorithm.AES_128, exampleKey, Cipher.DECRYPT_MODE))
+                .get();
+            CipherCache.purge();
+            otherThreadCiphers[1] = Throwing.supplier(() -> CipherCache.getCipher(SupportedAlgorithm.AES_128, exampleKey, Cipher.DECRYPT_MODE))
+                .get();
+        });
+
+        // start Test
+        otherThread.start();
+        otherThread.join();
+
+        // validate Result
+        assertThat(otherThreadCiphers[1], is(not(sameInstance(otherThreadCiphers[0]))));
+        assertThat(CipherCache.size(), is(0));
+        assertThat(CipherCache.getCipher(SupportedAlgorithm.AES_128, exampleKey, Cipher.DECRYPT_MODE), is(not(sameInstance(cipher))));
+    }
+
+    @Test
+    public void testDecrypt_failure_shouldEvictCipher() throws Exception {
+        final SecretKey otherKey = Encryption.readSecretKey(SupportedAlgorithm.AES_128, "AAAAAAAAAAAAAAAAAAAAAA==");
+        final Cipher cipher = CipherCache.getCipher(SupportedAlgorithm.AES_128, otherKey, Cipher.DECRYPT_MODE);
+
+        // start Test: wrong key -> bad padding
+        TestUtils.expectException(() -> Encryption.decrypt(SupportedAlgorithm.AES_128, otherKey, SALT_LENGTH, "{buMkr+yZH9RclafjETtlSQ==}"));
+
+        // validate Result
+        assertThat(CipherCache.size(), is(0));
+        assertThat(CipherCache.getCipher(SupportedAlgorithm.AES_128, otherKey, Cipher.DECRYPT_MODE), is(not(sameInstance(cipher))));
+    }
+
+    @Test
+    public void testGetCipher_withNonce_shouldReuseAndReinitializeCipher() throws Exception {
+        final SecretKey secretKey = Encryption.createKey(SupportedAlgorithm.AES_GCM_128);
+        final Cipher cipher = CipherCache.getCipher(SupportedAlgorithm.AES_GCM_128, secretKey, Cipher.ENCRYPT_MODE,
+            new GCMParameterSpec(128, SecureRandoms.nextBytes(12)));
+
+        // a GCM cipher must be re-initialized with a new nonce for every value
+        final String first = Encryption.encrypt(SupportedAlgorithm.AES_GCM_128, secretKey, SALT_LENGTH, "test");
+        final String second = Encryption.encrypt(SupportedAlgorithm.AES_GCM_128, secretKey, SALT_LENGTH, "test");
+
+        // validate Result
+        assertThat(first, is(not(second)));
+        assertThat(CipherCache.getCipher(SupportedAlgorithm.AES_GCM_128, secretKey, Cipher.ENCRYPT_MODE,
+            new GCMParameterSpec(128, SecureRandoms.nextBytes(12))), is(sameInstance(cipher)));
+        assertThat(Encryption.decrypt(SupportedAlgorithm.AES_GCM_128, secretKey, SALT_LENGTH, first), is("test"));
+        assertThat(Encryption.decrypt(SupportedAlgorithm.AES_GCM_128, secretKey, SALT_LENGTH, second), is("test"));
+        assertThat(CipherCache.size(), is(2));
+    }
+}
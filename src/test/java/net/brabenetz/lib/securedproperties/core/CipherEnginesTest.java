@@ -0,0 +1,169 @@
+/*-
+ * #%L
+ * Secured Properties
+ * ===============================================================
+ * Copyright (C) 2016 - 2026 Brabenetz Harald, Austria
+ * ===============================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package net.brabenetz.lib.securedproperties.core;
+
+import net.brabenetz.lib.securedproperties.test.TestUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+import java.security.GeneralSecurityException;
+import java.security.Security;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class CipherEnginesTest {
+
+    private static final String ENCRYPTED_TEST = "{buMkr+yZH9RclafjETtlSQ==}";
+
+    private final SecretKey secretKey = new SecretKeySpec(Base64.getDecoder().decode("vpOATkkaMQ8EYnXgP3+nLw=="), "AES");
+    private final SecretContainer secretContainer = new SecretContainer(SupportedAlgorithm.AES_128, secretKey);
+
+    @After
+    public void resetEngine() {
+        CipherEngines.setDefault(null);
+        CipherCache.clear();
+    }
+
+    @Test
+    public void testUtilityPattern() {
+        // this test is more for test-coverage than logic :D
+        Assert.assertTrue(TestUtils.isDefaultConstructorHidden(CipherEngines.class));
+    }
+
+    @Test
+    public void testJce_isDefault() throws Exception {
+        assertThat(CipherEngines.getDefault(), is(sameInstance(CipherEngines.jce())));
+
+        CipherEngines.setDefault(CipherEngines.provider("SunJCE"));
+        CipherEngines.setDefault(null);
+
+        assertThat(CipherEngines.getDefault(), is(sameInstance(CipherEngines.jce())));
+    }
+
+    @Test
+    public void testProviderByName() throws Exception {
+        final CipherEngine engine = CipherEngines.provider("SunJCE");
+
+        assertThat(engine.createCipher("AES").getProvider().getName(), is("SunJCE"));
+        assertThat(engine.createKeyGenerator("AES").getProvider().getName(), is("SunJCE"));
+        assertThat(engine, is(equalTo(CipherEngines.provider(Security.getProvider("SunJCE")))));
+        assertThat(engine.toString(), is("JCE provider SunJCE"));
+    }
+
+    @Test
+    public void testProviderByName_notInstalled() throws Exception {
+        final CipherEngine engine = CipherEngines.provider("NotExistingProvider");
+
+        final Exception exc = TestUtils.expectException(() -> engine.createCipher("AES"));
+
+        assertThat(exc.getClass(), is(equalTo(IllegalArgumentException.class)));
+        assertThat(exc.getMessage(), is("The JCE provider 'NotExistingProvider' is not installed."));
+    }
+
+    @Test
+    public void testSetDefault_shouldBeUsedForEncryptionAndKeys() throws Exception {
+        final CountingEngine engine = new CountingEngine();
+        CipherEngines.setDefault(engine);
+
+        // the format doesn't depend on the engine.
+        assertThat(Encryption.decrypt(secretContainer, 11, ENCRYPTED_TEST), is("test"));
+        assertThat(Encryption.decrypt(secretContainer, 11, ENCRYPTED_TEST), is("test"));
+        assertThat(engine.cipherCount.get(), is(1));
+
+        Encryption.createKey(SupportedAlgorithm.AES_128);
+        assertThat(engine.keyGeneratorCount.get(), is(1));
+    }
+
+    @Test
+    public void testSetDefault_shouldNotReuseCiphersOfOtherEngines() throws Exception {
+        final Cipher jceCipher = CipherCache.getCipher(SupportedAlgorithm.AES_128, secretKey, Cipher.DECRYPT_MODE);
+
+        CipherEngines.setDefault(new CountingEngine());
+        final Cipher engineCipher = CipherCache.getCipher(SupportedAlgorithm.AES_128, secretKey, Cipher.DECRYPT_MODE);
+
+        assertThat(engineCipher, is(not(sameInstance(jceCipher))));
+        assertThat(CipherCache.getCipher(SupportedAlgorithm.AES_128, secretKey, Cipher.DECRYPT_MODE), is(sameInstance(engineCipher)));
+    }
+
+    @Test
+    public void testEncryptAndDecrypt_withEnginePerSecretContainer_shouldNotChangeJvmDefault() {
+        final CountingEngine engine = new CountingEngine();
+        final SecretContainer withEngine = secretContainer.withOptions(EncryptionOptions.DEFAULT.withCipherEngine(engine));
+
+        // run test
+        final String encrypted = Encryption.encrypt(withEngine, 11, "test");
+        assertThat(Encryption.decrypt(withEngine, 11, encrypted), is("test"));
+        assertThat(Encryption.decryptAll(withEngine, 11, Arrays.asList(encrypted, ENCRYPTED_TEST)), is(Arrays.asList("test", "test")));
+
+        // validate result: one cipher per mode, and the JVM default is still JCE.
+        assertThat(engine.cipherCount.get(), is(2));
+        assertThat(CipherEngines.getDefault(), is(sameInstance(CipherEngines.jce())));
+        assertThat(Encryption.decrypt(secretContainer, 11, encrypted), is("test"));
+        assertThat(engine.cipherCount.get(), is(2));
+    }
+
+    @Test
+    public void testIsAlgorithmSupportedAndCreateKey_withEngineInOptions_shouldUseTheEngineOfTheOptions() {
+        final CountingEngine engine = new CountingEngine();
+        final EncryptionOptions options = EncryptionOptions.DEFAULT.withCipherEngine(engine);
+
+        // run test: the JVM default engine has probed the algorithm already, the engine of the options probes it again once.
+        assertThat(Encryption.isAlgorithmSupported(SupportedAlgorithm.AES_128), is(true));
+        assertThat(Encryption.isAlgorithmSupported(SupportedAlgorithm.AES_128, options), is(true));
+        assertThat(Encryption.isAlgorithmSupported(SupportedAlgorithm.AES_128, options), is(true));
+        final int probeCipherCount = engine.cipherCount.get();
+        final SecretKey key = Encryption.createKey(SupportedAlgorithm.AES_128, options);
+
+        // validate result
+        assertThat(probeCipherCount > 0, is(true));
+        assertThat(engine.keyGeneratorCount.get(), is(2));
+        assertThat(key.getEncoded().length, is(16));
+    }
+
+    private static final class CountingEngine implements CipherEngine {
+        private final AtomicInteger cipherCount = new AtomicInteger();
+        private final AtomicInteger keyGeneratorCount = new AtomicInteger();
+
+        @Override
+        public Cipher createCipher(final String transformation) throws GeneralSecurityException {
+            cipherCount.incrementAndGet();
+            return Cipher.getInstance(transformation);
+        }
+
+        @Override
+        public KeyGenerator createKeyGenerator(final String algorithm) throws GeneralSecurityException {
+            keyGeneratorCount.incrementAndGet();
+            return KeyGenerator.getInstance(algorithm);
+        }
+    }
+}
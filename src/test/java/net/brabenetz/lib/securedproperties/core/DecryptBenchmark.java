@@ -0,0 +1,97 @@
+/*-
+ * #%L
+ * Secured Properties
+ * ===============================================================
+ * Copyright (C) 2016 - 2026 Brabenetz Harald, Austria
+ * ===============================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package net.brabenetz.lib.securedproperties.core;
+
+import com.github.fge.lambdas.Throwing;
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the time and the allocations of {@link Encryption#decrypt(Algorithm, SecretKey, int, String)} with the previous decrypt pipeline
+ * (strip, decode, doFinal, subarray, String). Both use the {@link CipherCache}.
+ * <p>
+ * Run with the GC profiler to see the allocated bytes per operation ("gc.alloc.rate.norm"):
+ * mvn -Pbenchmark test -Dbenchmark="DecryptBenchmark -prof gc"
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecryptBenchmark {
+
+    private static final int SALT_LENGTH = 11;
+
+    @Param({"16", "64", "256" })
+    private int valueLength;
+
+    private SecretKey secretKey;
+    private String encryptedValue;
+
+    @Setup
+    public void setup() {
+        secretKey = Encryption.createKey(SupportedAlgorithm.AES_128);
+        encryptedValue = Encryption.encrypt(SupportedAlgorithm.AES_128, secretKey, SALT_LENGTH, StringUtils.repeat('x', valueLength));
+    }
+
+    @Benchmark
+    public String previousDecrypt() {
+        final int keyIdEnd = encryptedValue.indexOf(':');
+        final byte[] encryptedValueBytes = Base64.getDecoder().decode(StringUtils.strip(encryptedValue.substring(keyIdEnd + 1), "{}"));
+        final byte[] saltedValueBytes = Throwing.supplier(
+            () -> CipherCache.getCipher(SupportedAlgorithm.AES_128, secretKey, Cipher.DECRYPT_MODE).doFinal(encryptedValueBytes)).get();
+        final byte[] valueBytes = ArrayUtils.subarray(saltedValueBytes, SALT_LENGTH, saltedValueBytes.length);
+        return new String(valueBytes, StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public String decrypt() {
+        return Encryption.decrypt(SupportedAlgorithm.AES_128, secretKey, SALT_LENGTH, encryptedValue);
+    }
+
+    @Benchmark
+    public char[] decryptToChars() {
+        return Encryption.decryptToChars(SupportedAlgorithm.AES_128, secretKey, SALT_LENGTH, encryptedValue);
+    }
+
+    @Benchmark
+    public byte[] decryptToBytes() {
+        return Encryption.decryptToBytes(SupportedAlgorithm.AES_128, secretKey, SALT_LENGTH, encryptedValue);
+    }
+}
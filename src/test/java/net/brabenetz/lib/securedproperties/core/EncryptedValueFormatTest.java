@@ -0,0 +1,138 @@
+/*-
+ * #%L
+ * Secured Properties
+ * ===============================================================
+ * Copyright (C) 2016 - 2026 Brabenetz Harald, Austria
+ * ===============================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package net.brabenetz.lib.securedproperties.core;
+
+import net.brabenetz.lib.securedproperties.test.TestUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class EncryptedValueFormatTest {
+
+    /** The regular expression which was used before the {@link EncryptedValueFormat}. */
+    static final Pattern ENCRYPTED_VALUE = Pattern.compile(
+        "^\\{([A-Za-z0-9_-]{1,16}:)?([A-Za-z0-9+/]{4})*([A-Za-z0-9+/]{4}|[A-Za-z0-9+/]{3}=|[A-Za-z0-9+/]{2}==)\\}$");
+
+    private static final String CHARS = "{}:=+/-_aZ09\n é";
+
+    @Test
+    public void testUtilityPattern() {
+        // this test is more for test-coverage than logic :D
+        Assert.assertTrue(TestUtils.isDefaultConstructorHidden(EncryptedValueFormat.class));
+    }
+
+    @Test
+    public void testIsEncryptedValue() {
+        assertThat(EncryptedValueFormat.isEncryptedValue(null), is(false));
+        assertThat(EncryptedValueFormat.isEncryptedValue(""), is(false));
+        assertThat(EncryptedValueFormat.isEncryptedValue("{buMkr+yZH9RclafjETtlSQ==}"), is(true));
+        assertThat(EncryptedValueFormat.isEncryptedValue("{k2:buMkr+yZH9RclafjETtlSQ==}"), is(true));
+        assertThat(EncryptedValueFormat.isEncryptedValue("{abcdefghijklmnop:abc=}"), is(true));
+        assertThat(EncryptedValueFormat.isEncryptedValue("{abcdefghijklmnopq:abc=}"), is(false));
+        assertThat(EncryptedValueFormat.isEncryptedValue("{:abcd}"), is(false));
+        assertThat(EncryptedValueFormat.isEncryptedValue("{k2:}"), is(false));
+        assertThat(EncryptedValueFormat.isEncryptedValue("{k2:abc}"), is(false));
+        assertThat(EncryptedValueFormat.isEncryptedValue("{a===}"), is(false));
+        assertThat(EncryptedValueFormat.isEncryptedValue("{ab=c}"), is(false));
+        assertThat(EncryptedValueFormat.isEncryptedValue("{k+2:abcd}"), is(false));
+        assertThat(EncryptedValueFormat.isEncryptedValue("{abcd}\n"), is(false));
+        assertThat(EncryptedValueFormat.isEncryptedValue("plain text"), is(false));
+        // compact format
+        assertThat(EncryptedValueFormat.isEncryptedValue("{v2:AYOTq-_wKl0}"), is(true));
+        assertThat(EncryptedValueFormat.isEncryptedValue("{v2:AYO}"), is(true));
+        assertThat(EncryptedValueFormat.isEncryptedValue("{v2:}"), is(false));
+        assertThat(EncryptedValueFormat.isEncryptedValue("{v2:AYOTq"), is(false));
+        // header only, without payload
+        assertThat(EncryptedValueFormat.isEncryptedValue("{v2:AQ}"), is(false));
+    }
+
+    @Test
+    public void testIsEncryptedValue_compactPrefixWithoutValidHeader_shouldBePlainText() {
+        // plain-text which looks like the compact format
+        assertThat(EncryptedValueFormat.isEncryptedValue("{v2:hello}"), is(false));
+        assertThat(EncryptedValueFormat.isEncryptedValue("{v2:abcd}"), is(false));
+        assertThat(EncryptedValueFormat.isEncryptedValue("{v2:Some text}"), is(false));
+        assertThat(EncryptedValueFormat.isEncryptedValue("{v2:AYOTq+/wKl0=}"), is(false));
+        // mode 2 and unknown algorithm family 5
+        assertThat(EncryptedValueFormat.isEncryptedValue("{v2:IYOTq-_wKl0}"), is(false));
+        assertThat(EncryptedValueFormat.isEncryptedValue("{v2:BYOTq-_wKl0}"), is(false));
+        // key-id flag with a truncated key-id: length 5, but only 4 bytes follow
+        assertThat(EncryptedValueFormat.isEncryptedValue("{v2:gQVrMWsx}"), is(false));
+
+        // valid headers
+        for (SupportedAlgorithm algorithm : SupportedAlgorithm.values()) {
+            for (String keyId : new String[] {null, "k1" }) {
+                final byte[] header = CompactValueFormat.newHeader(algorithm, keyId);
+                final byte[] bytes = Arrays.copyOf(header, header.length + 16);
+                assertThat(EncryptedValueFormat.isEncryptedValue(CompactValueFormat.encode(bytes)), is(true));
+                assertThat(EncryptedValueFormat.isEncryptedValue(CompactValueFormat.encode(header)), is(false));
+            }
+        }
+    }
+
+    @Test
+    public void testIsEncryptedValue_sameResultAsRegex() {
+        final Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            final String value;
+            if (i % 2 == 0) {
+                // a valid value with an occasional modification
+                final StringBuilder builder = new StringBuilder("{");
+                if (random.nextBoolean()) {
+                    builder.append(randomChars(random, "abcXYZ019_-", random.nextInt(19))).append(':');
+                }
+                final byte[] bytes = new byte[random.nextInt(20)];
+                random.nextBytes(bytes);
+                builder.append(Base64.getEncoder().encodeToString(bytes)).append('}');
+                if (random.nextInt(3) == 0) {
+                    builder.setCharAt(random.nextInt(builder.length()), CHARS.charAt(random.nextInt(CHARS.length())));
+                }
+                value = builder.toString();
+            } else {
+                value = "{" + randomChars(random, CHARS, random.nextInt(12)) + "}";
+            }
+            assertThat("Input: '" + value + "'", EncryptedValueFormat.isEncryptedValue(value), is(ENCRYPTED_VALUE.matcher(value).matches()));
+        }
+    }
+
+    @Test
+    public void testIsEncryptedValue_largeNearlyValidValue() {
+        final String nearlyValid = "{" + StringUtils.repeat("abcd", 250_000) + "abc}";
+
+        assertThat(EncryptedValueFormat.isEncryptedValue(nearlyValid), is(false));
+        assertThat(EncryptedValueFormat.isEncryptedValue("{" + StringUtils.repeat("abcd", 250_000) + "}"), is(true));
+    }
+
+    private static String randomChars(final Random random, final String chars, final int length) {
+        final StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append(chars.charAt(random.nextInt(chars.length())));
+        }
+        return builder.toString();
+    }
+}
@@ -20,12 +20,32 @@
 package net.brabenetz.lib.securedproperties.core;
 
 import net.brabenetz.lib.securedproperties.test.TestUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.junit.Assert;
+import org.junit.Assume;
 import org.junit.Test;
 
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.startsWith;
 
 public class EncryptionTest {
 
@@ -40,6 +60,33 @@ public class EncryptionTest {
         // Assert.assertFalse(Encryption.isAlgorithmSupported(SupportedAlgorithm.AES_256));
     }
 
+    @Test
+    public void testIsAlgorithmSupported_shouldProbeOnlyOnce() throws Exception {
+        final AtomicInteger keyCalls = new AtomicInteger();
+        final Algorithm algorithm = new MockAlgorithm("AES", 128) {
+            @Override
+            public String getKey() {
+                keyCalls.incrementAndGet();
+                return super.getKey();
+            }
+        };
+        Assert.assertTrue(Encryption.isAlgorithmSupported(algorithm));
+        final int keyCallsAfterProbe = keyCalls.get();
+        assertThat(keyCallsAfterProbe > 0, is(true));
+
+        Assert.assertTrue(Encryption.isAlgorithmSupported(algorithm));
+        assertThat(keyCalls.get(), is(keyCallsAfterProbe));
+    }
+
+    @Test
+    public void testProbeAlgorithms() throws Exception {
+        final MockAlgorithm unsupported = new MockAlgorithm("test", 1);
+        Map<Algorithm, Boolean> result = Encryption.probeAlgorithms(SupportedAlgorithm.DESede_168, unsupported, SupportedAlgorithm.AES_128);
+
+        assertThat(new ArrayList<>(result.keySet()), contains(SupportedAlgorithm.DESede_168, unsupported, SupportedAlgorithm.AES_128));
+        assertThat(new ArrayList<>(result.values()), contains(true, false, true));
+    }
+
     @Test
     public void testUtilityPattern() {
         // this test is more for test-coverage than logic :D
@@ -93,6 +140,249 @@ public class EncryptionTest {
         assertThat(finalPassword, is(password));
     }
 
+    @Test
+    public void testEncryptDecrypt_withKeyRing() throws Exception {
+        final int saltLength = 11;
+        final SecretContainer legacy = new SecretContainer(SupportedAlgorithm.AES_128, Encryption.createKey(SupportedAlgorithm.AES_128));
+        final String legacyEncrypted = Encryption.encrypt(legacy, saltLength, "legacy");
+        assertThat(Encryption.getKeyId(legacyEncrypted), is(nullValue()));
+
+        // add a new primary key to the key ring.
+        final SecretContainer keyRing = legacy
+            .withKey("k2", SupportedAlgorithm.AES_128, Encryption.createKey(SupportedAlgorithm.AES_128))
+            .withPrimaryKeyId("k2");
+        final String encrypted = Encryption.encrypt(keyRing, saltLength, "new");
+        assertThat(encrypted, startsWith("{k2:"));
+        assertThat(Encryption.getKeyId(encrypted), is("k2"));
+        Assert.assertTrue(Encryption.isEncryptedValue(encrypted));
+
+        // decrypt routes by key-id.
+        assertThat(Encryption.decrypt(keyRing, saltLength, encrypted), is("new"));
+        assertThat(Encryption.decrypt(keyRing, saltLength, legacyEncrypted), is("legacy"));
+
+        // unknown key-id
+        Exception exc = TestUtils.expectException(() -> Encryption.decrypt(legacy, saltLength, encrypted));
+        assertThat(exc.getMessage(), containsString("Unknown key-id 'k2'"));
+    }
+
+    @Test
+    public void testDecrypt_reusedBuffers() throws Exception {
+        final int saltLength = 11;
+        final SecretKey secretKey = Encryption.createKey(SupportedAlgorithm.AES_128);
+        final String largeValue = StringUtils.repeat("large-value-", 10_000);
+
+        // values of different sizes, incl. a value larger than the retained buffers, must not influence each other.
+        for (String value : new String[] {"test", largeValue, "", "täst", largeValue.substring(0, 300) }) {
+            final String encrypted = Encryption.encrypt(SupportedAlgorithm.AES_128, secretKey, saltLength, value);
+            assertThat(Encryption.decrypt(SupportedAlgorithm.AES_128, secretKey, saltLength, encrypted), is(value));
+        }
+        assertThat(Encryption.decrypt(SupportedAlgorithm.AES_128, Encryption.readSecretKey(SupportedAlgorithm.AES_128, "vpOATkkaMQ8EYnXgP3+nLw=="),
+            saltLength, "{buMkr+yZH9RclafjETtlSQ==}"), is("test"));
+
+        Exception exc = TestUtils.expectException(() -> Encryption.decrypt(SupportedAlgorithm.AES_128, secretKey, saltLength, "{buMkr+yZH9R?lafjETtlSQ==}"));
+        assertThat(exc.getMessage(), containsString("Illegal base64 character 3f"));
+    }
+
+    @Test
+    public void testEncryptDecrypt_withAesGcm() throws Exception {
+        final SecretKey secretKey = Encryption.createKey(SupportedAlgorithm.AES_GCM_256);
+
+        for (boolean offHeap : new boolean[] {false, true }) {
+            SecretBuffers.setEnabled(offHeap);
+            try {
+                final String encrypted = Encryption.encrypt(SupportedAlgorithm.AES_GCM_256, secretKey, 11, "test");
+                Assert.assertTrue(Encryption.isEncryptedValue(encrypted));
+                // envelope: version + 12 bytes nonce + 4 bytes value + 16 bytes tag, without salt.
+                final byte[] envelope = Base64.getDecoder().decode(encrypted.substring(1, encrypted.length() - 1));
+                assertThat(envelope.length, is(1 + 12 + 4 + 16));
+                assertThat(envelope[0], is((byte) 1));
+                assertThat(Encryption.decrypt(SupportedAlgorithm.AES_GCM_256, secretKey, 11, encrypted), is("test"));
+                assertThat(Encryption.decrypt(SupportedAlgorithm.AES_GCM_256, secretKey, 0, encrypted), is("test"));
+            } finally {
+                SecretBuffers.setEnabled(false);
+            }
+        }
+    }
+
+    @Test
+    public void testDecrypt_withAesGcm_invalidEnvelope() throws Exception {
+        final SecretKey secretKey = Encryption.createKey(SupportedAlgorithm.AES_GCM_128);
+        final String encrypted = Encryption.encrypt(SupportedAlgorithm.AES_GCM_128, secretKey, 0, "test");
+        final byte[] envelope = Base64.getDecoder().decode(encrypted.substring(1, encrypted.length() - 1));
+
+        // a modified cipher-text fails the authentication.
+        envelope[envelope.length - 1] ^= 1;
+        Exception exc = TestUtils.expectException(() -> Encryption.decrypt(SupportedAlgorithm.AES_GCM_128, secretKey, 0, toEncryptedValue(envelope)));
+        assertThat(exc.getCause(), is(instanceOf(AEADBadTagException.class)));
+
+        // unknown version
+        envelope[0] = 2;
+        exc = TestUtils.expectException(() -> Encryption.decrypt(SupportedAlgorithm.AES_GCM_128, secretKey, 0, toEncryptedValue(envelope)));
+        assertThat(exc.getMessage(), containsString("Unsupported envelope version 2"));
+
+        // a legacy value is too short.
+        exc = TestUtils.expectException(() -> Encryption.decrypt(SupportedAlgorithm.AES_GCM_128, secretKey, 0, "{buMkr+yZH9RclafjETtlSQ==}"));
+        assertThat(exc.getMessage(), containsString("too short"));
+    }
+
+    @Test
+    public void testEncryptDecrypt_withChaCha20Poly1305() throws Exception {
+        // ChaCha20-Poly1305 is only available since Java 11.
+        assertThat(Encryption.isAlgorithmSupported(SupportedAlgorithm.CHACHA20_POLY1305), is(isJceAlgorithmAvailable("ChaCha20-Poly1305")));
+        Assume.assumeTrue(Encryption.isAlgorithmSupported(SupportedAlgorithm.CHACHA20_POLY1305));
+        final SecretKey secretKey = Encryption.createKey(SupportedAlgorithm.CHACHA20_POLY1305);
+
+        final String encrypted = Encryption.encrypt(SupportedAlgorithm.CHACHA20_POLY1305, secretKey, 11, "test");
+
+        // envelope: version + 12 bytes nonce + 4 bytes value + 16 bytes tag, without salt.
+        assertThat(Base64.getDecoder().decode(encrypted.substring(1, encrypted.length() - 1)).length, is(1 + 12 + 4 + 16));
+        assertThat(Encryption.decrypt(SupportedAlgorithm.CHACHA20_POLY1305, secretKey, 11, encrypted), is("test"));
+        // SunJCE refuses to re-initialize with the same nonce, even for decryption.
+        assertThat(Encryption.decrypt(SupportedAlgorithm.CHACHA20_POLY1305, secretKey, 11, encrypted), is("test"));
+        assertThat(Encryption.encrypt(SupportedAlgorithm.CHACHA20_POLY1305, secretKey, 11, "test"), is(not(encrypted)));
+    }
+
+    private static boolean isJceAlgorithmAvailable(final String transformation) {
+        try {
+            Cipher.getInstance(transformation);
+            return true;
+        } catch (GeneralSecurityException e) {
+            return false;
+        }
+    }
+
+    private static String toEncryptedValue(final byte[] envelope) {
+        return "{" + Base64.getEncoder().encodeToString(envelope) + "}";
+    }
+
+    @Test
+    public void testDecryptToCharsAndBytes() throws Exception {
+        final int saltLength = 11;
+        final SecretContainer keyRing = new SecretContainer(SupportedAlgorithm.AES_128, Encryption.createKey(SupportedAlgorithm.AES_128))
+            .withKey("k2", SupportedAlgorithm.AES_128, Encryption.createKey(SupportedAlgorithm.AES_128))
+            .withPrimaryKeyId("k2");
+
+        for (boolean offHeap : new boolean[] {false, true }) {
+            SecretBuffers.setEnabled(offHeap);
+            try {
+                // multi-byte chars (incl. a surrogate pair) and values of different sizes.
+                for (String value : new String[] {"test", "", "täst-\uD83D\uDD11-€", StringUtils.repeat("large-välue-", 10_000) }) {
+                    final String encrypted = Encryption.encrypt(keyRing, saltLength, value);
+                    assertThat(new String(Encryption.decryptToChars(keyRing, saltLength, encrypted)), is(value));
+                    assertThat(Encryption.decryptToBytes(keyRing, saltLength, encrypted), is(value.getBytes(StandardCharsets.UTF_8)));
+                }
+            } finally {
+                SecretBuffers.setEnabled(false);
+            }
+        }
+        final SecretKey exampleKey = Encryption.readSecretKey(SupportedAlgorithm.AES_128, "vpOATkkaMQ8EYnXgP3+nLw==");
+        assertThat(Encryption.decryptToChars(SupportedAlgorithm.AES_128, exampleKey, saltLength, "{buMkr+yZH9RclafjETtlSQ==}"),
+            is("test".toCharArray()));
+        assertThat(Encryption.decryptToBytes(SupportedAlgorithm.AES_128, exampleKey, saltLength, "{buMkr+yZH9RclafjETtlSQ==}"),
+            is("test".getBytes(StandardCharsets.UTF_8)));
+
+        Exception exc = TestUtils.expectException(() -> Encryption.decryptToChars(keyRing, saltLength, "{k3:buMkr+yZH9RclafjETtlSQ==}"));
+        assertThat(exc.getMessage(), containsString("Unknown key-id 'k3'"));
+    }
+
+    @Test
+    public void testEncryptDecrypt_compactFormat() throws Exception {
+        final int saltLength = 11;
+        for (SupportedAlgorithm algorithm : new SupportedAlgorithm[] {SupportedAlgorithm.AES_128, SupportedAlgorithm.AES_GCM_128 }) {
+            final SecretKey secretKey = Encryption.createKey(algorithm);
+            for (boolean offHeap : new boolean[] {false, true }) {
+                SecretBuffers.setEnabled(offHeap);
+                try {
+                    final String encrypted = Encryption.encryptCompact(algorithm, secretKey, saltLength, "test");
+                    assertThat(encrypted, startsWith("{v2:"));
+                    Assert.assertTrue(Encryption.isEncryptedValue(encrypted));
+                    assertThat(Encryption.getKeyId(encrypted), is(nullValue()));
+                    // header byte: mode (0 = salted, 1 = nonce) and algorithm family (1 = AES).
+                    final byte[] bytes = Base64.getUrlDecoder().decode(encrypted.substring(4, encrypted.length() - 1));
+                    assertThat(bytes[0], is(algorithm.getNonceLength() > 0 ? (byte) 0x11 : (byte) 0x01));
+                    assertThat(Encryption.decrypt(algorithm, secretKey, saltLength, encrypted), is("test"));
+                    assertThat(Encryption.decryptToChars(algorithm, secretKey, saltLength, encrypted), is("test".toCharArray()));
+                } finally {
+                    SecretBuffers.setEnabled(false);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testEncryptDecrypt_compactFormatWithKeyRing() throws Exception {
+        final int saltLength = 11;
+        final SecretContainer legacy = new SecretContainer(SupportedAlgorithm.AES_128, Encryption.createKey(SupportedAlgorithm.AES_128));
+        final SecretContainer keyRing = legacy
+            .withKey("k2", SupportedAlgorithm.AES_GCM_256, Encryption.createKey(SupportedAlgorithm.AES_GCM_256))
+            .withPrimaryKeyId("k2");
+
+        final String encrypted = Encryption.encryptCompact(keyRing, saltLength, "new");
+        assertThat(encrypted, startsWith("{v2:"));
+        assertThat(Encryption.getKeyId(encrypted), is("k2"));
+        assertThat(Encryption.decrypt(keyRing, saltLength, encrypted), is("new"));
+        // legacy values keep working.
+        assertThat(Encryption.decrypt(keyRing, saltLength, Encryption.encrypt(legacy, saltLength, "legacy")), is("legacy"));
+        assertThat(Encryption.decrypt(keyRing, saltLength, Encryption.encryptCompact(legacy, saltLength, "legacy")), is("legacy"));
+
+        // the header must match the algorithm of the key.
+        Exception exc = TestUtils.expectException(
+            () -> Encryption.decrypt(SupportedAlgorithm.AES_128, legacy.getSecretKey(), saltLength, encrypted));
+        assertThat(exc.getMessage(), containsString("was not encrypted with the algorithm AES_128"));
+        exc = TestUtils.expectException(() -> Encryption.decrypt(legacy, saltLength, encrypted));
+        assertThat(exc.getMessage(), containsString("Unknown key-id 'k2'"));
+        // the key-id "v2" would be ambiguous with the prefix.
+        exc = TestUtils.expectException(() -> legacy.withKey("v2", SupportedAlgorithm.AES_128, legacy.getSecretKey()));
+        assertThat(exc.getMessage(), containsString("The key-id 'v2' is reserved"));
+    }
+
+    @Test
+    public void testEncryptDecryptAll() throws Exception {
+        final int saltLength = 11;
+        final List<String> values = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            values.add("value-" + i + StringUtils.repeat('ä', i % 20));
+        }
+        for (SupportedAlgorithm algorithm : new SupportedAlgorithm[] {SupportedAlgorithm.AES_128, SupportedAlgorithm.AES_GCM_128 }) {
+            final SecretContainer keyRing = new SecretContainer(SupportedAlgorithm.AES_128, Encryption.createKey(SupportedAlgorithm.AES_128))
+                .withKey("k2", algorithm, Encryption.createKey(algorithm))
+                .withPrimaryKeyId("k2");
+            for (boolean offHeap : new boolean[] {false, true }) {
+                SecretBuffers.setEnabled(offHeap);
+                try {
+                    final List<String> encrypted = Encryption.encryptAll(keyRing, saltLength, values);
+                    assertThat(encrypted.get(0), startsWith("{k2:"));
+                    assertThat(Encryption.decrypt(keyRing, saltLength, encrypted.get(299)), is(values.get(299)));
+                    assertThat(Encryption.decryptAll(keyRing, saltLength, encrypted), is(values));
+                    // split into 4 parallel parts.
+                    final List<String> encryptedCompact = Encryption.encryptCompactAll(keyRing, saltLength, values, 4);
+                    assertThat(encryptedCompact.get(0), startsWith("{v2:"));
+                    assertThat(Encryption.getKeyId(encryptedCompact.get(0)), is("k2"));
+                    assertThat(Encryption.decryptAll(keyRing, saltLength, encryptedCompact, 4), is(values));
+                    assertThat(Encryption.decryptAllToChars(keyRing, saltLength, encryptedCompact, 4).get(299), is(values.get(299).toCharArray()));
+                } finally {
+                    SecretBuffers.setEnabled(false);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testEncryptDecryptAll_failures() throws Exception {
+        final SecretContainer secretContainer = new SecretContainer(SupportedAlgorithm.AES_128, Encryption.createKey(SupportedAlgorithm.AES_128));
+        final List<String> encrypted = new ArrayList<>(Encryption.encryptAll(secretContainer, 11, Collections.nCopies(200, "test")));
+        assertThat(encrypted.get(0), is(not(encrypted.get(1))));
+        encrypted.set(150, "{k3:buMkr+yZH9RclafjETtlSQ==}");
+
+        // a failure of a parallel part is thrown unchanged.
+        Exception exc = TestUtils.expectException(() -> Encryption.decryptAll(secretContainer, 11, encrypted, 2));
+        assertThat(exc, is(instanceOf(IllegalArgumentException.class)));
+        assertThat(exc.getMessage(), containsString("Unknown key-id 'k3'"));
+        exc = TestUtils.expectException(() -> Encryption.decryptAll(secretContainer, 11, encrypted, 0));
+        assertThat(exc.getMessage(), containsString("The parallelism must be positive"));
+        assertThat(Encryption.decryptAll(secretContainer, 11, Collections.emptyList()), is(Collections.emptyList()));
+    }
+
     @Test
         public void testIsEncryptedValue() throws Exception {
             Assert.assertFalse(Encryption.isEncryptedValue(null));
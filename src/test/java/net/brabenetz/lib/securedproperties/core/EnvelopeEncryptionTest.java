@@ -0,0 +1,133 @@
+/*-
+ * #%L
+ * Secured Properties
+ * ===============================================================
+ * Copyright (C) 2016 - 2026 Brabenetz Harald, Austria
+ * ===============================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package net.brabenetz.lib.securedproperties.core;
+
+import net.brabenetz.lib.securedproperties.test.TestUtils;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+
+public class EnvelopeEncryptionTest {
+
+    private static final int SALT_LENGTH = 11;
+
+    private final File testFolder = new File("./target/tests/" + getClass().getSimpleName());
+    private final File propertyFile = new File(testFolder, "app.properties");
+    private final SecretContainer secretContainer = new SecretContainer(SupportedAlgorithm.AES_128,
+        Encryption.readSecretKey(SupportedAlgorithm.AES_128, "vpOATkkaMQ8EYnXgP3+nLw=="));
+    private final AtomicInteger unwrapCount = new AtomicInteger();
+    private final UnaryOperator<String> unwrap = value -> {
+        unwrapCount.incrementAndGet();
+        return Encryption.decrypt(secretContainer, SALT_LENGTH, value);
+    };
+
+    @Before
+    public void before() throws Exception {
+        if (testFolder.exists()) {
+            FileUtils.forceDelete(testFolder);
+        }
+        FileUtils.forceMkdir(testFolder);
+    }
+
+    @After
+    public void after() {
+        EnvelopeEncryption.clear();
+    }
+
+    @Test
+    public void testUtilityPattern() {
+        // this test is more for test-coverage than logic :D
+        Assert.assertTrue(TestUtils.isDefaultConstructorHidden(EnvelopeEncryption.class));
+    }
+
+    @Test
+    public void testFindWrappedDataKey_onlyBeforeFirstProperty() {
+        assertThat(EnvelopeEncryption.findWrappedDataKey("# comment\n\n  # secured-properties-data-key: {abcd}\nkey = value\n"), is("{abcd}"));
+        assertThat(EnvelopeEncryption.findWrappedDataKey("key = value\n# secured-properties-data-key: {abcd}\n"), is(nullValue()));
+        assertThat(EnvelopeEncryption.findWrappedDataKey("# comment\n"), is(nullValue()));
+        assertThat(EnvelopeEncryption.findWrappedDataKey(""), is(nullValue()));
+    }
+
+    @Test
+    public void testGetDataKey_shouldUnwrapOnlyOncePerWrappedDataKey() throws Exception {
+        final SecretContainer dataKey = EnvelopeEncryption.createDataKey(SupportedAlgorithm.AES_128);
+        final String wrappedDataKey = Encryption.encrypt(secretContainer, SALT_LENGTH, EnvelopeEncryption.toDataKeyLine(dataKey));
+        FileUtils.writeStringToFile(propertyFile, EnvelopeEncryption.toHeaderLine(wrappedDataKey) + "\nkey = value\n", StandardCharsets.ISO_8859_1);
+
+        // start Test
+        final String readWrappedDataKey = EnvelopeEncryption.readWrappedDataKey(propertyFile);
+        final SecretContainer first = EnvelopeEncryption.getDataKey(propertyFile, readWrappedDataKey, secretContainer, unwrap, SupportedAlgorithm.values());
+        final SecretContainer second = EnvelopeEncryption.getDataKey(propertyFile, readWrappedDataKey, secretContainer, unwrap, SupportedAlgorithm.values());
+
+        // validate Result
+        assertThat(readWrappedDataKey, is(wrappedDataKey));
+        assertThat(first.getAlgorithm(), is(SupportedAlgorithm.AES_128));
+        assertThat(first.getSecretKey(), is(dataKey.getSecretKey()));
+        assertThat(second == first, is(true));
+        assertThat(unwrapCount.get(), is(1));
+
+        // a re-wrapped data key (e.g. after a key rotation) is unwrapped again
+        final String reWrappedDataKey = Encryption.encrypt(secretContainer, SALT_LENGTH, EnvelopeEncryption.toDataKeyLine(dataKey));
+        EnvelopeEncryption.getDataKey(propertyFile, reWrappedDataKey, secretContainer, unwrap, SupportedAlgorithm.values());
+        assertThat(unwrapCount.get(), is(2));
+    }
+
+    @Test
+    public void testGetDataKey_otherUnwrappingKey_shouldUnwrapAgain() throws Exception {
+        final SecretContainer dataKey = EnvelopeEncryption.createDataKey(SupportedAlgorithm.AES_128);
+        final String wrappedDataKey = Encryption.encrypt(secretContainer, SALT_LENGTH, EnvelopeEncryption.toDataKeyLine(dataKey));
+        EnvelopeEncryption.putDataKey(propertyFile, wrappedDataKey, secretContainer, dataKey);
+        final SecretContainer otherSecretContainer = new SecretContainer(SupportedAlgorithm.AES_128,
+            Encryption.readSecretKey(SupportedAlgorithm.AES_128, "q8sKqkB7iW0aNr0s8P3uDw=="));
+
+        // start Test
+        final SecretContainer cached = EnvelopeEncryption.getDataKey(propertyFile, wrappedDataKey, secretContainer, unwrap);
+        Exception exc = TestUtils.expectException(() -> EnvelopeEncryption.getDataKey(propertyFile, wrappedDataKey, otherSecretContainer,
+            value -> Encryption.decrypt(otherSecretContainer, SALT_LENGTH, value), SupportedAlgorithm.values()));
+
+        // validate Result: the cached data key is only used for the key which wrapped it.
+        assertThat(cached == dataKey, is(true));
+        assertThat(unwrapCount.get(), is(0));
+        assertThat(exc, is(notNullValue()));
+    }
+
+    @Test
+    public void testGetDataKey_notAllowedAlgorithm() throws Exception {
+        final String wrappedDataKey = Encryption.encrypt(secretContainer, SALT_LENGTH,
+            EnvelopeEncryption.toDataKeyLine(EnvelopeEncryption.createDataKey(SupportedAlgorithm.AES_128)));
+
+        Exception exc = TestUtils.expectException(
+            () -> EnvelopeEncryption.getDataKey(propertyFile, wrappedDataKey, secretContainer, unwrap, SupportedAlgorithm.DESede_168));
+        assertThat(exc.getMessage(), containsString("Unable to parse algorithm 'AES_128' of the data key"));
+    }
+}
@@ -0,0 +1,104 @@
+/*-
+ * #%L
+ * Secured Properties
+ * ===============================================================
+ * Copyright (C) 2016 - 2026 Brabenetz Harald, Austria
+ * ===============================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package net.brabenetz.lib.securedproperties.core;
+
+import org.apache.commons.lang3.StringUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link EncryptedValueFormat} with the previous regular expression for a valid encrypted value, a nearly valid value (a large base64
+ * blob in braces with an invalid last char) and a plain-text value of the given length. A value in the {@link CompactValueFormat compact format}
+ * is recognized by its prefix, the base64 chars and the header.
+ * <p>
+ * Run with: mvn -Pbenchmark test -Dbenchmark="IsEncryptedValueBenchmark -prof gc"
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IsEncryptedValueBenchmark {
+
+    @Param({"10", "1000", "100000", "1000000" })
+    private int length;
+
+    private String valid;
+    private String nearlyValid;
+    private String plainText;
+    private String compact;
+
+    @Setup
+    public void setup() {
+        final String base64 = StringUtils.repeat("aB3+", Math.max(1, length / 4));
+        valid = "{k1:" + base64.substring(0, base64.length() - 2) + "==}";
+        nearlyValid = "{k1:" + base64.substring(0, base64.length() - 4) + "abc!}";
+        plainText = StringUtils.repeat('x', length);
+        // "AY" is the header byte of AES without key-id.
+        compact = CompactValueFormat.PREFIX + "AY" + base64.replace('+', '-').substring(2, base64.length() - 2) + "}";
+    }
+
+    @Benchmark
+    public boolean regexValid() {
+        return EncryptedValueFormatTest.ENCRYPTED_VALUE.matcher(valid).matches();
+    }
+
+    @Benchmark
+    public boolean regexNearlyValid() {
+        return EncryptedValueFormatTest.ENCRYPTED_VALUE.matcher(nearlyValid).matches();
+    }
+
+    @Benchmark
+    public boolean regexPlainText() {
+        return EncryptedValueFormatTest.ENCRYPTED_VALUE.matcher(plainText).matches();
+    }
+
+    @Benchmark
+    public boolean scannerValid() {
+        return EncryptedValueFormat.isEncryptedValue(valid);
+    }
+
+    @Benchmark
+    public boolean scannerNearlyValid() {
+        return EncryptedValueFormat.isEncryptedValue(nearlyValid);
+    }
+
+    @Benchmark
+    public boolean scannerPlainText() {
+        return EncryptedValueFormat.isEncryptedValue(plainText);
+    }
+
+    @Benchmark
+    public boolean scannerCompact() {
+        return EncryptedValueFormat.isEncryptedValue(compact);
+    }
+}
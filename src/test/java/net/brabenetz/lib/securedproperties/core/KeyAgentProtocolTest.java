@@ -0,0 +1,133 @@
+/*-
+ * #%L
+ * Secured Properties
+ * ===============================================================
+ * Copyright (C) 2016 - 2026 Brabenetz Harald, Austria
+ * ===============================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package net.brabenetz.lib.securedproperties.core;
+
+import net.brabenetz.lib.securedproperties.core.KeyAgentProtocol.Frame;
+import net.brabenetz.lib.securedproperties.core.KeyAgentProtocol.FrameReader;
+import net.brabenetz.lib.securedproperties.test.TestUtils;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.ByteChannel;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+
+public class KeyAgentProtocolTest {
+
+    @Test
+    public void testRead_shouldDecodeEncodedFrames() throws Exception {
+        final ByteBuffer first = KeyAgentProtocol.encode(new Frame(1, KeyAgentProtocol.TYPE_ENCRYPT, 11, Arrays.asList("a", "äöü")));
+        final ByteBuffer second = KeyAgentProtocol.encode(new Frame(2, KeyAgentProtocol.TYPE_DECRYPT, 0, Arrays.asList()));
+        final ByteBuffer input = ByteBuffer.allocate(first.remaining() + second.remaining()).put(first).put(second);
+
+        // start Test
+        List<Frame> frames = new FrameReader(new InMemoryChannel(input)).read();
+
+        // validate Result
+        assertThat(frames.size(), is(2));
+        assertThat(frames.get(0).getRequestId(), is(1));
+        assertThat(frames.get(0).getSaltLength(), is(11));
+        assertThat(frames.get(0).getValues(), is(Arrays.asList("a", "äöü")));
+        assertThat(frames.get(1).getType(), is(KeyAgentProtocol.TYPE_DECRYPT));
+        assertThat(frames.get(1).getValues().size(), is(0));
+    }
+
+    @Test
+    public void testRead_corruptedFrames_shouldFailWithIOException() throws Exception {
+        assertInvalid(Integer.MAX_VALUE, 4, "value count");
+        assertInvalid(1, -1, "value length");
+        // the value length points into the next frame.
+        assertInvalid(1, 100, "value length");
+        assertInvalid(-1, 0, "value count");
+    }
+
+    @Test
+    public void testReadAndEncode_tooLargeSaltLength_shouldFail() throws Exception {
+        assertInvalid(KeyAgentProtocol.MAX_SALT_LENGTH + 1, 1, 0, "salt length");
+        assertInvalid(Integer.MAX_VALUE, 1, 0, "salt length");
+
+        Exception exc = TestUtils.expectException(
+            () -> KeyAgentProtocol.encode(new Frame(1, KeyAgentProtocol.TYPE_ENCRYPT, KeyAgentProtocol.MAX_SALT_LENGTH + 1, Arrays.asList("a"))));
+        assertThat(exc.getMessage(), containsString("The salt length 1025 is too large for 1 values"));
+        // the salts of all values of a batch must fit into one frame.
+        final int count = KeyAgentProtocol.MAX_FRAME_LENGTH / KeyAgentProtocol.MAX_SALT_LENGTH + 1;
+        exc = TestUtils.expectException(() -> KeyAgentProtocol.encode(
+            new Frame(1, KeyAgentProtocol.TYPE_ENCRYPT, KeyAgentProtocol.MAX_SALT_LENGTH, Collections.nCopies(count, ""))));
+        assertThat(exc.getMessage(), containsString("is too large for " + count + " values"));
+    }
+
+    private void assertInvalid(final int count, final int valueLength, final String expectedField) throws Exception {
+        assertInvalid(11, count, valueLength, expectedField);
+    }
+
+    private void assertInvalid(final int saltLength, final int count, final int valueLength, final String expectedField) throws Exception {
+        final ByteBuffer input = ByteBuffer.allocate(256);
+        input.putInt(4 + 1 + 4 + 4 + 4).putInt(1).put(KeyAgentProtocol.TYPE_DECRYPT).putInt(saltLength).putInt(count).putInt(valueLength);
+        input.put(KeyAgentProtocol.encode(new Frame(2, KeyAgentProtocol.TYPE_DECRYPT, 11, Arrays.asList("next"))));
+
+        Exception exc = TestUtils.expectException(() -> new FrameReader(new InMemoryChannel(input)).read());
+        assertThat(exc.getMessage(), containsString("Invalid key agent frame " + expectedField));
+    }
+
+    /**
+     * {@link ByteChannel} which reads the written content of the given buffer.
+     */
+    private static final class InMemoryChannel implements ByteChannel {
+        private final ByteBuffer content;
+
+        InMemoryChannel(final ByteBuffer content) {
+            this.content = content;
+            content.flip();
+        }
+
+        @Override
+        public int read(final ByteBuffer dst) {
+            if (!content.hasRemaining()) {
+                return -1;
+            }
+            final int length = Math.min(dst.remaining(), content.remaining());
+            final ByteBuffer chunk = content.slice();
+            chunk.limit(length);
+            dst.put(chunk);
+            content.position(content.position() + length);
+            return length;
+        }
+
+        @Override
+        public int write(final ByteBuffer src) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+            // nothing to close
+        }
+    }
+}
@@ -0,0 +1,215 @@
+/*-
+ * #%L
+ * Secured Properties
+ * ===============================================================
+ * Copyright (C) 2016 - 2026 Brabenetz Harald, Austria
+ * ===============================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package net.brabenetz.lib.securedproperties.core;
+
+import net.brabenetz.lib.securedproperties.test.TestUtils;
+import net.brabenetz.lib.securedproperties.core.KeyAgentProtocol.Frame;
+import net.brabenetz.lib.securedproperties.core.KeyAgentProtocol.FrameReader;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+
+public class KeyAgentServerTest {
+
+    private static final int SALT_LENGTH = 11;
+
+    private final File testFolder = new File("./target/tests/" + getClass().getSimpleName());
+    private final Path socketPath = new File(testFolder, "agent.sock").toPath();
+    private final SecretContainer secretContainer = new SecretContainer(SupportedAlgorithm.AES_128,
+        Encryption.readSecretKey(SupportedAlgorithm.AES_128, "vpOATkkaMQ8EYnXgP3+nLw=="));
+
+    private KeyAgentServer server;
+
+    @Before
+    public void startServer() throws Exception {
+        Assume.assumeTrue("Unix domain sockets require Java 16+", KeyAgentServer.isSupported());
+        if (testFolder.exists()) {
+            FileUtils.forceDelete(testFolder);
+        }
+        FileUtils.forceMkdir(testFolder);
+        server = KeyAgentServer.start(socketPath, SecretContainerSources.inMemory(secretContainer), SupportedAlgorithm.AES_128);
+    }
+
+    @After
+    public void stopServer() {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Test
+    public void testEncryptAndDecrypt_shouldUseSecretKeyOfAgent() throws Exception {
+        try (KeyAgentClient client = KeyAgentClient.connect(socketPath)) {
+            final String encrypted = client.encrypt(SALT_LENGTH, "test");
+
+            assertThat(Encryption.decrypt(secretContainer, SALT_LENGTH, encrypted), is("test"));
+            assertThat(client.decrypt(SALT_LENGTH, "{buMkr+yZH9RclafjETtlSQ==}"), is("test"));
+        }
+    }
+
+    @Test
+    public void testDecryptAll_shouldSendOneBatch() throws Exception {
+        final List<String> values = IntStream.range(0, 500).mapToObj(i -> "value-" + i + "-ä€").collect(Collectors.toList());
+        final List<String> encryptedValues = values.stream().map(value -> Encryption.encrypt(secretContainer, SALT_LENGTH, value))
+            .collect(Collectors.toList());
+
+        try (KeyAgentClient client = KeyAgentClient.connect(socketPath)) {
+            assertThat(client.decryptAll(SALT_LENGTH, encryptedValues), is(values));
+        }
+        assertThat(server.getFrameCount(), is(1L));
+        assertThat(server.getValueCount(), is(500L));
+    }
+
+    @Test
+    public void testPipelining_concurrentRequestsOnOneConnection() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try (KeyAgentClient client = KeyAgentClient.connect(socketPath)) {
+            final List<Future<List<CompletableFuture<List<String>>>>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++) {
+                final int threadNumber = thread;
+                // every thread sends 100 requests without waiting for the responses.
+                futures.add(executor.submit(() -> IntStream.range(0, 100)
+                    .mapToObj(i -> client.encryptAllAsync(SALT_LENGTH, Collections.singletonList(threadNumber + "-" + i)))
+                    .collect(Collectors.toList())));
+            }
+
+            for (int thread = 0; thread < 8; thread++) {
+                final List<CompletableFuture<List<String>>> responses = futures.get(thread).get(30, TimeUnit.SECONDS);
+                for (int i = 0; i < 100; i++) {
+                    final String encrypted = responses.get(i).get(30, TimeUnit.SECONDS).get(0);
+                    assertThat(Encryption.decrypt(secretContainer, SALT_LENGTH, encrypted), is(thread + "-" + i));
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(server.getFrameCount(), is(800L));
+    }
+
+    @Test
+    public void testDecrypt_invalidValue_shouldFailOnlyThisRequest() throws Exception {
+        try (KeyAgentClient client = KeyAgentClient.connect(socketPath)) {
+            Exception exc = TestUtils.expectException(() -> client.decrypt(SALT_LENGTH, "{unknown:buMkr+yZH9RclafjETtlSQ==}"));
+            assertThat(exc.getMessage(), containsString("Unknown key-id 'unknown'"));
+
+            assertThat(client.isOpen(), is(true));
+            assertThat(client.decrypt(SALT_LENGTH, "{buMkr+yZH9RclafjETtlSQ==}"), is("test"));
+        }
+    }
+
+    @Test
+    public void testDecrypt_errorWithoutMessage_shouldFailOnlyThisRequest() throws Exception {
+        final Path fakeSocketPath = new File(testFolder, "fake-agent.sock").toPath();
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (ServerSocketChannel fakeAgent = UnixDomainSockets.openServerChannel()) {
+            fakeAgent.bind(UnixDomainSockets.address(fakeSocketPath));
+            // the fake agent answers every request with an ERROR frame without values.
+            executor.submit(() -> {
+                try (SocketChannel channel = fakeAgent.accept()) {
+                    final FrameReader reader = new FrameReader(channel);
+                    for (List<Frame> requests = reader.read(); !requests.isEmpty(); requests = reader.read()) {
+                        for (Frame request : requests) {
+                            channel.write(KeyAgentProtocol.encode(
+                                new Frame(request.getRequestId(), KeyAgentProtocol.TYPE_ERROR, 0, Collections.emptyList())));
+                        }
+                    }
+                }
+                return null;
+            });
+
+            try (KeyAgentClient client = KeyAgentClient.connect(fakeSocketPath)) {
+                // run test
+                Exception exc = TestUtils.expectException(() -> client.decrypt(SALT_LENGTH, "{buMkr+yZH9RclafjETtlSQ==}"));
+
+                // validate result: the reader thread is still alive.
+                assertThat(exc.getMessage(), containsString("rejected the request without a message"));
+                assertThat(client.isOpen(), is(true));
+                exc = TestUtils.expectException(() -> client.decrypt(SALT_LENGTH, "{buMkr+yZH9RclafjETtlSQ==}"));
+                assertThat(exc.getMessage(), containsString("rejected the request without a message"));
+            }
+        } finally {
+            executor.shutdownNow();
+            Files.deleteIfExists(fakeSocketPath);
+        }
+    }
+
+    @Test
+    public void testClose_shouldFailClientsAndRemoveSocket() throws Exception {
+        final KeyAgentClient client = KeyAgentClient.connect(socketPath);
+        assertThat(client.decrypt(SALT_LENGTH, "{buMkr+yZH9RclafjETtlSQ==}"), is("test"));
+
+        server.close();
+
+        assertThat(Files.exists(socketPath), is(false));
+        Exception exc = TestUtils.expectException(() -> client.decrypt(SALT_LENGTH, "{buMkr+yZH9RclafjETtlSQ==}"));
+        assertThat(exc.getMessage(), containsString("is not available"));
+        assertThat(client.isOpen(), is(false));
+    }
+
+    @Test
+    public void testGetShared_shouldReconnectAfterRestart() throws Exception {
+        final KeyAgentClient client = KeyAgentClient.getShared(socketPath);
+        assertThat(KeyAgentClient.getShared(socketPath), is(client));
+        assertThat(client.decrypt(SALT_LENGTH, "{buMkr+yZH9RclafjETtlSQ==}"), is("test"));
+
+        server.close();
+        server = KeyAgentServer.start(socketPath, SecretContainerSources.inMemory(secretContainer), SupportedAlgorithm.AES_128);
+        TestUtils.expectException(() -> client.decrypt(SALT_LENGTH, "{buMkr+yZH9RclafjETtlSQ==}"));
+
+        assertThat(KeyAgentClient.getShared(socketPath).decrypt(SALT_LENGTH, "{buMkr+yZH9RclafjETtlSQ==}"), is("test"));
+    }
+
+    @Test
+    public void testStart_shouldRestrictTheSocketToTheOwner() throws Exception {
+        assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(socketPath)), is("rw-------"));
+        // the private directory of the bind is removed.
+        assertThat(testFolder.list(), is(new String[] {"agent.sock" }));
+    }
+
+    @Test
+    public void testStart_agentAlreadyRunning() throws Exception {
+        Exception exc = TestUtils.expectException(
+            () -> KeyAgentServer.start(socketPath, SecretContainerSources.inMemory(secretContainer), SupportedAlgorithm.AES_128));
+        assertThat(exc.getMessage(), containsString("A key agent is already running"));
+    }
+}
@@ -0,0 +1,192 @@
+/*-
+ * #%L
+ * Secured Properties
+ * ===============================================================
+ * Copyright (C) 2016 - 2026 Brabenetz Harald, Austria
+ * ===============================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package net.brabenetz.lib.securedproperties.core;
+
+import net.brabenetz.lib.securedproperties.test.TestUtils;
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.crypto.SecretKey;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.security.KeyStore;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.startsWith;
+
+public class KeyStoreSecretContainerSourceTest {
+
+    private static final int SALT_LENGTH = 11;
+    /** The password of the surefire configuration in the pom.xml. */
+    private static final char[] PASSWORD = "changeit".toCharArray();
+
+    private final File testFolder = new File("./target/tests/" + getClass().getSimpleName());
+    private final File keyStoreFile = new File(testFolder, "keys.p12");
+    private final SecretKey exampleKey = Encryption.readSecretKey(SupportedAlgorithm.AES_128, "vpOATkkaMQ8EYnXgP3+nLw==");
+    private final SecretKey k2 = Encryption.createKey(SupportedAlgorithm.AES_256);
+    private final SecretKey k3 = Encryption.createKey(SupportedAlgorithm.DESede_168);
+
+    @Before
+    public void before() throws Exception {
+        if (testFolder.exists()) {
+            FileUtils.forceDelete(testFolder);
+        }
+        FileUtils.forceMkdir(testFolder);
+    }
+
+    @Test
+    public void testGetSecretContainer_shouldLoadOnceAndDecodeKeyRingLazily() throws Exception {
+        writeKeyStore(keyStoreFile, "PKCS12", "secured-properties", exampleKey, "k2", k2, "k3", k3);
+        final KeyStoreSecretContainerSource source = new KeyStoreSecretContainerSource(keyStoreFile, PASSWORD).withPrimaryAlias("k2");
+
+        // start Test
+        final SecretContainer secretContainer = source.getSecretContainer(SupportedAlgorithm.values());
+
+        // validate Result
+        assertThat(source.getSecretContainer(SupportedAlgorithm.values()), is(sameInstance(secretContainer)));
+        assertThat(source.getLoadCount(), is(1));
+        assertThat(source.getDecodeCount(), is(1));
+        assertThat(source.isImmutable(), is(false));
+        assertThat(Encryption.decrypt(secretContainer, SALT_LENGTH, "{buMkr+yZH9RclafjETtlSQ==}"), is("test"));
+        assertThat(secretContainer.getKeyRing().keySet().toString(), is("[k2, k3]"));
+        assertThat(source.getDecodeCount(), is(1));
+
+        final String encrypted = Encryption.encrypt(secretContainer, SALT_LENGTH, "test");
+        assertThat(encrypted, startsWith("{k2:"));
+        assertThat(secretContainer.getPrimaryKey().getAlgorithm(), is(SupportedAlgorithm.AES_256));
+        assertThat(Encryption.decrypt(SupportedAlgorithm.AES_256, k2, SALT_LENGTH, encrypted), is("test"));
+        assertThat(source.getDecodeCount(), is(2));
+
+        assertThat(secretContainer.getKey("k3").getAlgorithm(), is(SupportedAlgorithm.DESede_168));
+        assertThat(source.getDecodeCount(), is(3));
+    }
+
+    @Test
+    public void testGetSecretContainer_changedKeyStore_shouldReload() throws Exception {
+        writeKeyStore(keyStoreFile, "PKCS12", "secured-properties", exampleKey);
+        final KeyStoreSecretContainerSource source = new KeyStoreSecretContainerSource(keyStoreFile, PASSWORD);
+        final List<String> events = new ArrayList<>();
+        source.addListener(new SecretContainerListener() {
+            @Override
+            public void secretContainerChanged(final SecretContainer oldSecretContainer, final SecretContainer newSecretContainer) {
+                events.add("changed:" + newSecretContainer.getKeyRing().keySet());
+            }
+
+            @Override
+            public void secretContainerReloadFailed(final Exception exception) {
+                events.add("failed");
+            }
+        });
+        final SecretContainer first = source.getSecretContainer(SupportedAlgorithm.values());
+
+        // start Test: the KeyStore gets a new key
+        writeKeyStore(keyStoreFile, "PKCS12", "secured-properties", exampleKey, "k2", k2);
+        touch(keyStoreFile, 2000);
+        final SecretContainer second = source.getSecretContainer(SupportedAlgorithm.values());
+
+        // start Test: an invalid KeyStore keeps the previous secret key
+        FileUtils.writeStringToFile(keyStoreFile, "invalid", "UTF-8");
+        touch(keyStoreFile, 4000);
+        final SecretContainer third = source.getSecretContainer(SupportedAlgorithm.values());
+
+        // validate Result
+        assertThat(first.getKeyRing().isEmpty(), is(true));
+        assertThat(second.getKeyRing().containsKey("k2"), is(true));
+        assertThat(third, is(sameInstance(second)));
+        assertThat(source.getSecretContainer(SupportedAlgorithm.values()), is(sameInstance(second)));
+        assertThat(events.toString(), is("[changed:[k2], failed]"));
+    }
+
+    @Test
+    public void testGetSecretContainer_jceksWithKeyPassword() throws Exception {
+        final File jceksFile = new File(testFolder, "keys.jceks");
+        final KeyStore keyStore = KeyStore.getInstance("JCEKS");
+        keyStore.load(null, null);
+        keyStore.setEntry("app", new KeyStore.SecretKeyEntry(exampleKey), new KeyStore.PasswordProtection("key-password".toCharArray()));
+        try (OutputStream output = Files.newOutputStream(jceksFile.toPath())) {
+            keyStore.store(output, PASSWORD);
+        }
+
+        final SecretContainer secretContainer = new KeyStoreSecretContainerSource(jceksFile, PASSWORD)
+            .withType("JCEKS")
+            .withAlias("app")
+            .withKeyPassword("key-password".toCharArray())
+            .getSecretContainer(SupportedAlgorithm.values());
+
+        assertThat(secretContainer.getAlgorithm(), is(SupportedAlgorithm.AES_128));
+        assertThat(Encryption.decrypt(secretContainer, SALT_LENGTH, "{buMkr+yZH9RclafjETtlSQ==}"), is("test"));
+    }
+
+    @Test
+    public void testGetSecretContainer_invalidKeyStore() throws Exception {
+        writeKeyStore(keyStoreFile, "PKCS12", "other", exampleKey);
+
+        Exception wrongPassword = TestUtils.expectException(() -> new KeyStoreSecretContainerSource(keyStoreFile, "wrong".toCharArray())
+            .getSecretContainer(SupportedAlgorithm.values()));
+        Exception missingAlias = TestUtils.expectException(() -> new KeyStoreSecretContainerSource(keyStoreFile, PASSWORD)
+            .getSecretContainer(SupportedAlgorithm.values()));
+        Exception notAllowed = TestUtils.expectException(() -> new KeyStoreSecretContainerSource(keyStoreFile, PASSWORD).withAlias("other")
+            .getSecretContainer(SupportedAlgorithm.DESede_168));
+        Exception missingFile = TestUtils.expectException(() -> new KeyStoreSecretContainerSource(new File(testFolder, "missing.p12"), PASSWORD)
+            .getSecretContainer(SupportedAlgorithm.values()));
+
+        assertThat(wrongPassword.getMessage(), containsString("The secret key could not be read from PKCS12 KeyStore"));
+        assertThat(missingAlias.getMessage(), containsString("The secret key with the alias 'secured-properties' doesn't exist."));
+        assertThat(notAllowed.getMessage(), containsString("The algorithm AES (128 bit) of the secret key 'other' is not allowed."));
+        assertThat(missingFile.getMessage(), containsString("The File doesn't exist."));
+    }
+
+    @Test
+    public void testParse_shouldReturnSharedSource() throws Exception {
+        writeKeyStore(keyStoreFile, "PKCS12", "secured-properties", exampleKey);
+
+        // the password is defined in the surefire configuration of the pom.xml
+        final SecretContainerSource source = SecretContainerSources.parse("pkcs12:" + keyStoreFile.getPath());
+
+        assertThat(SecretContainerSources.parse("pkcs12:" + keyStoreFile.getPath()), is(sameInstance(source)));
+        assertThat(source.toString(), is("PKCS12 KeyStore '" + keyStoreFile.getPath() + "'"));
+        assertThat(source.getSecretContainer(SupportedAlgorithm.values()).getAlgorithm(), is(SupportedAlgorithm.AES_128));
+    }
+
+    private static void writeKeyStore(final File file, final String type, final Object... aliasesAndKeys) throws Exception {
+        final KeyStore keyStore = KeyStore.getInstance(type);
+        keyStore.load(null, null);
+        for (int i = 0; i < aliasesAndKeys.length; i += 2) {
+            keyStore.setEntry((String) aliasesAndKeys[i], new KeyStore.SecretKeyEntry((SecretKey) aliasesAndKeys[i + 1]),
+                new KeyStore.PasswordProtection(PASSWORD));
+        }
+        try (OutputStream output = Files.newOutputStream(file.toPath())) {
+            keyStore.store(output, PASSWORD);
+        }
+    }
+
+    private static void touch(final File file, final long offsetMillis) {
+        // make sure the change is detected also on file systems with a coarse timestamp resolution.
+        file.setLastModified(System.currentTimeMillis() + offsetMillis);
+    }
+}
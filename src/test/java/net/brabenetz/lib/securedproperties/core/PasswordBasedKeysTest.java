@@ -0,0 +1,145 @@
+/*-
+ * #%L
+ * Secured Properties
+ * ===============================================================
+ * Copyright (C) 2016 - 2026 Brabenetz Harald, Austria
+ * ===============================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package net.brabenetz.lib.securedproperties.core;
+
+import net.brabenetz.lib.securedproperties.test.TestUtils;
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.startsWith;
+
+public class PasswordBasedKeysTest {
+
+    /** The environment variable is defined in the surefire configuration of the pom.xml. */
+    private static final String PASSPHRASE_VARIABLE = "TEST_SECURED_PROPERTIES_PASSPHRASE";
+    private static final int ITERATIONS = 1_000;
+
+    private final File testFolder = new File("./target/tests/" + getClass().getSimpleName());
+    private final File secretContainerFile = new File(this.testFolder, "test.key");
+
+    @Before
+    public void cleanupTestFolder() throws IOException {
+        if (this.testFolder.exists()) {
+            FileUtils.forceDelete(this.testFolder);
+        }
+    }
+
+    @Test
+    public void testUtilityPattern() {
+        // this test is more for test-coverage than logic :D
+        Assert.assertTrue(TestUtils.isDefaultConstructorHidden(PasswordBasedKeys.class));
+    }
+
+    @Test
+    public void testReadSecretContainer_withDerivedKey() throws Exception {
+        final String definition = PasswordBasedKeys.createDefinition(ITERATIONS, PASSPHRASE_VARIABLE);
+        FileUtils.writeLines(this.secretContainerFile, Arrays.asList("AES_128", definition));
+
+        // start Test
+        SecretContainer secretContainer = SecretContainerStore.getSecretContainer(this.secretContainerFile, false, SupportedAlgorithm.AES_128);
+
+        // validate Result: the key is the same as derived directly with the JCE.
+        final byte[] salt = Base64.getDecoder().decode(definition.split(":")[2]);
+        final byte[] expectedKey = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256")
+            .generateSecret(new PBEKeySpec(System.getenv(PASSPHRASE_VARIABLE).toCharArray(), salt, ITERATIONS, 128)).getEncoded();
+        assertThat(secretContainer.getSecretKey().getEncoded(), is(expectedKey));
+        assertThat(secretContainer.getSecretKey().getAlgorithm(), is("AES"));
+
+        final String encrypted = Encryption.encrypt(secretContainer, 11, "test");
+        assertThat(Encryption.decrypt(secretContainer, 11, encrypted), is("test"));
+    }
+
+    @Test
+    public void testReadSecretContainer_multipleTimes_shouldDeriveKeyOnlyOnce() throws Exception {
+        final String definition = PasswordBasedKeys.createDefinition(ITERATIONS, PASSPHRASE_VARIABLE);
+        FileUtils.writeLines(this.secretContainerFile, Arrays.asList("AES_128", definition, "k2=AES_256:" + definition, "primary=k2"));
+        final long derivationCount = PasswordBasedKeys.getDerivationCount();
+
+        // start Test
+        SecretContainer first = SecretContainerStore.getSecretContainer(this.secretContainerFile, false, SupportedAlgorithm.values());
+        SecretContainer second = SecretContainerStore.getSecretContainer(this.secretContainerFile, false, SupportedAlgorithm.values());
+
+        // validate Result: one derivation for AES_128 and one for the AES_256 key in the key ring.
+        assertThat(second.getSecretKey().getEncoded(), is(first.getSecretKey().getEncoded()));
+        assertThat(second.getPrimaryKey().getSecretKey().getEncoded().length, is(32));
+        assertThat(PasswordBasedKeys.getDerivationCount() - derivationCount, is(2L));
+    }
+
+    @Test
+    public void testDeriveKey_failed_shouldNotBeMemoized() throws Exception {
+        final char[] passphrase = "passphrase".toCharArray();
+        final byte[] salt = new byte[16];
+        final long derivationCount = PasswordBasedKeys.getDerivationCount();
+
+        // start Test: an iteration count of 0 is rejected by the PBEKeySpec.
+        for (int i = 0; i < 2; i++) {
+            Exception exc = TestUtils.expectException(() -> PasswordBasedKeys.deriveKey(SupportedAlgorithm.AES_128, passphrase, salt, 0).join());
+            assertThat(exc.getMessage(), containsString("iteration"));
+        }
+
+        // validate Result
+        assertThat(PasswordBasedKeys.getDerivationCount() - derivationCount, is(2L));
+    }
+
+    @Test
+    public void testWrite_shouldKeepDefinitionInsteadOfDerivedKey() throws Exception {
+        final String definition = PasswordBasedKeys.createDefinition(ITERATIONS, null);
+        final SecretContainer secretContainer = new SecretContainer(SupportedAlgorithm.AES_128,
+            PasswordBasedKeys.readSecretKey(SupportedAlgorithm.AES_128, definition + ":" + PASSPHRASE_VARIABLE));
+
+        // start Test
+        SecretContainerStore.write(secretContainer, this.secretContainerFile);
+
+        // validate Result
+        final String storedKeyLine = FileUtils.readLines(this.secretContainerFile, StandardCharsets.UTF_8).get(1);
+        assertThat(storedKeyLine, startsWith(PasswordBasedKeys.PREFIX + ITERATIONS + ":"));
+        assertThat(storedKeyLine, is(definition + ":" + PASSPHRASE_VARIABLE));
+    }
+
+    @Test
+    public void testReadSecretKey_missingPassphrase() throws Exception {
+        final String definition = PasswordBasedKeys.createDefinition(ITERATIONS, "TEST_SECURED_PROPERTIES_NOT_EXISTING");
+        FileUtils.writeLines(this.secretContainerFile, Arrays.asList("AES_128", definition));
+
+        Exception exc = TestUtils.expectException(
+            () -> SecretContainerStore.getSecretContainer(this.secretContainerFile, false, SupportedAlgorithm.AES_128));
+        assertThat(exc.getMessage(), containsString("The passphrase environment variable 'TEST_SECURED_PROPERTIES_NOT_EXISTING' is not set."));
+    }
+
+    @Test
+    public void testReadSecretKey_invalidDefinition() throws Exception {
+        Exception exc = TestUtils.expectException(() -> PasswordBasedKeys.readSecretKey(SupportedAlgorithm.AES_128, "pbkdf2:1000"));
+        assertThat(exc.getMessage(), containsString("Invalid key definition"));
+    }
+}
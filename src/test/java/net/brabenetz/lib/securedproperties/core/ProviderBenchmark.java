@@ -0,0 +1,103 @@
+/*-
+ * #%L
+ * Secured Properties
+ * ===============================================================
+ * Copyright (C) 2016 - 2026 Brabenetz Harald, Austria
+ * ===============================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package net.brabenetz.lib.securedproperties.core;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.crypto.Cipher;
+
+import java.security.GeneralSecurityException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the {@link CipherEngine}s: the list of installed JCE providers ("JCE"), SunJCE resolved once ("SunJCE") and the not installed
+ * BouncyCastle provider ("BC").
+ * <p>
+ * {@link #createCipher()} is the cost of a cache miss in {@link CipherCache}, {@link #encrypt()} and {@link #decrypt()} are the cost of a cached
+ * cipher.
+ * <p>
+ * Run with: mvn -Pbenchmark test -Dbenchmark="ProviderBenchmark"
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProviderBenchmark {
+
+    private static final int SALT_LENGTH = 11;
+
+    @Param({"JCE", "SunJCE", "BC" })
+    private String engineName;
+
+    @Param({"AES_128", "AES_GCM_128" })
+    private SupportedAlgorithm algorithm;
+
+    private CipherEngine engine;
+    private SecretContainer secretContainer;
+    private String encryptedValue;
+
+    @Setup
+    public void setup() {
+        if ("JCE".equals(engineName)) {
+            engine = CipherEngines.jce();
+        } else if ("BC".equals(engineName)) {
+            engine = CipherEngines.provider(new BouncyCastleProvider());
+        } else {
+            engine = CipherEngines.provider(engineName);
+        }
+        CipherEngines.setDefault(engine);
+        secretContainer = new SecretContainer(algorithm, Encryption.createKey(algorithm));
+        encryptedValue = Encryption.encrypt(secretContainer, SALT_LENGTH, "secret-password");
+    }
+
+    @TearDown
+    public void tearDown() {
+        CipherEngines.setDefault(null);
+    }
+
+    @Benchmark
+    public Cipher createCipher() throws GeneralSecurityException {
+        return engine.createCipher(algorithm.getTransformation());
+    }
+
+    @Benchmark
+    public String encrypt() {
+        return Encryption.encrypt(secretContainer, SALT_LENGTH, "secret-password");
+    }
+
+    @Benchmark
+    public String decrypt() {
+        return Encryption.decrypt(secretContainer, SALT_LENGTH, encryptedValue);
+    }
+}
@@ -0,0 +1,238 @@
+/*-
+ * #%L
+ * Secured Properties
+ * ===============================================================
+ * Copyright (C) 2016 - 2026 Brabenetz Harald, Austria
+ * ===============================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package net.brabenetz.lib.securedproperties.core;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import net.brabenetz.lib.securedproperties.test.TestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.lessThan;
+
+public class RemoteSecretContainerSourceTest {
+
+    private static final long TIMEOUT_SECONDS = 30;
+
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private final AtomicInteger notModifiedCount = new AtomicInteger();
+    private final ExecutorService serverExecutor = Executors.newCachedThreadPool();
+    private HttpServer server;
+    private URL url;
+
+    /** The current content of the key endpoint. */
+    private volatile String secretKeyContent = "AES_128\nvpOATkkaMQ8EYnXgP3+nLw==\n";
+    /** The current ETag of the key endpoint, or null if the endpoint doesn't support ETags. */
+    private volatile String etag = "\"v1\"";
+    private volatile int status = 200;
+    private volatile long delayMillis;
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/secret.key", this::handle);
+        server.setExecutor(serverExecutor);
+        server.start();
+        url = new URL("http://localhost:" + server.getAddress().getPort() + "/secret.key");
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    private void handle(final HttpExchange exchange) throws IOException {
+        requestCount.incrementAndGet();
+        try {
+            if (delayMillis > 0) {
+                Thread.sleep(delayMillis);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (etag != null && etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            notModifiedCount.incrementAndGet();
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
+        final byte[] body = secretKeyContent.getBytes(StandardCharsets.UTF_8);
+        if (etag != null) {
+            exchange.getResponseHeaders().add("ETag", etag);
+        }
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(body);
+        }
+    }
+
+    @Test
+    public void testGetSecretContainer_withinRevalidationInterval_shouldNotRequestAgain() throws Exception {
+        RemoteSecretContainerSource source = new RemoteSecretContainerSource(url).withRevalidationInterval(60_000);
+
+        SecretContainer first = source.getSecretContainer(SupportedAlgorithm.AES_128);
+        SecretContainer second = source.getSecretContainer(SupportedAlgorithm.AES_128);
+
+        assertThat(source.isImmutable(), is(false));
+        assertThat(first.getAlgorithm(), is(SupportedAlgorithm.AES_128));
+        assertThat(Encryption.toBase64String(first.getSecretKey()), is("vpOATkkaMQ8EYnXgP3+nLw=="));
+        assertThat(second, is(sameInstance(first)));
+        assertThat(requestCount.get(), is(1));
+    }
+
+    @Test
+    public void testGetSecretContainer_notModified_shouldKeepSecretContainer() throws Exception {
+        RemoteSecretContainerSource source = new RemoteSecretContainerSource(url).withRevalidationInterval(0);
+        SecretContainer first = source.getSecretContainer(SupportedAlgorithm.AES_128);
+
+        // start Test: triggers a revalidation in the background
+        SecretContainer second = source.getSecretContainer(SupportedAlgorithm.AES_128);
+        waitFor(() -> notModifiedCount.get() >= 1);
+
+        // validate Result
+        assertThat(second, is(sameInstance(first)));
+        assertThat(source.getSecretContainer(SupportedAlgorithm.AES_128), is(sameInstance(first)));
+    }
+
+    @Test
+    public void testGetSecretContainer_changedKey_shouldBeReloadedInBackground() throws Exception {
+        RemoteSecretContainerSource source = new RemoteSecretContainerSource(url).withRevalidationInterval(0);
+        SecretContainer first = source.getSecretContainer(SupportedAlgorithm.AES_128, SupportedAlgorithm.AES_256);
+        final BlockingQueue<SecretContainer> changes = new ArrayBlockingQueue<>(10);
+        source.addListener((oldSecretContainer, newSecretContainer) -> changes.add(newSecretContainer));
+
+        // start Test
+        final String newSecretKey = Encryption.toBase64String(Encryption.createKey(SupportedAlgorithm.AES_256));
+        secretKeyContent = "AES_256\n" + newSecretKey;
+        etag = "\"v2\"";
+        assertThat(source.getSecretContainer(SupportedAlgorithm.AES_128, SupportedAlgorithm.AES_256), is(sameInstance(first)));
+
+        // validate Result
+        final SecretContainer changed = changes.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertThat(changed, is(notNullValue()));
+        assertThat(Encryption.toBase64String(changed.getSecretKey()), is(newSecretKey));
+        assertThat(source.getSecretContainer(SupportedAlgorithm.AES_128, SupportedAlgorithm.AES_256), is(sameInstance(changed)));
+    }
+
+    @Test
+    public void testGetSecretContainer_withoutEtagAndUnchangedContent_shouldKeepSecretContainer() throws Exception {
+        etag = null;
+        RemoteSecretContainerSource source = new RemoteSecretContainerSource(url).withRevalidationInterval(0);
+        SecretContainer first = source.getSecretContainer(SupportedAlgorithm.AES_128);
+
+        source.getSecretContainer(SupportedAlgorithm.AES_128);
+        waitFor(() -> requestCount.get() >= 2);
+
+        assertThat(source.getSecretContainer(SupportedAlgorithm.AES_128), is(sameInstance(first)));
+    }
+
+    @Test
+    public void testGetSecretContainer_failedRevalidation_shouldKeepSecretContainer() throws Exception {
+        RemoteSecretContainerSource source = new RemoteSecretContainerSource(url).withRevalidationInterval(0);
+        SecretContainer first = source.getSecretContainer(SupportedAlgorithm.AES_128);
+        final BlockingQueue<Exception> failures = new ArrayBlockingQueue<>(10);
+        source.addListener(new SecretContainerListener() {
+            @Override
+            public void secretContainerChanged(final SecretContainer oldSecretContainer, final SecretContainer newSecretContainer) {
+                throw new AssertionError("A failed revalidation must not be published.");
+            }
+
+            @Override
+            public void secretContainerReloadFailed(final Exception exception) {
+                failures.add(exception);
+            }
+        });
+
+        // start Test
+        etag = "\"v2\"";
+        status = 500;
+        assertThat(source.getSecretContainer(SupportedAlgorithm.AES_128), is(sameInstance(first)));
+
+        // validate Result
+        final Exception failure = failures.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertThat(failure, is(notNullValue()));
+        assertThat(failure.getMessage(), containsString("Unexpected HTTP status 500"));
+        assertThat(source.getSecretContainer(SupportedAlgorithm.AES_128), is(sameInstance(first)));
+    }
+
+    @Test
+    public void testGetSecretContainer_slowEndpoint_shouldFailAfterReadTimeout() throws Exception {
+        delayMillis = 5_000;
+        RemoteSecretContainerSource source = new RemoteSecretContainerSource(url).withConnectTimeout(1_000).withReadTimeout(200);
+
+        final long start = System.nanoTime();
+        Exception exc = TestUtils.expectException(() -> source.getSecretContainer(SupportedAlgorithm.AES_128));
+
+        assertThat(exc.getMessage(), containsString("The secret key could not be fetched from"));
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), is(lessThan(4_000L)));
+    }
+
+    @Test
+    public void testGetSecretContainer_otherAllowedAlgorithms_shouldBeCachedSeparately() throws Exception {
+        RemoteSecretContainerSource source = new RemoteSecretContainerSource(url).withRevalidationInterval(60_000);
+        SecretContainer first = source.getSecretContainer(SupportedAlgorithm.AES_128);
+
+        Exception exc = TestUtils.expectException(() -> source.getSecretContainer(SupportedAlgorithm.AES_256));
+
+        assertThat(exc.getMessage(), containsString("AES_128"));
+        assertThat(source.getSecretContainer(SupportedAlgorithm.AES_128), is(sameInstance(first)));
+        assertThat(requestCount.get(), is(2));
+    }
+
+    @Test
+    public void testParse_httpUrl() throws Exception {
+        SecretContainerSource source = SecretContainerSources.parse(url.toString());
+
+        assertThat(source.getSecretContainer(SupportedAlgorithm.AES_128).getAlgorithm(), is(SupportedAlgorithm.AES_128));
+        assertThat(SecretContainerSources.parse(url.toString()), is(sameInstance(source)));
+        assertThat(SecretContainerSources.parse(url.toString()).getSecretContainer(SupportedAlgorithm.AES_128).getAlgorithm(),
+            is(SupportedAlgorithm.AES_128));
+        assertThat(requestCount.get(), is(1));
+    }
+
+    private static void waitFor(final BooleanSupplier condition) throws InterruptedException {
+        final long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+        while (!condition.getAsBoolean()) {
+            assertThat("timeout", System.nanoTime() - end < 0, is(true));
+            Thread.sleep(10);
+        }
+    }
+}
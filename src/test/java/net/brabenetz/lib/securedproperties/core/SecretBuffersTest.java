@@ -0,0 +1,133 @@
+/*-
+ * #%L
+ * Secured Properties
+ * ===============================================================
+ * Copyright (C) 2016 - 2026 Brabenetz Harald, Austria
+ * ===============================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package net.brabenetz.lib.securedproperties.core;
+
+import net.brabenetz.lib.securedproperties.test.TestUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.crypto.SecretKey;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.startsWith;
+
+public class SecretBuffersTest {
+
+    private static final int SALT_LENGTH = 11;
+
+    private final SecretKey exampleKey = Encryption.readSecretKey(SupportedAlgorithm.AES_128, "vpOATkkaMQ8EYnXgP3+nLw==");
+
+    @After
+    public void after() {
+        SecretBuffers.setEnabled(false);
+    }
+
+    @Test
+    public void testUtilityPattern() {
+        // this test is more for test-coverage than logic :D
+        Assert.assertTrue(TestUtils.isDefaultConstructorHidden(SecretBuffers.class));
+    }
+
+    @Test
+    public void testEncryptAndDecrypt_offHeap() {
+        SecretBuffers.setEnabled(true);
+        final String multiByteValue = "täst € 🔑";
+        final String largeValue = StringUtils.repeat("0123456789", 1000);
+
+        for (SupportedAlgorithm algorithm : SupportedAlgorithm.values()) {
+            final SecretKey secretKey = Encryption.createKey(algorithm);
+            for (String value : new String[] {"", "test", multiByteValue, largeValue }) {
+                final String encrypted = Encryption.encrypt(algorithm, secretKey, SALT_LENGTH, value);
+                assertThat(encrypted, startsWith("{"));
+                assertThat(Encryption.decrypt(algorithm, secretKey, SALT_LENGTH, encrypted), is(value));
+            }
+        }
+    }
+
+    @Test
+    public void testDecrypt_compatibleWithHeapBuffers() {
+        final String heapEncrypted = Encryption.encrypt(SupportedAlgorithm.AES_128, exampleKey, SALT_LENGTH, "täst");
+
+        SecretBuffers.setEnabled(true);
+        assertThat(Encryption.decrypt(SupportedAlgorithm.AES_128, exampleKey, SALT_LENGTH, "{buMkr+yZH9RclafjETtlSQ==}"), is("test"));
+        assertThat(Encryption.decrypt(SupportedAlgorithm.AES_128, exampleKey, SALT_LENGTH, heapEncrypted), is("täst"));
+        final String offHeapEncrypted = Encryption.encrypt(SupportedAlgorithm.AES_128, exampleKey, SALT_LENGTH, "täst");
+
+        SecretBuffers.setEnabled(false);
+        assertThat(Encryption.decrypt(SupportedAlgorithm.AES_128, exampleKey, SALT_LENGTH, offHeapEncrypted), is("täst"));
+    }
+
+    @Test
+    public void testEncryptAndDecrypt_offHeapPerSecretContainer_shouldNotChangeJvmSetting() {
+        final SecretContainer secretContainer = new SecretContainer(SupportedAlgorithm.AES_128, exampleKey)
+                .withOptions(EncryptionOptions.DEFAULT.withOffHeapBuffers(true));
+
+        final String encrypted = Encryption.encrypt(secretContainer, SALT_LENGTH, "täst");
+        assertThat(Encryption.decrypt(secretContainer, SALT_LENGTH, encrypted), is("täst"));
+        assertThat(Encryption.decryptAll(secretContainer, SALT_LENGTH, Arrays.asList(encrypted, "{buMkr+yZH9RclafjETtlSQ==}")),
+            is(Arrays.asList("täst", "test")));
+        assertThat(Encryption.decrypt(SupportedAlgorithm.AES_128, exampleKey, SALT_LENGTH, encrypted), is("täst"));
+        assertThat(secretContainer.getOptions().isOffHeapBuffers(), is(true));
+        assertThat(SecretBuffers.isEnabled(), is(false));
+    }
+
+    @Test
+    public void testRelease_shouldZeroTheUsedBuffers() {
+        final ByteBuffer bytes = SecretBuffers.bytes(300);
+        bytes.put("secret".getBytes());
+        SecretBuffers.chars(10).put("secret");
+
+        // start Test
+        SecretBuffers.release();
+
+        // validate Result
+        assertThat(bytes.capacity() >= 300, is(true));
+        bytes.clear();
+        for (int i = 0; i < bytes.capacity(); i++) {
+            assertThat(bytes.get(i), is((byte) 0));
+        }
+        assertThat(SecretBuffers.chars(10).toString(), is(StringUtils.repeat('\0', 10)));
+        SecretBuffers.release();
+    }
+
+    @Test
+    public void testDestroy_shouldZeroTheSecretKey() {
+        final DestroyableSecretKey secretKey = new DestroyableSecretKey(exampleKey.getEncoded(), "AES");
+        final DestroyableSecretKey otherKey = new DestroyableSecretKey(exampleKey.getEncoded(), "AES");
+        assertThat(secretKey, is(otherKey));
+        assertThat(secretKey.hashCode(), is(otherKey.hashCode()));
+
+        // start Test
+        secretKey.destroy();
+
+        // validate Result
+        assertThat(secretKey.isDestroyed(), is(true));
+        assertThat(secretKey, is(not(otherKey)));
+        assertThat(secretKey.hashCode(), is(new DestroyableSecretKey(new byte[16], "AES").hashCode()));
+        TestUtils.expectException(secretKey::getEncoded);
+    }
+}
@@ -0,0 +1,223 @@
+/*-
+ * #%L
+ * Secured Properties
+ * ===============================================================
+ * Copyright (C) 2016 - 2026 Brabenetz Harald, Austria
+ * ===============================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package net.brabenetz.lib.securedproperties.core;
+
+import net.brabenetz.lib.securedproperties.test.TestUtils;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+
+public class SecretContainerCacheTest {
+
+    private final File testFolder = new File("./target/tests/" + getClass().getSimpleName());
+    private final File secretContainerFile = new File(this.testFolder, "test.key");
+
+    @Before
+    public void cleanupTestFolder() throws IOException {
+        if (this.testFolder.exists()) {
+            FileUtils.forceDelete(this.testFolder);
+        }
+        SecretContainerCache.clear();
+        SecretContainerCache.addEvictionListener(this.evictionListener);
+    }
+
+    @After
+    public void resetCache() {
+        SecretContainerCache.removeEvictionListener(this.evictionListener);
+        SecretContainerCache.setMaximumSize(SecretContainerCache.DEFAULT_MAXIMUM_SIZE);
+        SecretContainerCache.setMaximumIdleTime(SecretContainerCache.DEFAULT_MAXIMUM_IDLE_TIME);
+        SecretContainerCache.setDestroyOnEviction(false);
+    }
+
+    private final List<String> evictions = new ArrayList<>();
+    private final SecretContainerEvictionListener evictionListener = (final Path secretFile, final SecretContainer secretContainer,
+        final SecretContainerEvictionListener.Cause cause) -> evictions.add(secretFile.getFileName() + ":" + cause);
+
+    @Test
+    public void testUtilityPattern() {
+        // this test is more for test-coverage than logic :D
+        Assert.assertTrue(TestUtils.isDefaultConstructorHidden(SecretContainerCache.class));
+    }
+
+    @Test
+    public void testGetSecretContainer_unchangedFile_shouldReturnCachedContainer() throws Exception {
+        SecretContainer first = SecretContainerCache.getSecretContainer(this.secretContainerFile, true, 0, SupportedAlgorithm.AES_128);
+        SecretContainer second = SecretContainerCache.getSecretContainer(this.secretContainerFile, true, 0, SupportedAlgorithm.AES_128);
+        SecretContainer third = SecretContainerCache.getSecretContainer(
+            new File(this.testFolder, "./sub/../test.key"), true, 0, SupportedAlgorithm.AES_128);
+
+        assertThat(second, is(sameInstance(first)));
+        assertThat(third, is(sameInstance(first)));
+        assertThat(SecretContainerCache.getMissCount(), is(1L));
+        assertThat(SecretContainerCache.getHitCount(), is(2L));
+    }
+
+    @Test
+    public void testGetSecretContainer_withSelection_shouldOnlySelectWhenTheFileIsCreated() throws Exception {
+        final AtomicInteger selections = new AtomicInteger();
+        final Supplier<AlgorithmSelection> selection = () -> {
+            selections.incrementAndGet();
+            return AlgorithmSelection.firstSupported(SupportedAlgorithm.AES_256);
+        };
+
+        SecretContainer first = SecretContainerCache.getSecretContainer(this.secretContainerFile, true, 0, selection, SupportedAlgorithm.values());
+        SecretContainer second = SecretContainerCache.getSecretContainer(this.secretContainerFile, true, 0, selection, SupportedAlgorithm.values());
+        SecretContainerCache.clear();
+        SecretContainer third = SecretContainerCache.getSecretContainer(this.secretContainerFile, true, 0, selection, SupportedAlgorithm.values());
+
+        assertThat(first.getAlgorithm(), is(SupportedAlgorithm.AES_256));
+        assertThat(second, is(sameInstance(first)));
+        assertThat(third.getAlgorithm(), is(SupportedAlgorithm.AES_256));
+        assertThat(selections.get(), is(1));
+    }
+
+    @Test
+    public void testGetSecretContainer_differentAllowedAlgorithms_shouldBeCachedSeparately() throws Exception {
+        SecretContainer first = SecretContainerCache.getSecretContainer(this.secretContainerFile, true, 0, SupportedAlgorithm.AES_128);
+        SecretContainer second = SecretContainerCache.getSecretContainer(this.secretContainerFile, true, 0, SupportedAlgorithm.values());
+
+        assertThat(second, is(not(sameInstance(first))));
+        assertThat(second.getAlgorithm(), is(SupportedAlgorithm.AES_128));
+        assertThat(SecretContainerCache.getMissCount(), is(2L));
+    }
+
+    @Test
+    public void testGetSecretContainer_changedFile_shouldReadFileAgain() throws Exception {
+        final Algorithm[] allowedAlgorithms = {SupportedAlgorithm.AES_128, SupportedAlgorithm.AES_256};
+        SecretContainer first = SecretContainerCache.getSecretContainer(this.secretContainerFile, true, 0, allowedAlgorithms);
+        assertThat(first.getAlgorithm(), is(SupportedAlgorithm.AES_128));
+
+        // replace the secret file with a new key of different size.
+        FileUtils.writeLines(this.secretContainerFile, Arrays.asList("AES_256", Encryption.toBase64String(Encryption.createKey(SupportedAlgorithm.AES_256))));
+
+        SecretContainer second = SecretContainerCache.getSecretContainer(this.secretContainerFile, true, 0, allowedAlgorithms);
+        assertThat(second.getAlgorithm(), is(SupportedAlgorithm.AES_256));
+        assertThat(SecretContainerCache.getMissCount(), is(2L));
+    }
+
+    @Test
+    public void testGetSecretContainer_withRevalidationInterval_shouldNotCheckFileWithinInterval() throws Exception {
+        SecretContainer first = SecretContainerCache.getSecretContainer(this.secretContainerFile, true, 60_000, SupportedAlgorithm.AES_128);
+
+        // the deleted file will not be recognized within the interval.
+        FileUtils.forceDelete(this.secretContainerFile);
+        SecretContainer second = SecretContainerCache.getSecretContainer(this.secretContainerFile, false, 60_000, SupportedAlgorithm.AES_128);
+        assertThat(second, is(sameInstance(first)));
+
+        // after invalidation the missing file is recognized.
+        SecretContainerCache.invalidate(this.secretContainerFile);
+        Exception expectException = TestUtils
+            .expectException(() -> SecretContainerCache.getSecretContainer(this.secretContainerFile, false, 60_000, SupportedAlgorithm.AES_128));
+        assertThat(expectException.getMessage(), containsString("doesn't exist, and auto create is off"));
+    }
+
+    @Test
+    public void testGetSecretContainer_deletedFile_shouldNotReturnCachedContainer() throws Exception {
+        SecretContainerCache.getSecretContainer(this.secretContainerFile, true, 0, SupportedAlgorithm.AES_128);
+        FileUtils.forceDelete(this.secretContainerFile);
+
+        Exception expectException = TestUtils
+            .expectException(() -> SecretContainerCache.getSecretContainer(this.secretContainerFile, false, 0, SupportedAlgorithm.AES_128));
+        assertThat(expectException.getMessage(), containsString("doesn't exist, and auto create is off"));
+    }
+
+    @Test
+    public void testMaximumSize_shouldEvictLeastRecentlyUsedAndKeepKeyUsable() throws Exception {
+        SecretContainerCache.setMaximumSize(2);
+        final File tenantA = new File(this.testFolder, "tenant-a.key");
+        final File tenantB = new File(this.testFolder, "tenant-b.key");
+        final File tenantC = new File(this.testFolder, "tenant-c.key");
+
+        SecretContainer first = getSecretContainer(tenantA);
+        SecretContainer secretContainerB = getSecretContainer(tenantB);
+        assertThat(getSecretContainer(tenantA), is(sameInstance(first)));
+
+        // start Test
+        getSecretContainer(tenantC);
+
+        // validate Result: B was used least recently
+        assertThat(SecretContainerCache.size(), is(2));
+        assertThat(evictions, contains("tenant-b.key:SIZE"));
+        // another thread may still use the evicted SecretContainer.
+        assertThat(secretContainerB.getSecretKey().isDestroyed(), is(false));
+        assertThat(Encryption.decrypt(secretContainerB, 11, Encryption.encrypt(secretContainerB, 11, "test")), is("test"));
+        assertThat(getSecretContainer(tenantA), is(sameInstance(first)));
+        assertThat(getSecretContainer(tenantB), is(not(sameInstance(secretContainerB))));
+    }
+
+    @Test
+    public void testMaximumIdleTime_withDestroyOnEviction_shouldExpireUnusedSecretFileAndDestroyKey() throws Exception {
+        SecretContainerCache.setMaximumIdleTime(50);
+        SecretContainerCache.setDestroyOnEviction(true);
+        SecretContainer first = getSecretContainer(this.secretContainerFile);
+
+        Thread.sleep(100);
+        SecretContainer second = getSecretContainer(this.secretContainerFile);
+
+        assertThat(second, is(not(sameInstance(first))));
+        assertThat(evictions, contains("test.key:IDLE"));
+        assertThat(first.getSecretKey().isDestroyed(), is(true));
+        assertThat(Encryption.toBase64String(second.getSecretKey()), is(Encryption.toBase64String(
+            SecretContainerStore.getSecretContainer(this.secretContainerFile, false, SupportedAlgorithm.AES_128).getSecretKey())));
+    }
+
+    @Test
+    public void testGetStatistics_perSecretFile() throws Exception {
+        final File tenantA = new File(this.testFolder, "tenant-a.key");
+        final File tenantB = new File(this.testFolder, "tenant-b.key");
+        for (int i = 0; i < 4; i++) {
+            getSecretContainer(tenantA);
+        }
+        getSecretContainer(tenantB);
+
+        final CacheStatistics statisticsA = SecretContainerCache.getStatistics(tenantA);
+        assertThat(statisticsA.getHitCount(), is(3L));
+        assertThat(statisticsA.getMissCount(), is(1L));
+        assertThat(statisticsA.getHitRate(), is(closeTo(0.75, 0.001)));
+        assertThat(SecretContainerCache.getStatistics(tenantB).getHitCount(), is(0L));
+        assertThat(SecretContainerCache.getStatistics().size(), is(2));
+        assertThat(SecretContainerCache.getStatistics(new File(this.testFolder, "unknown.key")).getHitRate(), is(0.0));
+    }
+
+    private static SecretContainer getSecretContainer(final File secretFile) throws InterruptedException {
+        // the last access time has a granularity of one millisecond.
+        Thread.sleep(5);
+        return SecretContainerCache.getSecretContainer(secretFile, true, 0, SupportedAlgorithm.AES_128);
+    }
+}
@@ -0,0 +1,154 @@
+/*-
+ * #%L
+ * Secured Properties
+ * ===============================================================
+ * Copyright (C) 2016 - 2026 Brabenetz Harald, Austria
+ * ===============================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package net.brabenetz.lib.securedproperties.core;
+
+import net.brabenetz.lib.securedproperties.test.TestUtils;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+
+public class SecretContainerSourcesTest {
+
+    /** The content of "src/test/data/secretFileExample.key". */
+    private static final String EXAMPLE_KEY = "vpOATkkaMQ8EYnXgP3+nLw==";
+    private static final String SYSTEM_PROPERTY = "test.secured-properties.secret-key";
+
+    @Before
+    @After
+    public void cleanup() {
+        System.clearProperty(SYSTEM_PROPERTY);
+        SecretContainerCache.clear();
+    }
+
+    @Test
+    public void testUtilityPattern() {
+        // this test is more for test-coverage than logic :D
+        Assert.assertTrue(TestUtils.isDefaultConstructorHidden(SecretContainerSources.class));
+    }
+
+    @Test
+    public void testEnvironmentVariable() throws Exception {
+        // the environment variable is defined in the surefire configuration of the pom.xml
+        SecretContainerSource source = SecretContainerSources.parse("env:TEST_SECURED_PROPERTIES_SECRET_KEY");
+
+        assertThat(source.isImmutable(), is(true));
+        assertExampleKey(source.getSecretContainer(SupportedAlgorithm.AES_128));
+    }
+
+    @Test
+    public void testEnvironmentVariable_notSet() throws Exception {
+        SecretContainerSource source = SecretContainerSources.environmentVariable("TEST_SECURED_PROPERTIES_NOT_EXISTING");
+
+        Exception exc = TestUtils.expectException(() -> source.getSecretContainer(SupportedAlgorithm.AES_128));
+        assertThat(exc.getMessage(), containsString("environment variable 'TEST_SECURED_PROPERTIES_NOT_EXISTING' is not set"));
+    }
+
+    @Test
+    public void testSystemProperty_withKeyRing() throws Exception {
+        System.setProperty(SYSTEM_PROPERTY, "AES_128; " + EXAMPLE_KEY + "; k2=AES_128:" + EXAMPLE_KEY + "; primary=k2");
+        SecretContainerSource source = SecretContainerSources.parse("sysprop:" + SYSTEM_PROPERTY);
+
+        SecretContainer secretContainer = source.getSecretContainer(SupportedAlgorithm.AES_128);
+        assertThat(source.isImmutable(), is(false));
+        assertExampleKey(secretContainer);
+        assertThat(secretContainer.getPrimaryKeyId(), is("k2"));
+    }
+
+    @Test
+    public void testClasspath() throws Exception {
+        SecretContainerSource source = SecretContainerSources.parse("classpath:/secret/test.key");
+
+        assertThat(source.isImmutable(), is(true));
+        assertExampleKey(source.getSecretContainer(SupportedAlgorithm.AES_128));
+
+        Exception exc = TestUtils.expectException(() -> SecretContainerSources.classpath("secret/missing.key").getSecretContainer());
+        assertThat(exc.getMessage(), containsString("classpath resource 'secret/missing.key' doesn't exist"));
+    }
+
+    @Test
+    public void testFile() throws Exception {
+        SecretContainerSource source = SecretContainerSources.parse("file:src/test/data/secretFileExample.key");
+
+        assertThat(source.isImmutable(), is(false));
+        assertExampleKey(source.getSecretContainer(SupportedAlgorithm.AES_128));
+    }
+
+    @Test
+    public void testParse_unknownPrefix() throws Exception {
+        Exception exc = TestUtils.expectException(() -> SecretContainerSources.parse("ftp://localhost/secret.key"));
+        assertThat(exc.getMessage(), containsString("Unknown secret container source"));
+    }
+
+    @Test
+    public void testSecretContainerCache_immutableSource_shouldBeLoadedOnlyOnce() throws Exception {
+        final SecretContainer secretContainer = SecretContainerStore.getSecretContainer(
+            new File("src/test/data/secretFileExample.key"), false, SupportedAlgorithm.AES_128);
+        final AtomicInteger loadCount = new AtomicInteger();
+        final SecretContainerSource source = new SecretContainerSource() {
+            @Override
+            public SecretContainer getSecretContainer(final Algorithm... allowedAlgorithm) {
+                loadCount.incrementAndGet();
+                return secretContainer;
+            }
+
+            @Override
+            public boolean isImmutable() {
+                return true;
+            }
+        };
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(SecretContainerCache.getSecretContainer(source, SupportedAlgorithm.AES_128), is(sameInstance(secretContainer)));
+        }
+        assertThat(loadCount.get(), is(1));
+        assertThat(SecretContainerCache.getSecretContainer(SecretContainerSources.inMemory(secretContainer)), is(sameInstance(secretContainer)));
+    }
+
+    @Test
+    public void testSecretContainerCache_parsedSourceTwice_shouldBeLoadedOnlyOnce() throws Exception {
+        final SecretContainerSource source = SecretContainerSources.parse("classpath:/secret/test.key");
+        final SecretContainerSource sameSource = SecretContainerSources.parse("classpath:/secret/test.key");
+        assertThat(sameSource, is(source));
+        assertThat(sameSource.hashCode(), is(source.hashCode()));
+        assertThat(SecretContainerSources.parse("classpath:/secret/other.key"), is(not(source)));
+
+        SecretContainer secretContainer = SecretContainerCache.getSecretContainer(source, SupportedAlgorithm.AES_128);
+        assertThat(SecretContainerCache.getSecretContainer(sameSource, SupportedAlgorithm.AES_128), is(sameInstance(secretContainer)));
+        assertThat(SecretContainerCache.getHitCount(), is(1L));
+    }
+
+    private void assertExampleKey(final SecretContainer secretContainer) throws Exception {
+        assertThat(secretContainer.getAlgorithm(), is(SupportedAlgorithm.AES_128));
+        assertThat(Encryption.toBase64String(secretContainer.getSecretKey()), is(EXAMPLE_KEY));
+        assertThat(Encryption.toBase64String(secretContainer.getSecretKey()),
+            is(FileUtils.readLines(new File("src/test/data/secretFileExample.key"), "utf-8").get(1)));
+    }
+}
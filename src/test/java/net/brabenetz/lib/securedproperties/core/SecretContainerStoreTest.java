@@ -28,14 +28,22 @@ import org.junit.Test;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.arrayContaining;
 import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.everyItem;
 import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.startsWith;
 
 public class SecretContainerStoreTest {
 
@@ -94,6 +102,117 @@ public class SecretContainerStoreTest {
         assertThat(storedLines.get(1), is(not(firstSecretKeyStr))); // new generated Key must be different.
     }
 
+    @Test
+    public void testWriteAndRead_withKeyRing() throws Exception {
+        final SecretContainer legacy = SecretContainerStore.getSecretContainer(this.secretContainerFile, true, SupportedAlgorithm.AES_128);
+        final SecretContainer keyRing = legacy
+            .withKey("k2", SupportedAlgorithm.AES_256, Encryption.createKey(SupportedAlgorithm.AES_256))
+            .withPrimaryKeyId("k2");
+
+        // start Test
+        SecretContainerStore.write(keyRing, this.secretContainerFile);
+
+        // validate Result
+        List<String> storedLines = FileUtils.readLines(this.secretContainerFile, StandardCharsets.UTF_8);
+        assertThat(storedLines.size(), is(4));
+        assertThat(storedLines.get(2), startsWith("k2=AES_256:"));
+        assertThat(storedLines.get(3), is("primary=k2"));
+
+        SecretContainer readKeyRing = SecretContainerStore.getSecretContainer(this.secretContainerFile, false, SupportedAlgorithm.values());
+        assertThat(readKeyRing.getAlgorithm(), is(SupportedAlgorithm.AES_128));
+        assertThat(Encryption.toBase64String(readKeyRing.getSecretKey()), is(Encryption.toBase64String(legacy.getSecretKey())));
+        assertThat(readKeyRing.getPrimaryKeyId(), is("k2"));
+        assertThat(readKeyRing.getPrimaryKey().getAlgorithm(), is(SupportedAlgorithm.AES_256));
+        assertThat(Encryption.toBase64String(readKeyRing.getKey("k2").getSecretKey()),
+            is(Encryption.toBase64String(keyRing.getKey("k2").getSecretKey())));
+    }
+
+    @Test
+    public void testRead_keyRingWithUnsupportedAlgorithm() throws Exception {
+        FileUtils.writeLines(this.secretContainerFile, Arrays.asList("AES_128", Encryption.toBase64String(Encryption.createKey(SupportedAlgorithm.AES_128)),
+            "# comment", "", "k2=AES_256:" + Encryption.toBase64String(Encryption.createKey(SupportedAlgorithm.AES_256))));
+
+        Exception expectException = TestUtils
+            .expectException(() -> SecretContainerStore.getSecretContainer(this.secretContainerFile, false, SupportedAlgorithm.AES_128));
+
+        // validate Exception message
+        assertThat(expectException.getMessage(), containsString("Unable to parse algorithm 'AES_256' of key-id 'k2'"));
+    }
+
+    @Test
+    public void testRead_withComments() throws Exception {
+        final String secretKey = Encryption.toBase64String(Encryption.createKey(SupportedAlgorithm.AES_128));
+        final String k2 = Encryption.toBase64String(Encryption.createKey(SupportedAlgorithm.AES_256));
+        FileUtils.writeLines(this.secretContainerFile, Arrays.asList("AES_128 # fastest of min 128 bit, ns per value: AES_128=1500",
+            " " + secretKey + " ", "k2=AES_256:" + k2 + "   # rotated", "primary=k2 #new primary"));
+
+        SecretContainer secretContainer = SecretContainerStore.getSecretContainer(this.secretContainerFile, false, SupportedAlgorithm.values());
+
+        assertThat(secretContainer.getAlgorithm(), is(SupportedAlgorithm.AES_128));
+        assertThat(Encryption.toBase64String(secretContainer.getSecretKey()), is(secretKey));
+        assertThat(secretContainer.getPrimaryKeyId(), is("k2"));
+        assertThat(Encryption.toBase64String(secretContainer.getKey("k2").getSecretKey()), is(k2));
+    }
+
+    @Test
+    public void testAutoCreate_withSelection_shouldWriteTheCommentAfterTheAlgorithm() throws Exception {
+        final AlgorithmSelection selection = AlgorithmSelection.fastest(128, 10, SupportedAlgorithm.AES_128, SupportedAlgorithm.AES_GCM_128);
+
+        SecretContainer secretContainer = SecretContainerStore.getSecretContainer(this.secretContainerFile, selection, SupportedAlgorithm.values());
+
+        List<String> storedLines = FileUtils.readLines(this.secretContainerFile, StandardCharsets.UTF_8);
+        assertThat(storedLines.size(), is(2));
+        assertThat(storedLines.get(0), is(selection.getAlgorithm() + " # " + selection.getComment()));
+        assertThat(secretContainer.getAlgorithm(), is(selection.getAlgorithm()));
+
+        // an existing secret File is only read.
+        SecretContainer readSecretContainer = SecretContainerStore.getSecretContainer(this.secretContainerFile,
+            AlgorithmSelection.firstSupported(SupportedAlgorithm.AES_256), SupportedAlgorithm.values());
+        assertThat(readSecretContainer.getAlgorithm(), is(selection.getAlgorithm()));
+        assertThat(Encryption.toBase64String(readSecretContainer.getSecretKey()), is(Encryption.toBase64String(secretContainer.getSecretKey())));
+    }
+
+    @Test
+    public void testWrite_withMultiLineComment() throws Exception {
+        final SecretContainer secretContainer = new SecretContainer(SupportedAlgorithm.AES_128, Encryption.createKey(SupportedAlgorithm.AES_128));
+
+        Exception expectException = TestUtils.expectException(() -> SecretContainerStore.write(secretContainer, this.secretContainerFile, "a\nb"));
+
+        assertThat(expectException.getMessage(), is("The comment must be a single line"));
+        assertThat(this.secretContainerFile.exists(), is(false));
+    }
+
+    @Test
+    public void testAutoCreate_concurrently_shouldAllUseTheSameKey() throws Exception {
+        final int threads = 16;
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Future<SecretContainer>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return SecretContainerStore.getSecretContainer(this.secretContainerFile, true, SupportedAlgorithm.AES_128);
+                }));
+            }
+
+            // start Test
+            start.countDown();
+
+            final List<String> keys = new ArrayList<>();
+            for (Future<SecretContainer> result : results) {
+                keys.add(Encryption.toBase64String(result.get().getSecretKey()));
+            }
+
+            // validate Result: every thread must see the key which is stored on disk.
+            final String storedKey = FileUtils.readLines(this.secretContainerFile, StandardCharsets.UTF_8).get(1);
+            assertThat(keys, everyItem(is(storedKey)));
+            assertThat(this.testFolder.list(), is(arrayContaining("test.key")));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
     @Test
     public void testWrite_WithUnsupportedAlgorithm() throws Exception {
 
@@ -0,0 +1,121 @@
+/*-
+ * #%L
+ * Secured Properties
+ * ===============================================================
+ * Copyright (C) 2016 - 2026 Brabenetz Harald, Austria
+ * ===============================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package net.brabenetz.lib.securedproperties.core;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class SecretContainerWatcherTest {
+
+    private static final long TIMEOUT_SECONDS = 30;
+
+    private final File testFolder = new File("./target/tests/" + getClass().getSimpleName());
+    private final File secretContainerFile = new File(this.testFolder, "test.key");
+
+    private SecretContainerWatcher watcher;
+
+    @Before
+    public void cleanupTestFolder() throws IOException {
+        if (this.testFolder.exists()) {
+            FileUtils.forceDelete(this.testFolder);
+        }
+    }
+
+    @After
+    public void stopWatcher() {
+        if (watcher != null) {
+            watcher.close();
+        }
+    }
+
+    @Test
+    public void testWatch_shouldReturnSameWatcherUntilClosed() throws Exception {
+        watcher = SecretContainerWatcher.watch(this.secretContainerFile, true, SupportedAlgorithm.AES_128);
+        assertThat(this.secretContainerFile.exists(), is(true));
+        assertThat(SecretContainerWatcher.watch(this.secretContainerFile, true, SupportedAlgorithm.AES_128), is(sameInstance(watcher)));
+
+        watcher.close();
+        SecretContainerWatcher newWatcher = SecretContainerWatcher.watch(this.secretContainerFile, true, SupportedAlgorithm.AES_128);
+        assertThat(newWatcher, is(not(sameInstance(watcher))));
+        watcher = newWatcher;
+    }
+
+    @Test
+    public void testWatch_changedSecretFile_shouldPublishNewSecretContainer() throws Exception {
+        watcher = SecretContainerWatcher.watch(this.secretContainerFile, true, SupportedAlgorithm.AES_128, SupportedAlgorithm.AES_256);
+        final SecretContainer initialSecretContainer = watcher.getSecretContainer();
+        final BlockingQueue<SecretContainer> changes = new ArrayBlockingQueue<>(10);
+        watcher.addListener((oldSecretContainer, newSecretContainer) -> {
+            assertThat(oldSecretContainer, is(sameInstance(initialSecretContainer)));
+            changes.add(newSecretContainer);
+        });
+
+        // start Test
+        final String newSecretKey = Encryption.toBase64String(Encryption.createKey(SupportedAlgorithm.AES_256));
+        FileUtils.writeLines(this.secretContainerFile, Arrays.asList("AES_256", newSecretKey));
+
+        // validate Result
+        final SecretContainer changedSecretContainer = changes.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertThat(changedSecretContainer, is(notNullValue()));
+        assertThat(changedSecretContainer.getAlgorithm(), is(SupportedAlgorithm.AES_256));
+        assertThat(Encryption.toBase64String(changedSecretContainer.getSecretKey()), is(newSecretKey));
+        assertThat(watcher.getSecretContainer(), is(sameInstance(changedSecretContainer)));
+    }
+
+    @Test
+    public void testWatch_invalidSecretFile_shouldKeepLastValidSecretContainer() throws Exception {
+        watcher = SecretContainerWatcher.watch(this.secretContainerFile, true, SupportedAlgorithm.AES_128);
+        final SecretContainer initialSecretContainer = watcher.getSecretContainer();
+        final BlockingQueue<Exception> failures = new ArrayBlockingQueue<>(10);
+        watcher.addListener(new SecretContainerListener() {
+            @Override
+            public void secretContainerChanged(final SecretContainer oldSecretContainer, final SecretContainer newSecretContainer) {
+                throw new AssertionError("Invalid secret file must not be published.");
+            }
+
+            @Override
+            public void secretContainerReloadFailed(final Exception exception) {
+                failures.add(exception);
+            }
+        });
+
+        // start Test
+        FileUtils.writeLines(this.secretContainerFile, Arrays.asList("UNKNOWN_ALGORITHM", "INVALID-KEY"));
+
+        // validate Result
+        assertThat(failures.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS), is(notNullValue()));
+        assertThat(watcher.getSecretContainer(), is(sameInstance(initialSecretContainer)));
+    }
+}
@@ -0,0 +1,119 @@
+/*-
+ * #%L
+ * Secured Properties
+ * ===============================================================
+ * Copyright (C) 2016 - 2026 Brabenetz Harald, Austria
+ * ===============================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package net.brabenetz.lib.securedproperties.core;
+
+import net.brabenetz.lib.securedproperties.test.TestUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.crypto.SecretKey;
+
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+
+public class SecureRandomsTest {
+
+    @After
+    public void resetStrategy() {
+        SecureRandoms.setStrategy(SecureRandoms.DEFAULT);
+    }
+
+    @Test
+    public void testUtilityPattern() {
+        // this test is more for test-coverage than logic :D
+        Assert.assertTrue(TestUtils.isDefaultConstructorHidden(SecureRandoms.class));
+    }
+
+    @Test
+    public void testSetStrategy_nativePrngNonBlocking() throws Exception {
+        SecureRandoms.setStrategy(SecureRandoms.NATIVE_PRNG_NON_BLOCKING);
+        assertThat(SecureRandoms.getEntropyAcquisitionNanos(), is(-1L));
+
+        final SecureRandom secureRandom = SecureRandoms.getSecureRandom();
+
+        assertThat(secureRandom.getAlgorithm(), is(SecureRandoms.NATIVE_PRNG_NON_BLOCKING));
+        assertThat(SecureRandoms.getEntropyAcquisitionNanos(), is(greaterThanOrEqualTo(0L)));
+
+        // the same strategy keeps the SecureRandom
+        SecureRandoms.setStrategy(SecureRandoms.NATIVE_PRNG_NON_BLOCKING);
+        assertThat(SecureRandoms.getSecureRandom(), is(sameInstance(secureRandom)));
+    }
+
+    @Test
+    public void testSetStrategy_drbgWithSeed_shouldBeUsedForKeysAndSalts() throws Exception {
+        SecureRandoms.setStrategy(SecureRandoms.DRBG, "explicit seed".getBytes(StandardCharsets.UTF_8));
+
+        final SecretContainer secretContainer = new SecretContainer(SupportedAlgorithm.AES_128, Encryption.createKey(SupportedAlgorithm.AES_128));
+        final String encrypted = Encryption.encrypt(secretContainer, 11, "test");
+
+        assertThat(SecureRandoms.getStrategy(), is(SecureRandoms.DRBG));
+        assertThat(SecureRandoms.getSecureRandom().getAlgorithm(), is(SecureRandoms.DRBG));
+        assertThat(Encryption.decrypt(secretContainer, 11, encrypted), is("test"));
+        assertThat(Encryption.encrypt(secretContainer, 11, "test"), is(not(encrypted)));
+    }
+
+    @Test
+    public void testGetSecureRandom_perSecretContainer_shouldNotChangeJvmStrategy() throws Exception {
+        final EncryptionOptions options = EncryptionOptions.DEFAULT.withSecureRandomStrategy(SecureRandoms.DRBG);
+        final SecretContainer defaultContainer = new SecretContainer(SupportedAlgorithm.AES_128, Encryption.createKey(SupportedAlgorithm.AES_128));
+        final SecretContainer secretContainer = defaultContainer.withOptions(options);
+
+        final String encrypted = Encryption.encrypt(secretContainer, 11, "test");
+
+        assertThat(Encryption.decrypt(defaultContainer, 11, encrypted), is("test"));
+        assertThat(SecureRandoms.getStrategy(), is(SecureRandoms.DEFAULT));
+        assertThat(SecureRandoms.getSecureRandom(SecureRandoms.DRBG).getAlgorithm(), is(SecureRandoms.DRBG));
+        assertThat(SecureRandoms.getSecureRandom(SecureRandoms.DRBG), is(sameInstance(SecureRandoms.getSecureRandom(SecureRandoms.DRBG))));
+        assertThat(secretContainer.getOptions(), is(sameInstance(options)));
+        assertThat(defaultContainer.withOptions(options), is(sameInstance(secretContainer)));
+        assertThat(secretContainer.withPrimaryKeyId(null).getOptions(), is(sameInstance(options)));
+    }
+
+    @Test
+    public void testCreateKey_withEncryptionOptions_shouldUseTheStrategyOfTheOptions() throws Exception {
+        final String strategy = "SHA1PRNG";
+        assertThat(SecureRandoms.getEntropyAcquisitionNanos(strategy), is(-1L));
+
+        // run test
+        final SecretKey secretKey = Encryption.createKey(SupportedAlgorithm.AES_128, EncryptionOptions.DEFAULT.withSecureRandomStrategy(strategy));
+
+        // validate result
+        assertThat(secretKey.getEncoded().length, is(16));
+        assertThat(SecureRandoms.getEntropyAcquisitionNanos(strategy), is(greaterThanOrEqualTo(0L)));
+        assertThat(SecureRandoms.getStrategy(), is(SecureRandoms.DEFAULT));
+        assertThat(SecureRandoms.getEntropyAcquisitionNanos(SecureRandoms.getStrategy()), is(SecureRandoms.getEntropyAcquisitionNanos()));
+    }
+
+    @Test
+    public void testSetStrategy_unknownAlgorithm_shouldUseDefault() throws Exception {
+        SecureRandoms.setStrategy("NotExistingPRNG");
+
+        assertThat(SecureRandoms.nextBytes(16).length, is(16));
+        assertThat(SecureRandoms.getStrategy(), is("NotExistingPRNG"));
+        assertThat(SecureRandoms.getSecureRandom().getAlgorithm(), is(new SecureRandom().getAlgorithm()));
+    }
+}
@@ -22,6 +22,7 @@ package net.brabenetz.lib.securedproperties.snippets;
 import net.brabenetz.lib.securedproperties.SecuredPropertiesConfig;
 import net.brabenetz.lib.securedproperties.config.Config;
 import net.brabenetz.lib.securedproperties.config.ConfigInitializers;
+import net.brabenetz.lib.securedproperties.core.SecretContainerSources;
 import net.brabenetz.lib.securedproperties.core.SupportedAlgorithm;
 
 import java.io.File;
@@ -40,6 +41,18 @@ public class ConfigurationSnippet {
             .withSaltLength(0) // [4]
             .withAllowedAlgorithm(SupportedAlgorithm.AES_256) // [5]
             .addAllowedAlgorithm(SupportedAlgorithm.DESede_168) // [6]
-            .withAutoCreateSecretKey(false); // [7]
+            .withAutoCreateSecretKey(false) // [7]
+            .withSecretFileRevalidationInterval(5000) // [8]
+            .withWatchSecretFile(true) // [9]
+            .withSecretContainerSource(SecretContainerSources.environmentVariable("MY_SECRET_KEY")) // [10]
+            .withKeyAgentSocket(new File("/run/secured-properties/agent.sock")) // [11]
+            .withSecureRandomStrategy("NativePRNGNonBlocking") // [12]
+            .withEnvelopeEncryption(true) // [13]
+            .withOffHeapBuffers(true) // [14]
+            .withCompactFormat(true) // [15]
+            .withBatchParallelism(4) // [16]
+            .withCipherProvider("SunJCE") // [17]
+            .withFastestAlgorithm(true) // [18]
+            .withMinAlgorithmStrength(256); // [19]
     // END SNIPPET: configExample
 }
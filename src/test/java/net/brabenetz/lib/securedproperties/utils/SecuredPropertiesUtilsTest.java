@@ -23,11 +23,17 @@ import net.brabenetz.lib.securedproperties.test.TestUtils;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.tuple.Pair;
 import org.junit.Assert;
+import org.junit.Assume;
 import org.junit.Test;
 
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
 import java.util.Properties;
 
 import static org.hamcrest.CoreMatchers.containsString;
@@ -84,6 +90,42 @@ public class SecuredPropertiesUtilsTest {
         assertThat(props.get("myPassword"), is("{abc-xyz}"));
     }
 
+    @Test
+    public void testWriteAtomically() throws Exception {
+        File file = new File("./target/tests/SecuredPropertiesUtilsTest/sub/atomic.properties");
+        FileUtils.deleteQuietly(file.getParentFile());
+
+        // run test
+        SecuredPropertiesUtils.writeAtomically(file, "a=1".getBytes(StandardCharsets.ISO_8859_1));
+        SecuredPropertiesUtils.writeAtomically(file, "a=2".getBytes(StandardCharsets.ISO_8859_1));
+
+        // validate Result: no temporary files are left
+        assertThat(FileUtils.readFileToString(file, StandardCharsets.ISO_8859_1), is("a=2"));
+        assertThat(file.getParentFile().list(), is(arrayContaining("atomic.properties")));
+    }
+
+    @Test
+    public void testWriteAtomically_shouldKeepPermissionsAndSymbolicLinks() throws Exception {
+        Assume.assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+        File folder = new File("./target/tests/SecuredPropertiesUtilsTest/links");
+        FileUtils.deleteQuietly(folder);
+        Path realFile = new File(folder, "real/app.properties").toPath();
+        Path link = new File(folder, "app.properties").toPath();
+        Files.createDirectories(realFile.getParent());
+        Files.write(realFile, "a=1".getBytes(StandardCharsets.ISO_8859_1));
+        Files.setPosixFilePermissions(realFile, PosixFilePermissions.fromString("rw-r-----"));
+        Files.createSymbolicLink(link, realFile.toAbsolutePath());
+
+        // run test
+        SecuredPropertiesUtils.writeAtomically(link.toFile(), "a=2".getBytes(StandardCharsets.ISO_8859_1));
+
+        // validate Result
+        assertThat(Files.isSymbolicLink(link), is(true));
+        assertThat(FileUtils.readFileToString(realFile.toFile(), StandardCharsets.ISO_8859_1), is("a=2"));
+        assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(realFile)), is("rw-r-----"));
+        assertThat(realFile.getParent().toFile().list(), is(arrayContaining("app.properties")));
+    }
+
     @Test
     public void testReplaceValue() throws Exception {
 